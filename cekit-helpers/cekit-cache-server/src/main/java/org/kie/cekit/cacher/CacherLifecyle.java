@@ -13,7 +13,12 @@ import javax.net.ssl.SSLContext;
 
 import io.quarkus.runtime.ShutdownEvent;
 import io.quarkus.runtime.StartupEvent;
+import org.kie.cekit.cacher.artifacts.AccessTracker;
+import org.kie.cekit.cacher.artifacts.ArtifactIndex;
+import org.kie.cekit.cacher.artifacts.ArtifactLayout;
+import org.kie.cekit.cacher.artifacts.CapacityManager;
 import org.kie.cekit.cacher.builds.github.GitRepository;
+import org.kie.cekit.cacher.downloads.DownloadScheduler;
 import org.kie.cekit.cacher.properties.CacherProperties;
 import org.kie.cekit.cacher.utils.CacherUtils;
 import org.kie.cekit.cacher.utils.HttpRequestHandler;
@@ -32,6 +37,24 @@ public class CacherLifecyle {
     @Inject
     CacherProperties props;
 
+    @Inject
+    ArtifactIndex artifactIndex;
+
+    @Inject
+    ArtifactLayout artifactLayout;
+
+    @Inject
+    CapacityManager capacityManager;
+
+    @Inject
+    AccessTracker accessTracker;
+
+    @Inject
+    DownloadScheduler downloadScheduler;
+
+    @Inject
+    HttpRequestHandler httpRequestHandler;
+
     void onStart(@Observes StartupEvent ev) throws Exception {
         if (props.trustAllCerts()) {
             log.fine("Trusting all certs...");
@@ -40,12 +63,21 @@ public class CacherLifecyle {
         log.info("Quarkus CEKit Cacher is starting, performing startup verifications...");
         gitRepository.cleanGitRepos();
         cacherUtils.startupVerifications();
+        artifactLayout.load();
+        artifactIndex.load();
+        accessTracker.load();
+        capacityManager.load();
         gitRepository.prepareLocalGitRepo();
+        cacherUtils.resumeDownloads();
         cacherUtils.preLoadFromFile();
     }
 
     void onStop(@Observes ShutdownEvent ev) {
         log.info("The application is stopping...");
+        downloadScheduler.shutdown();
+        httpRequestHandler.shutdown();
+        artifactIndex.compact();
+        accessTracker.flush();
     }
 
 
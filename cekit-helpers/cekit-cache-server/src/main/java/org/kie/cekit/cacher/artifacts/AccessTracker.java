@@ -0,0 +1,271 @@
+package org.kie.cekit.cacher.artifacts;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import io.quarkus.scheduler.Scheduled;
+import org.kie.cekit.cacher.objects.AccessStats;
+import org.kie.cekit.cacher.objects.ArtifactStats;
+import org.kie.cekit.cacher.properties.CacherProperties;
+
+/**
+ * Records when, how often and how much each artifact is served, so hot artifacts can be told from cold ones, by the
+ * operators and by the {@link CapacityManager}. The counters are updated without locking from the serving paths and
+ * flushed every few minutes to the metadata dir, one tab separated line per artifact:
+ * <pre>
+ *  checksum  lastAccess  hits  bytesServed
+ * </pre>
+ * Accesses after the last flush are lost on a crash. Artifacts never served are considered last accessed when they
+ * were persisted.
+ */
+@ApplicationScoped
+public class AccessTracker {
+
+    private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    private static final String SEPARATOR = "\t";
+
+    /**
+     * Order of the artifacts on {@link #stats(Order, int)}
+     */
+    public enum Order {
+        /**
+         * Most served first
+         */
+        HITS,
+        /**
+         * Most bytes served first
+         */
+        BYTES,
+        /**
+         * Most recently served first
+         */
+        RECENT,
+        /**
+         * Least recently served first, never served ones on top
+         */
+        COLD;
+
+        /**
+         * @param order requested order, can be null
+         * @return the order to be used, defaults to {@link #HITS}
+         */
+        public static Order of(String order) {
+            if (order == null || order.isEmpty()) {
+                return HITS;
+            }
+            return valueOf(order.toUpperCase());
+        }
+    }
+
+    // checksum -> accesses
+    private final Map<String, Access> accesses = new ConcurrentHashMap<>();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    @Inject
+    CacherProperties cacherProperties;
+
+    @Inject
+    ArtifactIndex artifactIndex;
+
+    /**
+     * Restores the counters flushed by a previous run, the ones of artifacts no longer indexed are dropped.
+     * Should be called once the {@link ArtifactIndex} is loaded.
+     */
+    public void load() {
+        accesses.clear();
+        if (!Files.exists(accessFile())) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(accessFile(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(SEPARATOR);
+                if (fields.length < 4 || !artifactIndex.contains(fields[0])) {
+                    continue;
+                }
+                try {
+                    Access access = new Access();
+                    access.lastAccess.accumulate(Long.parseLong(fields[1]));
+                    access.hits.add(Long.parseLong(fields[2]));
+                    access.bytesServed.add(Long.parseLong(fields[3]));
+                    accesses.put(fields[0], access);
+                } catch (NumberFormatException e) {
+                    log.warning("Ignoring malformed access record [" + line + "]");
+                }
+            }
+            log.info("Access statistics of " + accesses.size() + " artifacts restored.");
+        } catch (IOException e) {
+            log.warning("Failed to read the access statistics: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the counters to the metadata dir, if anything changed since the last flush
+     */
+    @Scheduled(every = "5m", delay = 5, delayUnit = TimeUnit.MINUTES)
+    public void flush() {
+        if (!dirty.getAndSet(false)) {
+            return;
+        }
+        Path tmp = Paths.get(cacherProperties.getMetadataDir(), "access.tsv.tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Access> entry : accesses.entrySet()) {
+                    if (!artifactIndex.contains(entry.getKey())) {
+                        // removed since it was served
+                        accesses.remove(entry.getKey());
+                        continue;
+                    }
+                    writer.write(String.join(SEPARATOR,
+                                             entry.getKey(),
+                                             String.valueOf(entry.getValue().lastAccess.get()),
+                                             String.valueOf(entry.getValue().hits.sum()),
+                                             String.valueOf(entry.getValue().bytesServed.sum())));
+                    writer.newLine();
+                }
+            }
+            Files.move(tmp, accessFile(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            dirty.set(true);
+            log.warning("Failed to flush the access statistics: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @param checksum artifact being served
+     * @param bytes    length of the requested content, the whole artifact or a range
+     */
+    public void recordAccess(String checksum, long bytes) {
+        Access access = accesses.computeIfAbsent(checksum, c -> new Access());
+        access.lastAccess.accumulate(System.currentTimeMillis());
+        access.hits.increment();
+        access.bytesServed.add(bytes);
+        dirty.set(true);
+    }
+
+    /**
+     * @param artifact indexed artifact
+     * @return the last time, in milliseconds since epoch, the artifact was served, or its creation time
+     */
+    public long lastAccess(IndexedArtifact artifact) {
+        Access access = accesses.get(artifact.getChecksum());
+        return access == null ? artifact.getCreationTime() : Math.max(access.lastAccess.get(), artifact.getCreationTime());
+    }
+
+    /**
+     * @param checksum artifact checksum
+     * @return how many times the artifact was served
+     */
+    public long hits(String checksum) {
+        Access access = accesses.get(checksum);
+        return access == null ? 0 : access.hits.sum();
+    }
+
+    /**
+     * @param checksum artifact removed from the store
+     */
+    public void forget(String checksum) {
+        if (accesses.remove(checksum) != null) {
+            dirty.set(true);
+        }
+    }
+
+    /**
+     * @param artifact indexed artifact
+     * @return the access statistics of the given artifact
+     */
+    public ArtifactStats stats(IndexedArtifact artifact) {
+        Access access = accesses.get(artifact.getChecksum());
+        return new ArtifactStats(artifact.getChecksum(),
+                                 artifact.getFileName(),
+                                 artifact.getSize(),
+                                 access == null ? 0 : access.hits.sum(),
+                                 access == null ? 0 : access.bytesServed.sum(),
+                                 access == null ? null : FileTime.fromMillis(access.lastAccess.get()).toString());
+    }
+
+    /**
+     * @param order how the artifacts are sorted
+     * @param limit max number of artifacts listed, 0 for all of them
+     * @return the totals along with the statistics of each artifact
+     */
+    public AccessStats stats(Order order, int limit) {
+        List<IndexedArtifact> artifacts = artifactIndex.all().stream()
+                .sorted(comparator(order))
+                .collect(Collectors.toList());
+        Stream<IndexedArtifact> listed = limit > 0 ? artifacts.stream().limit(limit) : artifacts.stream();
+        int neverServed = 0;
+        long hits = 0;
+        long bytesServed = 0;
+        for (IndexedArtifact artifact : artifacts) {
+            Access access = accesses.get(artifact.getChecksum());
+            if (access == null) {
+                neverServed++;
+            } else {
+                hits += access.hits.sum();
+                bytesServed += access.bytesServed.sum();
+            }
+        }
+        return new AccessStats(artifacts.size(), neverServed, hits, bytesServed,
+                               listed.map(this::stats).collect(Collectors.toList()));
+    }
+
+    private Comparator<IndexedArtifact> comparator(Order order) {
+        switch (order) {
+            case BYTES:
+                return Comparator.<IndexedArtifact>comparingLong(artifact -> bytesServed(artifact.getChecksum())).reversed();
+            case RECENT:
+                return Comparator.comparingLong(this::servedAt).reversed();
+            case COLD:
+                return Comparator.comparingLong(this::servedAt).thenComparingLong(IndexedArtifact::getCreationTime);
+            default:
+                return Comparator.<IndexedArtifact>comparingLong(artifact -> hits(artifact.getChecksum())).reversed();
+        }
+    }
+
+    private long bytesServed(String checksum) {
+        Access access = accesses.get(checksum);
+        return access == null ? 0 : access.bytesServed.sum();
+    }
+
+    /**
+     * @return last time the artifact was served, 0 if it never was
+     */
+    private long servedAt(IndexedArtifact artifact) {
+        Access access = accesses.get(artifact.getChecksum());
+        return access == null ? 0 : access.lastAccess.get();
+    }
+
+    private Path accessFile() {
+        return Paths.get(cacherProperties.getMetadataDir(), "access.tsv");
+    }
+
+    private static class Access {
+        private final LongAccumulator lastAccess = new LongAccumulator(Math::max, 0);
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder bytesServed = new LongAdder();
+    }
+}
@@ -0,0 +1,527 @@
+package org.kie.cekit.cacher.artifacts;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import io.quarkus.scheduler.Scheduled;
+import org.kie.cekit.cacher.properties.CacherProperties;
+import org.kie.cekit.cacher.utils.StreamingDigest;
+
+/**
+ * Concurrent in-memory index of the persisted artifacts.
+ * It is loaded once at startup and then kept up to date by the operations that add or remove
+ * artifacts from the store, so lookups by checksum or file name never need to walk the artifacts directory.
+ * Every change is recorded on the {@link ArtifactJournal}, so the index can be restored on restarts without
+ * scanning the store.
+ */
+@ApplicationScoped
+public class ArtifactIndex {
+
+    private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    // checksum -> artifact
+    private final Map<String, IndexedArtifact> artifacts = new ConcurrentHashMap<>();
+    // file name -> checksums
+    private final Map<String, Set<String>> fileNames = new ConcurrentHashMap<>();
+    private final FileNameIndex fileNameIndex = new FileNameIndex();
+    // sha1, sha256 and sha512 digests -> checksum
+    private final Map<String, String> aliases = new ConcurrentHashMap<>();
+
+    @Inject
+    CacherProperties cacherProperties;
+
+    @Inject
+    ArtifactJournal artifactJournal;
+
+    @Inject
+    ArtifactLayout artifactLayout;
+
+    /**
+     * Restores the index from the metadata journal, if there is no journal yet the artifacts directory is scanned.
+     */
+    public void load() {
+        clear();
+        if (artifactJournal.replay(this::index, this::unindex)) {
+            log.info("Artifacts index restored from the metadata journal, " + artifacts.size() + " artifacts found.");
+        } else {
+            rebuild();
+        }
+    }
+
+    /**
+     * Drops the current state and indexes every artifact found under the artifacts directory,
+     * tmp directory is excluded. A new metadata snapshot is written afterwards.
+     */
+    public void rebuild() {
+        log.info("Building the artifacts index...");
+        clear();
+        walkStore(file -> read(file.getParent().getFileName().toString(), file, "").ifPresent(this::index));
+        artifactJournal.compact(all());
+        log.info("Artifacts index built, " + artifacts.size() + " artifacts found.");
+    }
+
+    /**
+     * Compares the index against the artifacts directory and fixes any drift caused by files added, replaced or
+     * removed out-of-band. Entries are only dropped when their file is gone, and not moved by the {@link ArtifactLayout}
+     * migration, so artifacts persisted or migrated while the scan is running are preserved.
+     * Artifacts indexed before every {@link DigestAlgorithm} was supported, or found by a scan, are hashed here.
+     * Artifacts kept on the {@link ChunkStore} are found through their {@link ChunkManifest}.
+     */
+    @Scheduled(every = "6h", delay = 30, delayUnit = TimeUnit.MINUTES)
+    public void reconcile() {
+        log.fine("Reconciling the artifacts index with the artifacts directory...");
+        AtomicInteger fixed = new AtomicInteger();
+        walkStore(file -> {
+            String checksum = file.getParent().getFileName().toString();
+            IndexedArtifact current = artifacts.get(checksum);
+            try {
+                if (current == null) {
+                    log.info("Artifact " + file + " not indexed, adding it.");
+                    register(checksum, file);
+                    fixed.incrementAndGet();
+                } else if (!inSync(current, file)) {
+                    log.info("Artifact " + file + " out of sync with the index, updating it.");
+                    // e.g. chunked meanwhile, the aliases and digests of the entry are kept
+                    read(checksum, file, current.getSourceUrl())
+                            .ifPresent(read -> update(checksum, latest -> resync(latest, read)));
+                    fixed.incrementAndGet();
+                }
+            } catch (IOException e) {
+                log.warning("Failed to reconcile " + file + ": " + e.getMessage());
+            }
+        });
+        fixed.addAndGet(dropMissing());
+        artifacts.values().stream()
+                .filter(artifact -> !artifact.hasAllDigests())
+                .collect(Collectors.toList())
+                .forEach(artifact -> {
+                    try {
+                        Map<DigestAlgorithm, String> digests = digests(artifact);
+                        // hashing may take minutes, the entry is changed as it is by then, e.g. with new aliases
+                        update(artifact.getChecksum(), current -> current.hasAllDigests() || current.getSize() != artifact.getSize()
+                                ? current : current.withDigests(digests));
+                        fixed.incrementAndGet();
+                    } catch (IOException e) {
+                        log.warning("Failed to compute the digests of " + artifact.getPath() + ": " + e.getMessage());
+                    }
+                });
+        log.fine("Artifacts index reconciled, " + fixed.get() + " entries fixed.");
+    }
+
+    /**
+     * Drops the entries whose file is gone, an entry whose directory was moved into its shard by the
+     * {@link ArtifactLayout} migration, but not relocated yet, is relocated instead.
+     *
+     * @return number of entries dropped or relocated
+     */
+    int dropMissing() {
+        List<IndexedArtifact> missing = artifacts.values().stream()
+                .filter(artifact -> !Files.exists(artifact.getContentPath()))
+                .collect(Collectors.toList());
+        for (IndexedArtifact artifact : missing) {
+            // moved into its shard by the layout migration, which relocates it right after
+            Path moved = artifactLayout.locateDir(artifact.getChecksum()).resolve(artifact.getContentPath().getFileName());
+            if (Files.exists(moved)) {
+                relocate(artifact.getChecksum(), moved.resolveSibling(artifact.getFileName()).toAbsolutePath());
+            } else {
+                log.info("Artifact " + artifact.getChecksum() + " no longer exists on the filesystem, removing it from the index.");
+                remove(artifact.getChecksum());
+            }
+        }
+        return missing.size();
+    }
+
+    /**
+     * Writes a metadata snapshot and truncates the journal
+     */
+    @Scheduled(every = "1h", delay = 1, delayUnit = TimeUnit.HOURS)
+    public void compact() {
+        artifactJournal.compact(all());
+    }
+
+    /**
+     * Reads the file attributes and adds, or replaces, the artifact on the index.
+     *
+     * @param checksum artifact checksum
+     * @param file     persisted file location
+     * @return the indexed artifact
+     */
+    public Optional<IndexedArtifact> register(String checksum, Path file) {
+        return register(checksum, file, "");
+    }
+
+    /**
+     * Reads the file attributes and adds, or replaces, the artifact on the index.
+     *
+     * @param checksum  artifact checksum
+     * @param file      persisted file location
+     * @param sourceUrl where the artifact was fetched from
+     * @return the indexed artifact
+     */
+    public Optional<IndexedArtifact> register(String checksum, Path file, String sourceUrl) {
+        return register(checksum, file, sourceUrl, Collections.emptyMap());
+    }
+
+    /**
+     * Reads the file attributes and adds, or replaces, the artifact on the index.
+     *
+     * @param checksum  artifact checksum
+     * @param file      persisted file location
+     * @param sourceUrl where the artifact was fetched from
+     * @param digests   digests computed while the artifact was persisted
+     * @return the indexed artifact
+     */
+    public Optional<IndexedArtifact> register(String checksum, Path file, String sourceUrl, Map<DigestAlgorithm, String> digests) {
+        Optional<IndexedArtifact> artifact = read(checksum, file, sourceUrl).map(read -> read.withDigests(digests));
+        artifact.ifPresent(this::put);
+        return artifact;
+    }
+
+    /**
+     * Adds, or replaces, the given artifact on the index.
+     *
+     * @param artifact to be indexed
+     */
+    public void put(IndexedArtifact artifact) {
+        index(artifact);
+        artifactJournal.added(artifact);
+    }
+
+    private void index(IndexedArtifact artifact) {
+        IndexedArtifact previous = artifacts.put(artifact.getChecksum(), artifact);
+        if (previous != null) {
+            unlinkAliases(previous);
+            previous.getFileNames().stream()
+                    .filter(name -> !artifact.getFileNames().contains(name))
+                    .forEach(name -> unlinkName(name, previous.getChecksum()));
+        }
+        artifact.getDigests().forEach((algorithm, digest) -> {
+            if (algorithm != DigestAlgorithm.MD5) {
+                aliases.put(digest.toLowerCase(Locale.ROOT), artifact.getChecksum());
+            }
+        });
+        artifact.getFileNames().forEach(fileName -> fileNames.compute(fileName, (name, checksums) -> {
+            Set<String> set = checksums;
+            if (set == null) {
+                set = ConcurrentHashMap.newKeySet();
+                fileNameIndex.add(name);
+            }
+            set.add(artifact.getChecksum());
+            return set;
+        }));
+    }
+
+    /**
+     * Makes an indexed artifact also known by another file name, so the same bytes are found by both names without
+     * being stored twice.
+     *
+     * @param checksum artifact checksum
+     * @param fileName another name of the artifact content
+     * @return true if the name was added, false if the artifact is not indexed or already known by that name
+     */
+    public synchronized boolean addAlias(String checksum, String fileName) {
+        IndexedArtifact artifact = artifacts.get(checksum);
+        if (artifact == null || artifact.getFileNames().contains(fileName)) {
+            return false;
+        }
+        put(artifact.withAlias(fileName));
+        log.info("Artifact " + artifact.getFileName() + " is also known as " + fileName);
+        return true;
+    }
+
+    /**
+     * Replaces an indexed artifact by a modified copy, concurrent updates of the same artifact are not lost.
+     *
+     * @param checksum artifact checksum
+     * @param change   derives the new entry from the current one
+     * @return the updated artifact, empty if the checksum is not indexed
+     */
+    public synchronized Optional<IndexedArtifact> update(String checksum, UnaryOperator<IndexedArtifact> change) {
+        IndexedArtifact artifact = artifacts.get(checksum);
+        if (artifact == null) {
+            return Optional.empty();
+        }
+        IndexedArtifact updated = change.apply(artifact);
+        put(updated);
+        return Optional.of(updated);
+    }
+
+    /**
+     * Updates the location of an indexed artifact, which is not journaled as it is derived from the
+     * {@link ArtifactLayout}. Synchronized with {@link #update(String, UnaryOperator)}, so neither change is lost.
+     *
+     * @param checksum artifact checksum
+     * @param path     new location of the artifact
+     */
+    public synchronized void relocate(String checksum, Path path) {
+        artifacts.computeIfPresent(checksum, (c, artifact) -> artifact.withPath(path));
+    }
+
+    /**
+     * Removes the given checksum from the index.
+     *
+     * @param checksum to be removed
+     * @return the removed artifact, if it was indexed
+     */
+    public Optional<IndexedArtifact> remove(String checksum) {
+        IndexedArtifact removed = unindex(checksum);
+        if (removed != null) {
+            artifactJournal.deleted(checksum);
+        }
+        return Optional.ofNullable(removed);
+    }
+
+    private IndexedArtifact unindex(String checksum) {
+        IndexedArtifact removed = artifacts.remove(checksum);
+        if (removed != null) {
+            unlinkAliases(removed);
+            removed.getFileNames().forEach(name -> unlinkName(name, checksum));
+        }
+        return removed;
+    }
+
+    /**
+     * @param checksum artifact checksum
+     * @return the indexed artifact, if any
+     */
+    public Optional<IndexedArtifact> get(String checksum) {
+        if (checksum == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(artifacts.get(checksum));
+    }
+
+    /**
+     * Looks up an artifact by any of its digests.
+     *
+     * @param digest md5, sha1, sha256 or sha512 hexadecimal digest
+     * @return the indexed artifact, if any
+     */
+    public Optional<IndexedArtifact> resolve(String digest) {
+        if (digest == null) {
+            return Optional.empty();
+        }
+        IndexedArtifact artifact = artifacts.get(digest);
+        if (artifact == null) {
+            String checksum = aliases.getOrDefault(digest.toLowerCase(Locale.ROOT), digest.toLowerCase(Locale.ROOT));
+            artifact = artifacts.get(checksum);
+        }
+        return Optional.ofNullable(artifact);
+    }
+
+    /**
+     * @param checksum artifact checksum
+     * @return true if the checksum is indexed
+     */
+    public boolean contains(String checksum) {
+        return checksum != null && artifacts.containsKey(checksum);
+    }
+
+    /**
+     * @param fileName exact file name
+     * @return true if there is at least one artifact with the given name
+     */
+    public boolean containsFileName(String fileName) {
+        return fileName != null && fileNames.containsKey(fileName);
+    }
+
+    /**
+     * @param fileName exact file name
+     * @return the first artifact found with the given name
+     */
+    public Optional<IndexedArtifact> getByFileName(String fileName) {
+        if (fileName == null) {
+            return Optional.empty();
+        }
+        return fileNames.getOrDefault(fileName, Collections.emptySet()).stream()
+                .map(artifacts::get)
+                .filter(Objects::nonNull)
+                .findFirst();
+    }
+
+    /**
+     * Search artifacts by file name using the {@link FileNameIndex}
+     *
+     * @param query text or glob pattern to be searched
+     * @param match how the query should be matched
+     * @return the artifacts which names matches the query
+     */
+    public List<IndexedArtifact> search(String query, FileNameIndex.Match match) {
+        return fileNameIndex.search(query, match).stream()
+                .flatMap(name -> fileNames.getOrDefault(name, Collections.emptySet()).stream())
+                .map(artifacts::get)
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Same as {@link #search(String, FileNameIndex.Match)}, keeping the name each artifact was found by, so an artifact
+     * found by one of its aliases can be listed under that alias.
+     *
+     * @param query text or glob pattern to be searched
+     * @param match how the query should be matched
+     * @return the matching file names, sorted, along with the artifacts known by each of them
+     */
+    public Map<String, List<IndexedArtifact>> searchByName(String query, FileNameIndex.Match match) {
+        Map<String, List<IndexedArtifact>> found = new TreeMap<>();
+        for (String name : fileNameIndex.search(query, match)) {
+            List<IndexedArtifact> named = fileNames.getOrDefault(name, Collections.emptySet()).stream()
+                    .map(artifacts::get)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+            if (!named.isEmpty()) {
+                found.put(name, named);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return a read only view of all indexed artifacts
+     */
+    public Collection<IndexedArtifact> all() {
+        return Collections.unmodifiableCollection(artifacts.values());
+    }
+
+    /**
+     * @return number of indexed artifacts
+     */
+    public int size() {
+        return artifacts.size();
+    }
+
+    private void clear() {
+        artifacts.clear();
+        aliases.clear();
+        fileNames.keySet().forEach(fileNameIndex::remove);
+        fileNames.clear();
+    }
+
+    private boolean inSync(IndexedArtifact artifact, Path file) throws IOException {
+        if (isManifest(file)) {
+            return artifact.isChunked() && artifact.getContentPath().equals(file.toAbsolutePath());
+        }
+        return !artifact.isChunked() && artifact.getPath().equals(file.toAbsolutePath()) && artifact.getSize() == Files.size(file);
+    }
+
+    /**
+     * @return the entry with the location, size and storage read from the store, its digests are dropped if the
+     * size changed
+     */
+    private IndexedArtifact resync(IndexedArtifact current, IndexedArtifact read) {
+        IndexedArtifact synced = read.withDigests(read.getSize() == current.getSize() ? current.getDigests() : Collections.emptyMap());
+        for (String alias : current.getAliases()) {
+            synced = synced.withAlias(alias);
+        }
+        return synced;
+    }
+
+    private Map<DigestAlgorithm, String> digests(IndexedArtifact artifact) throws IOException {
+        if (!artifact.isChunked()) {
+            return StreamingDigest.of(artifact.getPath());
+        }
+        ChunkManifest manifest = ChunkManifest.load(artifact.getContentPath());
+        try (InputStream content = manifest.open(Paths.get(cacherProperties.getChunksDir()), 0)) {
+            return StreamingDigest.of(content);
+        }
+    }
+
+    private Optional<IndexedArtifact> read(String checksum, Path file, String sourceUrl) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            if (isManifest(file)) {
+                ChunkManifest manifest = ChunkManifest.load(file);
+                return Optional.of(new IndexedArtifact(checksum,
+                                                       manifest.getFileName(),
+                                                       file.resolveSibling(manifest.getFileName()).toAbsolutePath(),
+                                                       manifest.getSize(),
+                                                       attrs.creationTime().toMillis(),
+                                                       sourceUrl,
+                                                       Collections.emptyMap(),
+                                                       true));
+            }
+            return Optional.of(new IndexedArtifact(checksum,
+                                                   file.getFileName().toString(),
+                                                   file.toAbsolutePath(),
+                                                   attrs.size(),
+                                                   attrs.creationTime().toMillis(),
+                                                   sourceUrl));
+        } catch (IOException e) {
+            log.warning("Failed to index file " + file + ": " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private void walkStore(Consumer<Path> consumer) {
+        Path tmpDir = Paths.get(cacherProperties.getArtifactsTmpDir());
+        try (Stream<Path> walk = Files.walk(Paths.get(cacherProperties.getCacherArtifactsDir()))) {
+            walk.filter(Files::isRegularFile)
+                    .filter(file -> !file.startsWith(tmpDir))
+                    .filter(this::isContent)
+                    .forEach(consumer);
+        } catch (IOException e) {
+            log.warning("Failed to walk the artifacts dir: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return false for leftovers of the {@link ChunkStore}, a manifest being written or a file already chunked
+     */
+    private boolean isContent(Path file) {
+        if (isManifest(file)) {
+            return true;
+        }
+        return !file.getFileName().toString().equals(ChunkManifest.FILE_NAME + ".tmp")
+                && !Files.exists(file.resolveSibling(ChunkManifest.FILE_NAME));
+    }
+
+    private boolean isManifest(Path file) {
+        return ChunkManifest.FILE_NAME.equals(file.getFileName().toString());
+    }
+
+    private void unlinkAliases(IndexedArtifact artifact) {
+        artifact.getDigests().forEach((algorithm, digest) -> {
+            if (algorithm != DigestAlgorithm.MD5) {
+                aliases.remove(digest.toLowerCase(Locale.ROOT), artifact.getChecksum());
+            }
+        });
+    }
+
+    private void unlinkName(String fileName, String checksum) {
+        fileNames.computeIfPresent(fileName, (name, checksums) -> {
+            checksums.remove(checksum);
+            if (checksums.isEmpty()) {
+                fileNameIndex.remove(name);
+                return null;
+            }
+            return checksums;
+        });
+    }
+}
@@ -0,0 +1,300 @@
+package org.kie.cekit.cacher.artifacts;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.kie.cekit.cacher.properties.CacherProperties;
+
+/**
+ * Append-only journal of the artifacts metadata, periodically compacted into a snapshot.
+ * Both files live under the metadata dir and use one tab separated record per line:
+ * <pre>
+ *  ADD  checksum  fileName  size  creationTime  sourceUrl  sha1  sha256  sha512  storage  aliases
+ *  DEL  checksum
+ * </pre>
+ * The digest fields are empty when not computed yet, the storage is {@code chunked} for artifacts kept on the
+ * {@link ChunkStore} and empty for plain files, the aliases are the other file names of the artifact separated by
+ * {@code /}, which can not be part of a file name. These fields are absent on records written by older versions.
+ * Replaying the snapshot followed by the journal rebuilds the {@link ArtifactIndex} without touching the artifacts
+ * directory. Records are idempotent, so replaying an entry that is also on the snapshot is harmless. A last record
+ * without its line break was cut short by a crash, it is ignored on replay and dropped before the next append.
+ */
+@ApplicationScoped
+public class ArtifactJournal {
+
+    private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    private static final String ADD = "ADD";
+    private static final String DEL = "DEL";
+    private static final String SEPARATOR = "\t";
+    private static final String CHUNKED = "chunked";
+    private static final String ALIAS_SEPARATOR = "/";
+    private static final DigestAlgorithm[] EXTRA_DIGESTS = {DigestAlgorithm.SHA1, DigestAlgorithm.SHA256, DigestAlgorithm.SHA512};
+
+    private BufferedWriter writer;
+
+    @Inject
+    CacherProperties cacherProperties;
+
+    @Inject
+    ArtifactLayout artifactLayout;
+
+    /**
+     * Appends an ADD record for the given artifact.
+     *
+     * @param artifact persisted artifact
+     */
+    public void added(IndexedArtifact artifact) {
+        append(addRecord(artifact));
+    }
+
+    /**
+     * Appends a DEL record for the given checksum.
+     *
+     * @param checksum removed artifact
+     */
+    public void deleted(String checksum) {
+        append(DEL + SEPARATOR + checksum);
+    }
+
+    /**
+     * Replays the snapshot and then the journal.
+     *
+     * @param onAdd    called for every ADD record
+     * @param onDelete called for every DEL record
+     * @return false if there is no snapshot nor journal to replay
+     */
+    public synchronized boolean replay(Consumer<IndexedArtifact> onAdd, Consumer<String> onDelete) {
+        if (!Files.exists(snapshotFile()) && !Files.exists(journalFile())) {
+            return false;
+        }
+        long start = System.currentTimeMillis();
+        int records = replayFile(snapshotFile(), onAdd, onDelete) + replayFile(journalFile(), onAdd, onDelete);
+        log.info("Replayed " + records + " metadata records in " + (System.currentTimeMillis() - start) + "ms.");
+        return true;
+    }
+
+    /**
+     * Writes a new snapshot with the given artifacts and truncates the journal.
+     * The snapshot is written to a temporary file first and then atomically moved, so a crash in the middle of
+     * the compaction keeps the previous snapshot and journal intact.
+     *
+     * @param artifacts current state
+     */
+    public synchronized void compact(Collection<IndexedArtifact> artifacts) {
+        Path tmpSnapshot = Paths.get(cacherProperties.getMetadataDir(), "snapshot.tsv.tmp");
+        try (BufferedWriter snapshot = Files.newBufferedWriter(tmpSnapshot, StandardCharsets.UTF_8)) {
+            for (IndexedArtifact artifact : artifacts) {
+                snapshot.write(addRecord(artifact));
+                snapshot.newLine();
+            }
+        } catch (IOException e) {
+            log.warning("Failed to write metadata snapshot: " + e.getMessage());
+            return;
+        }
+        try {
+            Files.move(tmpSnapshot, snapshotFile(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            close();
+            Files.deleteIfExists(journalFile());
+            log.fine("Metadata snapshot written with " + artifacts.size() + " artifacts.");
+        } catch (IOException e) {
+            log.warning("Failed to compact metadata journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Flushes and closes the journal, it is reopened on the next append.
+     */
+    public synchronized void close() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                log.warning("Failed to close metadata journal: " + e.getMessage());
+            }
+            writer = null;
+        }
+    }
+
+    private synchronized void append(String record) {
+        try {
+            if (writer == null) {
+                dropTruncatedRecord(journalFile());
+                writer = Files.newBufferedWriter(journalFile(), StandardCharsets.UTF_8,
+                                                 StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            writer.write(record);
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            log.warning("Failed to append [" + record + "] to the metadata journal: " + e.getMessage());
+        }
+    }
+
+    private int replayFile(Path file, Consumer<IndexedArtifact> onAdd, Consumer<String> onDelete) {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        int records = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            boolean truncated = !endsWithLineBreak(file);
+            String next = reader.readLine();
+            while (next != null) {
+                String line = next;
+                next = reader.readLine();
+                if (next == null && truncated) {
+                    log.warning("Ignoring truncated metadata record [" + line + "] on " + file);
+                    break;
+                }
+                String[] fields = line.split(SEPARATOR, -1);
+                try {
+                    if (ADD.equals(fields[0]) && fields.length >= 6) {
+                        onAdd.accept(new IndexedArtifact(fields[1],
+                                                         fields[2],
+                                                         artifactPath(fields[1], fields[2]),
+                                                         Long.parseLong(fields[3]),
+                                                         Long.parseLong(fields[4]),
+                                                         fields[5],
+                                                         digests(fields),
+                                                         fields.length > 9 && CHUNKED.equals(fields[9]),
+                                                         aliases(fields)));
+                        records++;
+                    } else if (DEL.equals(fields[0]) && fields.length >= 2) {
+                        onDelete.accept(fields[1]);
+                        records++;
+                    } else {
+                        log.warning("Ignoring malformed metadata record [" + line + "] on " + file);
+                    }
+                } catch (NumberFormatException e) {
+                    // most likely a record truncated by a crash
+                    log.warning("Ignoring malformed metadata record [" + line + "] on " + file);
+                }
+            }
+        } catch (IOException e) {
+            log.warning("Failed to replay " + file + ": " + e.getMessage());
+        }
+        return records;
+    }
+
+    /**
+     * @return false if the last record of the file was not completely written, true for a missing or empty file
+     */
+    private boolean endsWithLineBreak(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return true;
+        }
+        try (SeekableByteChannel channel = Files.newByteChannel(file)) {
+            if (channel.size() == 0) {
+                return true;
+            }
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.position(channel.size() - 1).read(last);
+            return last.get(0) == '\n';
+        }
+    }
+
+    /**
+     * Cuts the file after its last line break, so the next record is not appended to one cut short by a crash.
+     */
+    private void dropTruncatedRecord(Path file) throws IOException {
+        if (endsWithLineBreak(file)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(8192);
+            long end = channel.size();
+            while (end > 0) {
+                long start = Math.max(0, end - buffer.capacity());
+                buffer.clear().limit((int) (end - start));
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, start + buffer.position()) < 0) {
+                        break;
+                    }
+                }
+                for (int i = buffer.position() - 1; i >= 0; i--) {
+                    if (buffer.get(i) == '\n') {
+                        log.warning("Dropping the truncated last record of " + file);
+                        channel.truncate(start + i + 1);
+                        return;
+                    }
+                }
+                end = start;
+            }
+            log.warning("Dropping the truncated only record of " + file);
+            channel.truncate(0);
+        }
+    }
+
+    private String addRecord(IndexedArtifact artifact) {
+        return String.join(SEPARATOR,
+                           ADD,
+                           artifact.getChecksum(),
+                           sanitize(artifact.getFileName()),
+                           String.valueOf(artifact.getSize()),
+                           String.valueOf(artifact.getCreationTime()),
+                           sanitize(artifact.getSourceUrl()),
+                           artifact.getDigest(DigestAlgorithm.SHA1).orElse(""),
+                           artifact.getDigest(DigestAlgorithm.SHA256).orElse(""),
+                           artifact.getDigest(DigestAlgorithm.SHA512).orElse(""),
+                           artifact.isChunked() ? CHUNKED : "",
+                           sanitize(String.join(ALIAS_SEPARATOR, artifact.getAliases())));
+    }
+
+    private Map<DigestAlgorithm, String> digests(String[] fields) {
+        Map<DigestAlgorithm, String> digests = new EnumMap<>(DigestAlgorithm.class);
+        for (int i = 0; i < EXTRA_DIGESTS.length && 6 + i < fields.length; i++) {
+            if (!fields[6 + i].isEmpty()) {
+                digests.put(EXTRA_DIGESTS[i], fields[6 + i]);
+            }
+        }
+        return digests;
+    }
+
+    private List<String> aliases(String[] fields) {
+        if (fields.length <= 10 || fields[10].isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Arrays.asList(fields[10].split(ALIAS_SEPARATOR));
+    }
+
+    private String sanitize(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    private Path artifactPath(String checksum, String fileName) {
+        return artifactLayout.locateDir(checksum).resolve(fileName).toAbsolutePath();
+    }
+
+    private Path journalFile() {
+        return Paths.get(cacherProperties.getMetadataDir(), "journal.log");
+    }
+
+    private Path snapshotFile() {
+        return Paths.get(cacherProperties.getMetadataDir(), "snapshot.tsv");
+    }
+}
@@ -0,0 +1,167 @@
+package org.kie.cekit.cacher.artifacts;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import io.quarkus.scheduler.Scheduled;
+import org.kie.cekit.cacher.properties.CacherProperties;
+
+/**
+ * Where each artifact lives under the artifacts directory.
+ * Artifacts are sharded by the first two pairs of characters of their checksum, {@code artifacts/ab/cd/abcd.../file},
+ * so no directory holds more than a few hundred entries. Stores created by older versions keep every artifact right
+ * under the artifacts directory, {@code artifacts/abcd.../file}, and are migrated online: each artifact directory is
+ * renamed into its shard and the index updated, while the artifacts keep being served. The migration can be
+ * interrupted at any time and goes on from where it stopped on the next run, once nothing is left the layout is
+ * recorded on the metadata dir and the flat locations are no longer looked at.
+ */
+@ApplicationScoped
+public class ArtifactLayout {
+
+    private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    private static final String SHARDED = "sharded";
+    // artifact directories of the flat layout, md5 checksums
+    private static final Pattern FLAT_DIR = Pattern.compile("[0-9a-fA-F]{32}");
+
+    private final AtomicBoolean migrating = new AtomicBoolean();
+    private volatile boolean migrated;
+
+    @Inject
+    CacherProperties cacherProperties;
+
+    @Inject
+    ArtifactIndex artifactIndex;
+
+    /**
+     * Reads the layout recorded on the metadata dir, should be called before the {@link ArtifactIndex} is loaded.
+     */
+    public void load() {
+        try {
+            migrated = Files.exists(layoutFile())
+                    && SHARDED.equals(new String(Files.readAllBytes(layoutFile()), StandardCharsets.UTF_8).trim());
+        } catch (IOException e) {
+            log.warning("Failed to read the artifacts layout: " + e.getMessage());
+            migrated = false;
+        }
+    }
+
+    /**
+     * @param checksum artifact checksum
+     * @return the directory of the artifact on the sharded layout, where new artifacts are persisted
+     */
+    public Path artifactDir(String checksum) {
+        Path root = Paths.get(cacherProperties.getCacherArtifactsDir());
+        if (checksum.length() < 4) {
+            return root.resolve(checksum);
+        }
+        return root.resolve(checksum.substring(0, 2)).resolve(checksum.substring(2, 4)).resolve(checksum);
+    }
+
+    /**
+     * @param checksum artifact checksum
+     * @return the directory holding the artifact, on the flat layout if it was not migrated yet
+     */
+    public Path locateDir(String checksum) {
+        Path sharded = artifactDir(checksum);
+        if (migrated || Files.isDirectory(sharded)) {
+            return sharded;
+        }
+        Path flat = Paths.get(cacherProperties.getCacherArtifactsDir(), checksum);
+        return Files.isDirectory(flat) ? flat : sharded;
+    }
+
+    /**
+     * @return true once no artifact is left on the flat layout
+     */
+    public boolean isMigrated() {
+        return migrated;
+    }
+
+    /**
+     * Moves the artifacts left on the flat layout into their shards. Runs shortly after the startup and then hourly
+     * until there is nothing left, a run already in progress is not overlapped.
+     */
+    @Scheduled(every = "1h", delay = 1, delayUnit = TimeUnit.MINUTES)
+    public void migrate() {
+        if (migrated || !migrating.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<Path> flatDirs = flatDirs();
+            if (!flatDirs.isEmpty()) {
+                log.info("Migrating " + flatDirs.size() + " artifacts to the sharded layout...");
+            }
+            int failed = 0;
+            for (Path flatDir : flatDirs) {
+                try {
+                    migrate(flatDir);
+                } catch (IOException e) {
+                    failed++;
+                    log.warning("Failed to migrate " + flatDir + " to the sharded layout, it will be retried: " + e.getMessage());
+                }
+            }
+            if (failed == 0) {
+                Files.write(layoutFile(), SHARDED.getBytes(StandardCharsets.UTF_8));
+                migrated = true;
+                if (!flatDirs.isEmpty()) {
+                    log.info("Artifacts migrated to the sharded layout.");
+                }
+            }
+        } catch (IOException e) {
+            log.warning("Failed to migrate the artifacts to the sharded layout: " + e.getMessage());
+        } finally {
+            migrating.set(false);
+        }
+    }
+
+    private void migrate(Path flatDir) throws IOException {
+        String checksum = flatDir.getFileName().toString();
+        Path target = artifactDir(checksum);
+        Files.createDirectories(target.getParent());
+        if (!Files.exists(target)) {
+            Files.move(flatDir, target, StandardCopyOption.ATOMIC_MOVE);
+        } else {
+            // a previous run, or a new download of the same artifact, got there first
+            try (Stream<Path> files = Files.list(flatDir)) {
+                for (Path file : files.collect(Collectors.toList())) {
+                    Path moved = target.resolve(file.getFileName());
+                    if (Files.exists(moved)) {
+                        Files.delete(file);
+                    } else {
+                        Files.move(file, moved, StandardCopyOption.ATOMIC_MOVE);
+                    }
+                }
+            }
+            Files.delete(flatDir);
+        }
+        artifactIndex.get(checksum).ifPresent(artifact -> artifactIndex.relocate(checksum, target.resolve(artifact.getFileName()).toAbsolutePath()));
+    }
+
+    private List<Path> flatDirs() throws IOException {
+        try (Stream<Path> dirs = Files.list(Paths.get(cacherProperties.getCacherArtifactsDir()))) {
+            return dirs.filter(Files::isDirectory)
+                    .filter(dir -> FLAT_DIR.matcher(dir.getFileName().toString()).matches())
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private Path layoutFile() {
+        return Paths.get(cacherProperties.getMetadataDir(), "layout");
+    }
+}
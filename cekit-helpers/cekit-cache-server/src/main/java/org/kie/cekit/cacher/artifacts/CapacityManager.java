@@ -0,0 +1,268 @@
+package org.kie.cekit.cacher.artifacts;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import io.quarkus.scheduler.Scheduled;
+import org.kie.cekit.cacher.objects.CapacityStatus;
+import org.kie.cekit.cacher.properties.CacherProperties;
+import org.kie.cekit.cacher.utils.CacherUtils;
+
+/**
+ * Keeps the artifacts directory under the configured quota.
+ * When the usage, plus what the downloads in flight are still going to write, goes over the high watermark the
+ * artifacts are evicted in the {@link EvictionPolicy} order until it is back under the low watermark.
+ * A download reserves its size before it starts, so the eviction runs before the quota overflows instead of after.
+ * Pinned artifacts are never evicted, the pins are kept on the metadata dir.
+ * Chunked artifacts count for the chunks they take on the {@link ChunkStore} rather than for their size, evicting one
+ * only frees its chunks no other artifact shares.
+ */
+@ApplicationScoped
+public class CapacityManager {
+
+    private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    private final Set<String> pinned = ConcurrentHashMap.newKeySet();
+    private final AtomicLong reserved = new AtomicLong();
+    private final AtomicInteger evicted = new AtomicInteger();
+    private final AtomicLong evictedBytes = new AtomicLong();
+
+    @Inject
+    CacherProperties cacherProperties;
+
+    @Inject
+    ArtifactIndex artifactIndex;
+
+    @Inject
+    AccessTracker accessTracker;
+
+    @Inject
+    CacherUtils cacherUtils;
+
+    @Inject
+    ChunkStore chunkStore;
+
+    /**
+     * Restores the pins, the ones of artifacts no longer indexed are dropped.
+     * Should be called once the {@link ArtifactIndex} is loaded.
+     */
+    public void load() {
+        pinned.clear();
+        if (!Files.exists(pinnedFile())) {
+            return;
+        }
+        try {
+            Files.readAllLines(pinnedFile(), StandardCharsets.UTF_8).stream()
+                    .map(String::trim)
+                    .filter(artifactIndex::contains)
+                    .forEach(pinned::add);
+            log.info(pinned.size() + " pinned artifacts restored.");
+        } catch (IOException e) {
+            log.warning("Failed to read the pinned artifacts: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return true if a quota is configured
+     */
+    public boolean isEnabled() {
+        return cacherProperties.capacityQuota() > 0;
+    }
+
+    /**
+     * Reserves room for an artifact about to be downloaded, evicting artifacts first if it would take the usage over
+     * the high watermark. The download goes on even if not enough could be evicted.
+     *
+     * @param bytes expected artifact size, -1 if unknown
+     * @return the reserved bytes, to be given back to {@link #release(long)} once the download is over
+     */
+    public synchronized long reserve(long bytes) {
+        if (!isEnabled() || bytes <= 0) {
+            return 0;
+        }
+        if (usage() + reserved.get() + bytes > highWatermark()) {
+            long target = lowWatermark() - reserved.get() - bytes;
+            log.info("Downloading " + bytes + " bytes would take the artifacts directory over its high watermark, evicting down to " + Math.max(0, target) + " bytes");
+            if (evict(target) + reserved.get() + bytes > cacherProperties.capacityQuota()) {
+                log.warning("Not enough artifacts could be evicted, downloading " + bytes + " bytes goes over the quota");
+            }
+        }
+        reserved.addAndGet(bytes);
+        return bytes;
+    }
+
+    /**
+     * @param bytes reserved by {@link #reserve(long)}
+     */
+    public void release(long bytes) {
+        reserved.addAndGet(-bytes);
+    }
+
+    /**
+     * Evicts down to the low watermark if the usage is over the high watermark, covers the artifacts which size was
+     * not known beforehand, like uploads.
+     */
+    @Scheduled(every = "30m", delay = 5, delayUnit = TimeUnit.MINUTES)
+    public synchronized void enforce() {
+        if (isEnabled() && usage() + reserved.get() > highWatermark()) {
+            evict(lowWatermark() - reserved.get());
+        }
+    }
+
+    /**
+     * Evicts down to the low watermark right away, regardless of the high watermark
+     *
+     * @return the usage after the eviction
+     */
+    public synchronized long evictNow() {
+        if (!isEnabled()) {
+            return usage();
+        }
+        return evict(lowWatermark() - reserved.get());
+    }
+
+    /**
+     * @param target usage to evict down to
+     * @return the usage after the eviction
+     */
+    private long evict(long target) {
+        long usage = usage();
+        long now = System.currentTimeMillis();
+        List<IndexedArtifact> candidates = artifactIndex.all().stream()
+                .filter(artifact -> !pinned.contains(artifact.getChecksum()))
+                .sorted(cacherProperties.capacityEvictionPolicy().order(accessTracker, now))
+                .collect(Collectors.toList());
+        boolean chunkedEvicted = false;
+        for (IndexedArtifact artifact : candidates) {
+            if (usage <= target) {
+                break;
+            }
+            log.info("Evicting " + artifact.getFileName() + " (" + artifact.getChecksum() + "), " + artifact.getSize() + " bytes");
+            if (cacherUtils.deleteArtifact(artifact.getChecksum())) {
+                accessTracker.forget(artifact.getChecksum());
+                long freed = artifact.getSize();
+                if (artifact.isChunked()) {
+                    // the chunks shared with other artifacts stay, measure what is actually left
+                    long left = usage();
+                    freed = usage - left;
+                    chunkedEvicted = true;
+                }
+                usage -= freed;
+                evicted.incrementAndGet();
+                evictedBytes.addAndGet(freed);
+            }
+        }
+        if (chunkedEvicted) {
+            chunkStore.collect();
+        }
+        return usage;
+    }
+
+    /**
+     * Protects the artifact from evictions
+     *
+     * @param digest md5, sha1, sha256 or sha512 of the artifact
+     * @return the pinned artifact, empty if it is not indexed
+     */
+    public Optional<IndexedArtifact> pin(String digest) {
+        Optional<IndexedArtifact> artifact = artifactIndex.resolve(digest);
+        artifact.ifPresent(found -> {
+            if (pinned.add(found.getChecksum())) {
+                savePinned();
+            }
+        });
+        return artifact;
+    }
+
+    /**
+     * @param digest md5, sha1, sha256 or sha512 of the artifact
+     * @return true if the artifact was pinned
+     */
+    public boolean unpin(String digest) {
+        String checksum = artifactIndex.resolve(digest).map(IndexedArtifact::getChecksum).orElse(digest);
+        if (pinned.remove(checksum)) {
+            savePinned();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param checksum artifact checksum
+     * @return true if the artifact is never evicted
+     */
+    public boolean isPinned(String checksum) {
+        return pinned.contains(checksum);
+    }
+
+    /**
+     * @return the current usage and quota
+     */
+    public CapacityStatus status() {
+        return new CapacityStatus(cacherProperties.capacityQuota(),
+                                  usage(),
+                                  reserved.get(),
+                                  highWatermark(),
+                                  lowWatermark(),
+                                  cacherProperties.capacityEvictionPolicy(),
+                                  Collections.unmodifiableSet(new TreeSet<>(pinned)),
+                                  evicted.get(),
+                                  evictedBytes.get());
+    }
+
+    /**
+     * @return size of all the plain artifacts plus the chunks referenced by the chunked ones
+     */
+    long usage() {
+        return artifactIndex.all().stream()
+                .filter(artifact -> !artifact.isChunked())
+                .mapToLong(IndexedArtifact::getSize)
+                .sum() + chunkStore.storedBytes();
+    }
+
+    private long highWatermark() {
+        return cacherProperties.capacityQuota() / 100 * watermark(cacherProperties.capacityHighWatermark());
+    }
+
+    private long lowWatermark() {
+        return Math.min(highWatermark(), cacherProperties.capacityQuota() / 100 * watermark(cacherProperties.capacityLowWatermark()));
+    }
+
+    private int watermark(int percent) {
+        return Math.max(0, Math.min(100, percent));
+    }
+
+    private synchronized void savePinned() {
+        Path tmp = Paths.get(cacherProperties.getMetadataDir(), "pinned.txt.tmp");
+        try {
+            Files.write(tmp, new ArrayList<>(new TreeSet<>(pinned)), StandardCharsets.UTF_8);
+            Files.move(tmp, pinnedFile(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warning("Failed to save the pinned artifacts, they will not be pinned after a restart: " + e.getMessage());
+        }
+    }
+
+    private Path pinnedFile() {
+        return Paths.get(cacherProperties.getMetadataDir(), "pinned.txt");
+    }
+}
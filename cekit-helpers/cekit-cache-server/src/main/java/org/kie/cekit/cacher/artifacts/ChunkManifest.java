@@ -0,0 +1,166 @@
+package org.kie.cekit.cacher.artifacts;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Ordered list of the chunks an artifact is made of, kept on the artifact directory in place of the artifact itself.
+ * One tab separated record per line, the header first:
+ * <pre>
+ *  CDC1    size    fileName
+ *  sha256  length
+ * </pre>
+ */
+public class ChunkManifest {
+
+    /**
+     * Name of the manifest on the artifact directory
+     */
+    public static final String FILE_NAME = ".chunks";
+
+    private static final String HEADER = "CDC1";
+    private static final String SEPARATOR = "\t";
+
+    private final String fileName;
+    private final List<String> chunks;
+    // offsets[i] is where the chunk i starts, the last one is the size
+    private final long[] offsets;
+
+    public ChunkManifest(String fileName, List<String> chunks, List<Integer> lengths) {
+        if (chunks.size() != lengths.size()) {
+            throw new IllegalArgumentException("Every chunk needs a length");
+        }
+        this.fileName = fileName;
+        this.chunks = Collections.unmodifiableList(new ArrayList<>(chunks));
+        this.offsets = new long[chunks.size() + 1];
+        for (int i = 0; i < lengths.size(); i++) {
+            offsets[i + 1] = offsets[i] + lengths.get(i);
+        }
+    }
+
+    /**
+     * @param file manifest to be read
+     * @return the manifest
+     * @throws IOException if the file can't be read or is malformed
+     */
+    public static ChunkManifest load(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String[] header = String.valueOf(reader.readLine()).split(SEPARATOR, 3);
+            if (header.length != 3 || !HEADER.equals(header[0])) {
+                throw new IOException("Malformed chunk manifest " + file);
+            }
+            List<String> chunks = new ArrayList<>();
+            List<Integer> lengths = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(SEPARATOR);
+                if (fields.length != 2) {
+                    throw new IOException("Malformed chunk record [" + line + "] on " + file);
+                }
+                chunks.add(fields[0]);
+                lengths.add(Integer.parseInt(fields[1]));
+            }
+            ChunkManifest manifest = new ChunkManifest(header[2], chunks, lengths);
+            if (manifest.getSize() != Long.parseLong(header[1])) {
+                throw new IOException("Truncated chunk manifest " + file);
+            }
+            return manifest;
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed chunk manifest " + file, e);
+        }
+    }
+
+    /**
+     * Writes the manifest to a temporary file first and then atomically moves it, so a manifest is either complete or
+     * absent.
+     *
+     * @param file where the manifest is written
+     * @throws IOException for IO exceptions while writing
+     */
+    public void save(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            writer.write(String.join(SEPARATOR, HEADER, String.valueOf(getSize()), fileName));
+            writer.newLine();
+            for (int i = 0; i < chunks.size(); i++) {
+                writer.write(chunks.get(i) + SEPARATOR + length(i));
+                writer.newLine();
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @param chunksDir where the chunks are stored
+     * @param offset    position of the first byte to be read
+     * @return a stream over the original content, from the given offset on
+     */
+    public InputStream open(Path chunksDir, long offset) {
+        return new ChunkedInputStream(this, chunksDir, offset);
+    }
+
+    /**
+     * Chunks are sharded by the first two pairs of characters of their sha256, the same way artifacts are.
+     *
+     * @param chunksDir where the chunks are stored
+     * @param chunk     chunk sha256
+     * @return the chunk location
+     */
+    public static Path chunkPath(Path chunksDir, String chunk) {
+        return chunksDir.resolve(chunk.substring(0, 2)).resolve(chunk.substring(2, 4)).resolve(chunk);
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * @return size of the original content
+     */
+    public long getSize() {
+        return offsets[offsets.length - 1];
+    }
+
+    /**
+     * @return sha256 of every chunk, in order, a chunk can appear more than once
+     */
+    public List<String> getChunks() {
+        return chunks;
+    }
+
+    /**
+     * @param index chunk index
+     * @return length of the chunk
+     */
+    public int length(int index) {
+        return (int) (offsets[index + 1] - offsets[index]);
+    }
+
+    /**
+     * @param index chunk index
+     * @return where the chunk starts on the original content
+     */
+    public long offset(int index) {
+        return offsets[index];
+    }
+
+    /**
+     * @param position position on the original content, lower than the size
+     * @return index of the chunk holding the given position
+     */
+    public int chunkAt(long position) {
+        int index = Arrays.binarySearch(offsets, 0, chunks.size(), position);
+        // on a miss binarySearch returns -(insertion point) - 1, the chunk is the one before the insertion point
+        return index >= 0 ? index : -index - 2;
+    }
+}
@@ -0,0 +1,340 @@
+package org.kie.cekit.cacher.artifacts;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import io.quarkus.scheduler.Scheduled;
+import org.kie.cekit.cacher.objects.DedupReport;
+import org.kie.cekit.cacher.objects.ProductDedup;
+import org.kie.cekit.cacher.properties.CacherProperties;
+import org.kie.cekit.cacher.utils.StreamingDigest;
+
+/**
+ * Deduplicates the artifacts that change little between builds, mostly the nightly zips, by storing them as
+ * content-defined chunks shared by every artifact they appear on. Chunks are found by the {@link Chunker}, named
+ * after their sha256 and kept under the chunks dir, while the artifact directory only keeps the
+ * {@link ChunkManifest} listing them.
+ * Artifacts are persisted as plain files and chunked afterwards by a periodic sweep, so downloads and uploads are not
+ * slowed down. An artifact is only replaced by its manifest once its content, read back from the chunks, matches
+ * every digest on the index. Chunks no longer referenced by any manifest are collected by another sweep, which never
+ * runs along with a chunking one.
+ */
+@ApplicationScoped
+public class ChunkStore {
+
+    private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    private final AtomicBoolean busy = new AtomicBoolean();
+    private final Chunker chunker = new Chunker();
+
+    @Inject
+    CacherProperties cacherProperties;
+
+    @Inject
+    ArtifactIndex artifactIndex;
+
+    /**
+     * @return true if new artifacts are being chunked
+     */
+    public boolean isEnabled() {
+        return cacherProperties.isChunksEnabled();
+    }
+
+    /**
+     * Chunks every artifact matching the configured patterns not chunked yet.
+     */
+    @Scheduled(every = "15m", delay = 10, delayUnit = TimeUnit.MINUTES)
+    public void ingest() {
+        if (!isEnabled() || !busy.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            for (IndexedArtifact artifact : pending()) {
+                try {
+                    ingest(artifact);
+                } catch (IOException e) {
+                    log.warning("Failed to chunk " + artifact.getFileName() + ", it will be retried: " + e.getMessage());
+                }
+            }
+        } finally {
+            busy.set(false);
+        }
+    }
+
+    /**
+     * Deletes the chunks no longer referenced by any manifest, left behind by deleted or evicted artifacts.
+     */
+    @Scheduled(every = "6h", delay = 2, delayUnit = TimeUnit.HOURS)
+    public void collect() {
+        if (!Files.isDirectory(chunksDir()) || !busy.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            Set<String> referenced = new HashSet<>();
+            for (IndexedArtifact artifact : chunked()) {
+                try {
+                    referenced.addAll(ChunkManifest.load(artifact.getContentPath()).getChunks());
+                } catch (IOException e) {
+                    // only an artifact deleted since it was listed can do without its chunks, not e.g. one being
+                    // moved by the layout migration
+                    Optional<IndexedArtifact> current = artifactIndex.get(artifact.getChecksum());
+                    if (current.isPresent() && !reference(current.get(), referenced)) {
+                        return;
+                    }
+                }
+            }
+            long freed = 0;
+            int deleted = 0;
+            try (Stream<Path> walk = Files.walk(chunksDir())) {
+                for (Path chunk : walk.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                    if (!referenced.contains(chunk.getFileName().toString())) {
+                        freed += Files.size(chunk);
+                        Files.delete(chunk);
+                        deleted++;
+                    }
+                }
+            }
+            if (deleted > 0) {
+                log.info("Collected " + deleted + " unreferenced chunks, " + freed + " bytes freed.");
+            }
+        } catch (IOException e) {
+            log.warning("Failed to collect the unreferenced chunks: " + e.getMessage());
+        } finally {
+            busy.set(false);
+        }
+    }
+
+    /**
+     * Adds the chunks of an artifact still indexed, read again from its current location.
+     *
+     * @return false if its manifest can't be read, the collection must then be skipped
+     */
+    private boolean reference(IndexedArtifact artifact, Set<String> referenced) {
+        try {
+            referenced.addAll(ChunkManifest.load(artifact.getContentPath()).getChunks());
+            return true;
+        } catch (IOException e) {
+            log.warning("Failed to read the chunks of " + artifact.getFileName() + ", skipping the collection: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Opens the content of an artifact whether it is chunked or not.
+     *
+     * @param artifact indexed artifact
+     * @param offset   position of the first byte to be read
+     * @return a stream over the original content
+     * @throws IOException if the artifact, or its manifest, can't be opened
+     */
+    public InputStream open(IndexedArtifact artifact, long offset) throws IOException {
+        if (!artifact.isChunked()) {
+            FileChannel channel = FileChannel.open(artifact.getPath(), StandardOpenOption.READ);
+            channel.position(offset);
+            return Channels.newInputStream(channel);
+        }
+        return ChunkManifest.load(artifact.getContentPath()).open(chunksDir(), offset);
+    }
+
+    /**
+     * @return the space saved overall and by each product
+     */
+    public DedupReport report() {
+        Map<String, Usage> products = new TreeMap<>();
+        Map<String, Integer> stored = new HashMap<>();
+        int chunkedArtifacts = 0;
+        long logicalBytes = 0;
+        for (IndexedArtifact artifact : chunked()) {
+            ChunkManifest manifest;
+            try {
+                manifest = ChunkManifest.load(artifact.getContentPath());
+            } catch (IOException e) {
+                log.warning("Failed to read the chunks of " + artifact.getFileName() + ": " + e.getMessage());
+                continue;
+            }
+            chunkedArtifacts++;
+            logicalBytes += manifest.getSize();
+            Usage usage = products.computeIfAbsent(product(artifact.getFileName()), product -> new Usage());
+            usage.artifacts++;
+            usage.logicalBytes += manifest.getSize();
+            for (int i = 0; i < manifest.getChunks().size(); i++) {
+                usage.chunks.put(manifest.getChunks().get(i), manifest.length(i));
+                stored.put(manifest.getChunks().get(i), manifest.length(i));
+            }
+        }
+        List<ProductDedup> dedup = products.entrySet().stream()
+                .map(entry -> new ProductDedup(entry.getKey(),
+                                               entry.getValue().artifacts,
+                                               entry.getValue().chunks.size(),
+                                               entry.getValue().logicalBytes,
+                                               sum(entry.getValue().chunks)))
+                .sorted(Comparator.comparingLong((ProductDedup product) -> product.getLogicalBytes() - product.getStoredBytes()).reversed())
+                .collect(Collectors.toList());
+        return new DedupReport(isEnabled(), chunkedArtifacts, isEnabled() ? pending().size() : 0, logicalBytes, sum(stored), dedup);
+    }
+
+    /**
+     * @return bytes taken by the chunks referenced by the chunked artifacts, a chunk shared by several artifacts is
+     * counted once. Artifacts which manifest can't be read count for their whole size.
+     */
+    long storedBytes() {
+        Map<String, Integer> stored = new HashMap<>();
+        long unreadable = 0;
+        for (IndexedArtifact artifact : chunked()) {
+            try {
+                ChunkManifest manifest = ChunkManifest.load(artifact.getContentPath());
+                for (int i = 0; i < manifest.getChunks().size(); i++) {
+                    stored.put(manifest.getChunks().get(i), manifest.length(i));
+                }
+            } catch (IOException e) {
+                unreadable += artifact.getSize();
+            }
+        }
+        return sum(stored) + unreadable;
+    }
+
+    /**
+     * Chunks the given artifact, verifies the chunks and replaces the artifact file by its manifest.
+     *
+     * @param artifact plain artifact with all its digests known
+     * @throws IOException if the artifact can't be chunked or the chunks don't match its digests
+     */
+    void ingest(IndexedArtifact artifact) throws IOException {
+        MessageDigest sha256 = sha256();
+        List<String> chunks = new ArrayList<>();
+        List<Integer> lengths = new ArrayList<>();
+        try (InputStream content = Files.newInputStream(artifact.getPath())) {
+            chunker.split(content, (chunk, length) -> {
+                sha256.update(chunk, 0, length);
+                String hash = StreamingDigest.toHex(sha256.digest());
+                store(hash, chunk, length);
+                chunks.add(hash);
+                lengths.add(length);
+            });
+        }
+        ChunkManifest manifest = new ChunkManifest(artifact.getFileName(), chunks, lengths);
+        verify(artifact, manifest);
+
+        Path manifestFile = artifact.getPath().resolveSibling(ChunkManifest.FILE_NAME);
+        manifest.save(manifestFile);
+        Optional<IndexedArtifact> chunked = artifactIndex.update(artifact.getChecksum(), current -> current.withChunked(true));
+        if (!chunked.isPresent()) {
+            // deleted while it was being chunked
+            Files.deleteIfExists(manifestFile);
+            return;
+        }
+        Files.deleteIfExists(chunked.get().getPath());
+        log.info("Artifact " + artifact.getFileName() + " chunked into " + chunks.size() + " chunks.");
+    }
+
+    /**
+     * @param fileName artifact file name
+     * @return the file name without extension and without the version and build dash separated parts, e.g.
+     * rhpam-7.13.0.redhat-20220601-kie-server-ee8.zip belongs to rhpam-kie-server-ee8
+     */
+    static String product(String fileName) {
+        String name = fileName.replaceFirst("\\.[A-Za-z0-9]+$", "");
+        String product = Arrays.stream(name.split("-"))
+                .filter(part -> !part.isEmpty() && !Character.isDigit(part.charAt(0)))
+                .collect(Collectors.joining("-"));
+        return product.isEmpty() ? name : product;
+    }
+
+    private void verify(IndexedArtifact artifact, ChunkManifest manifest) throws IOException {
+        if (manifest.getSize() != artifact.getSize()) {
+            throw new IOException("chunks hold " + manifest.getSize() + " bytes, expected " + artifact.getSize());
+        }
+        Map<DigestAlgorithm, String> digests;
+        try (InputStream content = manifest.open(chunksDir(), 0)) {
+            digests = StreamingDigest.of(content);
+        }
+        for (Map.Entry<DigestAlgorithm, String> expected : artifact.getDigests().entrySet()) {
+            if (!expected.getValue().equalsIgnoreCase(digests.get(expected.getKey()))) {
+                throw new IOException(expected.getKey() + " of the chunks does not match the artifact one");
+            }
+        }
+    }
+
+    private void store(String hash, byte[] chunk, int length) throws IOException {
+        Path target = ChunkManifest.chunkPath(chunksDir(), hash);
+        if (Files.exists(target)) {
+            return;
+        }
+        Files.createDirectories(target.getParent());
+        Path tmp = target.resolveSibling(hash + ".tmp");
+        try (OutputStream output = Files.newOutputStream(tmp)) {
+            output.write(chunk, 0, length);
+        }
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return plain artifacts matching the chunk patterns, the ones not hashed yet are left for a later sweep
+     */
+    private List<IndexedArtifact> pending() {
+        return cacherProperties.chunksPatterns().stream()
+                .flatMap(pattern -> artifactIndex.search(pattern, FileNameIndex.Match.GLOB).stream())
+                .filter(artifact -> !artifact.isChunked())
+                .filter(IndexedArtifact::hasAllDigests)
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    private List<IndexedArtifact> chunked() {
+        return artifactIndex.all().stream()
+                .filter(IndexedArtifact::isChunked)
+                .collect(Collectors.toList());
+    }
+
+    private Path chunksDir() {
+        return Paths.get(cacherProperties.getChunksDir());
+    }
+
+    private static long sum(Map<String, Integer> chunks) {
+        return chunks.values().stream().mapToLong(Integer::longValue).sum();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance(DigestAlgorithm.SHA256.getJcaName());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(DigestAlgorithm.SHA256.getJcaName() + " is not supported by this JVM", e);
+        }
+    }
+
+    private static class Usage {
+        private int artifacts;
+        private long logicalBytes;
+        // chunk -> length
+        private final Map<String, Integer> chunks = new HashMap<>();
+    }
+}
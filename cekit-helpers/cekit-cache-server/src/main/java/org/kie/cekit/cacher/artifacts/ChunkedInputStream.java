@@ -0,0 +1,82 @@
+package org.kie.cekit.cacher.artifacts;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the original content of a chunked artifact, opening its chunks one at a time.
+ */
+class ChunkedInputStream extends InputStream {
+
+    private final ChunkManifest manifest;
+    private final Path chunksDir;
+    private long position;
+    private int index = -1;
+    private FileChannel channel;
+
+    /**
+     * @param manifest  chunks of the artifact
+     * @param chunksDir where the chunks are stored
+     * @param offset    position of the first byte to be read
+     */
+    ChunkedInputStream(ChunkManifest manifest, Path chunksDir, long offset) {
+        this.manifest = manifest;
+        this.chunksDir = chunksDir;
+        this.position = Math.max(0, Math.min(offset, manifest.getSize()));
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (position >= manifest.getSize()) {
+            return -1;
+        }
+        int current = manifest.chunkAt(position);
+        if (current != index) {
+            close();
+            channel = FileChannel.open(ChunkManifest.chunkPath(chunksDir, manifest.getChunks().get(current)), StandardOpenOption.READ);
+            index = current;
+        }
+        long chunkOffset = position - manifest.offset(current);
+        int wanted = (int) Math.min(len, manifest.length(current) - chunkOffset);
+        int read = channel.read(ByteBuffer.wrap(b, off, wanted), chunkOffset);
+        if (read == -1) {
+            throw new IOException("Chunk " + manifest.getChunks().get(current) + " of " + manifest.getFileName() + " is truncated");
+        }
+        position += read;
+        return read;
+    }
+
+    @Override
+    public long skip(long n) {
+        long skipped = Math.max(0, Math.min(n, manifest.getSize() - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, manifest.getSize() - position);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+            index = -1;
+        }
+    }
+}
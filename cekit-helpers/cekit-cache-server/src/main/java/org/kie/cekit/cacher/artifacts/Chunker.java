@@ -0,0 +1,72 @@
+package org.kie.cekit.cacher.artifacts;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import org.kie.cekit.cacher.utils.StreamingDigest;
+
+/**
+ * Splits a content into content-defined chunks using a gear rolling hash, a boundary is placed wherever the top bits
+ * of the hash of the last 64 bytes are all zero. As the boundaries depend only on the content around them, inserting
+ * or removing bytes on a nightly zip shifts the following boundaries along with the content instead of changing every
+ * chunk after the edit, so consecutive builds of the same product share most of their chunks.
+ * Chunks are at least {@link #MIN_SIZE} and at most {@link #MAX_SIZE} bytes long, {@link #AVG_SIZE} on average.
+ * The gear table is generated from a fixed seed, changing it would make the new chunks unrelated to the stored ones.
+ */
+public class Chunker {
+
+    public static final int MIN_SIZE = 64 * 1024;
+    public static final int AVG_SIZE = 256 * 1024;
+    public static final int MAX_SIZE = 1024 * 1024;
+
+    private static final int AVG_BITS = Integer.numberOfTrailingZeros(AVG_SIZE);
+    private static final long MASK = -1L << (Long.SIZE - AVG_BITS);
+    private static final long[] GEAR = gear();
+
+    /**
+     * Receives every chunk found, the buffer is reused once it returns.
+     */
+    @FunctionalInterface
+    public interface ChunkConsumer {
+        void accept(byte[] chunk, int length) throws IOException;
+    }
+
+    /**
+     * Reads the whole source and hands its chunks, in order, to the consumer.
+     *
+     * @param source   content to be split
+     * @param consumer receives each chunk
+     * @throws IOException for IO exceptions while reading the source or thrown by the consumer
+     */
+    public void split(InputStream source, ChunkConsumer consumer) throws IOException {
+        byte[] chunk = new byte[MAX_SIZE];
+        byte[] buffer = new byte[StreamingDigest.BUFFER_SIZE];
+        int length = 0;
+        long hash = 0;
+        int read;
+        while ((read = source.read(buffer)) != -1) {
+            for (int i = 0; i < read; i++) {
+                chunk[length++] = buffer[i];
+                hash = (hash << 1) + GEAR[buffer[i] & 0xff];
+                if ((length >= MIN_SIZE && (hash & MASK) == 0) || length == MAX_SIZE) {
+                    consumer.accept(chunk, length);
+                    length = 0;
+                    hash = 0;
+                }
+            }
+        }
+        if (length > 0) {
+            consumer.accept(chunk, length);
+        }
+    }
+
+    private static long[] gear() {
+        Random random = new Random(0x6b69656361636865L);
+        long[] gear = new long[256];
+        for (int i = 0; i < gear.length; i++) {
+            gear[i] = random.nextLong();
+        }
+        return gear;
+    }
+}
@@ -0,0 +1,59 @@
+package org.kie.cekit.cacher.artifacts;
+
+import java.util.Optional;
+
+/**
+ * Digest algorithms computed for every artifact, the same ones supported by cekit descriptors.
+ * MD5 is the primary checksum, it names the artifact directory, the others are aliases to it.
+ */
+public enum DigestAlgorithm {
+
+    MD5("MD5", "md5", "md5"),
+    SHA1("SHA-1", "sha1", "sha"),
+    SHA256("SHA-256", "sha256", "sha-256"),
+    SHA512("SHA-512", "sha512", "sha-512");
+
+    private final String jcaName;
+    private final String extension;
+    private final String digestHeaderName;
+
+    DigestAlgorithm(String jcaName, String extension, String digestHeaderName) {
+        this.jcaName = jcaName;
+        this.extension = extension;
+        this.digestHeaderName = digestHeaderName;
+    }
+
+    /**
+     * @return the name used to get a {@link java.security.MessageDigest} instance
+     */
+    public String getJcaName() {
+        return jcaName;
+    }
+
+    /**
+     * @return the name used by cekit descriptors and by checksum sidecar files, e.g. sha256
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * @return the algorithm name on the Digest header (RFC 3230)
+     */
+    public String getDigestHeaderName() {
+        return digestHeaderName;
+    }
+
+    /**
+     * @param extension sidecar extension or cekit name, e.g. sha256
+     * @return the matching algorithm, if any
+     */
+    public static Optional<DigestAlgorithm> fromExtension(String extension) {
+        for (DigestAlgorithm algorithm : values()) {
+            if (algorithm.extension.equalsIgnoreCase(extension)) {
+                return Optional.of(algorithm);
+            }
+        }
+        return Optional.empty();
+    }
+}
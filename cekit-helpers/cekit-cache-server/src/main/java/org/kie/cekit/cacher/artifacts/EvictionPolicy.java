@@ -0,0 +1,49 @@
+package org.kie.cekit.cacher.artifacts;
+
+import java.util.Comparator;
+
+/**
+ * Order in which the {@link CapacityManager} evicts artifacts, the first ones are evicted first.
+ */
+public enum EvictionPolicy {
+
+    /**
+     * Least recently served first
+     */
+    LRU {
+        @Override
+        public Comparator<IndexedArtifact> order(AccessTracker accessTracker, long now) {
+            return Comparator.comparingLong(accessTracker::lastAccess);
+        }
+    },
+
+    /**
+     * Least often served first, the least recently served among the ones with the same hits
+     */
+    LFU {
+        @Override
+        public Comparator<IndexedArtifact> order(AccessTracker accessTracker, long now) {
+            return Comparator.<IndexedArtifact>comparingLong(artifact -> accessTracker.hits(artifact.getChecksum()))
+                    .thenComparingLong(accessTracker::lastAccess);
+        }
+    },
+
+    /**
+     * Highest size times idle time first, a big artifact goes before a small one that has been idle for as long,
+     * freeing the space with fewer evictions.
+     */
+    SIZE {
+        @Override
+        public Comparator<IndexedArtifact> order(AccessTracker accessTracker, long now) {
+            return Comparator.<IndexedArtifact>comparingDouble(artifact -> (double) artifact.getSize() * Math.max(1, now - accessTracker.lastAccess(artifact)))
+                    .reversed();
+        }
+    };
+
+    /**
+     * @param accessTracker artifacts accesses
+     * @param now           current time in milliseconds since epoch
+     * @return the eviction order
+     */
+    public abstract Comparator<IndexedArtifact> order(AccessTracker accessTracker, long now);
+}
@@ -0,0 +1,193 @@
+package org.kie.cekit.cacher.artifacts;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Search index for artifact file names.
+ * Names are kept sorted, for prefix queries, and split in trigrams, for substring and glob queries, so the
+ * candidates for a query are found without going through every file name.
+ * Queries shorter than a trigram can not be served by the index and fall back to a scan of the names.
+ */
+public class FileNameIndex {
+
+    private static final int GRAM = 3;
+
+    public enum Match {
+        SUBSTRING,
+        PREFIX,
+        GLOB;
+
+        /**
+         * @param match requested match type, can be null
+         * @param query the query, used to detect glob patterns when no match type is requested
+         * @return the match type to be used
+         */
+        public static Match of(String match, String query) {
+            if (match == null || match.isEmpty()) {
+                return isGlob(query) ? GLOB : SUBSTRING;
+            }
+            return valueOf(match.toUpperCase());
+        }
+    }
+
+    private final NavigableSet<String> names = new ConcurrentSkipListSet<>();
+    private final Map<String, Set<String>> grams = new ConcurrentHashMap<>();
+
+    /**
+     * @param name file name to be indexed
+     */
+    public void add(String name) {
+        if (names.add(name)) {
+            for (String gram : grams(name)) {
+                grams.compute(gram, (k, v) -> {
+                    Set<String> set = v == null ? ConcurrentHashMap.newKeySet() : v;
+                    set.add(name);
+                    return set;
+                });
+            }
+        }
+    }
+
+    /**
+     * @param name file name to be removed
+     */
+    public void remove(String name) {
+        if (names.remove(name)) {
+            for (String gram : grams(name)) {
+                grams.computeIfPresent(gram, (k, v) -> {
+                    v.remove(name);
+                    return v.isEmpty() ? null : v;
+                });
+            }
+        }
+    }
+
+    /**
+     * @param query text to be searched
+     * @param match how the query should be matched
+     * @return the matching file names
+     */
+    public Set<String> search(String query, Match match) {
+        switch (match) {
+            case PREFIX:
+                return prefix(query);
+            case GLOB:
+                return glob(query);
+            default:
+                return substring(query);
+        }
+    }
+
+    /**
+     * @param query text to be searched
+     * @return file names containing the query
+     */
+    public Set<String> substring(String query) {
+        return candidates(query).stream()
+                .filter(name -> name.contains(query))
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * @param prefix prefix to be searched
+     * @return file names starting with the given prefix
+     */
+    public Set<String> prefix(String prefix) {
+        return new HashSet<>(names.subSet(prefix, true, prefix + Character.MAX_VALUE, false));
+    }
+
+    /**
+     * Supports the '*' (any sequence) and '?' (any char) wildcards, the pattern must match the whole name.
+     *
+     * @param glob pattern to be searched
+     * @return file names matching the given pattern
+     */
+    public Set<String> glob(String glob) {
+        Pattern pattern = Pattern.compile(globToRegex(glob));
+        String[] literals = glob.split("[*?]");
+
+        Set<String> candidates;
+        if (!glob.isEmpty() && !isGlob(glob.substring(0, 1))) {
+            candidates = prefix(literals[0]);
+        } else {
+            String longest = "";
+            for (String literal : literals) {
+                if (literal.length() > longest.length()) {
+                    longest = literal;
+                }
+            }
+            candidates = candidates(longest);
+        }
+        return candidates.stream()
+                .filter(name -> pattern.matcher(name).matches())
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * @return number of indexed names
+     */
+    public int size() {
+        return names.size();
+    }
+
+    /**
+     * @param query text to be searched
+     * @return names that contains all query trigrams, or all names if the query is too short
+     */
+    private Set<String> candidates(String query) {
+        if (query.length() < GRAM) {
+            return names;
+        }
+        Set<String> smallest = null;
+        for (String gram : grams(query)) {
+            Set<String> posting = grams.get(gram);
+            if (posting == null) {
+                return Collections.emptySet();
+            }
+            if (smallest == null || posting.size() < smallest.size()) {
+                smallest = posting;
+            }
+        }
+        return smallest;
+    }
+
+    private static Set<String> grams(String text) {
+        Set<String> result = new HashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            result.add(text.substring(i, i + GRAM));
+        }
+        return result;
+    }
+
+    private static boolean isGlob(String query) {
+        return query.indexOf('*') >= 0 || query.indexOf('?') >= 0;
+    }
+
+    private static String globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for (char c : glob.toCharArray()) {
+            if (c == '*' || c == '?') {
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append(c == '*' ? ".*" : ".");
+            } else {
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return regex.toString();
+    }
+}
@@ -0,0 +1,214 @@
+package org.kie.cekit.cacher.artifacts;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.kie.cekit.cacher.objects.PlainArtifact;
+
+/**
+ * In-memory representation of a persisted artifact, held by {@link ArtifactIndex}.
+ * Instances are immutable, updates are made by replacing the entry on the index.
+ * The same content can be known by several file names, the first one persisted is the artifact file name and the
+ * others are aliases resolving to the same bytes.
+ */
+public class IndexedArtifact {
+
+    private final String checksum;
+    private final String fileName;
+    private final Path path;
+    private final long size;
+    private final long creationTime;
+    private final String sourceUrl;
+    private final Map<DigestAlgorithm, String> digests;
+    private final boolean chunked;
+    private final Set<String> aliases;
+
+    public IndexedArtifact(String checksum, String fileName, Path path, long size, long creationTime, String sourceUrl) {
+        this(checksum, fileName, path, size, creationTime, sourceUrl, Collections.emptyMap());
+    }
+
+    public IndexedArtifact(String checksum, String fileName, Path path, long size, long creationTime, String sourceUrl,
+                           Map<DigestAlgorithm, String> digests) {
+        this(checksum, fileName, path, size, creationTime, sourceUrl, digests, false);
+    }
+
+    public IndexedArtifact(String checksum, String fileName, Path path, long size, long creationTime, String sourceUrl,
+                           Map<DigestAlgorithm, String> digests, boolean chunked) {
+        this(checksum, fileName, path, size, creationTime, sourceUrl, digests, chunked, Collections.emptySet());
+    }
+
+    public IndexedArtifact(String checksum, String fileName, Path path, long size, long creationTime, String sourceUrl,
+                           Map<DigestAlgorithm, String> digests, boolean chunked, Collection<String> aliases) {
+        this.checksum = checksum;
+        this.fileName = fileName;
+        this.path = path;
+        this.size = size;
+        this.creationTime = creationTime;
+        this.sourceUrl = sourceUrl;
+        Map<DigestAlgorithm, String> all = new EnumMap<>(DigestAlgorithm.class);
+        all.putAll(digests);
+        all.put(DigestAlgorithm.MD5, checksum);
+        this.digests = Collections.unmodifiableMap(all);
+        this.chunked = chunked;
+        Set<String> names = new TreeSet<>(aliases);
+        names.remove(fileName);
+        this.aliases = Collections.unmodifiableSet(names);
+    }
+
+    public String getChecksum() {
+        return checksum;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * @return the other file names of the same content, sorted
+     */
+    public Set<String> getAliases() {
+        return aliases;
+    }
+
+    /**
+     * @return the file name followed by the aliases
+     */
+    public Set<String> getFileNames() {
+        Set<String> names = new LinkedHashSet<>();
+        names.add(fileName);
+        names.addAll(aliases);
+        return names;
+    }
+
+    /**
+     * @return where the artifact would be on the disk, for chunked artifacts the file itself does not exist
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return true if the content is kept on the {@link ChunkStore} instead of a plain file
+     */
+    public boolean isChunked() {
+        return chunked;
+    }
+
+    /**
+     * @return the file actually holding the artifact, its {@link ChunkManifest} for chunked artifacts
+     */
+    public Path getContentPath() {
+        return chunked ? path.resolveSibling(ChunkManifest.FILE_NAME) : path;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return creation time in milliseconds since epoch
+     */
+    public long getCreationTime() {
+        return creationTime;
+    }
+
+    /**
+     * @return the url the artifact was fetched from, empty for uploaded files
+     */
+    public String getSourceUrl() {
+        return sourceUrl;
+    }
+
+    /**
+     * @param algorithm digest algorithm
+     * @return the hexadecimal digest, empty if it was not computed yet
+     */
+    public Optional<String> getDigest(DigestAlgorithm algorithm) {
+        return Optional.ofNullable(digests.get(algorithm));
+    }
+
+    /**
+     * @return every known digest, md5 included
+     */
+    public Map<DigestAlgorithm, String> getDigests() {
+        return digests;
+    }
+
+    /**
+     * @return true if the digest of every {@link DigestAlgorithm} is known
+     */
+    public boolean hasAllDigests() {
+        return digests.size() == DigestAlgorithm.values().length;
+    }
+
+    /**
+     * @param digests digests to be added
+     * @return a copy of this artifact with the given digests
+     */
+    public IndexedArtifact withDigests(Map<DigestAlgorithm, String> digests) {
+        return new IndexedArtifact(checksum, fileName, path, size, creationTime, sourceUrl, digests, chunked, aliases);
+    }
+
+    /**
+     * @param path new location of the artifact
+     * @return a copy of this artifact at the given location
+     */
+    public IndexedArtifact withPath(Path path) {
+        return new IndexedArtifact(checksum, fileName, path, size, creationTime, sourceUrl, digests, chunked, aliases);
+    }
+
+    /**
+     * @param chunked whether the content is kept on the {@link ChunkStore}
+     * @return a copy of this artifact with the given storage
+     */
+    public IndexedArtifact withChunked(boolean chunked) {
+        return new IndexedArtifact(checksum, fileName, path, size, creationTime, sourceUrl, digests, chunked, aliases);
+    }
+
+    /**
+     * @param alias another file name of the same content
+     * @return a copy of this artifact also known by the given name
+     */
+    public IndexedArtifact withAlias(String alias) {
+        Set<String> names = new TreeSet<>(aliases);
+        names.add(alias);
+        return new IndexedArtifact(checksum, fileName, path, size, creationTime, sourceUrl, digests, chunked, names);
+    }
+
+    /**
+     * @return the creation time formatted the same way the filesystem attribute is.
+     */
+    public String getTimestamp() {
+        return FileTime.fromMillis(creationTime).toString();
+    }
+
+    /**
+     * @return a {@link PlainArtifact} view of this entry
+     */
+    public PlainArtifact toPlainArtifact() {
+        return new PlainArtifact(fileName, checksum, getTimestamp());
+    }
+
+    @Override
+    public String toString() {
+        return "IndexedArtifact{" +
+                "checksum='" + checksum + '\'' +
+                ", fileName='" + fileName + '\'' +
+                ", path=" + path +
+                ", size=" + size +
+                ", creationTime=" + creationTime +
+                ", sourceUrl='" + sourceUrl + '\'' +
+                ", digests=" + digests +
+                ", chunked=" + chunked +
+                ", aliases=" + aliases +
+                '}';
+    }
+}
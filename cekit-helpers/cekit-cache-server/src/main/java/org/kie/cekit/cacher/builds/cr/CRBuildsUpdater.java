@@ -1,5 +1,6 @@
 package org.kie.cekit.cacher.builds.cr;
 
+import org.kie.cekit.cacher.downloads.DownloadPriority;
 import org.kie.cekit.cacher.objects.PlainArtifact;
 import org.kie.cekit.cacher.properties.CacherProperties;
 import org.kie.cekit.cacher.utils.CacherUtils;
@@ -68,7 +69,8 @@ public class CRBuildsUpdater {
                     releaseBranch,
                     crBuild)
             );
-            new Thread(() -> log.info(cacherUtils.fetchFile(rhpamCRProps.get(fileProp).toString(), Optional.of("cr"), crBuild))).start();
+            cacherUtils.fetchAsync(rhpamCRProps.get(fileProp).toString(), DownloadPriority.CR, Optional.of("cr"), crBuild)
+                    .thenAccept(result -> log.info(result.getMessage()));
         });
 
         // set the kieVersion
@@ -1,12 +1,12 @@
 package org.kie.cekit.cacher.builds.github;
 
 import okhttp3.MediaType;
-import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
 import org.kie.cekit.cacher.notification.Notification;
 import org.kie.cekit.cacher.properties.CacherProperties;
+import org.kie.cekit.cacher.utils.HttpRequestHandler;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
@@ -15,7 +15,6 @@ import javax.json.JsonObject;
 import javax.json.JsonReader;
 import java.io.StringReader;
 import java.lang.invoke.MethodHandles;
-import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 @ApplicationScoped
@@ -35,6 +34,9 @@ public class PullRequestSender {
     @Inject
     Notification notification;
 
+    @Inject
+    HttpRequestHandler httpRequestHandler;
+
     /**
      * Perform a Pull Request using the
      *
@@ -61,11 +63,6 @@ public class PullRequestSender {
         log.info("Trying to perform pull request on " + url + " and with payload: " + requestBodyAsText);
         RequestBody body = RequestBody.create(JSON, requestBodyAsText);
 
-        OkHttpClient client = new OkHttpClient.Builder()
-                .callTimeout(30, TimeUnit.SECONDS)
-                .readTimeout(30, TimeUnit.SECONDS)
-                .build();
-
         Request request = new Request.Builder()
                 .addHeader("Accept", "application/vnd.github.v3+json")
                 .addHeader("Authorization", "token " + cacherProperties.oauthToken())
@@ -73,7 +70,7 @@ public class PullRequestSender {
                 .url(url)
                 .build();
 
-        try (Response response = client.newCall(request).execute()) {
+        try (Response response = httpRequestHandler.execute(request, HttpRequestHandler.Destination.API)) {
             JsonReader reader = Json.createReader(new StringReader(response.body().string()));
             JsonObject object = reader.readObject();
 
@@ -1,6 +1,7 @@
 package org.kie.cekit.cacher.builds.nightly;
 
 import io.quarkus.scheduler.Scheduled;
+import org.kie.cekit.cacher.downloads.DownloadPriority;
 import org.kie.cekit.cacher.objects.PlainArtifact;
 import org.kie.cekit.cacher.properties.CacherProperties;
 import org.kie.cekit.cacher.utils.BuildUtils;
@@ -145,7 +146,8 @@ public class NightlyBuildsWatcher {
                                                                    version,
                                                                    branch,
                                                                    0), force);
-                new Thread(() -> log.info(cacherUtils.fetchFile(rhpamProp.get(file).toString(), Optional.of("nightly"), 0))).start();
+                cacherUtils.fetchAsync(rhpamProp.get(file).toString(), DownloadPriority.NIGHTLY, Optional.of("nightly"), 0)
+                        .thenAccept(result -> log.info(result.getMessage()));
             }
         });
     }
@@ -0,0 +1,158 @@
+package org.kie.cekit.cacher.downloads;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.lang.invoke.MethodHandles;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.kie.cekit.cacher.objects.BandwidthLimits;
+import org.kie.cekit.cacher.properties.CacherProperties;
+import org.kie.cekit.cacher.resources.ArtifactRoute;
+
+/**
+ * Shapes the download bandwidth with a global token bucket and one bucket per limited host.
+ * The upstream streams are wrapped so every read takes its tokens, a transfer over its limit waits on its own
+ * thread and the downloads from other hosts keep going. While artifacts are being served, the global limit is
+ * lowered to leave the configured share of the link to the serving path.
+ * The limits are read from the properties at first use and can be changed at runtime.
+ */
+@ApplicationScoped
+public class BandwidthLimiter {
+
+    private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    private static final long KB = 1024;
+    // a full reservation still lets the downloads crawl
+    private static final long MIN_RATE = 16 * KB;
+
+    @Inject
+    CacherProperties cacherProperties;
+
+    @Inject
+    ArtifactRoute artifactRoute;
+
+    private final TokenBucket global = new TokenBucket(0);
+    private final Map<String, TokenBucket> hosts = new ConcurrentHashMap<>();
+    private volatile BandwidthLimits limits;
+
+    /**
+     * @param host   upstream host
+     * @param stream upstream content
+     * @return the stream, reading from it takes tokens from the global and the host buckets
+     */
+    public InputStream throttle(String host, InputStream stream) {
+        return new FilterInputStream(stream) {
+            @Override
+            public int read() throws IOException {
+                int read = super.read();
+                if (read != -1) {
+                    acquire(host, 1);
+                }
+                return read;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int read = super.read(b, off, len);
+                if (read > 0) {
+                    acquire(host, read);
+                }
+                return read;
+            }
+        };
+    }
+
+    /**
+     * @return the limits in force, in KB/s
+     */
+    public BandwidthLimits limits() {
+        BandwidthLimits current = current();
+        BandwidthLimits copy = new BandwidthLimits(current.getIngestLimit(), new HashMap<>(current.getHostLimits()),
+                                                   current.getLinkCapacity(), current.getServeReservedPercent());
+        copy.setEffectiveIngestLimit((int) (effectiveRate(current) / KB));
+        return copy;
+    }
+
+    /**
+     * Applies the given limits, the fields left null are not changed. Transfers in progress pick them up on their
+     * next read.
+     *
+     * @param changes new limits, in KB/s
+     * @return the limits in force
+     * @throws IllegalArgumentException if a limit is negative or the reserved share is not between 0 and 100
+     */
+    public synchronized BandwidthLimits update(BandwidthLimits changes) {
+        BandwidthLimits current = current();
+        BandwidthLimits updated = new BandwidthLimits(
+                validate("ingestLimit", changes.getIngestLimit(), current.getIngestLimit()),
+                current.getHostLimits(),
+                validate("linkCapacity", changes.getLinkCapacity(), current.getLinkCapacity()),
+                validate("serveReservedPercent", changes.getServeReservedPercent(), current.getServeReservedPercent()));
+        if (updated.getServeReservedPercent() > 100) {
+            throw new IllegalArgumentException("serveReservedPercent must be between 0 and 100");
+        }
+        if (changes.getHostLimits() != null) {
+            Map<String, Integer> hostLimits = new HashMap<>();
+            changes.getHostLimits().forEach((host, limit) -> hostLimits.put(host.toLowerCase(), validate(host, limit, 0)));
+            updated.setHostLimits(hostLimits);
+            hosts.keySet().retainAll(hostLimits.keySet());
+            hosts.forEach((host, bucket) -> bucket.setRate(hostLimits.get(host) * KB));
+        }
+        limits = updated;
+        log.info("Bandwidth limits changed to " + updated.getIngestLimit() + " KB/s, per host " + updated.getHostLimits()
+                         + ", " + updated.getServeReservedPercent() + "% of " + updated.getLinkCapacity() + " KB/s reserved for serving");
+        return limits();
+    }
+
+    void acquire(String host, long bytes) throws InterruptedIOException {
+        BandwidthLimits current = current();
+        Integer hostLimit = current.getHostLimits().get(host);
+        if (hostLimit != null && hostLimit > 0) {
+            hosts.computeIfAbsent(host, h -> new TokenBucket(hostLimit * KB)).acquire(bytes);
+        }
+        long rate = effectiveRate(current);
+        if (global.getRate() != rate) {
+            global.setRate(rate);
+        }
+        global.acquire(bytes);
+    }
+
+    long effectiveRate(BandwidthLimits current) {
+        long rate = current.getIngestLimit() * KB;
+        if (current.getServeReservedPercent() > 0 && current.getLinkCapacity() > 0 && artifactRoute.inFlight() > 0) {
+            long available = Math.max(MIN_RATE, current.getLinkCapacity() * KB * (100 - current.getServeReservedPercent()) / 100);
+            rate = rate == 0 ? available : Math.min(rate, available);
+        }
+        return rate;
+    }
+
+    private BandwidthLimits current() {
+        if (limits == null) {
+            synchronized (this) {
+                if (limits == null) {
+                    limits = new BandwidthLimits(cacherProperties.bandwidthIngestLimit(), cacherProperties.bandwidthHostLimits(),
+                                                 cacherProperties.bandwidthLinkCapacity(), cacherProperties.bandwidthServeReservedPercent());
+                }
+            }
+        }
+        return limits;
+    }
+
+    private static int validate(String name, Integer value, int current) {
+        if (value == null) {
+            return current;
+        }
+        if (value < 0) {
+            throw new IllegalArgumentException(name + " must not be negative");
+        }
+        return value;
+    }
+}
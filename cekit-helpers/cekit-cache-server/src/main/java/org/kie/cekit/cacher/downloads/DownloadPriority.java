@@ -0,0 +1,24 @@
+package org.kie.cekit.cacher.downloads;
+
+/**
+ * Priority classes of the {@link DownloadScheduler}, declared from the most to the least urgent.
+ */
+public enum DownloadPriority {
+
+    /**
+     * Requested by a user through the fetch endpoint
+     */
+    INTERACTIVE,
+    /**
+     * CR build artifacts
+     */
+    CR,
+    /**
+     * Nightly build artifacts
+     */
+    NIGHTLY,
+    /**
+     * Artifacts listed on the pre-load file
+     */
+    PRELOAD
+}
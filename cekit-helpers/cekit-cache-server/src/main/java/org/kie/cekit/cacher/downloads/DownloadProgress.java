@@ -0,0 +1,106 @@
+package org.kie.cekit.cacher.downloads;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bytes transferred by a download and its current throughput.
+ * The throughput is an exponentially weighted moving average of the rate measured at every sample interval, so it
+ * follows changes in the transfer speed without jumping around on every read.
+ * Samples are also taken when the throughput is read, a stalled download decays towards 0 instead of reporting the
+ * rate it had when the last bytes arrived.
+ */
+public class DownloadProgress {
+
+    static final long SAMPLE_INTERVAL_MILLIS = 1000;
+    private static final double SMOOTHING = 0.3;
+
+    private final AtomicLong bytes = new AtomicLong();
+    private volatile long total = -1;
+    private volatile double throughput;
+
+    // written under this, read without locking to decide if a new sample is due
+    private volatile long lastSampleTime;
+    // guarded by this
+    private long lastSampleBytes;
+
+    public DownloadProgress() {
+        this.lastSampleTime = System.currentTimeMillis();
+    }
+
+    /**
+     * @param transferred bytes transferred since the last call, can be called from several threads
+     */
+    public void add(long transferred) {
+        bytes.addAndGet(transferred);
+        sampleIfDue();
+    }
+
+    /**
+     * Restarts the count, used when a download has to start over.
+     */
+    public synchronized void reset() {
+        bytes.set(0);
+        lastSampleBytes = 0;
+        lastSampleTime = System.currentTimeMillis();
+    }
+
+    /**
+     * @param total full size, or -1 if unknown
+     */
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * @return full size, -1 if unknown
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * @return bytes per second
+     */
+    public long getThroughput() {
+        sampleIfDue();
+        return Math.round(throughput);
+    }
+
+    /**
+     * @return estimated seconds to finish, -1 if unknown
+     */
+    public long getEta() {
+        sampleIfDue();
+        long remaining = total - bytes.get();
+        if (total < 0 || throughput <= 0) {
+            return -1;
+        }
+        return Math.max(0, Math.round(remaining / throughput));
+    }
+
+    private void sampleIfDue() {
+        long now = System.currentTimeMillis();
+        if (now - lastSampleTime >= SAMPLE_INTERVAL_MILLIS) {
+            sample(now);
+        }
+    }
+
+    private synchronized void sample(long now) {
+        long elapsed = now - lastSampleTime;
+        if (elapsed < SAMPLE_INTERVAL_MILLIS) {
+            // another thread took the sample
+            return;
+        }
+        long current = bytes.get();
+        double rate = (current - lastSampleBytes) * 1000.0 / elapsed;
+        // weighted as if a sample had been taken at every interval elapsed since the last one
+        double weight = 1 - Math.pow(1 - SMOOTHING, (double) elapsed / SAMPLE_INTERVAL_MILLIS);
+        throughput = throughput == 0 ? rate : weight * rate + (1 - weight) * throughput;
+        lastSampleTime = now;
+        lastSampleBytes = current;
+    }
+}
@@ -0,0 +1,227 @@
+package org.kie.cekit.cacher.downloads;
+
+import java.lang.invoke.MethodHandles;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.kie.cekit.cacher.objects.DownloadQueueStats;
+import org.kie.cekit.cacher.properties.CacherProperties;
+import org.kie.cekit.cacher.utils.UrlUtils;
+
+/**
+ * Runs the artifact downloads on a bounded set of worker threads.
+ * Downloads are queued by {@link DownloadPriority} and started in priority order as long as the global limit and
+ * the limit of their host allow it, a download that can not start because its host is saturated does not block
+ * the ones for other hosts.
+ */
+@ApplicationScoped
+public class DownloadScheduler {
+
+    private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    private final Object lock = new Object();
+    // guarded by lock
+    private final NavigableSet<Task<?>> pending = new TreeSet<>();
+    private final Map<String, Integer> activeByHost = new HashMap<>();
+    private int active;
+    private boolean shutdown;
+    private volatile Map<String, Integer> hostLimits;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger threads = new AtomicInteger();
+    private final ExecutorService workers = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "cacher-download-" + threads.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Inject
+    CacherProperties cacherProperties;
+
+    /**
+     * Queues a download.
+     *
+     * @param url      artifact url, used to apply the per host limit
+     * @param priority download priority
+     * @param download the download itself
+     * @return completed with the download result, or exceptionally if the scheduler is shut down before it runs
+     */
+    public <T> CompletableFuture<T> submit(String url, DownloadPriority priority, Supplier<T> download) {
+        Task<T> task = new Task<>(url, UrlUtils.getHost(url), priority, sequence.incrementAndGet(), download);
+        synchronized (lock) {
+            if (shutdown) {
+                task.future.completeExceptionally(new RejectedExecutionException("Download scheduler is shut down"));
+                return task.future;
+            }
+            pending.add(task);
+        }
+        log.fine("Download of " + url + " queued with priority " + priority);
+        dispatch();
+        return task.future;
+    }
+
+    /**
+     * @return queue depth and running downloads
+     */
+    public DownloadQueueStats stats() {
+        synchronized (lock) {
+            Map<DownloadPriority, Integer> queued = new EnumMap<>(DownloadPriority.class);
+            for (DownloadPriority priority : DownloadPriority.values()) {
+                queued.put(priority, 0);
+            }
+            pending.forEach(task -> queued.merge(task.priority, 1, Integer::sum));
+            return new DownloadQueueStats(pending.size(),
+                                          active,
+                                          queued,
+                                          new HashMap<>(activeByHost),
+                                          cacherProperties.downloadMaxConcurrent(),
+                                          cacherProperties.downloadMaxPerHost());
+        }
+    }
+
+    /**
+     * Cancels the queued downloads and interrupts the running ones, interrupted downloads clean up their
+     * temporary files.
+     */
+    public void shutdown() {
+        synchronized (lock) {
+            shutdown = true;
+            pending.forEach(task -> task.future.completeExceptionally(new CancellationException("Download scheduler is shutting down")));
+            log.info("Download scheduler shutting down, " + pending.size() + " queued and " + active + " running downloads cancelled.");
+            pending.clear();
+        }
+        workers.shutdownNow();
+        try {
+            if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warning("Running downloads did not stop in time.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Starts queued downloads, in priority order, while there are free slots
+     */
+    private void dispatch() {
+        synchronized (lock) {
+            Iterator<Task<?>> iterator = pending.iterator();
+            while (!shutdown && active < cacherProperties.downloadMaxConcurrent() && iterator.hasNext()) {
+                Task<?> task = iterator.next();
+                if (task.future.isDone()) {
+                    // cancelled while queued
+                    iterator.remove();
+                    continue;
+                }
+                if (activeByHost.getOrDefault(task.host, 0) >= hostLimit(task.host)) {
+                    continue;
+                }
+                iterator.remove();
+                active++;
+                activeByHost.merge(task.host, 1, Integer::sum);
+                try {
+                    workers.execute(() -> run(task));
+                } catch (RejectedExecutionException e) {
+                    finished(task);
+                    task.future.completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    private void run(Task<?> task) {
+        // the slot is freed before the future completes, whoever waits on it sees the download as finished
+        task.run(() -> {
+            synchronized (lock) {
+                finished(task);
+            }
+        });
+        dispatch();
+    }
+
+    // must hold the lock
+    private void finished(Task<?> task) {
+        active--;
+        activeByHost.computeIfPresent(task.host, (host, count) -> count > 1 ? count - 1 : null);
+    }
+
+    private int hostLimit(String host) {
+        return hostLimits().getOrDefault(host, cacherProperties.downloadMaxPerHost());
+    }
+
+    private Map<String, Integer> hostLimits() {
+        if (hostLimits == null) {
+            synchronized (this) {
+                if (hostLimits == null) {
+                    hostLimits = cacherProperties.downloadHostLimits();
+                }
+            }
+        }
+        return hostLimits;
+    }
+
+    private static class Task<T> implements Comparable<Task<?>> {
+        private final String url;
+        private final String host;
+        private final DownloadPriority priority;
+        private final long sequence;
+        private final Supplier<T> download;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private Task(String url, String host, DownloadPriority priority, long sequence, Supplier<T> download) {
+            this.url = url;
+            this.host = host;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.download = download;
+        }
+
+        private void run(Runnable finished) {
+            if (future.isDone()) {
+                finished.run();
+                return;
+            }
+            T result;
+            try {
+                result = download.get();
+            } catch (Throwable t) {
+                finished.run();
+                future.completeExceptionally(t);
+                return;
+            }
+            finished.run();
+            future.complete(result);
+        }
+
+        @Override
+        public int compareTo(Task<?> other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+
+        @Override
+        public String toString() {
+            return "Task{" +
+                    "url='" + url + '\'' +
+                    ", priority=" + priority +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package org.kie.cekit.cacher.downloads;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * Sidecar of a partial download, persisted next to the other metadata so the download can be resumed after a
+ * failure or a restart. The partial content itself stays on the tmp dir.
+ */
+public class DownloadState {
+
+    private static final String URL = "url";
+    private static final String VALIDATOR = "validator";
+    private static final String BYTES = "bytes";
+    private static final String TOTAL = "total";
+    private static final String TYPE = "type";
+    private static final String CR_BUILD = "crBuild";
+
+    private final String url;
+    private final String type;
+    private final int crBuild;
+    private volatile String validator;
+    private volatile long bytes;
+    private volatile long total = -1;
+
+    public DownloadState(String url, String type, int crBuild) {
+        this.url = url;
+        this.type = type == null ? "" : type;
+        this.crBuild = crBuild;
+    }
+
+    /**
+     * @param file sidecar location
+     * @return the saved state, empty if there is none or it can not be read
+     */
+    public static Optional<DownloadState> load(Path file) {
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+            DownloadState state = new DownloadState(properties.getProperty(URL),
+                                                    properties.getProperty(TYPE, ""),
+                                                    Integer.parseInt(properties.getProperty(CR_BUILD, "0")));
+            state.validator = properties.getProperty(VALIDATOR);
+            state.bytes = Long.parseLong(properties.getProperty(BYTES, "0"));
+            state.total = Long.parseLong(properties.getProperty(TOTAL, "-1"));
+            return state.url == null ? Optional.empty() : Optional.of(state);
+        } catch (IOException | NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Writes the state to a temporary file and moves it over the previous one.
+     *
+     * @param file sidecar location
+     * @throws IOException if the state can not be written
+     */
+    public void save(Path file) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(URL, url);
+        properties.setProperty(TYPE, type);
+        properties.setProperty(CR_BUILD, String.valueOf(crBuild));
+        properties.setProperty(BYTES, String.valueOf(bytes));
+        properties.setProperty(TOTAL, String.valueOf(total));
+        if (validator != null) {
+            properties.setProperty(VALIDATOR, validator);
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            properties.store(writer, "partial download");
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * @return the download type, nightly, cr or empty
+     */
+    public String getType() {
+        return type;
+    }
+
+    public int getCrBuild() {
+        return crBuild;
+    }
+
+    /**
+     * @return the ETag, or Last-Modified date, of the content being downloaded, null if the server sent none
+     */
+    public String getValidator() {
+        return validator;
+    }
+
+    public void setValidator(String validator) {
+        this.validator = validator;
+    }
+
+    /**
+     * @return bytes completed when the state was last updated
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * @return full artifact size, -1 if unknown
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    public void setTotal(long total) {
+        this.total = total;
+    }
+}
@@ -0,0 +1,119 @@
+package org.kie.cekit.cacher.downloads;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A list of urls fetched together, at most {@link #getConcurrency()} of them are queued for download at a time.
+ * Its getters describe the live state of the batch and of each url.
+ */
+public class FetchBatch {
+
+    private final String id;
+    private final List<FetchBatchItem> items;
+    private final int concurrency;
+    private final long submitted = System.currentTimeMillis();
+    private volatile long finished;
+    // guarded by this
+    private int next;
+
+    public FetchBatch(String id, List<FetchBatchItem> items, int concurrency) {
+        this.id = id;
+        this.items = Collections.unmodifiableList(items);
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * @return the next url waiting to be fetched, empty once they all were taken
+     */
+    synchronized Optional<FetchBatchItem> take() {
+        while (next < items.size()) {
+            FetchBatchItem item = items.get(next++);
+            if (item.getState() == FetchBatchItem.State.QUEUED) {
+                return Optional.of(item);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Marks the batch as finished if all of its urls are.
+     *
+     * @return true the first time the batch is found finished
+     */
+    synchronized boolean checkFinished() {
+        if (finished != 0 || !items.stream().allMatch(FetchBatchItem::isDone)) {
+            return false;
+        }
+        finished = System.currentTimeMillis();
+        return true;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public boolean isDone() {
+        return finished != 0;
+    }
+
+    public int getTotal() {
+        return items.size();
+    }
+
+    public long getQueued() {
+        return count(FetchBatchItem.State.QUEUED);
+    }
+
+    public long getRunning() {
+        return count(FetchBatchItem.State.RUNNING);
+    }
+
+    public long getCompleted() {
+        return count(FetchBatchItem.State.COMPLETED);
+    }
+
+    public long getSkipped() {
+        return count(FetchBatchItem.State.SKIPPED);
+    }
+
+    public long getFailed() {
+        return count(FetchBatchItem.State.FAILED);
+    }
+
+    public String getSubmitted() {
+        return Instant.ofEpochMilli(submitted).toString();
+    }
+
+    public String getFinished() {
+        return finished == 0 ? "" : Instant.ofEpochMilli(finished).toString();
+    }
+
+    /**
+     * @return milliseconds since the batch was submitted until it finished, so far if it is still running
+     */
+    public long getDurationMillis() {
+        return (finished == 0 ? System.currentTimeMillis() : finished) - submitted;
+    }
+
+    /**
+     * @return every url of the batch, in the submitted order
+     */
+    public List<FetchBatchItem> getItems() {
+        return items;
+    }
+
+    long submittedMillis() {
+        return submitted;
+    }
+
+    private long count(FetchBatchItem.State state) {
+        return items.stream().filter(item -> item.getState() == state).count();
+    }
+}
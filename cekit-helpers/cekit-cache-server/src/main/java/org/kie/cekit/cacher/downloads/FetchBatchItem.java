@@ -0,0 +1,135 @@
+package org.kie.cekit.cacher.downloads;
+
+import java.time.Instant;
+
+/**
+ * A url of a {@link FetchBatch}, its getters describe the outcome of its fetch.
+ */
+public class FetchBatchItem {
+
+    public enum State {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        /**
+         * The artifact was already cached, nothing was downloaded
+         */
+        SKIPPED,
+        FAILED
+    }
+
+    private final String url;
+    private final String fileName;
+    private final String expectedChecksum;
+    private volatile State state = State.QUEUED;
+    private volatile FetchJob job;
+    private volatile String checksum = "";
+    private volatile String message = "";
+    private volatile long started;
+    private volatile long finished;
+
+    public FetchBatchItem(String url, String fileName, String expectedChecksum) {
+        this.url = url;
+        this.fileName = fileName;
+        this.expectedChecksum = expectedChecksum;
+    }
+
+    void started(FetchJob fetchJob) {
+        job = fetchJob;
+        started = System.currentTimeMillis();
+        state = State.RUNNING;
+    }
+
+    void skipped(String artifactChecksum, String reason) {
+        finish(State.SKIPPED, artifactChecksum, reason);
+    }
+
+    void completed(String artifactChecksum, String result) {
+        finish(State.COMPLETED, artifactChecksum, result);
+    }
+
+    void failed(String reason) {
+        finish(State.FAILED, "", reason);
+    }
+
+    private void finish(State finalState, String artifactChecksum, String result) {
+        long now = System.currentTimeMillis();
+        if (started == 0) {
+            started = now;
+        }
+        finished = now;
+        checksum = artifactChecksum;
+        message = result;
+        state = finalState;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * @return the checksum declared on the batch, empty if none
+     */
+    public String getExpectedChecksum() {
+        return expectedChecksum == null ? "" : expectedChecksum;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public boolean isDone() {
+        return state != State.QUEUED && state != State.RUNNING;
+    }
+
+    /**
+     * @return id of the fetch job downloading the url, it can be followed on /resource/jobs/{id}, empty if there is
+     * no download
+     */
+    public String getJobId() {
+        return job == null ? "" : job.getId();
+    }
+
+    /**
+     * @return bytes downloaded so far
+     */
+    public long getBytes() {
+        return job == null ? 0 : job.getBytes();
+    }
+
+    /**
+     * @return the artifact md5 checksum, once completed or skipped
+     */
+    public String getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * @return the fetch result message, or why the url was skipped or failed
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    public String getStarted() {
+        return started == 0 ? "" : Instant.ofEpochMilli(started).toString();
+    }
+
+    public String getFinished() {
+        return finished == 0 ? "" : Instant.ofEpochMilli(finished).toString();
+    }
+
+    /**
+     * @return milliseconds spent on the url, so far if it is still running
+     */
+    public long getDurationMillis() {
+        if (started == 0) {
+            return 0;
+        }
+        return (finished == 0 ? System.currentTimeMillis() : finished) - started;
+    }
+}
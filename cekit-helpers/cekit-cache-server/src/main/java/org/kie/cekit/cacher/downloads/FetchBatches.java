@@ -0,0 +1,181 @@
+package org.kie.cekit.cacher.downloads;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.kie.cekit.cacher.artifacts.ArtifactIndex;
+import org.kie.cekit.cacher.artifacts.IndexedArtifact;
+import org.kie.cekit.cacher.objects.FetchRequest;
+import org.kie.cekit.cacher.objects.FetchResult;
+import org.kie.cekit.cacher.properties.CacherProperties;
+import org.kie.cekit.cacher.utils.CacherUtils;
+import org.kie.cekit.cacher.utils.UrlUtils;
+
+/**
+ * Fetches lists of urls, e.g. to seed a new node. Each batch keeps a bounded number of its urls queued on the
+ * {@link DownloadScheduler}, as fetch jobs with the pre-load priority, and queues the next one when one finishes,
+ * so a big batch neither floods the download queue nor starves the other downloads.
+ * Urls whose artifact is already cached, by expected checksum or by file name, are skipped. Finished batches are
+ * kept until {@link #MAX_FINISHED_BATCHES} newer ones finish.
+ */
+@ApplicationScoped
+public class FetchBatches {
+
+    public static final int MAX_FINISHED_BATCHES = 20;
+
+    private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    private final Map<String, FetchBatch> batches = new ConcurrentHashMap<>();
+    private final Deque<String> finished = new ConcurrentLinkedDeque<>();
+
+    @Inject
+    CacherProperties cacherProperties;
+
+    @Inject
+    CacherUtils cacherUtils;
+
+    @Inject
+    ArtifactIndex artifactIndex;
+
+    @Inject
+    FetchJobs fetchJobs;
+
+    /**
+     * Starts fetching the given urls and returns immediately.
+     *
+     * @param requests    urls to be fetched, with their expected checksum if known
+     * @param concurrency max urls of the batch queued for download at a time, the configured one if 0 or less
+     * @return the batch tracking the fetches
+     * @throws IllegalArgumentException if there is no url to fetch
+     */
+    public FetchBatch submit(List<FetchRequest> requests, int concurrency) {
+        if (requests == null || requests.isEmpty()) {
+            throw new IllegalArgumentException("No urls to fetch.");
+        }
+        List<FetchBatchItem> items = new ArrayList<>();
+        for (FetchRequest request : requests) {
+            if (request == null || request.getUrl() == null) {
+                throw new IllegalArgumentException("Every fetch request needs a url.");
+            }
+            String url = request.getUrl().trim();
+            String checksum = request.getChecksum() == null || request.getChecksum().trim().isEmpty()
+                    ? null : request.getChecksum().trim().toLowerCase(Locale.ROOT);
+            FetchBatchItem item = new FetchBatchItem(url, UrlUtils.getFileName(url), checksum);
+            if (!UrlUtils.isUrlValid(url)) {
+                item.failed("Invalid url.");
+            }
+            items.add(item);
+        }
+        int limit = concurrency > 0 ? concurrency : cacherProperties.fetchBatchConcurrency();
+        FetchBatch batch = new FetchBatch(UUID.randomUUID().toString(), items, limit);
+        batches.put(batch.getId(), batch);
+        log.info("Fetch batch " + batch.getId() + " submitted with " + items.size() + " urls, " + limit + " at a time.");
+        for (int i = 0; i < limit; i++) {
+            next(batch);
+        }
+        // every url may have been skipped or invalid
+        finishIfDone(batch);
+        return batch;
+    }
+
+    /**
+     * @param id batch id
+     * @return the batch, if it is active or recent
+     */
+    public Optional<FetchBatch> get(String id) {
+        return Optional.ofNullable(batches.get(id));
+    }
+
+    /**
+     * @return active and recent batches, newest first
+     */
+    public List<FetchBatch> list() {
+        return batches.values().stream()
+                .sorted(Comparator.comparingLong(FetchBatch::submittedMillis).reversed())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Queues the next url of the batch not cached yet, if any.
+     */
+    private void next(FetchBatch batch) {
+        Optional<FetchBatchItem> next;
+        while ((next = batch.take()).isPresent()) {
+            FetchBatchItem item = next.get();
+            // checked when the url is taken, an earlier url of the batch may have brought it
+            Optional<IndexedArtifact> cached = cached(item);
+            if (cached.isPresent()) {
+                item.skipped(cached.get().getChecksum(), "File " + item.getFileName() + " already cached.");
+                continue;
+            }
+            FetchJob job = fetchJobs.submit(item.getUrl(), DownloadPriority.PRELOAD);
+            item.started(job);
+            job.result().thenAccept(result -> {
+                finished(item, result);
+                next(batch);
+                finishIfDone(batch);
+            });
+            return;
+        }
+    }
+
+    private void finished(FetchBatchItem item, FetchResult result) {
+        if (!result.isSuccessful()) {
+            item.failed(result.getMessage());
+            return;
+        }
+        if (item.getExpectedChecksum().isEmpty() || matches(item.getExpectedChecksum(), result.getChecksum())) {
+            item.completed(result.getChecksum(), result.getMessage());
+            return;
+        }
+        // only an artifact brought by this fetch is dropped, an existing one may be used by others
+        if (result.getStatus() == FetchResult.Status.PERSISTED) {
+            cacherUtils.deleteArtifact(result.getChecksum());
+        }
+        item.failed("Checksum mismatch, expected " + item.getExpectedChecksum() + " but " + item.getUrl() + " has md5 " + result.getChecksum() + ".");
+    }
+
+    /**
+     * @return the artifact already cached for the item, by its expected checksum, or else by its file name. Nothing
+     * was fetched from the url, so its file name is not recorded as an alias of the artifact found by checksum
+     */
+    private Optional<IndexedArtifact> cached(FetchBatchItem item) {
+        if (!item.getExpectedChecksum().isEmpty()) {
+            return artifactIndex.resolve(item.getExpectedChecksum());
+        }
+        return artifactIndex.getByFileName(item.getFileName());
+    }
+
+    private boolean matches(String expected, String checksum) {
+        return artifactIndex.resolve(expected).map(IndexedArtifact::getChecksum).filter(checksum::equals).isPresent();
+    }
+
+    private void finishIfDone(FetchBatch batch) {
+        if (!batch.checkFinished()) {
+            return;
+        }
+        log.info("Fetch batch " + batch.getId() + " finished: " + batch.getCompleted() + " completed, "
+                         + batch.getSkipped() + " skipped, " + batch.getFailed() + " failed.");
+        finished.addLast(batch.getId());
+        while (finished.size() > MAX_FINISHED_BATCHES) {
+            String expired = finished.pollFirst();
+            if (expired != null) {
+                batches.remove(expired);
+            }
+        }
+    }
+}
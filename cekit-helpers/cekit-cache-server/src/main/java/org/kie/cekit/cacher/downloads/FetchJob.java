@@ -0,0 +1,144 @@
+package org.kie.cekit.cacher.downloads;
+
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+
+import org.kie.cekit.cacher.objects.FetchResult;
+
+/**
+ * A fetch requested through the jobs API, its getters describe the live state of the download.
+ */
+public class FetchJob {
+
+    public enum State {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    private final String id;
+    private final String url;
+    private final String fileName;
+    private final DownloadPriority priority;
+    private final DownloadProgress progress = new DownloadProgress();
+    private final CompletableFuture<FetchResult> result = new CompletableFuture<>();
+    private final long submitted = System.currentTimeMillis();
+    private volatile long started;
+    private volatile long finished;
+    private volatile State state = State.QUEUED;
+
+    public FetchJob(String id, String url, String fileName, DownloadPriority priority) {
+        this.id = id;
+        this.url = url;
+        this.fileName = fileName;
+        this.priority = priority;
+    }
+
+    void started() {
+        started = System.currentTimeMillis();
+        state = State.RUNNING;
+    }
+
+    void finished(FetchResult fetchResult, long size) {
+        if (size >= 0) {
+            // the download may have been done by another request for the same url
+            progress.setTotal(size);
+            if (progress.getBytes() < size) {
+                progress.add(size - progress.getBytes());
+            }
+        }
+        finished = System.currentTimeMillis();
+        state = fetchResult.isSuccessful() ? State.COMPLETED : State.FAILED;
+        result.complete(fetchResult);
+    }
+
+    /**
+     * @return completed with the fetch result when the job finishes
+     */
+    public CompletableFuture<FetchResult> result() {
+        return result;
+    }
+
+    DownloadProgress progress() {
+        return progress;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public DownloadPriority getPriority() {
+        return priority;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return bytes downloaded so far
+     */
+    public long getBytes() {
+        return progress.getBytes();
+    }
+
+    /**
+     * @return artifact size, -1 if not known yet
+     */
+    public long getTotal() {
+        return progress.getTotal();
+    }
+
+    /**
+     * @return current throughput in bytes per second
+     */
+    public long getThroughput() {
+        return state == State.RUNNING ? progress.getThroughput() : 0;
+    }
+
+    /**
+     * @return estimated seconds to finish, -1 if unknown
+     */
+    public long getEta() {
+        return state == State.RUNNING ? progress.getEta() : -1;
+    }
+
+    /**
+     * @return the artifact checksum, once the job is completed
+     */
+    public String getChecksum() {
+        return result.isDone() ? result.join().getChecksum() : "";
+    }
+
+    /**
+     * @return the fetch result message, once the job is finished
+     */
+    public String getMessage() {
+        return result.isDone() ? result.join().getMessage() : "";
+    }
+
+    public String getSubmitted() {
+        return Instant.ofEpochMilli(submitted).toString();
+    }
+
+    public String getStarted() {
+        return started == 0 ? "" : Instant.ofEpochMilli(started).toString();
+    }
+
+    public String getFinished() {
+        return finished == 0 ? "" : Instant.ofEpochMilli(finished).toString();
+    }
+
+    long submittedMillis() {
+        return submitted;
+    }
+}
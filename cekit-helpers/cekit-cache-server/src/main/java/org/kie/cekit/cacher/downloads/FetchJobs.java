@@ -0,0 +1,85 @@
+package org.kie.cekit.cacher.downloads;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.kie.cekit.cacher.artifacts.ArtifactIndex;
+import org.kie.cekit.cacher.artifacts.IndexedArtifact;
+import org.kie.cekit.cacher.utils.CacherUtils;
+import org.kie.cekit.cacher.utils.UrlUtils;
+
+/**
+ * Registry of the fetch jobs. Active jobs are kept until they finish, finished ones are kept until
+ * {@link #MAX_FINISHED_JOBS} newer jobs finish.
+ */
+@ApplicationScoped
+public class FetchJobs {
+
+    public static final int MAX_FINISHED_JOBS = 100;
+
+    private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    private final Map<String, FetchJob> jobs = new ConcurrentHashMap<>();
+    private final Deque<String> finished = new ConcurrentLinkedDeque<>();
+
+    @Inject
+    CacherUtils cacherUtils;
+
+    @Inject
+    ArtifactIndex artifactIndex;
+
+    /**
+     * Queues the fetch of the given url and returns immediately.
+     *
+     * @param url      artifact url address
+     * @param priority download priority
+     * @return the job tracking the download
+     */
+    public FetchJob submit(String url, DownloadPriority priority) {
+        FetchJob job = new FetchJob(UUID.randomUUID().toString(), url, UrlUtils.getFileName(url), priority);
+        jobs.put(job.getId(), job);
+        log.fine("Fetch job " + job.getId() + " submitted for " + url);
+        cacherUtils.fetchAsync(url, priority, Optional.empty(), 0, job::started, job.progress())
+                .thenAccept(result -> {
+                    long size = artifactIndex.get(result.getChecksum()).map(IndexedArtifact::getSize).orElse(-1L);
+                    job.finished(result, size);
+                    finished.addLast(job.getId());
+                    while (finished.size() > MAX_FINISHED_JOBS) {
+                        String expired = finished.pollFirst();
+                        if (expired != null) {
+                            jobs.remove(expired);
+                        }
+                    }
+                });
+        return job;
+    }
+
+    /**
+     * @param id job id
+     * @return the job, if it is active or recent
+     */
+    public Optional<FetchJob> get(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    /**
+     * @return active and recent jobs, newest first
+     */
+    public List<FetchJob> list() {
+        return jobs.values().stream()
+                .sorted(Comparator.comparingLong(FetchJob::submittedMillis).reversed())
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,203 @@
+package org.kie.cekit.cacher.downloads;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import io.quarkus.scheduler.Scheduled;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.kie.cekit.cacher.objects.MirrorStatus;
+import org.kie.cekit.cacher.properties.CacherProperties;
+import org.kie.cekit.cacher.utils.HttpRequestHandler;
+
+/**
+ * Maps an upstream url to the equivalent urls on its mirrors, ordered from the fastest healthy mirror to the
+ * slowest. Mirrors are ranked by the throughput of their past downloads and, until they have one, by the latency
+ * measured by the periodic probe. A mirror that fails twice in a row is skipped for a while.
+ */
+@ApplicationScoped
+public class MirrorSelector {
+
+    private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    static final int MAX_FAILURES = 2;
+    static final long DOWN_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final double SMOOTHING = 0.3;
+
+    @Inject
+    CacherProperties cacherProperties;
+
+    @Inject
+    HttpRequestHandler httpRequestHandler;
+
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+    private volatile List<List<String>> groups;
+
+    /**
+     * @param url upstream url
+     * @return the url on every mirror of its group, best first, or only the given url if it has no mirrors
+     */
+    public List<String> candidates(String url) {
+        for (List<String> group : groups()) {
+            for (String prefix : group) {
+                if (url.startsWith(prefix)) {
+                    String path = url.substring(prefix.length());
+                    // the original goes first, the sort is stable so it wins the ties
+                    List<String> ordered = new ArrayList<>();
+                    ordered.add(prefix);
+                    group.stream().filter(other -> !other.equals(prefix)).forEach(ordered::add);
+                    long now = System.currentTimeMillis();
+                    return ordered.stream()
+                            .sorted(Comparator.comparing((String mirror) -> !stats(mirror).healthy(now))
+                                            .thenComparing(this::faster))
+                            .map(mirror -> mirror + path)
+                            .collect(Collectors.toList());
+                }
+            }
+        }
+        List<String> single = new ArrayList<>();
+        single.add(url);
+        return single;
+    }
+
+    /**
+     * @param url    served by a mirror
+     * @param millis time to the response headers
+     */
+    public void recordLatency(String url, long millis) {
+        prefix(url).ifPresent(prefix -> stats(prefix).latency(millis));
+    }
+
+    /**
+     * @param url    served by a mirror
+     * @param bytes  transferred
+     * @param millis transfer time
+     */
+    public void recordThroughput(String url, long bytes, long millis) {
+        prefix(url).ifPresent(prefix -> stats(prefix).throughput(bytes * 1000 / Math.max(1, millis)));
+    }
+
+    /**
+     * @param url that could not be downloaded from its mirror
+     */
+    public void recordFailure(String url) {
+        prefix(url).ifPresent(prefix -> {
+            if (stats(prefix).failed(System.currentTimeMillis())) {
+                log.warning("Mirror " + prefix + " is failing, skipping it for " + TimeUnit.MILLISECONDS.toMinutes(DOWN_MILLIS) + " minutes");
+            }
+        });
+    }
+
+    /**
+     * @return every configured mirror with its health and speed
+     */
+    public List<MirrorStatus> status() {
+        long now = System.currentTimeMillis();
+        return groups().stream()
+                .flatMap(List::stream)
+                .map(prefix -> stats(prefix).status(prefix, now))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Measures the latency of every mirror, a mirror answering with a server error is counted as failing.
+     */
+    @Scheduled(every = "10m", delay = 1, delayUnit = TimeUnit.MINUTES)
+    public void probe() {
+        for (List<String> group : groups()) {
+            for (String prefix : group) {
+                long start = System.currentTimeMillis();
+                try (Response response = httpRequestHandler.execute(new Request.Builder().url(prefix).head().build(),
+                                                                    HttpRequestHandler.Destination.METADATA)) {
+                    if (response.code() >= 500) {
+                        recordFailure(prefix);
+                    } else {
+                        recordLatency(prefix, System.currentTimeMillis() - start);
+                    }
+                } catch (IOException | IllegalArgumentException e) {
+                    log.fine("Probe of mirror " + prefix + " failed: " + e.getMessage());
+                    recordFailure(prefix);
+                }
+            }
+        }
+    }
+
+    /**
+     * Mirrors with a measured throughput go first, the fastest first, then the ones with the lowest latency
+     */
+    private int faster(String a, String b) {
+        Stats first = stats(a);
+        Stats second = stats(b);
+        int byThroughput = Long.compare(second.throughput, first.throughput);
+        if (byThroughput != 0) {
+            return byThroughput;
+        }
+        return Long.compare(first.latency < 0 ? Long.MAX_VALUE : first.latency, second.latency < 0 ? Long.MAX_VALUE : second.latency);
+    }
+
+    private Optional<String> prefix(String url) {
+        return groups().stream()
+                .flatMap(List::stream)
+                .filter(url::startsWith)
+                .findFirst();
+    }
+
+    private Stats stats(String prefix) {
+        return stats.computeIfAbsent(prefix, p -> new Stats());
+    }
+
+    private List<List<String>> groups() {
+        if (groups == null) {
+            groups = cacherProperties.mirrorGroups();
+        }
+        return groups;
+    }
+
+    private static class Stats {
+        private volatile long latency = -1;
+        private volatile long throughput = -1;
+        private volatile int failures;
+        private volatile long downUntil;
+
+        synchronized void latency(long millis) {
+            latency = latency < 0 ? millis : Math.round(SMOOTHING * millis + (1 - SMOOTHING) * latency);
+            failures = 0;
+        }
+
+        synchronized void throughput(long bytesPerSecond) {
+            throughput = throughput < 0 ? bytesPerSecond : Math.round(SMOOTHING * bytesPerSecond + (1 - SMOOTHING) * throughput);
+            failures = 0;
+        }
+
+        /**
+         * @return true if the mirror has just been marked as down
+         */
+        synchronized boolean failed(long now) {
+            if (++failures >= MAX_FAILURES && downUntil <= now) {
+                downUntil = now + DOWN_MILLIS;
+                return true;
+            }
+            return false;
+        }
+
+        boolean healthy(long now) {
+            return downUntil <= now;
+        }
+
+        MirrorStatus status(String prefix, long now) {
+            return new MirrorStatus(prefix, healthy(now), latency, throughput, failures);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package org.kie.cekit.cacher.downloads;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.kie.cekit.cacher.exception.DownloadRejectedException;
+
+/**
+ * Serves a {@link ResumableDownload} from the mirrors of the artifact url. Every new call after the first one means
+ * the previous transfer failed, so the download fails over to the next mirror and resumes there.
+ * Validators are not shared between mirrors: a transfer resumed on another mirror is only checked by the artifact
+ * size, the caller must verify the digest of an artifact that was not served only by the original url.
+ */
+public class MirroredSource implements ResumableDownload.Source {
+
+    private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    // small transfers say more about the latency than about the throughput
+    private static final long MIN_MEASURED_BYTES = 1024 * 1024;
+
+    /**
+     * Opens an url from the given offset
+     */
+    @FunctionalInterface
+    public interface Opener {
+        ResumableDownload.Response open(String url, long offset, String validator) throws IOException;
+    }
+
+    private final String original;
+    private final List<String> candidates;
+    private final Opener opener;
+    private final MirrorSelector selector;
+    private int current;
+    private String served;
+    private boolean mirrored;
+
+    /**
+     * @param original   the artifact url
+     * @param candidates the artifact url on every mirror, best first, see {@link MirrorSelector#candidates(String)}
+     */
+    public MirroredSource(String original, List<String> candidates, Opener opener, MirrorSelector selector) {
+        this.original = original;
+        this.candidates = candidates;
+        this.opener = opener;
+        this.selector = selector;
+    }
+
+    @Override
+    public ResumableDownload.Response open(long offset, String validator) throws IOException {
+        if (served != null) {
+            // the previous transfer did not complete
+            selector.recordFailure(served);
+            if (candidates.size() > 1) {
+                current = (current + 1) % candidates.size();
+            }
+        }
+        IOException failure = null;
+        boolean rejected = true;
+        for (int tried = 0; tried < candidates.size(); tried++) {
+            String url = candidates.get(current);
+            boolean sameMirror = served == null || url.equals(served);
+            try {
+                long start = System.currentTimeMillis();
+                ResumableDownload.Response response = opener.open(url, offset, sameMirror ? validator : null);
+                selector.recordLatency(url, System.currentTimeMillis() - start);
+                if (!url.equals(served) && served != null) {
+                    log.info("Download of " + original + " failed over to " + url);
+                }
+                served = url;
+                mirrored |= !url.equals(original);
+                return response.withBody(measured(url, response.body()));
+            } catch (IOException e) {
+                // a mirror may not be in sync, a rejection by one of them is not final
+                log.warning("Failed to open " + url + ": " + e.getMessage());
+                selector.recordFailure(url);
+                failure = e;
+                rejected &= e instanceof DownloadRejectedException;
+                current = (current + 1) % candidates.size();
+            }
+        }
+        if (!rejected && failure instanceof DownloadRejectedException) {
+            // some mirror may be back later
+            throw new IOException(failure.getMessage(), failure);
+        }
+        throw failure;
+    }
+
+    /**
+     * @return true if at least part of the artifact was served by a mirror instead of the original url
+     */
+    public boolean isMirrored() {
+        return mirrored;
+    }
+
+    private InputStream measured(String url, InputStream body) {
+        long start = System.currentTimeMillis();
+        return new FilterInputStream(body) {
+            private long bytes;
+
+            @Override
+            public int read() throws IOException {
+                int read = super.read();
+                if (read != -1) {
+                    bytes++;
+                }
+                return read;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int read = super.read(b, off, len);
+                if (read > 0) {
+                    bytes += read;
+                }
+                return read;
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (bytes >= MIN_MEASURED_BYTES) {
+                    selector.recordThroughput(url, bytes, System.currentTimeMillis() - start);
+                }
+                super.close();
+            }
+        };
+    }
+}
@@ -0,0 +1,244 @@
+package org.kie.cekit.cacher.downloads;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Logger;
+
+import org.kie.cekit.cacher.exception.DownloadRejectedException;
+import org.kie.cekit.cacher.utils.StreamingDigest;
+
+/**
+ * Downloads an artifact over a single connection, resuming it with a range request when the connection fails.
+ * The partial content is kept on the target file and its {@link DownloadState} on a sidecar, so a download
+ * interrupted by a restart can be resumed as well. A download is only resumed when the server sent a validator,
+ * ETag or Last-Modified, which is sent back as If-Range: if the artifact changed meanwhile the server answers
+ * with the whole content and the download starts over.
+ * The digests can not be persisted half way, the bytes already on the disk are hashed again when resuming, which
+ * is a lot cheaper than downloading them again.
+ */
+public class ResumableDownload {
+
+    private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    static final long INITIAL_BACKOFF_MILLIS = 1000;
+    static final long MAX_BACKOFF_MILLIS = 60000;
+    // how often the bytes completed are saved on the sidecar
+    private static final long SAVE_INTERVAL = 16 * 1024 * 1024;
+
+    /**
+     * Opens the artifact, from the given offset on
+     */
+    @FunctionalInterface
+    public interface Source {
+        /**
+         * @param offset    first byte wanted, 0 for the whole artifact
+         * @param validator to be sent as If-Range along with the range, null when offset is 0. A source resuming on
+         *                  another server drops it, the resumed response must then have the same total size
+         * @return the server response
+         * @throws IOException if the artifact can not be opened, {@link DownloadRejectedException} if it should
+         *                     not be retried
+         */
+        Response open(long offset, String validator) throws IOException;
+    }
+
+    /**
+     * Upstream response
+     */
+    public static class Response {
+        private final InputStream body;
+        private final boolean partial;
+        private final long total;
+        private final String validator;
+
+        /**
+         * @param body      response content
+         * @param partial   true if the body starts at the requested offset, false if it is the whole artifact
+         * @param total     full artifact size, -1 if unknown
+         * @param validator ETag, or Last-Modified date, of the artifact, null if none was sent
+         */
+        public Response(InputStream body, boolean partial, long total, String validator) {
+            this.body = body;
+            this.partial = partial;
+            this.total = total;
+            this.validator = validator;
+        }
+
+        public InputStream body() {
+            return body;
+        }
+
+        /**
+         * @param body replacement content, e.g. a wrapper of the current one
+         * @return a copy of this response with the given body
+         */
+        public Response withBody(InputStream body) {
+            return new Response(body, partial, total, validator);
+        }
+    }
+
+    private final Source source;
+    private final Path target;
+    private final Path stateFile;
+    private final DownloadState state;
+    private final DownloadProgress progress;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+
+    public ResumableDownload(Source source, Path target, Path stateFile, DownloadState state, DownloadProgress progress,
+                             int maxAttempts) {
+        this(source, target, stateFile, state, progress, maxAttempts, INITIAL_BACKOFF_MILLIS);
+    }
+
+    ResumableDownload(Source source, Path target, Path stateFile, DownloadState state, DownloadProgress progress,
+                      int maxAttempts, long initialBackoffMillis) {
+        this.source = source;
+        this.target = target;
+        this.stateFile = stateFile;
+        this.state = state;
+        this.progress = progress;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffMillis = initialBackoffMillis;
+    }
+
+    /**
+     * Runs the download, blocking until it is finished. On failure the partial content and its state are kept, so
+     * a later download of the same url resumes it.
+     *
+     * @return the digests of the whole artifact
+     * @throws IOException if the download did not complete after the max attempts or was rejected
+     */
+    public StreamingDigest download() throws IOException {
+        int attempt = 1;
+        while (true) {
+            try {
+                return attempt();
+            } catch (DownloadRejectedException e) {
+                throw e;
+            } catch (IOException e) {
+                saveState();
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                long backoff = backoff(attempt++);
+                log.warning("Download of " + state.getUrl() + " failed at byte " + state.getBytes() + " (" + e.getMessage()
+                                    + "), resuming in " + backoff + "ms");
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Download of " + state.getUrl() + " interrupted", ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the exponential backoff before the given attempt, with up to 20% jitter
+     */
+    long backoff(int attempt) {
+        long backoff = Math.min(MAX_BACKOFF_MILLIS, initialBackoffMillis << Math.min(attempt - 1, 16));
+        return backoff + ThreadLocalRandom.current().nextLong(backoff / 5 + 1);
+    }
+
+    private StreamingDigest attempt() throws IOException {
+        long offset = resumableOffset();
+        StreamingDigest digest = new StreamingDigest();
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (offset > 0 && offset == state.getTotal()) {
+                // everything was downloaded before the interruption
+                rehash(channel, offset, digest);
+                progress.reset();
+                progress.add(offset);
+                return digest;
+            }
+
+            Response response = source.open(offset, offset > 0 ? state.getValidator() : null);
+            if (offset > 0 && response.partial && response.total != state.getTotal()) {
+                // a range of another artifact, e.g. from a mirror out of sync: it can not be written anywhere
+                log.warning("Download of " + state.getUrl() + " can not be resumed, its size changed from " + state.getTotal()
+                                    + " to " + response.total + ", starting over");
+                response.body.close();
+                offset = 0;
+                response = source.open(0, null);
+            }
+            try (InputStream body = response.body;
+                 ReadableByteChannel readableByteChannel = Channels.newChannel(body)) {
+                if (offset > 0 && response.partial) {
+                    log.info("Resuming download of " + state.getUrl() + " at byte " + offset);
+                    rehash(channel, offset, digest);
+                } else {
+                    offset = 0;
+                }
+                channel.truncate(offset);
+                channel.position(offset);
+
+                progress.reset();
+                progress.add(offset);
+                progress.setTotal(response.total);
+                state.setValidator(response.validator);
+                state.setTotal(response.total);
+                state.setBytes(offset);
+                saveState();
+
+                long[] unsaved = {0};
+                digest.transfer(readableByteChannel, channel, written -> {
+                    progress.add(written);
+                    state.setBytes(state.getBytes() + written);
+                    unsaved[0] += written;
+                    if (unsaved[0] >= SAVE_INTERVAL) {
+                        unsaved[0] = 0;
+                        saveState();
+                    }
+                });
+            }
+        }
+        if (state.getTotal() >= 0 && digest.getBytes() != state.getTotal()) {
+            throw new EOFException("Download of " + state.getUrl() + " ended at byte " + digest.getBytes() + " of " + state.getTotal());
+        }
+        return digest;
+    }
+
+    /**
+     * A partial download is resumed only if the server sent a validator and the artifact size is known
+     */
+    private long resumableOffset() throws IOException {
+        if (!Files.exists(target) || state.getValidator() == null || state.getTotal() <= 0) {
+            return 0;
+        }
+        long size = Files.size(target);
+        return size > state.getTotal() ? 0 : size;
+    }
+
+    private void rehash(FileChannel channel, long length, StreamingDigest digest) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(StreamingDigest.BUFFER_SIZE);
+        for (long position = 0; position < length; ) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), length - position));
+            int read = channel.read(buffer, position);
+            if (read == -1) {
+                throw new EOFException("Unexpected end of " + target + " at " + position);
+            }
+            buffer.flip();
+            digest.update(buffer);
+            position += read;
+        }
+    }
+
+    private void saveState() {
+        try {
+            state.save(stateFile);
+        } catch (IOException e) {
+            log.warning("Failed to save the state of " + target.getFileName() + ", it will not be resumed after a restart: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package org.kie.cekit.cacher.downloads;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import org.kie.cekit.cacher.utils.StreamingDigest;
+
+/**
+ * Downloads an artifact over several concurrent range requests.
+ * The file is split in chunks that are pulled from a queue by the segment workers and written at their offset on
+ * a preallocated file. The number of workers starts at one and grows while each new worker increases the overall
+ * throughput, up to the configured maximum, so a fast single connection is not split for nothing.
+ * Chunks are hashed in order as soon as they and all the previous ones are written, reading them back while they
+ * are still in the page cache, so the digests are ready when the last chunk lands.
+ */
+public class SegmentedDownload {
+
+    private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    static final long CHUNK_SIZE = 8 * 1024 * 1024;
+    static final int MAX_ATTEMPTS = 3;
+    static final long PROBE_INTERVAL_MILLIS = 2000;
+    // a new worker must bring at least 10% more throughput to keep growing
+    static final double MIN_GAIN = 0.10;
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * Opens a byte range of the artifact
+     */
+    @FunctionalInterface
+    public interface RangeSource {
+        /**
+         * @param start first byte, inclusive
+         * @param end   last byte, inclusive
+         * @return a stream with exactly the requested bytes
+         * @throws IOException if the range can not be served
+         */
+        InputStream open(long start, long end) throws IOException;
+    }
+
+    private final RangeSource source;
+    private final Path target;
+    private final long size;
+    private final int maxSegments;
+    private final DownloadProgress progress;
+
+    private final Queue<Chunk> chunks = new ConcurrentLinkedQueue<>();
+    private final CountDownLatch remaining;
+    private final AtomicLong downloaded = new AtomicLong();
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+    private final StreamingDigest digest = new StreamingDigest();
+    private final int totalChunks;
+    private volatile IOException failure;
+
+    // guarded by digest
+    private final BitSet written = new BitSet();
+    private int nextToHash;
+
+    public SegmentedDownload(RangeSource source, Path target, long size, int maxSegments, DownloadProgress progress) {
+        this.source = source;
+        this.target = target;
+        this.size = size;
+        this.maxSegments = maxSegments;
+        this.progress = progress;
+        int index = 0;
+        for (long start = 0; start < size; start += CHUNK_SIZE) {
+            chunks.add(new Chunk(index++, start, Math.min(start + CHUNK_SIZE, size) - 1));
+        }
+        this.totalChunks = index;
+        this.remaining = new CountDownLatch(totalChunks);
+    }
+
+    /**
+     * Runs the download, blocking until it is finished.
+     *
+     * @return the digests of the whole artifact
+     * @throws IOException if a chunk could not be downloaded after {@link #MAX_ATTEMPTS}
+     */
+    public StreamingDigest download() throws IOException {
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService workers = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "cacher-segment-" + target.getFileName() + "-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (size > 0) {
+                // preallocate, the file is sparse until the chunks are written
+                channel.write(ByteBuffer.wrap(new byte[1]), size - 1);
+            }
+
+            int segments = 1;
+            workers.execute(() -> work(channel));
+            double lastRate = 0;
+            boolean growing = maxSegments > 1;
+            long lastBytes = 0;
+            long lastProbe = System.currentTimeMillis();
+
+            while (!remaining.await(PROBE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (failure != null) {
+                    throw failure;
+                }
+                long now = System.currentTimeMillis();
+                long bytes = downloaded.get();
+                double rate = (bytes - lastBytes) * 1000.0 / Math.max(1, now - lastProbe);
+                lastBytes = bytes;
+                lastProbe = now;
+
+                if (growing && segments < maxSegments && !chunks.isEmpty()) {
+                    if (rate > lastRate * (1 + MIN_GAIN)) {
+                        lastRate = rate;
+                        segments++;
+                        log.fine("Download of " + target.getFileName() + " at " + Math.round(rate) + " B/s, adding segment " + segments);
+                        workers.execute(() -> work(channel));
+                    } else {
+                        growing = false;
+                        log.fine("Download of " + target.getFileName() + " settled on " + segments + " segments");
+                    }
+                } else if (activeWorkers.get() == 0 && !chunks.isEmpty()) {
+                    // a chunk failed after the workers ran out of work
+                    workers.execute(() -> work(channel));
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            if (nextToHash != totalChunks) {
+                throw new IOException("Segmented download of " + target.getFileName() + " finished with missing chunks");
+            }
+            return digest;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Segmented download of " + target.getFileName() + " interrupted", e);
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private void work(FileChannel channel) {
+        activeWorkers.incrementAndGet();
+        try {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            Chunk chunk;
+            while (failure == null && (chunk = chunks.poll()) != null) {
+                try {
+                    fetch(chunk, channel, buffer);
+                } catch (PartialChunkException e) {
+                    downloaded.addAndGet(-e.written);
+                    progress.add(-e.written);
+                    if (++chunk.attempts >= MAX_ATTEMPTS) {
+                        fail((IOException) e.getCause());
+                    } else {
+                        log.fine("Retrying chunk " + chunk.start + "-" + chunk.end + " of " + target.getFileName() + ": " + e.getMessage());
+                        chunks.add(chunk);
+                    }
+                    continue;
+                }
+                try {
+                    completed(chunk, channel, buffer);
+                    remaining.countDown();
+                } catch (IOException e) {
+                    fail(e);
+                }
+            }
+        } finally {
+            activeWorkers.decrementAndGet();
+        }
+    }
+
+    private void fail(IOException e) {
+        failure = e;
+        // release the coordinator
+        while (remaining.getCount() > 0) {
+            remaining.countDown();
+        }
+    }
+
+    private void fetch(Chunk chunk, FileChannel channel, ByteBuffer buffer) throws PartialChunkException {
+        long position = chunk.start;
+        try (InputStream in = source.open(chunk.start, chunk.end);
+             ReadableByteChannel rangeChannel = Channels.newChannel(in)) {
+            while (position <= chunk.end) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), chunk.end - position + 1));
+                int read = rangeChannel.read(buffer);
+                if (read == -1) {
+                    throw new EOFException("Chunk " + chunk.start + "-" + chunk.end + " ended at " + position);
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+                downloaded.addAndGet(read);
+                progress.add(read);
+            }
+        } catch (IOException e) {
+            // keep track of what was counted, so the retry does not count it twice
+            throw new PartialChunkException(e, position - chunk.start);
+        }
+    }
+
+    private void completed(Chunk chunk, FileChannel channel, ByteBuffer buffer) throws IOException {
+        synchronized (digest) {
+            written.set(chunk.index);
+            while (nextToHash < totalChunks && written.get(nextToHash)) {
+                long start = (long) nextToHash * CHUNK_SIZE;
+                long end = Math.min(start + CHUNK_SIZE, size);
+                for (long position = start; position < end; ) {
+                    buffer.clear();
+                    buffer.limit((int) Math.min(buffer.capacity(), end - position));
+                    int read = channel.read(buffer, position);
+                    if (read == -1) {
+                        throw new EOFException("Unexpected end of " + target + " at " + position);
+                    }
+                    buffer.flip();
+                    digest.update(buffer);
+                    position += read;
+                }
+                nextToHash++;
+            }
+        }
+    }
+
+    private static class Chunk {
+        private final int index;
+        private final long start;
+        private final long end;
+        private int attempts;
+
+        private Chunk(int index, long start, long end) {
+            this.index = index;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private static class PartialChunkException extends IOException {
+        private final long written;
+
+        private PartialChunkException(IOException cause, long written) {
+            super(cause.getMessage(), cause);
+            this.written = written;
+        }
+    }
+}
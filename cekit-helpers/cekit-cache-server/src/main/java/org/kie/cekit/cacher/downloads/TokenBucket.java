@@ -0,0 +1,86 @@
+package org.kie.cekit.cacher.downloads;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket holding up to one second of transfer. Callers take the tokens for what they transferred and are
+ * told how long to wait when the bucket runs dry, so a caller waits on its own thread and never holds the bucket
+ * while sleeping.
+ */
+public class TokenBucket {
+
+    private final LongSupplier clock;
+
+    // guarded by this
+    private long rate;
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * @param rate bytes per second, 0 for unlimited
+     */
+    public TokenBucket(long rate) {
+        this(rate, System::nanoTime);
+    }
+
+    TokenBucket(long rate, LongSupplier clock) {
+        this.clock = clock;
+        this.rate = Math.max(0, rate);
+        this.tokens = this.rate;
+        this.lastRefill = clock.getAsLong();
+    }
+
+    /**
+     * Takes the tokens for the given bytes, waiting if the bucket does not have enough of them.
+     *
+     * @param bytes transferred
+     * @throws InterruptedIOException if interrupted while waiting
+     */
+    public void acquire(long bytes) throws InterruptedIOException {
+        long wait = reserve(bytes);
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for bandwidth");
+            }
+        }
+    }
+
+    /**
+     * Takes the tokens for the given bytes, the bucket may go in debt.
+     *
+     * @param bytes transferred
+     * @return nanoseconds to wait until the debt is paid, 0 if there were enough tokens
+     */
+    synchronized long reserve(long bytes) {
+        if (rate == 0) {
+            return 0;
+        }
+        refill();
+        tokens -= bytes;
+        return tokens >= 0 ? 0 : (long) (-tokens * TimeUnit.SECONDS.toNanos(1) / rate);
+    }
+
+    /**
+     * @param rate bytes per second, 0 for unlimited
+     */
+    public synchronized void setRate(long rate) {
+        refill();
+        this.rate = Math.max(0, rate);
+        tokens = Math.min(tokens, this.rate);
+    }
+
+    public synchronized long getRate() {
+        return rate;
+    }
+
+    private void refill() {
+        long now = clock.getAsLong();
+        tokens = Math.min(rate, tokens + (now - lastRefill) * (double) rate / TimeUnit.SECONDS.toNanos(1));
+        lastRefill = now;
+    }
+}
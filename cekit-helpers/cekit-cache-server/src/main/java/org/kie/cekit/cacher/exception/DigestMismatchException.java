@@ -0,0 +1,13 @@
+package org.kie.cekit.cacher.exception;
+
+import java.io.IOException;
+
+/**
+ * The content received does not match the size or the digests declared by the client, it was discarded.
+ */
+public class DigestMismatchException extends IOException {
+
+    public DigestMismatchException(String message) {
+        super(message);
+    }
+}
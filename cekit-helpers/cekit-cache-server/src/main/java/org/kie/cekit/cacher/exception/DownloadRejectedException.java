@@ -0,0 +1,17 @@
+package org.kie.cekit.cacher.exception;
+
+import java.io.IOException;
+
+/**
+ * The upstream server refused the download, e.g. not found or forbidden, retrying it will not help.
+ */
+public class DownloadRejectedException extends IOException {
+
+    public DownloadRejectedException(String message) {
+        super(message);
+    }
+
+    public DownloadRejectedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,24 @@
+package org.kie.cekit.cacher.exception;
+
+import java.io.IOException;
+
+/**
+ * A resumable upload chunk does not start where the upload currently ends, the client must ask for the current
+ * offset and resend from there.
+ */
+public class UploadOffsetException extends IOException {
+
+    private final long offset;
+
+    public UploadOffsetException(long expected, long offset) {
+        super("Upload is at offset " + offset + ", chunk sent for offset " + expected);
+        this.offset = offset;
+    }
+
+    /**
+     * @return bytes received so far
+     */
+    public long getOffset() {
+        return offset;
+    }
+}
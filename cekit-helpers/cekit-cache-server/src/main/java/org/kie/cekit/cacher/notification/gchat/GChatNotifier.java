@@ -2,15 +2,15 @@ package org.kie.cekit.cacher.notification.gchat;
 
 import okhttp3.HttpUrl;
 import okhttp3.MediaType;
-import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
 import org.kie.cekit.cacher.notification.Notification;
+import org.kie.cekit.cacher.utils.HttpRequestHandler;
 
 import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
 import java.lang.invoke.MethodHandles;
-import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 @ApplicationScoped
@@ -19,6 +19,9 @@ public class GChatNotifier implements Notification {
     private Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
     private final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
 
+    @Inject
+    HttpRequestHandler httpRequestHandler;
+
     @Override
     public void send(String message, String webhook) {
 
@@ -27,11 +30,6 @@ public class GChatNotifier implements Notification {
 
         RequestBody body = RequestBody.create(JSON, jsonPayload);
 
-        OkHttpClient client = new OkHttpClient.Builder()
-                .callTimeout(30, TimeUnit.SECONDS)
-                .readTimeout(30, TimeUnit.SECONDS)
-                .build();
-
         HttpUrl.Builder httpBuilder = HttpUrl.parse(webhook).newBuilder();
         Request request = new Request.Builder()
                 .addHeader("content-type", "application/json; charset=UTF-8")
@@ -39,7 +37,7 @@ public class GChatNotifier implements Notification {
                 .url(httpBuilder.build())
                 .build();
 
-        try (Response response = client.newCall(request).execute()) {
+        try (Response response = httpRequestHandler.execute(request, HttpRequestHandler.Destination.API)) {
             if (response.code() == 200) {
                 log.fine("Google chat notification sent.");
             } else {
@@ -0,0 +1,58 @@
+package org.kie.cekit.cacher.objects;
+
+import java.util.List;
+
+/**
+ * Hit statistics of the persisted artifacts.
+ */
+public class AccessStats {
+
+    private final int artifacts;
+    private final int neverServed;
+    private final long hits;
+    private final long bytesServed;
+    private final List<ArtifactStats> stats;
+
+    public AccessStats(int artifacts, int neverServed, long hits, long bytesServed, List<ArtifactStats> stats) {
+        this.artifacts = artifacts;
+        this.neverServed = neverServed;
+        this.hits = hits;
+        this.bytesServed = bytesServed;
+        this.stats = stats;
+    }
+
+    /**
+     * @return number of persisted artifacts
+     */
+    public int getArtifacts() {
+        return artifacts;
+    }
+
+    /**
+     * @return number of persisted artifacts never served
+     */
+    public int getNeverServed() {
+        return neverServed;
+    }
+
+    /**
+     * @return downloads of all the artifacts together
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return bytes requested by all the downloads together
+     */
+    public long getBytesServed() {
+        return bytesServed;
+    }
+
+    /**
+     * @return per artifact statistics, in the requested order
+     */
+    public List<ArtifactStats> getStats() {
+        return stats;
+    }
+}
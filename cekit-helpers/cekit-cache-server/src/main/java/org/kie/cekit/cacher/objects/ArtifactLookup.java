@@ -0,0 +1,67 @@
+package org.kie.cekit.cacher.objects;
+
+/**
+ * Whether the artifact with a given digest is cached and where it can be downloaded from.
+ */
+public class ArtifactLookup {
+
+    private final String digest;
+    private final boolean exists;
+    private final String checksum;
+    private final String fileName;
+    private final long size;
+    private final String url;
+
+    private ArtifactLookup(String digest, boolean exists, String checksum, String fileName, long size, String url) {
+        this.digest = digest;
+        this.exists = exists;
+        this.checksum = checksum;
+        this.fileName = fileName;
+        this.size = size;
+        this.url = url;
+    }
+
+    public static ArtifactLookup found(String digest, String checksum, String fileName, long size, String url) {
+        return new ArtifactLookup(digest, true, checksum, fileName, size, url);
+    }
+
+    public static ArtifactLookup missing(String digest) {
+        return new ArtifactLookup(digest, false, "", "", -1, "");
+    }
+
+    /**
+     * @return the digest looked up, as sent
+     */
+    public String getDigest() {
+        return digest;
+    }
+
+    public boolean isExists() {
+        return exists;
+    }
+
+    /**
+     * @return the artifact md5 checksum, empty if it does not exist
+     */
+    public String getChecksum() {
+        return checksum;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * @return artifact size, -1 if it does not exist
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return download url of the artifact, empty if it does not exist
+     */
+    public String getUrl() {
+        return url;
+    }
+}
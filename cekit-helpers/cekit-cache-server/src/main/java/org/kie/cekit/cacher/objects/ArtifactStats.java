@@ -0,0 +1,56 @@
+package org.kie.cekit.cacher.objects;
+
+/**
+ * How much a single artifact is served.
+ */
+public class ArtifactStats {
+
+    private final String checksum;
+    private final String fileName;
+    private final long size;
+    private final long hits;
+    private final long bytesServed;
+    private final String lastAccess;
+
+    public ArtifactStats(String checksum, String fileName, long size, long hits, long bytesServed, String lastAccess) {
+        this.checksum = checksum;
+        this.fileName = fileName;
+        this.size = size;
+        this.hits = hits;
+        this.bytesServed = bytesServed;
+        this.lastAccess = lastAccess;
+    }
+
+    public String getChecksum() {
+        return checksum;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return downloads of the artifact, ranges included
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return bytes requested by those downloads
+     */
+    public long getBytesServed() {
+        return bytesServed;
+    }
+
+    /**
+     * @return when the artifact was last served, null if it never was
+     */
+    public String getLastAccess() {
+        return lastAccess;
+    }
+}
@@ -0,0 +1,81 @@
+package org.kie.cekit.cacher.objects;
+
+import java.util.Map;
+
+/**
+ * Ingest bandwidth limits, all in KB/s where 0 means unlimited.
+ * When updating, the fields left null keep their current value.
+ */
+public class BandwidthLimits {
+
+    private Integer ingestLimit;
+    private Map<String, Integer> hostLimits;
+    private Integer linkCapacity;
+    private Integer serveReservedPercent;
+    private Integer effectiveIngestLimit;
+
+    public BandwidthLimits() {
+    }
+
+    public BandwidthLimits(Integer ingestLimit, Map<String, Integer> hostLimits, Integer linkCapacity, Integer serveReservedPercent) {
+        this.ingestLimit = ingestLimit;
+        this.hostLimits = hostLimits;
+        this.linkCapacity = linkCapacity;
+        this.serveReservedPercent = serveReservedPercent;
+    }
+
+    /**
+     * @return max bandwidth of all the downloads together
+     */
+    public Integer getIngestLimit() {
+        return ingestLimit;
+    }
+
+    public void setIngestLimit(Integer ingestLimit) {
+        this.ingestLimit = ingestLimit;
+    }
+
+    /**
+     * @return max bandwidth of the downloads from each host
+     */
+    public Map<String, Integer> getHostLimits() {
+        return hostLimits;
+    }
+
+    public void setHostLimits(Map<String, Integer> hostLimits) {
+        this.hostLimits = hostLimits;
+    }
+
+    /**
+     * @return bandwidth of the node link, 0 if unknown
+     */
+    public Integer getLinkCapacity() {
+        return linkCapacity;
+    }
+
+    public void setLinkCapacity(Integer linkCapacity) {
+        this.linkCapacity = linkCapacity;
+    }
+
+    /**
+     * @return share of the link, in percent, kept free of downloads while artifacts are being served
+     */
+    public Integer getServeReservedPercent() {
+        return serveReservedPercent;
+    }
+
+    public void setServeReservedPercent(Integer serveReservedPercent) {
+        this.serveReservedPercent = serveReservedPercent;
+    }
+
+    /**
+     * @return the global limit in force right now, taking the serving reservation into account, read only
+     */
+    public Integer getEffectiveIngestLimit() {
+        return effectiveIngestLimit;
+    }
+
+    public void setEffectiveIngestLimit(Integer effectiveIngestLimit) {
+        this.effectiveIngestLimit = effectiveIngestLimit;
+    }
+}
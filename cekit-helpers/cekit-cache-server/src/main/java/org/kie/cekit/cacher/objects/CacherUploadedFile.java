@@ -1,33 +0,0 @@
-/*
- * Copyright 2021 Red Hat, Inc. and/or its affiliates.
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- *
- *      http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-package org.kie.cekit.cacher.objects;
-
-import java.io.InputStream;
-
-import javax.ws.rs.core.MediaType;
-
-import org.jboss.resteasy.annotations.jaxrs.FormParam;
-import org.jboss.resteasy.annotations.providers.multipart.PartType;
-
-public class CacherUploadedFile {
-
-    @FormParam("file")
-    @PartType(MediaType.APPLICATION_OCTET_STREAM)
-    public InputStream file;
-
-    @FormParam("fileName")
-    @PartType(MediaType.TEXT_PLAIN)
-    public String fileName;
-}
@@ -0,0 +1,94 @@
+package org.kie.cekit.cacher.objects;
+
+import java.util.Set;
+
+import org.kie.cekit.cacher.artifacts.EvictionPolicy;
+
+/**
+ * Snapshot of the artifacts directory usage against its quota, sizes in bytes.
+ */
+public class CapacityStatus {
+
+    private final long quota;
+    private final long used;
+    private final long reserved;
+    private final long highWatermark;
+    private final long lowWatermark;
+    private final EvictionPolicy policy;
+    private final Set<String> pinned;
+    private final int evicted;
+    private final long evictedBytes;
+
+    public CapacityStatus(long quota, long used, long reserved, long highWatermark, long lowWatermark, EvictionPolicy policy,
+                          Set<String> pinned, int evicted, long evictedBytes) {
+        this.quota = quota;
+        this.used = used;
+        this.reserved = reserved;
+        this.highWatermark = highWatermark;
+        this.lowWatermark = lowWatermark;
+        this.policy = policy;
+        this.pinned = pinned;
+        this.evicted = evicted;
+        this.evictedBytes = evictedBytes;
+    }
+
+    /**
+     * @return max size of the artifacts directory, 0 if there is no quota
+     */
+    public long getQuota() {
+        return quota;
+    }
+
+    /**
+     * @return size of the persisted artifacts
+     */
+    public long getUsed() {
+        return used;
+    }
+
+    /**
+     * @return size still to be written by the downloads in flight
+     */
+    public long getReserved() {
+        return reserved;
+    }
+
+    /**
+     * @return usage that triggers an eviction
+     */
+    public long getHighWatermark() {
+        return highWatermark;
+    }
+
+    /**
+     * @return usage an eviction brings the artifacts directory down to
+     */
+    public long getLowWatermark() {
+        return lowWatermark;
+    }
+
+    public EvictionPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return checksums of the artifacts that are never evicted
+     */
+    public Set<String> getPinned() {
+        return pinned;
+    }
+
+    /**
+     * @return artifacts evicted since the startup
+     */
+    public int getEvicted() {
+        return evicted;
+    }
+
+    /**
+     * @return bytes freed by evictions since the startup
+     */
+    public long getEvictedBytes() {
+        return evictedBytes;
+    }
+}
@@ -0,0 +1,75 @@
+package org.kie.cekit.cacher.objects;
+
+import java.util.List;
+
+/**
+ * Space saved by the chunk store, overall and per product.
+ */
+public class DedupReport {
+
+    private final boolean enabled;
+    private final int chunkedArtifacts;
+    private final int pendingArtifacts;
+    private final long logicalBytes;
+    private final long storedBytes;
+    private final List<ProductDedup> products;
+
+    public DedupReport(boolean enabled, int chunkedArtifacts, int pendingArtifacts, long logicalBytes, long storedBytes,
+                       List<ProductDedup> products) {
+        this.enabled = enabled;
+        this.chunkedArtifacts = chunkedArtifacts;
+        this.pendingArtifacts = pendingArtifacts;
+        this.logicalBytes = logicalBytes;
+        this.storedBytes = storedBytes;
+        this.products = products;
+    }
+
+    /**
+     * @return true if new artifacts are being chunked
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return number of artifacts stored as chunks
+     */
+    public int getChunkedArtifacts() {
+        return chunkedArtifacts;
+    }
+
+    /**
+     * @return number of artifacts matching the chunk patterns not chunked yet
+     */
+    public int getPendingArtifacts() {
+        return pendingArtifacts;
+    }
+
+    /**
+     * @return size of the chunked artifacts as they are served
+     */
+    public long getLogicalBytes() {
+        return logicalBytes;
+    }
+
+    /**
+     * @return size of the distinct chunks of all the chunked artifacts
+     */
+    public long getStoredBytes() {
+        return storedBytes;
+    }
+
+    /**
+     * @return logical bytes per stored byte, 1 means nothing was deduplicated
+     */
+    public double getRatio() {
+        return storedBytes == 0 ? 1 : (double) logicalBytes / storedBytes;
+    }
+
+    /**
+     * @return per product figures, largest savings first
+     */
+    public List<ProductDedup> getProducts() {
+        return products;
+    }
+}
@@ -0,0 +1,58 @@
+package org.kie.cekit.cacher.objects;
+
+import java.util.Map;
+
+import org.kie.cekit.cacher.downloads.DownloadPriority;
+
+/**
+ * Snapshot of the download scheduler queue.
+ */
+public class DownloadQueueStats {
+
+    private final int queued;
+    private final int active;
+    private final Map<DownloadPriority, Integer> queuedByPriority;
+    private final Map<String, Integer> activeByHost;
+    private final int maxConcurrent;
+    private final int maxPerHost;
+
+    public DownloadQueueStats(int queued, int active, Map<DownloadPriority, Integer> queuedByPriority,
+                              Map<String, Integer> activeByHost, int maxConcurrent, int maxPerHost) {
+        this.queued = queued;
+        this.active = active;
+        this.queuedByPriority = queuedByPriority;
+        this.activeByHost = activeByHost;
+        this.maxConcurrent = maxConcurrent;
+        this.maxPerHost = maxPerHost;
+    }
+
+    /**
+     * @return downloads waiting for a free slot
+     */
+    public int getQueued() {
+        return queued;
+    }
+
+    /**
+     * @return downloads running
+     */
+    public int getActive() {
+        return active;
+    }
+
+    public Map<DownloadPriority, Integer> getQueuedByPriority() {
+        return queuedByPriority;
+    }
+
+    public Map<String, Integer> getActiveByHost() {
+        return activeByHost;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public int getMaxPerHost() {
+        return maxPerHost;
+    }
+}
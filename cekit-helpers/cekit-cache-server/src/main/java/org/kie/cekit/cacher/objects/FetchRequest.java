@@ -0,0 +1,37 @@
+package org.kie.cekit.cacher.objects;
+
+/**
+ * A url to be fetched as part of a batch, along with the checksum its artifact is expected to have.
+ */
+public class FetchRequest {
+
+    private String url;
+    private String checksum;
+
+    public FetchRequest() {
+    }
+
+    public FetchRequest(String url, String checksum) {
+        this.url = url;
+        this.checksum = checksum;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    /**
+     * @return expected md5, sha1, sha256 or sha512 hexadecimal digest, null if not known
+     */
+    public String getChecksum() {
+        return checksum;
+    }
+
+    public void setChecksum(String checksum) {
+        this.checksum = checksum;
+    }
+}
@@ -0,0 +1,81 @@
+package org.kie.cekit.cacher.objects;
+
+/**
+ * Outcome of an artifact download, shared by every caller waiting on the same download.
+ */
+public class FetchResult {
+
+    public enum Status {
+        PERSISTED,
+        EXISTS,
+        /**
+         * The content was already persisted under another name, which now also resolves to it
+         */
+        ALIASED,
+        FAILED
+    }
+
+    private final Status status;
+    private final String fileName;
+    private final String checksum;
+    private final String message;
+
+    private FetchResult(Status status, String fileName, String checksum, String message) {
+        this.status = status;
+        this.fileName = fileName;
+        this.checksum = checksum;
+        this.message = message;
+    }
+
+    public static FetchResult persisted(String fileName, String checksum) {
+        return new FetchResult(Status.PERSISTED, fileName, checksum, "File " + fileName + " persisted.");
+    }
+
+    public static FetchResult exists(String fileName, String checksum) {
+        return new FetchResult(Status.EXISTS, fileName, checksum, "File " + fileName + " already exists.");
+    }
+
+    public static FetchResult aliased(String fileName, String checksum, String existing) {
+        return new FetchResult(Status.ALIASED, fileName, checksum, "File " + fileName + " persisted as an alias of " + existing + ".");
+    }
+
+    public static FetchResult failed(String fileName, String message) {
+        return new FetchResult(Status.FAILED, fileName, "", message);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * @return the artifact md5 checksum, empty if the download failed
+     */
+    public String getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * @return human readable result, as returned by the fetch endpoint
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    public boolean isSuccessful() {
+        return status != Status.FAILED;
+    }
+
+    @Override
+    public String toString() {
+        return "FetchResult{" +
+                "status=" + status +
+                ", fileName='" + fileName + '\'' +
+                ", checksum='" + checksum + '\'' +
+                ", message='" + message + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,87 @@
+package org.kie.cekit.cacher.objects;
+
+import java.util.Map;
+
+/**
+ * Snapshot of the shared http client connection pool and calls.
+ */
+public class HttpClientStats {
+
+    private final int connections;
+    private final int idleConnections;
+    private final int activeCalls;
+    private final long calls;
+    private final long failedCalls;
+    private final long connectionsOpened;
+    private final long connectionsReused;
+    private final Map<String, Long> callsByHost;
+    private final Map<String, Long> connectionsByProtocol;
+
+    public HttpClientStats(int connections, int idleConnections, int activeCalls, long calls, long failedCalls,
+                           long connectionsOpened, long connectionsReused, Map<String, Long> callsByHost,
+                           Map<String, Long> connectionsByProtocol) {
+        this.connections = connections;
+        this.idleConnections = idleConnections;
+        this.activeCalls = activeCalls;
+        this.calls = calls;
+        this.failedCalls = failedCalls;
+        this.connectionsOpened = connectionsOpened;
+        this.connectionsReused = connectionsReused;
+        this.callsByHost = callsByHost;
+        this.connectionsByProtocol = connectionsByProtocol;
+    }
+
+    /**
+     * @return connections on the pool, in use or idle
+     */
+    public int getConnections() {
+        return connections;
+    }
+
+    public int getIdleConnections() {
+        return idleConnections;
+    }
+
+    /**
+     * @return calls in flight
+     */
+    public int getActiveCalls() {
+        return activeCalls;
+    }
+
+    /**
+     * @return calls executed since startup
+     */
+    public long getCalls() {
+        return calls;
+    }
+
+    public long getFailedCalls() {
+        return failedCalls;
+    }
+
+    /**
+     * @return new connections established since startup
+     */
+    public long getConnectionsOpened() {
+        return connectionsOpened;
+    }
+
+    /**
+     * @return calls served by a pooled connection since startup
+     */
+    public long getConnectionsReused() {
+        return connectionsReused;
+    }
+
+    public Map<String, Long> getCallsByHost() {
+        return callsByHost;
+    }
+
+    /**
+     * @return connections acquired per protocol, e.g. http/1.1 or h2
+     */
+    public Map<String, Long> getConnectionsByProtocol() {
+        return connectionsByProtocol;
+    }
+}
@@ -0,0 +1,50 @@
+package org.kie.cekit.cacher.objects;
+
+/**
+ * Health and speed of an upstream mirror, as seen by the cacher.
+ */
+public class MirrorStatus {
+
+    private final String prefix;
+    private final boolean healthy;
+    private final long latency;
+    private final long throughput;
+    private final int failures;
+
+    public MirrorStatus(String prefix, boolean healthy, long latency, long throughput, int failures) {
+        this.prefix = prefix;
+        this.healthy = healthy;
+        this.latency = latency;
+        this.throughput = throughput;
+        this.failures = failures;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    /**
+     * @return smoothed time to the response headers, in milliseconds, -1 if never measured
+     */
+    public long getLatency() {
+        return latency;
+    }
+
+    /**
+     * @return smoothed download throughput in bytes per second, -1 if never measured
+     */
+    public long getThroughput() {
+        return throughput;
+    }
+
+    /**
+     * @return consecutive failures
+     */
+    public int getFailures() {
+        return failures;
+    }
+}
@@ -9,6 +9,9 @@ public class PlainArtifact {
     private String version;
     private String branch;
     private int crBuild;
+    private long hits;
+    private long bytesServed;
+    private String lastAccess;
 
     public PlainArtifact() {
     }
@@ -88,6 +91,39 @@ public class PlainArtifact {
         this.crBuild = crBuild;
     }
 
+    /**
+     * @return how many times the artifact was served
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    public void setHits(long hits) {
+        this.hits = hits;
+    }
+
+    /**
+     * @return bytes requested by the downloads of the artifact
+     */
+    public long getBytesServed() {
+        return bytesServed;
+    }
+
+    public void setBytesServed(long bytesServed) {
+        this.bytesServed = bytesServed;
+    }
+
+    /**
+     * @return when the artifact was last served, null if it never was
+     */
+    public String getLastAccess() {
+        return lastAccess;
+    }
+
+    public void setLastAccess(String lastAccess) {
+        this.lastAccess = lastAccess;
+    }
+
     @Override
     public String toString() {
         return "PlainArtifact{" +
@@ -98,6 +134,9 @@ public class PlainArtifact {
                 ", version='" + version + '\'' +
                 ", branch='" + branch + '\'' +
                 ", crBuild=" + crBuild +
+                ", hits=" + hits +
+                ", bytesServed=" + bytesServed +
+                ", lastAccess='" + lastAccess + '\'' +
                 '}';
     }
 }
@@ -0,0 +1,63 @@
+package org.kie.cekit.cacher.objects;
+
+/**
+ * How well the chunked artifacts of a single product deduplicate.
+ */
+public class ProductDedup {
+
+    private final String product;
+    private final int artifacts;
+    private final int chunks;
+    private final long logicalBytes;
+    private final long storedBytes;
+
+    public ProductDedup(String product, int artifacts, int chunks, long logicalBytes, long storedBytes) {
+        this.product = product;
+        this.artifacts = artifacts;
+        this.chunks = chunks;
+        this.logicalBytes = logicalBytes;
+        this.storedBytes = storedBytes;
+    }
+
+    /**
+     * @return file name prefix shared by the builds of the product, e.g. rhpam-kie-server
+     */
+    public String getProduct() {
+        return product;
+    }
+
+    /**
+     * @return number of chunked artifacts of the product
+     */
+    public int getArtifacts() {
+        return artifacts;
+    }
+
+    /**
+     * @return number of distinct chunks those artifacts are made of
+     */
+    public int getChunks() {
+        return chunks;
+    }
+
+    /**
+     * @return size of those artifacts as they are served
+     */
+    public long getLogicalBytes() {
+        return logicalBytes;
+    }
+
+    /**
+     * @return size of their distinct chunks, some of them can be shared with other products
+     */
+    public long getStoredBytes() {
+        return storedBytes;
+    }
+
+    /**
+     * @return logical bytes per stored byte, 1 means nothing was deduplicated
+     */
+    public double getRatio() {
+        return storedBytes == 0 ? 1 : (double) logicalBytes / storedBytes;
+    }
+}
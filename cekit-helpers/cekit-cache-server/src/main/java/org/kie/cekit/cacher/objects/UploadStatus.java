@@ -0,0 +1,54 @@
+package org.kie.cekit.cacher.objects;
+
+/**
+ * Progress of a resumable upload.
+ */
+public class UploadStatus {
+
+    private final String id;
+    private final String fileName;
+    private final long offset;
+    private final long length;
+    private final String result;
+
+    public UploadStatus(String id, String fileName, long offset, long length, String result) {
+        this.id = id;
+        this.fileName = fileName;
+        this.offset = offset;
+        this.length = length;
+        this.result = result;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * @return bytes received so far, the next chunk must start here
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return full upload size declared by the client
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * @return the persist outcome once every byte was received, null before
+     */
+    public String getResult() {
+        return result;
+    }
+
+    public boolean isCompleted() {
+        return result != null;
+    }
+}
@@ -2,8 +2,11 @@ package org.kie.cekit.cacher.properties;
 
 import java.io.InputStream;
 import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
 import java.util.logging.Logger;
@@ -14,6 +17,8 @@ import javax.inject.Inject;
 
 import com.fasterxml.jackson.core.Version;
 import okhttp3.Response;
+import org.kie.cekit.cacher.artifacts.EvictionPolicy;
+import org.kie.cekit.cacher.downloads.MirrorSelector;
 import org.kie.cekit.cacher.exception.RequiredParameterMissingException;
 import org.kie.cekit.cacher.properties.loader.CacherProperty;
 import org.kie.cekit.cacher.utils.BuildUtils;
@@ -106,6 +111,108 @@ public class CacherProperties {
     @CacherProperty(name = "org.kie.cekit.cacher.trust.all")
     boolean trustAll;
 
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.serve.max.concurrent")
+    String serveMaxConcurrent;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.download.max.concurrent")
+    String downloadMaxConcurrent;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.download.max.per.host")
+    String downloadMaxPerHost;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.download.host.limits")
+    String downloadHostLimits;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.download.max.segments")
+    String downloadMaxSegments;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.download.segment.threshold.mb")
+    String downloadSegmentThreshold;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.download.max.attempts")
+    String downloadMaxAttempts;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.fetch.batch.concurrency")
+    String fetchBatchConcurrency;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.http.max.idle.connections")
+    String httpMaxIdleConnections;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.http.connect.timeout")
+    String httpConnectTimeout;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.http.read.timeout.artifacts")
+    String httpReadTimeoutArtifacts;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.http.read.timeout.metadata")
+    String httpReadTimeoutMetadata;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.http.read.timeout.api")
+    String httpReadTimeoutApi;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.bandwidth.ingest.limit.kb")
+    String bandwidthIngestLimit;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.bandwidth.host.limits.kb")
+    String bandwidthHostLimits;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.bandwidth.link.capacity.kb")
+    String bandwidthLinkCapacity;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.bandwidth.serve.reserved.percent")
+    String bandwidthServeReservedPercent;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.mirrors")
+    String mirrors;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.capacity.quota.mb")
+    String capacityQuota;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.capacity.high.watermark.percent")
+    String capacityHighWatermark;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.capacity.low.watermark.percent")
+    String capacityLowWatermark;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.capacity.eviction.policy")
+    String capacityEvictionPolicy;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.chunks.enabled")
+    boolean chunksEnabled;
+
+    @Inject
+    @CacherProperty(name = "org.kie.cekit.cacher.chunks.patterns")
+    String chunksPatterns;
+
+    @Inject
+    HttpRequestHandler httpRequestHandler;
+
+    @Inject
+    MirrorSelector mirrorSelector;
+
     /**
      * Value will set during runtime while CR or Nightly build watcher is run, it comes from
      * the build properties file from the property "KIE_VERSION"
@@ -295,6 +402,42 @@ public class CacherProperties {
         return getCacherArtifactsDir() + "/tmp";
     }
 
+    /**
+     * Holds the content of the uploads in progress, resumable ones along with their state
+     *
+     * @return uploads location, under the tmp dir
+     */
+    public String getUploadsDir() {
+        return getArtifactsTmpDir() + "/uploads";
+    }
+
+    /**
+     * Holds the artifacts metadata journal and its snapshots
+     *
+     * @return cacher metadata dir location
+     */
+    public String getMetadataDir() {
+        return cacherDataDir + "/metadata";
+    }
+
+    /**
+     * Holds the state of the partial downloads found on the tmp dir
+     *
+     * @return partial downloads state location
+     */
+    public String getDownloadsStateDir() {
+        return getMetadataDir() + "/downloads";
+    }
+
+    /**
+     * Holds the content-defined chunks of the deduplicated artifacts, outside the artifacts dir
+     *
+     * @return chunk store location
+     */
+    public String getChunksDir() {
+        return cacherDataDir + "/chunks";
+    }
+
     /**
      * @return cacher git repository base dir
      */
@@ -306,11 +449,233 @@ public class CacherProperties {
         return trustAll;
     }
 
+    /**
+     * @return max number of artifacts being streamed at the same time, defaults to 64
+     */
+    public int serveMaxConcurrent() {
+        return intProperty("org.kie.cekit.cacher.serve.max.concurrent", serveMaxConcurrent, 64);
+    }
+
+    /**
+     * @return max number of artifacts being downloaded at the same time, defaults to 8
+     */
+    public int downloadMaxConcurrent() {
+        return intProperty("org.kie.cekit.cacher.download.max.concurrent", downloadMaxConcurrent, 8);
+    }
+
+    /**
+     * @return max number of artifacts being downloaded from the same host at the same time, defaults to 4
+     */
+    public int downloadMaxPerHost() {
+        return intProperty("org.kie.cekit.cacher.download.max.per.host", downloadMaxPerHost, 4);
+    }
+
+    /**
+     * @return max number of concurrent range requests used to download a single artifact, defaults to 4.
+     * 1 disables segmented downloads.
+     */
+    public int downloadMaxSegments() {
+        return intProperty("org.kie.cekit.cacher.download.max.segments", downloadMaxSegments, 4);
+    }
+
+    /**
+     * @return artifacts from this size on, in bytes, are downloaded in segments, defaults to 64MB
+     */
+    public long downloadSegmentThreshold() {
+        return intProperty("org.kie.cekit.cacher.download.segment.threshold.mb", downloadSegmentThreshold, 64) * 1024L * 1024L;
+    }
+
+    /**
+     * @return number of attempts to complete a download, resuming where the previous one stopped, defaults to 6
+     */
+    public int downloadMaxAttempts() {
+        return intProperty("org.kie.cekit.cacher.download.max.attempts", downloadMaxAttempts, 6);
+    }
+
+    /**
+     * @return downloads of a fetch batch queued at the same time, defaults to 4
+     */
+    public int fetchBatchConcurrency() {
+        return Math.max(1, intProperty("org.kie.cekit.cacher.fetch.batch.concurrency", fetchBatchConcurrency, 4));
+    }
+
+    /**
+     * @return max idle connections kept on the shared http connection pool, defaults to 16
+     */
+    public int httpMaxIdleConnections() {
+        return intProperty("org.kie.cekit.cacher.http.max.idle.connections", httpMaxIdleConnections, 16);
+    }
+
+    /**
+     * @return upstream connect timeout, in seconds, defaults to 20
+     */
+    public int httpConnectTimeout() {
+        return intProperty("org.kie.cekit.cacher.http.connect.timeout", httpConnectTimeout, 20);
+    }
+
+    /**
+     * Read timeout of each destination class. For the apis it also bounds the whole call.
+     *
+     * @param destination traffic class
+     * @return read timeout in seconds, defaults to 60 for artifacts and 30 for metadata and apis
+     */
+    public int httpReadTimeout(HttpRequestHandler.Destination destination) {
+        switch (destination) {
+            case ARTIFACTS:
+                return intProperty("org.kie.cekit.cacher.http.read.timeout.artifacts", httpReadTimeoutArtifacts, 60);
+            case METADATA:
+                return intProperty("org.kie.cekit.cacher.http.read.timeout.metadata", httpReadTimeoutMetadata, 30);
+            default:
+                return intProperty("org.kie.cekit.cacher.http.read.timeout.api", httpReadTimeoutApi, 30);
+        }
+    }
+
+    /**
+     * Per host overrides of {@link #downloadMaxPerHost()}, configured as a comma separated list of host=limit,
+     * e.g. download.devel.redhat.com=2,repo1.maven.org=6
+     *
+     * @return host and its limit
+     */
+    public Map<String, Integer> downloadHostLimits() {
+        return hostValues("org.kie.cekit.cacher.download.host.limits", downloadHostLimits, downloadMaxPerHost());
+    }
+
+    /**
+     * @return max ingest bandwidth of all the downloads together, in KB/s, defaults to 0, unlimited
+     */
+    public int bandwidthIngestLimit() {
+        return intProperty("org.kie.cekit.cacher.bandwidth.ingest.limit.kb", bandwidthIngestLimit, 0);
+    }
+
+    /**
+     * Per host ingest bandwidth limits, configured as a comma separated list of host=KB/s,
+     * e.g. download.devel.redhat.com=20480
+     *
+     * @return host and its limit in KB/s
+     */
+    public Map<String, Integer> bandwidthHostLimits() {
+        return hostValues("org.kie.cekit.cacher.bandwidth.host.limits.kb", bandwidthHostLimits, 0);
+    }
+
+    /**
+     * @return bandwidth of the node link, in KB/s, needed to reserve a share for serving, defaults to 0, unknown
+     */
+    public int bandwidthLinkCapacity() {
+        return intProperty("org.kie.cekit.cacher.bandwidth.link.capacity.kb", bandwidthLinkCapacity, 0);
+    }
+
+    /**
+     * @return share of the link, in percent, kept free of downloads while artifacts are being served, defaults to 0
+     */
+    public int bandwidthServeReservedPercent() {
+        return intProperty("org.kie.cekit.cacher.bandwidth.serve.reserved.percent", bandwidthServeReservedPercent, 0);
+    }
+
+    /**
+     * Groups of equivalent url prefixes, the groups are separated by ; and the prefixes of a group by a comma, e.g.
+     * https://download.devel.redhat.com/rcm-guest/,https://mirror.example.com/rcm-guest/;https://repo1.maven.org/maven2/,https://repo.maven.apache.org/maven2/
+     *
+     * @return the mirror groups, empty if none is configured
+     */
+    public List<List<String>> mirrorGroups() {
+        List<List<String>> groups = new ArrayList<>();
+        if (null == mirrors || mirrors.trim().isEmpty()) {
+            return groups;
+        }
+        for (String group : mirrors.split(";")) {
+            List<String> prefixes = Arrays.stream(group.split(","))
+                    .map(String::trim)
+                    .filter(prefix -> !prefix.isEmpty())
+                    .collect(Collectors.toList());
+            if (prefixes.size() > 1) {
+                groups.add(prefixes);
+            } else {
+                log.warning("Mirror group [" + group + "] has less than two prefixes, ignoring it");
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * @return max size of the artifacts directory, in bytes, defaults to 0, no quota
+     */
+    public long capacityQuota() {
+        return intProperty("org.kie.cekit.cacher.capacity.quota.mb", capacityQuota, 0) * 1024L * 1024L;
+    }
+
+    /**
+     * @return share of the quota, in percent, that triggers an eviction, defaults to 90
+     */
+    public int capacityHighWatermark() {
+        return intProperty("org.kie.cekit.cacher.capacity.high.watermark.percent", capacityHighWatermark, 90);
+    }
+
+    /**
+     * @return share of the quota, in percent, an eviction brings the artifacts directory down to, defaults to 75
+     */
+    public int capacityLowWatermark() {
+        return intProperty("org.kie.cekit.cacher.capacity.low.watermark.percent", capacityLowWatermark, 75);
+    }
+
+    /**
+     * @return the order in which artifacts are evicted, defaults to {@link EvictionPolicy#LRU}
+     */
+    public EvictionPolicy capacityEvictionPolicy() {
+        if (null == capacityEvictionPolicy || capacityEvictionPolicy.trim().isEmpty()) {
+            return EvictionPolicy.LRU;
+        }
+        try {
+            return EvictionPolicy.valueOf(capacityEvictionPolicy.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            log.warning("Invalid value [" + capacityEvictionPolicy + "] for property org.kie.cekit.cacher.capacity.eviction.policy, using the default LRU");
+            return EvictionPolicy.LRU;
+        }
+    }
+
+    /**
+     * @return true if the artifacts matching {@link #chunksPatterns()} are to be deduplicated on the chunk store
+     */
+    public boolean isChunksEnabled() {
+        return chunksEnabled;
+    }
+
+    /**
+     * @return glob patterns of the file names to be chunked, defaults to *.zip
+     */
+    public List<String> chunksPatterns() {
+        if (null == chunksPatterns || chunksPatterns.trim().isEmpty()) {
+            return Arrays.asList("*.zip");
+        }
+        return Arrays.stream(chunksPatterns.split(","))
+                .map(String::trim)
+                .filter(pattern -> !pattern.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Parses a comma separated list of host=value.
+     */
+    private Map<String, Integer> hostValues(String name, String value, int defaultValue) {
+        Map<String, Integer> values = new HashMap<>();
+        if (null == value || value.trim().isEmpty()) {
+            return values;
+        }
+        for (String entry : value.split(",")) {
+            String[] hostValue = entry.split("=");
+            if (hostValue.length != 2 || hostValue[0].trim().isEmpty()) {
+                log.warning("Invalid entry [" + entry + "] for property " + name + ", ignoring it");
+                continue;
+            }
+            values.put(hostValue[0].trim().toLowerCase(), intProperty(name, hostValue[1], defaultValue));
+        }
+        return values;
+    }
+
     /**
      * @return all cacher directories
      */
     public List<String> getCacherDirs() {
-        return Arrays.asList(cacherDataDir, getCacherArtifactsDir(), getArtifactsTmpDir(), getGitDir());
+        return Arrays.asList(cacherDataDir, getCacherArtifactsDir(), getArtifactsTmpDir(), getUploadsDir(), getMetadataDir(), getDownloadsStateDir(), getChunksDir(), getGitDir());
     }
 
     public String getKieVersion() {
@@ -338,7 +703,22 @@ public class CacherProperties {
 
 
     /**
-     * fetch the RHPAM build properties file.
+     * Parses a numeric property, falling back to the default value if it is not set or invalid.
+     */
+    private int intProperty(String name, String value, int defaultValue) {
+        if (null == value || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            log.warning("Invalid value [" + value + "] for property " + name + ", using the default " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * fetch the RHPAM build properties file, from the mirrors of the url if it has any.
      *
      * @param url
      * @return parsed properties from target url
@@ -347,19 +727,27 @@ public class CacherProperties {
         log.info("Trying to get product properties file from " + url);
         Properties p = new Properties();
 
-        try (Response response = HttpRequestHandler.executeHttpCall(url, trustAllCerts())) {
-            if (response.code() == 404) {
-                log.info("Property file not found... url -> " + url);
+        for (String candidate : mirrorSelector.candidates(url)) {
+            try (Response response = httpRequestHandler.executeHttpCall(candidate, HttpRequestHandler.Destination.METADATA)) {
+                if (response.code() == 404) {
+                    log.info("Property file not found... url -> " + candidate);
+                    continue;
+                }
+                if (response.code() >= 500) {
+                    log.warning("Failed to get the property file from " + candidate + ", status " + response.code());
+                    mirrorSelector.recordFailure(candidate);
+                    continue;
+                }
+                try (final InputStream stream = Objects.requireNonNull(response.body()).byteStream()) {
+                    p.load(stream);
+                }
                 return p;
+            } catch (final Exception e) {
+                log.warning("Failed to get the property file from " + candidate + ": " + e.getMessage());
+                mirrorSelector.recordFailure(candidate);
             }
-            try (final InputStream stream = Objects.requireNonNull(response.body()).byteStream()) {
-                p.load(stream);
-            }
-        } catch (final Exception e) {
-            e.printStackTrace();
         }
 
         return p;
     }
 }
-
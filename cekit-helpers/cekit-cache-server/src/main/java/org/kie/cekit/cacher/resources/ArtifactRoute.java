@@ -0,0 +1,190 @@
+package org.kie.cekit.cacher.resources;
+
+import java.lang.invoke.MethodHandles;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.ws.rs.core.MediaType;
+
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import org.kie.cekit.cacher.artifacts.AccessTracker;
+import org.kie.cekit.cacher.artifacts.ArtifactIndex;
+import org.kie.cekit.cacher.artifacts.DigestAlgorithm;
+import org.kie.cekit.cacher.artifacts.IndexedArtifact;
+import org.kie.cekit.cacher.properties.CacherProperties;
+import org.kie.cekit.cacher.utils.ArtifactHeaders;
+import org.kie.cekit.cacher.utils.ByteRange;
+
+/**
+ * Non-blocking serving path for GET and HEAD /resource/{checksum}.
+ * Files are streamed from the event loop using sendfile, so no worker thread is held during the transfer.
+ * Artifacts can be requested by any of their digests, and {checksum}.{md5|sha1|sha256|sha512} sidecars are
+ * answered from the digests stored on the index.
+ * Requests that can not be served here, unknown checksums, multi-range requests and downloads of artifacts kept on the
+ * {@link org.kie.cekit.cacher.artifacts.ChunkStore}, which have no file to send, are passed along to
+ * {@link CacherResource}.
+ */
+@ApplicationScoped
+public class ArtifactRoute {
+
+    private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    @Inject
+    ArtifactIndex artifactIndex;
+
+    @Inject
+    CacherProperties cacherProperties;
+
+    @Inject
+    AccessTracker accessTracker;
+
+    void init(@Observes Router router) {
+        router.get("/resource/:checksum").handler(this::serve);
+        router.head("/resource/:checksum").handler(this::serve);
+    }
+
+    void serve(RoutingContext ctx) {
+        String checksum = ctx.pathParam("checksum");
+        Optional<IndexedArtifact> artifact = artifactIndex.resolve(checksum);
+        if (!artifact.isPresent()) {
+            if (!serveSidecar(ctx, checksum)) {
+                ctx.next();
+            }
+            return;
+        }
+
+        HttpServerRequest request = ctx.request();
+        HttpServerResponse response = ctx.response();
+        long size = artifact.get().getSize();
+        Optional<List<ByteRange>> ranges = ByteRange.ifRangeMatches(request.getHeader("If-Range"), artifact.get().getChecksum())
+                ? ByteRange.parse(request.getHeader("Range"), size)
+                : Optional.empty();
+
+        if ((ranges.isPresent() && ranges.get().size() > 1)
+                || (artifact.get().isChunked() && !HttpMethod.HEAD.equals(request.method()))) {
+            // multipart/byteranges responses and chunked artifacts are streamed by the REST resource
+            ctx.next();
+            return;
+        }
+
+        ArtifactHeaders.headers(artifact.get()).forEach(response::putHeader);
+        if (ArtifactHeaders.notModified(request.getHeader("If-None-Match"), request.getHeader("If-Modified-Since"), artifact.get())) {
+            response.setStatusCode(304).end();
+            return;
+        }
+
+        if (HttpMethod.HEAD.equals(request.method())) {
+            ArtifactHeaders.digestHeaders(artifact.get()).forEach(response::putHeader);
+            response.putHeader("Content-Type", MediaType.APPLICATION_OCTET_STREAM)
+                    .putHeader("Content-Length", String.valueOf(size))
+                    .putHeader("Content-Disposition", "attachment;filename=" + artifact.get().getFileName())
+                    .end();
+            return;
+        }
+
+        if (ranges.isPresent() && ranges.get().isEmpty()) {
+            log.info("Range [" + request.getHeader("Range") + "] not satisfiable for " + checksum);
+            response.setStatusCode(416)
+                    .putHeader("Content-Range", ByteRange.unsatisfiedContentRange(size))
+                    .end();
+            return;
+        }
+
+        if (!acquire()) {
+            log.warning("Too many concurrent downloads, rejecting request for " + checksum);
+            response.setStatusCode(503)
+                    .putHeader("Retry-After", "5")
+                    .end();
+            return;
+        }
+
+        long offset = 0;
+        long length = size;
+        if (ranges.isPresent()) {
+            ByteRange range = ranges.get().get(0);
+            offset = range.getStart();
+            length = range.getLength();
+            response.setStatusCode(206)
+                    .putHeader("Content-Range", range.contentRange(size));
+        }
+        response.putHeader("Content-Type", MediaType.APPLICATION_OCTET_STREAM)
+                .putHeader("Content-Disposition", "attachment;filename=" + artifact.get().getFileName());
+
+        log.info("File download successfully requested: " + artifact.get().getPath() + (ranges.isPresent() ? " range " + request.getHeader("Range") : ""));
+        accessTracker.recordAccess(artifact.get().getChecksum(), length);
+
+        response.sendFile(artifact.get().getPath().toString(), offset, length).onComplete(result -> {
+            release();
+            if (result.failed()) {
+                log.fine("Transfer of " + checksum + " interrupted: " + result.cause().getMessage());
+            }
+        });
+    }
+
+    /**
+     * Answers a checksum sidecar request, e.g. {checksum}.sha256, with the stored digest.
+     *
+     * @return false if the request is not for a known sidecar
+     */
+    private boolean serveSidecar(RoutingContext ctx, String name) {
+        int dot = name.lastIndexOf('.');
+        if (dot <= 0) {
+            return false;
+        }
+        Optional<DigestAlgorithm> algorithm = DigestAlgorithm.fromExtension(name.substring(dot + 1));
+        Optional<String> digest = algorithm.flatMap(a -> artifactIndex.resolve(name.substring(0, dot))
+                .flatMap(artifact -> artifact.getDigest(a)));
+        if (!digest.isPresent()) {
+            return false;
+        }
+        HttpServerResponse response = ctx.response()
+                .putHeader("Content-Type", MediaType.TEXT_PLAIN)
+                .putHeader("Cache-Control", ArtifactHeaders.CACHE_CONTROL)
+                .putHeader("ETag", ArtifactHeaders.etag(digest.get()));
+        if (HttpMethod.HEAD.equals(ctx.request().method())) {
+            response.putHeader("Content-Length", String.valueOf(digest.get().length())).end();
+        } else {
+            response.end(digest.get());
+        }
+        return true;
+    }
+
+    /**
+     * Takes a slot for a download, the serve.max.concurrent cap is shared with the downloads streamed by
+     * {@link CacherResource}.
+     *
+     * @return false if the cap is reached, the request must then be rejected
+     */
+    boolean acquire() {
+        if (inFlight.incrementAndGet() > cacherProperties.serveMaxConcurrent()) {
+            inFlight.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Frees the slot taken by {@link #acquire()} once the download completes or fails.
+     */
+    void release() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * @return number of artifacts being streamed right now, by this route or by {@link CacherResource}
+     */
+    public int inFlight() {
+        return inFlight.get();
+    }
+}
@@ -1,10 +1,39 @@
 package org.kie.cekit.cacher.resources;
 
-import org.jboss.resteasy.annotations.providers.multipart.MultipartForm;
-import org.jboss.resteasy.plugins.providers.multipart.MultipartFormDataInput;
-import org.kie.cekit.cacher.objects.CacherUploadedFile;
+import org.kie.cekit.cacher.artifacts.AccessTracker;
+import org.kie.cekit.cacher.artifacts.ArtifactIndex;
+import org.kie.cekit.cacher.artifacts.CapacityManager;
+import org.kie.cekit.cacher.artifacts.ChunkStore;
+import org.kie.cekit.cacher.artifacts.FileNameIndex;
+import org.kie.cekit.cacher.artifacts.IndexedArtifact;
+import org.kie.cekit.cacher.downloads.BandwidthLimiter;
+import org.kie.cekit.cacher.downloads.DownloadPriority;
+import org.kie.cekit.cacher.downloads.DownloadScheduler;
+import org.kie.cekit.cacher.downloads.FetchBatch;
+import org.kie.cekit.cacher.downloads.FetchBatches;
+import org.kie.cekit.cacher.downloads.FetchJob;
+import org.kie.cekit.cacher.downloads.FetchJobs;
+import org.kie.cekit.cacher.downloads.MirrorSelector;
+import org.kie.cekit.cacher.exception.DigestMismatchException;
+import org.kie.cekit.cacher.exception.UploadOffsetException;
+import org.kie.cekit.cacher.objects.AccessStats;
+import org.kie.cekit.cacher.objects.ArtifactLookup;
+import org.kie.cekit.cacher.objects.BandwidthLimits;
+import org.kie.cekit.cacher.objects.CapacityStatus;
+import org.kie.cekit.cacher.objects.DedupReport;
+import org.kie.cekit.cacher.objects.DownloadQueueStats;
+import org.kie.cekit.cacher.objects.FetchRequest;
+import org.kie.cekit.cacher.objects.HttpClientStats;
+import org.kie.cekit.cacher.objects.MirrorStatus;
 import org.kie.cekit.cacher.objects.PlainArtifact;
+import org.kie.cekit.cacher.objects.UploadStatus;
+import org.kie.cekit.cacher.uploads.UploadExpectation;
+import org.kie.cekit.cacher.uploads.UploadManager;
+import org.kie.cekit.cacher.utils.ArtifactHeaders;
+import org.kie.cekit.cacher.utils.ByteRange;
 import org.kie.cekit.cacher.utils.CacherUtils;
+import org.kie.cekit.cacher.utils.HttpRequestHandler;
+import org.kie.cekit.cacher.utils.MultipartByteRanges;
 import org.kie.cekit.cacher.utils.UrlUtils;
 
 import javax.annotation.Resource;
@@ -12,23 +41,40 @@ import javax.inject.Inject;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
+import javax.ws.rs.HEAD;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.PATCH;
 import javax.ws.rs.POST;
+import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriInfo;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.lang.invoke.MethodHandles;
+import java.net.URI;
 import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 import java.util.Optional;
 import java.util.logging.Logger;
@@ -38,44 +84,369 @@ public class CacherResource {
 
     private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
 
+    private static final String UPLOAD_OFFSET = "Upload-Offset";
+    private static final String UPLOAD_LENGTH = UploadExpectation.LENGTH_HEADER;
+    private static final int UNPROCESSABLE_ENTITY = 422;
+
     @Inject
     CacherUtils cacherUtils;
 
+    @Inject
+    ArtifactIndex artifactIndex;
+
+    @Inject
+    DownloadScheduler downloadScheduler;
+
+    @Inject
+    FetchJobs fetchJobs;
+
+    @Inject
+    FetchBatches fetchBatches;
+
+    @Inject
+    HttpRequestHandler httpRequestHandler;
+
+    @Inject
+    BandwidthLimiter bandwidthLimiter;
+
+    @Inject
+    MirrorSelector mirrorSelector;
+
+    @Inject
+    CapacityManager capacityManager;
+
+    @Inject
+    AccessTracker accessTracker;
+
+    @Inject
+    ChunkStore chunkStore;
+
+    @Inject
+    UploadManager uploadManager;
+
+    @Inject
+    ArtifactRoute artifactRoute;
+
+    /**
+     * Fetch the given url
+     *
+     * @param url   artifact url, url encoded
+     * @param async if true, the fetch is queued as a job and its id is returned right away with 202 Accepted,
+     *              the job can be followed on /resource/jobs/{id}. Otherwise the request waits for the download.
+     */
     @POST
     @Produces(MediaType.TEXT_PLAIN)
     @Path("/fetch/{url}")
-    public Response fetch(@PathParam("url") String url) throws UnsupportedEncodingException {
+    public Response fetch(@PathParam("url") String url, @QueryParam("async") boolean async) throws UnsupportedEncodingException {
 
         url = URLDecoder.decode(url, "UTF-8");
 
-        StringBuilder responseMessage = new StringBuilder();
-        if (UrlUtils.isUrlValid(url)) {
-            responseMessage.append(cacherUtils.fetchFile(url, Optional.empty(), 0));
-        } else {
-            responseMessage.append("Failed to fetch artifact, please check the url and try again");
+        if (!UrlUtils.isUrlValid(url)) {
+            return Response.ok("Failed to fetch artifact, please check the url and try again").build();
+        }
+        FetchJob job = fetchJobs.submit(url, DownloadPriority.INTERACTIVE);
+        if (async) {
+            return Response.accepted(job.getId())
+                    .location(URI.create("/resource/jobs/" + job.getId()))
+                    .build();
+        }
+        return Response.ok(job.result().join().getMessage()).build();
+    }
+
+    /**
+     * Fetches a list of urls, e.g. to seed a new node. The batch id is returned right away with 202 Accepted and the
+     * batch can be followed on /resource/batches/{id}. Urls already cached are skipped.
+     *
+     * @param requests    urls to be fetched, each one with an optional expected checksum
+     * @param concurrency max urls of the batch downloaded at a time, org.kie.cekit.cacher.fetch.batch.concurrency
+     *                    if not set
+     */
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/fetch")
+    public Response fetchBatch(List<FetchRequest> requests, @QueryParam("concurrency") int concurrency) {
+        try {
+            FetchBatch batch = fetchBatches.submit(requests, concurrency);
+            return Response.accepted(batch)
+                    .location(URI.create("/resource/batches/" + batch.getId()))
+                    .build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+        }
+    }
+
+    /**
+     * @return active and recent fetch batches, newest first
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/batches")
+    public List<FetchBatch> listBatches() {
+        return fetchBatches.list();
+    }
+
+    /**
+     * @param id batch id
+     * @return the batch progress and, for each url, its state, checksum, result message and timing
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/batches/{id}")
+    public Response getBatch(@PathParam("id") String id) {
+        return fetchBatches.get(id)
+                .map(batch -> Response.ok(batch).build())
+                .orElse(Response.status(Response.Status.NOT_FOUND).build());
+    }
+
+    /**
+     * @return active and recent fetch jobs, newest first
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/jobs")
+    public List<FetchJob> listJobs() {
+        return fetchJobs.list();
+    }
+
+    /**
+     * @param id job id
+     * @return the job state, bytes transferred, total size, throughput in bytes per second, ETA in seconds and,
+     * once completed, the artifact checksum
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/jobs/{id}")
+    public Response getJob(@PathParam("id") String id) {
+        return fetchJobs.get(id)
+                .map(job -> Response.ok(job).build())
+                .orElse(Response.status(Response.Status.NOT_FOUND).build());
+    }
+
+    /**
+     * @return the download queue depth, per priority, and the running downloads, per host
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/downloads")
+    public DownloadQueueStats downloadQueue() {
+        return downloadScheduler.stats();
+    }
+
+    /**
+     * @return the upstream http connection pool usage, connections opened and reused and calls per host
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/http")
+    public HttpClientStats httpClient() {
+        return httpRequestHandler.stats();
+    }
+
+    /**
+     * @return the configured upstream mirrors with their health, latency and throughput
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/mirrors")
+    public List<MirrorStatus> mirrors() {
+        return mirrorSelector.status();
+    }
+
+    /**
+     * @return the download bandwidth limits, in KB/s, 0 means unlimited
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/bandwidth")
+    public BandwidthLimits bandwidth() {
+        return bandwidthLimiter.limits();
+    }
+
+    /**
+     * Changes the download bandwidth limits at runtime, the fields not sent keep their value.
+     * The changes are not persisted, the properties are used again after a restart.
+     *
+     * @param limits new limits, in KB/s
+     */
+    @PUT
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/bandwidth")
+    public Response updateBandwidth(BandwidthLimits limits) {
+        if (limits == null) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Missing bandwidth limits.").build();
+        }
+        try {
+            return Response.ok(bandwidthLimiter.update(limits)).build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+        }
+    }
+
+    /**
+     * @param order how the artifacts are sorted: hits (default), bytes, recent or cold
+     * @param limit max number of artifacts listed, all of them if not set
+     * @return how much each artifact is served, along with the totals
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/stats")
+    public Response stats(@QueryParam("order") String order, @QueryParam("limit") int limit) {
+        AccessTracker.Order statsOrder;
+        try {
+            statsOrder = AccessTracker.Order.of(order);
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("Invalid order [" + order + "], valid values are hits, bytes, recent and cold.")
+                    .build();
         }
-        return Response.ok(responseMessage.toString()).build();
+        AccessStats stats = accessTracker.stats(statsOrder, limit);
+        return Response.ok(stats).build();
     }
 
+    /**
+     * @return the artifacts directory usage against its quota, along with the pinned artifacts
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/capacity")
+    public CapacityStatus capacity() {
+        return capacityManager.status();
+    }
+
+    /**
+     * Evicts artifacts down to the low watermark right away, does nothing if no quota is configured
+     */
+    @POST
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/capacity/evict")
+    public CapacityStatus evict() {
+        capacityManager.evictNow();
+        return capacityManager.status();
+    }
+
+    /**
+     * @return how much space the chunk store saves, overall and per product
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/chunks")
+    public DedupReport chunks() {
+        return chunkStore.report();
+    }
+
+    /**
+     * Protects the artifact from evictions
+     *
+     * @param checksum artifact md5, sha1, sha256 or sha512 digest
+     */
+    @PUT
+    @Produces(MediaType.TEXT_PLAIN)
+    @Path("/pin/{checksum}")
+    public Response pin(@PathParam("checksum") String checksum) {
+        return capacityManager.pin(checksum)
+                .map(artifact -> Response.ok("File " + artifact.getFileName() + " pinned.").build())
+                .orElse(Response.status(Response.Status.NOT_FOUND).build());
+    }
+
+    /**
+     * @param checksum artifact md5, sha1, sha256 or sha512 digest
+     */
+    @DELETE
+    @Produces(MediaType.TEXT_PLAIN)
+    @Path("/pin/{checksum}")
+    public Response unpin(@PathParam("checksum") String checksum) {
+        if (capacityManager.unpin(checksum)) {
+            return Response.ok("File " + checksum + " unpinned.").build();
+        }
+        return Response.status(Response.Status.NOT_FOUND).build();
+    }
+
+    /**
+     * Download the artifact, supports single and multiple byte ranges (RFC 7233) so interrupted downloads can be
+     * resumed and large artifacts can be fetched over several connections.
+     * Artifacts never change, the checksum is sent as ETag and conditional requests are answered with 304.
+     *
+     * @param checksum        artifact md5, sha1, sha256 or sha512 digest
+     * @param range           optional Range header
+     * @param ifRange         optional If-Range header, the range is only honored if it carries the artifact checksum
+     * @param ifNoneMatch     optional If-None-Match header
+     * @param ifModifiedSince optional If-Modified-Since header
+     */
     @GET
     @Produces(MediaType.APPLICATION_OCTET_STREAM)
     @Path("/{checksum}")
-    public Response getArtifact(@PathParam("checksum") String checksum) {
+    public Response getArtifact(@PathParam("checksum") String checksum,
+                                @HeaderParam("Range") String range,
+                                @HeaderParam("If-Range") String ifRange,
+                                @HeaderParam("If-None-Match") String ifNoneMatch,
+                                @HeaderParam("If-Modified-Since") String ifModifiedSince) {
         log.info("Querying artifact " + checksum);
 
-        if (cacherUtils.fileExists(checksum)) {
+        Optional<IndexedArtifact> artifact = artifactIndex.resolve(checksum);
+        if (!artifact.isPresent()) {
+            log.info("File not found " + checksum);
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+
+        if (ArtifactHeaders.notModified(ifNoneMatch, ifModifiedSince, artifact.get())) {
+            Response.ResponseBuilder notModified = Response.notModified();
+            ArtifactHeaders.headers(artifact.get()).forEach(notModified::header);
+            return notModified.build();
+        }
+
+        java.nio.file.Path file2download = artifact.get().getPath();
+        long size = artifact.get().getSize();
+        Optional<List<ByteRange>> ranges = ByteRange.ifRangeMatches(ifRange, artifact.get().getChecksum())
+                ? ByteRange.parse(range, size)
+                : Optional.empty();
 
-            java.nio.file.Path file2download = cacherUtils.getFile(checksum).get();
-            Response.ResponseBuilder response = Response.ok(file2download.toFile());
-            response.header("Content-Disposition", "attachment;filename=" + file2download.getFileName());
+        if (ranges.isPresent() && ranges.get().isEmpty()) {
+            log.info("Range [" + range + "] not satisfiable for " + checksum);
+            Response.ResponseBuilder unsatisfiable = Response.status(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header("Content-Range", ByteRange.unsatisfiedContentRange(size));
+            ArtifactHeaders.headers(artifact.get()).forEach(unsatisfiable::header);
+            return unsatisfiable.build();
+        }
 
-            log.info("File download successfully requested: " + file2download.toFile());
+        if (!artifactRoute.acquire()) {
+            log.warning("Too many concurrent downloads, rejecting request for " + checksum);
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).header("Retry-After", "5").build();
+        }
 
-            return response.build();
+        Response.ResponseBuilder response;
+        if (!ranges.isPresent()) {
+            response = Response.ok(released(output -> transferRange(artifact.get(), new ByteRange(0, size - 1), output)))
+                    .header("Content-Length", size);
+        } else if (ranges.get().size() == 1) {
+            ByteRange byteRange = ranges.get().get(0);
+            response = Response.status(Response.Status.PARTIAL_CONTENT)
+                    .entity(released(output -> transferRange(artifact.get(), byteRange, output)))
+                    .header("Content-Range", byteRange.contentRange(size))
+                    .header("Content-Length", byteRange.getLength());
         } else {
-            log.info("File not found " + checksum);
-            return Response.status(Response.Status.NOT_FOUND).build();
+            MultipartByteRanges multipart = new MultipartByteRanges(ranges.get(), size, MediaType.APPLICATION_OCTET_STREAM);
+            response = Response.status(Response.Status.PARTIAL_CONTENT)
+                    .entity(released(output -> {
+                        for (int i = 0; i < multipart.getRanges().size(); i++) {
+                            output.write(multipart.partHeader(i));
+                            transferRange(artifact.get(), multipart.getRanges().get(i), output);
+                        }
+                        output.write(multipart.trailer());
+                    }))
+                    .type(multipart.contentType())
+                    .header("Content-Length", multipart.contentLength());
         }
+        ArtifactHeaders.headers(artifact.get()).forEach(response::header);
+        response.header("Content-Disposition", "attachment;filename=" + file2download.getFileName());
+
+        log.info("File download successfully requested: " + file2download.toFile() + (ranges.isPresent() ? " range " + range : ""));
+        accessTracker.recordAccess(artifact.get().getChecksum(), ranges
+                .map(requested -> requested.stream().mapToLong(ByteRange::getLength).sum())
+                .orElse(size));
+
+        return response.build();
     }
 
     @DELETE
@@ -101,22 +472,267 @@ public class CacherResource {
         return cacherUtils.getPersistedArtifacts().toArray(new PlainArtifact[0]);
     }
 
+    /**
+     * Looks up many digests in one request, e.g. every md5 of the cekit modules of an image, from the in-memory index.
+     *
+     * @param digests md5, sha1, sha256 or sha512 hexadecimal digests
+     * @return for each digest, in the same order, whether it exists along with its file name, size and download url
+     */
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/lookup")
+    public Response lookup(List<String> digests, @Context UriInfo uriInfo) {
+        if (digests == null) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Missing digests.").build();
+        }
+        try {
+            List<ArtifactLookup> lookups = cacherUtils.lookup(digests, uriInfo.getBaseUri());
+            return Response.ok(lookups).build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+        }
+    }
+
+    /**
+     * Search artifacts by name
+     *
+     * @param artifactName text or glob pattern ('*' and '?' wildcards) to be searched
+     * @param match        substring, prefix or glob. If not set, glob is used when the name contains wildcards,
+     *                     otherwise substring.
+     */
     @GET
     @Produces({MediaType.APPLICATION_JSON})
     @Path("/query/{name}")
-    public Response queryArtifacts(@PathParam("name") String artifactName) {
+    public Response queryArtifacts(@PathParam("name") String artifactName, @QueryParam("match") String match) {
 
-        List<PlainArtifact> found = cacherUtils.getFilesByName(artifactName);
+        FileNameIndex.Match matchType;
+        try {
+            matchType = FileNameIndex.Match.of(match, artifactName);
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("Invalid match type [" + match + "], valid values are substring, prefix and glob.")
+                    .build();
+        }
+
+        List<PlainArtifact> found = cacherUtils.getFilesByName(artifactName, matchType);
         if (found.isEmpty()) {
             return Response.status(Response.Status.NO_CONTENT).build();
         }
         return Response.ok(found).build();
     }
 
+    /**
+     * Artifact metadata without body: size, digests and caching headers.
+     *
+     * @param checksum artifact checksum
+     */
+    @HEAD
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    @Path("/{checksum}")
+    public Response headArtifact(@PathParam("checksum") String checksum) {
+        Optional<IndexedArtifact> artifact = artifactIndex.resolve(checksum);
+        if (!artifact.isPresent()) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        Response.ResponseBuilder response = Response.ok();
+        ArtifactHeaders.headers(artifact.get()).forEach(response::header);
+        ArtifactHeaders.digestHeaders(artifact.get()).forEach(response::header);
+        response.header("Content-Length", artifact.get().getSize());
+        response.header("Content-Disposition", "attachment;filename=" + artifact.get().getFileName());
+        return response.build();
+    }
+
+    /**
+     * Frees the download slot taken on {@link ArtifactRoute#acquire()} once the content is written.
+     */
+    private StreamingOutput released(StreamingOutput content) {
+        return output -> {
+            try {
+                content.write(output);
+            } finally {
+                artifactRoute.release();
+            }
+        };
+    }
+
+    /**
+     * Writes the given range of the file to the output stream, the transfer is delegated to the channel so the
+     * bytes are not copied through the heap whenever the platform allows it.
+     */
+    private void transferRange(IndexedArtifact artifact, ByteRange range, OutputStream output) throws IOException {
+        if (artifact.isChunked()) {
+            transferChunks(artifact, range.getStart(), range.getLength(), output);
+            return;
+        }
+        java.nio.file.Path file = artifact.getPath();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(output);
+            long position = range.getStart();
+            long remaining = range.getLength();
+            while (remaining > 0) {
+                long transferred = channel.transferTo(position, remaining, target);
+                if (transferred <= 0) {
+                    throw new EOFException("Unexpected end of file " + file + " at position " + position);
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
+        }
+    }
+
+    /**
+     * Chunked artifacts have no file to hand to the channel, their content is read back from the chunk store.
+     */
+    private void transferChunks(IndexedArtifact artifact, long start, long length, OutputStream output) throws IOException {
+        try (InputStream content = chunkStore.open(artifact, start)) {
+            byte[] buffer = new byte[64 * 1024];
+            long remaining = length;
+            while (remaining > 0) {
+                int read = content.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read == -1) {
+                    throw new EOFException("Unexpected end of " + artifact.getFileName() + " at position " + (start + length - remaining));
+                }
+                output.write(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+    }
+
+    /**
+     * Uploads a file as multipart/form-data, with the content on the 'file' part and the artifact name on the
+     * 'fileName' field. The body is streamed to disk as it arrives.
+     * The client can declare the file size and digests on the Upload-Length and X-Checksum-* headers: if the content
+     * is already persisted the upload is answered without reading the body, otherwise the file is refused with 422
+     * when it does not match them.
+     *
+     * @param fileName artifact file name, takes precedence over the 'fileName' field and allows aliasing the
+     *                 persisted content without reading the body
+     */
     @POST
     @Path("/file/upload")
     @Consumes(MediaType.MULTIPART_FORM_DATA)
-    public Response fileUpload(@MultipartForm CacherUploadedFile inputFile) {
-        return Response.ok(cacherUtils.writeFileToDisk(inputFile)).build();
+    public Response fileUpload(@QueryParam("fileName") String fileName, @Context HttpHeaders headers, InputStream body) {
+        try {
+            UploadExpectation expected = UploadExpectation.parse(headers::getHeaderString);
+            return Response.ok(uploadManager.receive(headers.getHeaderString(HttpHeaders.CONTENT_TYPE), body, fileName, expected)).build();
+        } catch (DigestMismatchException e) {
+            return Response.status(UNPROCESSABLE_ENTITY).entity(e.getMessage()).build();
+        } catch (IllegalArgumentException | IOException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+        }
+    }
+
+    /**
+     * Starts a resumable upload, its content is then sent in chunks through PATCH requests on the returned location.
+     * If the X-Checksum-* headers declare the digests of content already persisted, no upload is created and the
+     * completed upload is returned with 200.
+     *
+     * @param fileName artifact file name
+     * @param length   full upload size, in bytes
+     */
+    @POST
+    @Path("/uploads")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response createUpload(@QueryParam("fileName") String fileName, @HeaderParam(UPLOAD_LENGTH) String length, @Context HttpHeaders headers) {
+        try {
+            if (length == null) {
+                return Response.status(Response.Status.BAD_REQUEST).entity("Missing " + UPLOAD_LENGTH + " header.").build();
+            }
+            UploadStatus upload = uploadManager.create(fileName, Long.parseLong(length), UploadExpectation.parse(headers::getHeaderString));
+            if (upload.isCompleted()) {
+                return Response.ok(upload).build();
+            }
+            return Response.created(URI.create("/resource/uploads/" + upload.getId()))
+                    .header(UPLOAD_OFFSET, upload.getOffset())
+                    .entity(upload)
+                    .build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+        } catch (IOException e) {
+            log.warning("Failed to create upload of " + fileName + ": " + e.getMessage());
+            return Response.serverError().entity(e.getMessage()).build();
+        }
+    }
+
+    /**
+     * Appends a chunk to a resumable upload. The chunk must start at the current upload offset, otherwise the
+     * request is refused with 409 and the current offset. The upload is persisted with its last chunk, unless it
+     * does not match the digests declared on its creation, then it is dropped and refused with 422.
+     *
+     * @param id     upload id
+     * @param offset position of the first byte of the chunk
+     */
+    @PATCH
+    @Path("/uploads/{id}")
+    @Consumes({"application/offset+octet-stream", MediaType.APPLICATION_OCTET_STREAM})
+    public Response appendUpload(@PathParam("id") String id, @HeaderParam(UPLOAD_OFFSET) String offset, InputStream chunk) {
+        try {
+            if (offset == null) {
+                return Response.status(Response.Status.BAD_REQUEST).entity("Missing " + UPLOAD_OFFSET + " header.").build();
+            }
+            Optional<UploadStatus> upload = uploadManager.append(id, Long.parseLong(offset), chunk);
+            if (!upload.isPresent()) {
+                return Response.status(Response.Status.NOT_FOUND).build();
+            }
+            if (upload.get().isCompleted()) {
+                return Response.ok(upload.get().getResult()).header(UPLOAD_OFFSET, upload.get().getOffset()).build();
+            }
+            return Response.noContent().header(UPLOAD_OFFSET, upload.get().getOffset()).build();
+        } catch (UploadOffsetException e) {
+            return Response.status(Response.Status.CONFLICT).header(UPLOAD_OFFSET, e.getOffset()).entity(e.getMessage()).build();
+        } catch (DigestMismatchException e) {
+            return Response.status(UNPROCESSABLE_ENTITY).entity(e.getMessage()).build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+        } catch (IOException e) {
+            log.warning("Failed to append to upload " + id + ": " + e.getMessage());
+            return Response.serverError().entity(e.getMessage()).build();
+        }
+    }
+
+    /**
+     * @param id upload id
+     * @return the current offset and length of a resumable upload
+     */
+    @HEAD
+    @Path("/uploads/{id}")
+    public Response headUpload(@PathParam("id") String id) throws IOException {
+        Optional<UploadStatus> upload = uploadManager.status(id);
+        if (!upload.isPresent()) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        return Response.ok()
+                .header(UPLOAD_OFFSET, upload.get().getOffset())
+                .header(UPLOAD_LENGTH, upload.get().getLength())
+                .header("Cache-Control", "no-store")
+                .build();
+    }
+
+    /**
+     * @param id upload id
+     * @return the resumable upload progress
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/uploads/{id}")
+    public Response getUpload(@PathParam("id") String id) throws IOException {
+        return uploadManager.status(id)
+                .map(upload -> Response.ok(upload).build())
+                .orElse(Response.status(Response.Status.NOT_FOUND).build());
+    }
+
+    /**
+     * Cancels a resumable upload.
+     *
+     * @param id upload id
+     */
+    @DELETE
+    @Path("/uploads/{id}")
+    public Response cancelUpload(@PathParam("id") String id) throws IOException {
+        if (!uploadManager.cancel(id)) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        return Response.noContent().build();
     }
-}
\ No newline at end of file
+}
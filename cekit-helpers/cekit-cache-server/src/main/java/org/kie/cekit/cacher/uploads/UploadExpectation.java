@@ -0,0 +1,145 @@
+package org.kie.cekit.cacher.uploads;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import org.kie.cekit.cacher.artifacts.DigestAlgorithm;
+import org.kie.cekit.cacher.artifacts.IndexedArtifact;
+import org.kie.cekit.cacher.exception.DigestMismatchException;
+
+/**
+ * Size and digests of an upload declared by the client before sending it, on the same X-Checksum-* headers sent by
+ * the artifact HEAD requests and on the Upload-Length header. They let the upload be skipped when the content is
+ * already persisted, and the received content be checked before it reaches the store.
+ */
+public class UploadExpectation {
+
+    public static final String CHECKSUM_HEADER_PREFIX = "X-Checksum-";
+    public static final String LENGTH_HEADER = "Upload-Length";
+
+    private static final Pattern HEX = Pattern.compile("[0-9a-fA-F]+");
+
+    private final Map<DigestAlgorithm, String> digests;
+    private final long length;
+
+    /**
+     * @param digests declared digests, hexadecimal
+     * @param length  declared size, -1 if unknown
+     */
+    public UploadExpectation(Map<DigestAlgorithm, String> digests, long length) {
+        Map<DigestAlgorithm, String> normalized = new EnumMap<>(DigestAlgorithm.class);
+        digests.forEach((algorithm, value) -> normalized.put(algorithm, value.toLowerCase(Locale.ROOT)));
+        this.digests = Collections.unmodifiableMap(normalized);
+        this.length = length;
+    }
+
+    /**
+     * @param header request header value by name, null if not sent
+     * @return the declared size and digests, possibly none
+     * @throws IllegalArgumentException if a digest or the size is malformed
+     */
+    public static UploadExpectation parse(Function<String, String> header) {
+        Map<DigestAlgorithm, String> digests = new EnumMap<>(DigestAlgorithm.class);
+        for (DigestAlgorithm algorithm : DigestAlgorithm.values()) {
+            String name = CHECKSUM_HEADER_PREFIX + algorithm.getExtension().toUpperCase(Locale.ROOT);
+            String value = header.apply(name);
+            if (value == null || value.trim().isEmpty()) {
+                continue;
+            }
+            value = value.trim();
+            if (!HEX.matcher(value).matches() || value.length() != hexLength(algorithm)) {
+                throw new IllegalArgumentException("Invalid " + name + " header [" + value + "].");
+            }
+            digests.put(algorithm, value);
+        }
+        String length = header.apply(LENGTH_HEADER);
+        long size = -1;
+        if (length != null) {
+            size = Long.parseLong(length.trim());
+            if (size < 0) {
+                throw new IllegalArgumentException("Invalid " + LENGTH_HEADER + " header [" + length + "].");
+            }
+        }
+        return new UploadExpectation(digests, size);
+    }
+
+    /**
+     * @return an expectation declaring nothing
+     */
+    public static UploadExpectation none() {
+        return new UploadExpectation(Collections.emptyMap(), -1);
+    }
+
+    /**
+     * @param artifact persisted artifact
+     * @return true if the artifact agrees with the declared size and every declared digest it knows of
+     */
+    public boolean matches(IndexedArtifact artifact) {
+        if (length >= 0 && length != artifact.getSize()) {
+            return false;
+        }
+        boolean compared = false;
+        for (Map.Entry<DigestAlgorithm, String> declared : digests.entrySet()) {
+            String known = artifact.getDigests().get(declared.getKey());
+            if (known != null) {
+                if (!known.equalsIgnoreCase(declared.getValue())) {
+                    return false;
+                }
+                compared = true;
+            }
+        }
+        return compared;
+    }
+
+    /**
+     * @param received digests of the received content
+     * @param size     size of the received content
+     * @throws DigestMismatchException if the size or any declared digest differ
+     */
+    public void verify(Map<DigestAlgorithm, String> received, long size) throws DigestMismatchException {
+        if (length >= 0 && length != size) {
+            throw new DigestMismatchException("Received " + size + " bytes, " + length + " declared.");
+        }
+        for (Map.Entry<DigestAlgorithm, String> declared : digests.entrySet()) {
+            if (!declared.getValue().equalsIgnoreCase(received.get(declared.getKey()))) {
+                throw new DigestMismatchException(declared.getKey().getExtension() + " of the received content is "
+                                                          + received.get(declared.getKey()) + ", " + declared.getValue() + " declared.");
+            }
+        }
+    }
+
+    /**
+     * @return declared digests, lower case hexadecimal
+     */
+    public Map<DigestAlgorithm, String> getDigests() {
+        return digests;
+    }
+
+    /**
+     * @return declared size, -1 if unknown
+     */
+    public long getLength() {
+        return length;
+    }
+
+    public boolean hasDigests() {
+        return !digests.isEmpty();
+    }
+
+    private static int hexLength(DigestAlgorithm algorithm) {
+        switch (algorithm) {
+            case MD5:
+                return 32;
+            case SHA1:
+                return 40;
+            case SHA256:
+                return 64;
+            default:
+                return 128;
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package org.kie.cekit.cacher.uploads;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.kie.cekit.cacher.artifacts.ArtifactIndex;
+import org.kie.cekit.cacher.artifacts.DigestAlgorithm;
+import org.kie.cekit.cacher.artifacts.IndexedArtifact;
+import org.kie.cekit.cacher.exception.DigestMismatchException;
+import org.kie.cekit.cacher.exception.UploadOffsetException;
+import org.kie.cekit.cacher.objects.UploadStatus;
+import org.kie.cekit.cacher.properties.CacherProperties;
+import org.kie.cekit.cacher.utils.CacherUtils;
+import org.kie.cekit.cacher.utils.MultipartStream;
+import org.kie.cekit.cacher.utils.StreamingDigest;
+
+/**
+ * Receives uploads straight to disk, hashing them on the way, so the upload size is not bound by the heap.
+ * Besides the plain multipart/form-data upload, big files can be sent as resumable uploads: the upload is created
+ * with its full length and the content is appended in chunks, each one starting at the offset reached by the
+ * previous ones. A broken chunk only costs the bytes not written yet, the client asks for the current offset and
+ * carries on from there, even after a restart.
+ * Both kinds of upload can declare the size and digests of their content up front, see {@link UploadExpectation}:
+ * content already persisted is then not uploaded again, and received content not matching them is discarded.
+ */
+@ApplicationScoped
+public class UploadManager {
+
+    private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    static final String PARTIAL = ".partial";
+    static final String STATE = ".state";
+    private static final int MAX_FIELD_LENGTH = 4096;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // upload id -> digests of the bytes received so far, lost on restart
+    private final Map<String, Upload> uploads = new ConcurrentHashMap<>();
+
+    @Inject
+    CacherProperties cacherProperties;
+
+    @Inject
+    CacherUtils cacherUtils;
+
+    @Inject
+    ArtifactIndex artifactIndex;
+
+    /**
+     * Looks for persisted content matching the declared size and digests, so it does not need to be uploaded.
+     *
+     * @param fileName uploaded file name, recorded as an alias of the persisted artifact, null if not known yet
+     * @param expected declared size and digests
+     * @return the upload outcome message if the content is already persisted, empty otherwise
+     * @throws IllegalArgumentException if the file name is not valid
+     */
+    public Optional<String> existing(String fileName, UploadExpectation expected) {
+        if (!expected.hasDigests()) {
+            return Optional.empty();
+        }
+        Optional<IndexedArtifact> artifact = expected.getDigests().values().stream()
+                .map(artifactIndex::resolve)
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .filter(expected::matches)
+                .findFirst();
+        if (!artifact.isPresent()) {
+            return Optional.empty();
+        }
+        if (fileName == null) {
+            return Optional.of("Content already exists as " + artifact.get().getFileName() + ", checksum is: " + artifact.get().getChecksum());
+        }
+        validate(fileName);
+        return Optional.of(cacherUtils.aliasUpload(artifact.get().getChecksum(), fileName));
+    }
+
+    /**
+     * Streams a multipart/form-data upload to disk and persists it. The content is read from the 'file' part, the
+     * artifact name from the given one, or from the 'fileName' field, or from the file part itself.
+     * If the content is already persisted according to the declared digests, the body is not read at all.
+     *
+     * @param contentType request content type, carrying the multipart boundary
+     * @param body        request body
+     * @param fileName    artifact file name known before reading the body, null to take it from the body
+     * @param expected    declared size and digests of the file part
+     * @return the upload outcome message
+     * @throws DigestMismatchException  if the file part does not match the declared size and digests
+     * @throws IOException              if the body is malformed or can't be written
+     * @throws IllegalArgumentException if there is no file part or the file name is not valid
+     */
+    public String receive(String contentType, InputStream body, String fileName, UploadExpectation expected) throws IOException {
+        if (fileName != null) {
+            validate(fileName);
+        }
+        Optional<String> existing = existing(fileName, expected);
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+        MultipartStream multipart = new MultipartStream(body, contentType);
+        Files.createDirectories(uploadsDir());
+        Path partial = uploadsDir().resolve(UUID.randomUUID() + PARTIAL);
+        try {
+            StreamingDigest digest = null;
+            String fieldFileName = null;
+            String partFileName = null;
+            Optional<MultipartStream.Part> part;
+            while ((part = multipart.nextPart()).isPresent()) {
+                if (part.get().is("fileName")) {
+                    fieldFileName = part.get().asString(MAX_FIELD_LENGTH);
+                } else if (part.get().is("file") && digest == null) {
+                    partFileName = part.get().getFileName().orElse(null);
+                    digest = new StreamingDigest();
+                    try (FileChannel target = FileChannel.open(partial, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                        digest.transfer(Channels.newChannel(part.get().getContent()), target);
+                    }
+                }
+            }
+            if (digest == null) {
+                throw new IllegalArgumentException("Missing file part.");
+            }
+            String name = fileName != null ? fileName : fieldFileName == null || fieldFileName.isEmpty() ? partFileName : fieldFileName;
+            validate(name);
+            expected.verify(digest.digests(), digest.getBytes());
+            return cacherUtils.persistUpload(partial, name, digest.digests());
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+    }
+
+    /**
+     * Starts a resumable upload, unless its content is already persisted according to the declared digests.
+     *
+     * @param fileName artifact file name
+     * @param length   full upload size
+     * @param expected declared digests, checked once the upload completes
+     * @return the new upload at offset 0, or an already completed one without id if the content is persisted
+     * @throws IOException              if the upload can't be created on disk
+     * @throws IllegalArgumentException if the file name or the length are not valid
+     */
+    public UploadStatus create(String fileName, long length, UploadExpectation expected) throws IOException {
+        validate(fileName);
+        if (length < 0) {
+            throw new IllegalArgumentException("Invalid upload length " + length + ".");
+        }
+        Optional<String> existing = existing(fileName, new UploadExpectation(expected.getDigests(), length));
+        if (existing.isPresent()) {
+            return new UploadStatus(null, fileName, length, length, existing.get());
+        }
+        String id = UUID.randomUUID().toString();
+        Files.createDirectories(uploadsDir());
+        Files.createFile(partialPath(id));
+        new UploadState(fileName, length, expected.getDigests()).save(statePath(id));
+        uploads.put(id, new Upload(new StreamingDigest()));
+        log.info("Upload " + id + " of " + fileName + " created, " + length + " bytes expected.");
+        return new UploadStatus(id, fileName, 0, length, null);
+    }
+
+    /**
+     * @param id upload id
+     * @return the upload progress, empty if the upload does not exist
+     * @throws IOException if the partial content can't be read
+     */
+    public Optional<UploadStatus> status(String id) throws IOException {
+        Optional<UploadState> state = state(id);
+        if (!state.isPresent() || !Files.exists(partialPath(id))) {
+            return Optional.empty();
+        }
+        return Optional.of(new UploadStatus(id, state.get().getFileName(), Files.size(partialPath(id)), state.get().getLength(), null));
+    }
+
+    /**
+     * Appends a chunk to a resumable upload, the upload is persisted as soon as its last byte is received.
+     * If the chunk goes beyond the declared length, the bytes up to it are kept and the rest rejected.
+     *
+     * @param id     upload id
+     * @param offset position of the first byte of the chunk, must match the bytes received so far
+     * @param chunk  chunk content
+     * @return the upload progress, with its result once completed, empty if the upload does not exist
+     * @throws UploadOffsetException    if the offset is not the current one
+     * @throws DigestMismatchException  if the completed upload does not match the declared digests, it is dropped
+     * @throws IOException              if the chunk can't be read or written
+     * @throws IllegalArgumentException if the chunk goes beyond the declared length
+     */
+    public Optional<UploadStatus> append(String id, long offset, InputStream chunk) throws IOException {
+        Optional<UploadState> state = state(id);
+        if (!state.isPresent()) {
+            return Optional.empty();
+        }
+        // after a restart the digests are computed again once the upload completes
+        Upload upload = uploads.computeIfAbsent(id, key -> new Upload(null));
+        synchronized (upload) {
+            Path partial = partialPath(id);
+            if (!Files.exists(partial) || !Files.exists(statePath(id))) {
+                // completed or cancelled meanwhile
+                uploads.remove(id, upload);
+                return Optional.empty();
+            }
+            long received = Files.size(partial);
+            if (offset != received) {
+                throw new UploadOffsetException(offset, received);
+            }
+            try (FileChannel target = FileChannel.open(partial, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                copy(chunk, target, upload, state.get().getLength() - received);
+            } catch (IOException e) {
+                // the digests may hold bytes that never reached the disk
+                upload.digest = null;
+                throw e;
+            } finally {
+                // keeps an active upload away from the tmp dir cleanup
+                Files.setLastModifiedTime(statePath(id), FileTime.from(Instant.now()));
+            }
+
+            received = Files.size(partial);
+            if (received < state.get().getLength()) {
+                return Optional.of(new UploadStatus(id, state.get().getFileName(), received, state.get().getLength(), null));
+            }
+            Map<DigestAlgorithm, String> digests = upload.digest != null ? upload.digest.digests() : StreamingDigest.of(partial);
+            try {
+                new UploadExpectation(state.get().getDigests(), state.get().getLength()).verify(digests, received);
+            } catch (DigestMismatchException e) {
+                Files.deleteIfExists(partial);
+                Files.deleteIfExists(statePath(id));
+                uploads.remove(id);
+                log.warning("Upload " + id + " of " + state.get().getFileName() + " discarded: " + e.getMessage());
+                throw e;
+            }
+            String result = cacherUtils.persistUpload(partial, state.get().getFileName(), digests);
+            Files.deleteIfExists(partial);
+            Files.deleteIfExists(statePath(id));
+            uploads.remove(id);
+            log.info("Upload " + id + " completed: " + result);
+            return Optional.of(new UploadStatus(id, state.get().getFileName(), received, state.get().getLength(), result));
+        }
+    }
+
+    /**
+     * Cancels a resumable upload, dropping the bytes received.
+     *
+     * @param id upload id
+     * @return false if the upload does not exist
+     * @throws IOException if the upload files can't be deleted
+     */
+    public boolean cancel(String id) throws IOException {
+        if (!state(id).isPresent()) {
+            return false;
+        }
+        Upload upload = uploads.computeIfAbsent(id, key -> new Upload(null));
+        synchronized (upload) {
+            uploads.remove(id);
+            Files.deleteIfExists(partialPath(id));
+            return Files.deleteIfExists(statePath(id));
+        }
+    }
+
+    /**
+     * @param fileName artifact file name
+     * @throws IllegalArgumentException if the name is empty or would place the artifact outside its directory
+     */
+    static void validate(String fileName) {
+        if (fileName == null || fileName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Missing file name.");
+        }
+        if (fileName.contains("/") || fileName.contains("\\") || ".".equals(fileName) || "..".equals(fileName)) {
+            throw new IllegalArgumentException("Invalid file name [" + fileName + "].");
+        }
+    }
+
+    private static void copy(InputStream chunk, FileChannel target, Upload upload, long remaining) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = chunk.read(buffer)) != -1) {
+            if (read > remaining) {
+                throw new IllegalArgumentException("Chunk goes beyond the upload length.");
+            }
+            ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, read);
+            if (upload.digest != null) {
+                upload.digest.update(bytes.duplicate());
+            }
+            while (bytes.hasRemaining()) {
+                target.write(bytes);
+            }
+            remaining -= read;
+        }
+    }
+
+    private Optional<UploadState> state(String id) {
+        return isUploadId(id) ? UploadState.load(statePath(id)) : Optional.empty();
+    }
+
+    private static boolean isUploadId(String id) {
+        try {
+            return id != null && UUID.fromString(id).toString().equals(id);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private Path partialPath(String id) {
+        return uploadsDir().resolve(id + PARTIAL);
+    }
+
+    private Path statePath(String id) {
+        return uploadsDir().resolve(id + STATE);
+    }
+
+    private Path uploadsDir() {
+        return Paths.get(cacherProperties.getUploadsDir());
+    }
+
+    private static class Upload {
+        private StreamingDigest digest;
+
+        private Upload(StreamingDigest digest) {
+            this.digest = digest;
+        }
+    }
+}
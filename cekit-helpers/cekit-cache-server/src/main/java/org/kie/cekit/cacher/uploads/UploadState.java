@@ -0,0 +1,98 @@
+package org.kie.cekit.cacher.uploads;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+
+import org.kie.cekit.cacher.artifacts.DigestAlgorithm;
+
+/**
+ * Sidecar of a resumable upload, kept next to its partial content so the upload survives a restart. The offset is
+ * not saved, it is the size of the partial content. The digests declared by the client, if any, are saved along.
+ */
+public class UploadState {
+
+    private static final String FILE_NAME = "fileName";
+    private static final String LENGTH = "length";
+    private static final String DIGEST_PREFIX = "digest.";
+
+    private final String fileName;
+    private final long length;
+    private final Map<DigestAlgorithm, String> digests;
+
+    public UploadState(String fileName, long length, Map<DigestAlgorithm, String> digests) {
+        this.fileName = fileName;
+        this.length = length;
+        this.digests = digests;
+    }
+
+    /**
+     * @param file sidecar location
+     * @return the saved state, empty if there is none or it can not be read
+     */
+    public static Optional<UploadState> load(Path file) {
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+            String fileName = properties.getProperty(FILE_NAME);
+            long length = Long.parseLong(properties.getProperty(LENGTH, "-1"));
+            Map<DigestAlgorithm, String> digests = new EnumMap<>(DigestAlgorithm.class);
+            for (DigestAlgorithm algorithm : DigestAlgorithm.values()) {
+                String digest = properties.getProperty(DIGEST_PREFIX + algorithm.getExtension());
+                if (digest != null) {
+                    digests.put(algorithm, digest);
+                }
+            }
+            return fileName == null || length < 0 ? Optional.empty() : Optional.of(new UploadState(fileName, length, digests));
+        } catch (IOException | NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Writes the state to a temporary file and moves it over the previous one.
+     *
+     * @param file sidecar location
+     * @throws IOException if the state can not be written
+     */
+    public void save(Path file) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(FILE_NAME, fileName);
+        properties.setProperty(LENGTH, String.valueOf(length));
+        digests.forEach((algorithm, digest) -> properties.setProperty(DIGEST_PREFIX + algorithm.getExtension(), digest));
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            properties.store(writer, "resumable upload");
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * @return full upload size declared by the client
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * @return digests declared by the client, the upload is checked against them once completed
+     */
+    public Map<DigestAlgorithm, String> getDigests() {
+        return digests;
+    }
+}
@@ -0,0 +1,130 @@
+package org.kie.cekit.cacher.utils;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.regex.Pattern;
+
+import org.kie.cekit.cacher.artifacts.IndexedArtifact;
+
+/**
+ * Caching and validation headers shared by every artifact download path.
+ * Artifacts are addressed by their checksum, so their content never changes: the checksum is used as strong
+ * entity tag and responses can be cached forever.
+ */
+public class ArtifactHeaders {
+
+    public static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    private static final Pattern HEX = Pattern.compile("([0-9a-fA-F]{2})+");
+
+    private ArtifactHeaders() {
+    }
+
+    /**
+     * @param checksum artifact checksum
+     * @return the strong entity tag for the artifact
+     */
+    public static String etag(String checksum) {
+        return "\"" + checksum + "\"";
+    }
+
+    /**
+     * @param millis time in milliseconds since epoch
+     * @return the time formatted as HTTP date
+     */
+    public static String httpDate(long millis) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(millis).atZone(ZoneOffset.UTC));
+    }
+
+    /**
+     * Headers sent on every successful, or not modified, artifact response.
+     *
+     * @param artifact served artifact
+     * @return header name and value
+     */
+    public static Map<String, String> headers(IndexedArtifact artifact) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("ETag", etag(artifact.getChecksum()));
+        headers.put("Last-Modified", httpDate(artifact.getCreationTime()));
+        headers.put("Cache-Control", CACHE_CONTROL);
+        headers.put("Accept-Ranges", "bytes");
+        return headers;
+    }
+
+    /**
+     * Digest headers describing the full artifact content, sent on HEAD requests. Every known digest is sent both
+     * as X-Checksum-* header and on the Digest header (RFC 3230).
+     *
+     * @param artifact served artifact
+     * @return header name and value
+     */
+    public static Map<String, String> digestHeaders(IndexedArtifact artifact) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        StringJoiner digest = new StringJoiner(",");
+        artifact.getDigests().forEach((algorithm, value) -> {
+            headers.put("X-Checksum-" + algorithm.getExtension().toUpperCase(Locale.ROOT), value);
+            if (HEX.matcher(value).matches()) {
+                digest.add(algorithm.getDigestHeaderName() + "=" + Base64.getEncoder().encodeToString(hexToBytes(value)));
+            }
+        });
+        if (digest.length() > 0) {
+            headers.put("Digest", digest.toString());
+        }
+        return headers;
+    }
+
+    /**
+     * Evaluates the If-None-Match and If-Modified-Since preconditions (RFC 7232), If-Modified-Since is ignored
+     * when If-None-Match is present.
+     *
+     * @param ifNoneMatch     If-None-Match header value
+     * @param ifModifiedSince If-Modified-Since header value
+     * @param artifact        requested artifact
+     * @return true if a 304 Not Modified should be sent instead of the content
+     */
+    public static boolean notModified(String ifNoneMatch, String ifModifiedSince, IndexedArtifact artifact) {
+        if (ifNoneMatch != null) {
+            String etag = etag(artifact.getChecksum());
+            for (String tag : ifNoneMatch.split(",")) {
+                String value = tag.trim();
+                if (value.startsWith("W/")) {
+                    value = value.substring(2);
+                }
+                if (value.equals("*") || value.equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (ifModifiedSince != null) {
+            try {
+                ZonedDateTime since = ZonedDateTime.parse(ifModifiedSince.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                // HTTP dates have seconds precision
+                return artifact.getCreationTime() / 1000 <= since.toEpochSecond();
+            } catch (DateTimeParseException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param hex hexadecimal digest
+     * @return raw digest bytes
+     */
+    public static byte[] hexToBytes(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        return bytes;
+    }
+}
@@ -20,6 +20,7 @@ import javax.inject.Inject;
 
 import com.fasterxml.jackson.core.Version;
 import okhttp3.Response;
+import org.kie.cekit.cacher.objects.FetchResult;
 import org.kie.cekit.cacher.objects.PlainArtifact;
 import org.kie.cekit.cacher.properties.CacherProperties;
 
@@ -57,6 +58,9 @@ public class BuildUtils {
     @Inject
     CacherUtils cacherUtils;
 
+    @Inject
+    HttpRequestHandler httpRequestHandler;
+
     // RHPAM artifact files, shared between nightly and CR builds
     public String bcMonitoringFile() {
         return cacherProperties.getGitDir() + "/rhpam-7-image/businesscentral-monitoring/modules/businesscentral-monitoring/module.yaml";
@@ -245,7 +249,7 @@ public class BuildUtils {
         String requestJarUrl = buildUrl(mavenRepo, standaloneJarName, version);
         String md5ChecksumUrl = requestJarUrl + ".md5";
         log.fine("Trying to get the artifact's checksum using the url --> " + md5ChecksumUrl);
-        try (Response response = HttpRequestHandler.executeHttpCall(md5ChecksumUrl, cacherProperties.trustAllCerts())) {
+        try (Response response = httpRequestHandler.executeHttpCall(md5ChecksumUrl, HttpRequestHandler.Destination.METADATA)) {
             if (response.code() == 404) {
                 log.warning("The artifact " + standaloneJarName + " was not found , url used: " + md5ChecksumUrl);
                 return currentChecksum;
@@ -256,8 +260,13 @@ public class BuildUtils {
             if (null != newChecksum || !newChecksum.isEmpty()) {
                 log.fine("Checksum for artifact " + standaloneJarName + " found, new value is " + newChecksum);
                 log.fine("found new artifact " + standaloneJarName + ", requesting cacher do fetch it.");
-                // do not make it async
-                cacherUtils.fetchFile(requestJarUrl, type, crBuild);
+                // do not make it async, if the jar is already being downloaded this waits for it
+                FetchResult result = cacherUtils.fetch(requestJarUrl, type, crBuild);
+                log.fine(result.getMessage());
+                if (result.isSuccessful() && !result.getChecksum().equals(newChecksum.trim())) {
+                    log.warning("Checksum of the fetched artifact " + standaloneJarName + " [" + result.getChecksum()
+                                        + "] does not match the published one [" + newChecksum.trim() + "]");
+                }
             }
             return newChecksum;
         } catch (final Exception e) {
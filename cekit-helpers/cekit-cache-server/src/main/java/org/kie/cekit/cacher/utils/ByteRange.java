@@ -0,0 +1,166 @@
+package org.kie.cekit.cacher.utils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A single byte range of an artifact, as defined by RFC 7233.
+ * Both positions are inclusive.
+ */
+public class ByteRange {
+
+    /**
+     * Ranges above this limit are ignored and the full content is served, it protects the server against
+     * requests asking for thousands of tiny ranges.
+     */
+    public static final int MAX_RANGES = 64;
+
+    private static final String BYTES_UNIT = "bytes=";
+
+    private final long start;
+    private final long end;
+
+    public ByteRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public long getLength() {
+        return end - start + 1;
+    }
+
+    /**
+     * @param size full content size
+     * @return the Content-Range header value for this range
+     */
+    public String contentRange(long size) {
+        return "bytes " + start + "-" + end + "/" + size;
+    }
+
+    /**
+     * @param size full content size
+     * @return the Content-Range header value for a 416 response
+     */
+    public static String unsatisfiedContentRange(long size) {
+        return "bytes */" + size;
+    }
+
+    /**
+     * Parses a Range header.
+     *
+     * @param header the Range header value
+     * @param size   the full content size
+     * @return empty if the header is missing, invalid or should be ignored, in this case the full content must be
+     * served. Requests asking for more bytes than the content size, e.g. the same open ended range repeated, are
+     * ignored as well. Otherwise the satisfiable ranges, clamped to the content size, sorted and with the
+     * overlapping or adjacent ones merged; an empty list means that none of the requested ranges can be satisfied.
+     */
+    public static Optional<List<ByteRange>> parse(String header, long size) {
+        if (header == null || !header.trim().startsWith(BYTES_UNIT)) {
+            return Optional.empty();
+        }
+        String[] specs = header.trim().substring(BYTES_UNIT.length()).split(",");
+        if (specs.length > MAX_RANGES) {
+            return Optional.empty();
+        }
+
+        List<ByteRange> ranges = new ArrayList<>();
+        for (String spec : specs) {
+            String value = spec.trim();
+            int dash = value.indexOf('-');
+            if (dash < 0) {
+                return Optional.empty();
+            }
+            try {
+                String first = value.substring(0, dash).trim();
+                String last = value.substring(dash + 1).trim();
+                if (first.isEmpty()) {
+                    // suffix range, the last N bytes
+                    long suffix = Long.parseLong(last);
+                    if (suffix < 0) {
+                        return Optional.empty();
+                    }
+                    if (suffix > 0 && size > 0) {
+                        ranges.add(new ByteRange(Math.max(0, size - suffix), size - 1));
+                    }
+                } else {
+                    long start = Long.parseLong(first);
+                    long end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+                    if (start < 0 || end < start) {
+                        return Optional.empty();
+                    }
+                    if (start < size) {
+                        ranges.add(new ByteRange(start, Math.min(end, size - 1)));
+                    }
+                }
+            } catch (NumberFormatException e) {
+                return Optional.empty();
+            }
+        }
+        if (ranges.stream().mapToLong(ByteRange::getLength).sum() > size) {
+            return Optional.empty();
+        }
+        return Optional.of(coalesce(ranges));
+    }
+
+    private static List<ByteRange> coalesce(List<ByteRange> ranges) {
+        ranges.sort(Comparator.comparingLong(ByteRange::getStart));
+        List<ByteRange> merged = new ArrayList<>();
+        for (ByteRange range : ranges) {
+            ByteRange last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && range.start <= last.end + 1) {
+                merged.set(merged.size() - 1, new ByteRange(last.start, Math.max(last.end, range.end)));
+            } else {
+                merged.add(range);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Evaluates the If-Range precondition. Artifacts are content addressed, so only a strong entity tag carrying
+     * the artifact checksum is considered a match, dates are never matched.
+     *
+     * @param ifRange  If-Range header value
+     * @param checksum artifact checksum
+     * @return true if the Range header should be honored
+     */
+    public static boolean ifRangeMatches(String ifRange, String checksum) {
+        return ifRange == null || ifRange.trim().equals(ArtifactHeaders.etag(checksum));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ByteRange)) {
+            return false;
+        }
+        ByteRange that = (ByteRange) o;
+        return start == that.start && end == that.end;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(start) * 31 + Long.hashCode(end);
+    }
+
+    @Override
+    public String toString() {
+        return "ByteRange{" +
+                "start=" + start +
+                ", end=" + end +
+                '}';
+    }
+}
@@ -3,15 +3,10 @@ package org.kie.cekit.cacher.utils;
 import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.invoke.MethodHandles;
-import java.net.URL;
-import java.net.URLConnection;
-import java.nio.channels.Channels;
-import java.nio.channels.ReadableByteChannel;
+import java.net.URI;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
@@ -19,16 +14,20 @@ import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.KeyManagementException;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.security.cert.X509Certificate;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -46,17 +45,48 @@ import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 
 import io.quarkus.scheduler.Scheduled;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.kie.cekit.cacher.artifacts.AccessTracker;
+import org.kie.cekit.cacher.artifacts.ArtifactIndex;
+import org.kie.cekit.cacher.artifacts.ArtifactLayout;
+import org.kie.cekit.cacher.artifacts.CapacityManager;
+import org.kie.cekit.cacher.artifacts.ChunkStore;
+import org.kie.cekit.cacher.artifacts.DigestAlgorithm;
+import org.kie.cekit.cacher.artifacts.FileNameIndex;
+import org.kie.cekit.cacher.artifacts.IndexedArtifact;
 import org.kie.cekit.cacher.builds.cr.CRBuildInterceptor;
 import org.kie.cekit.cacher.builds.nightly.NightlyBuildUpdatesInterceptor;
-import org.kie.cekit.cacher.objects.CacherUploadedFile;
+import org.kie.cekit.cacher.downloads.BandwidthLimiter;
+import org.kie.cekit.cacher.downloads.DownloadPriority;
+import org.kie.cekit.cacher.downloads.DownloadProgress;
+import org.kie.cekit.cacher.downloads.DownloadScheduler;
+import org.kie.cekit.cacher.downloads.DownloadState;
+import org.kie.cekit.cacher.downloads.MirrorSelector;
+import org.kie.cekit.cacher.downloads.MirroredSource;
+import org.kie.cekit.cacher.downloads.ResumableDownload;
+import org.kie.cekit.cacher.downloads.SegmentedDownload;
+import org.kie.cekit.cacher.exception.DownloadRejectedException;
+import org.kie.cekit.cacher.objects.ArtifactLookup;
+import org.kie.cekit.cacher.objects.ArtifactStats;
+import org.kie.cekit.cacher.objects.FetchResult;
 import org.kie.cekit.cacher.objects.PlainArtifact;
 import org.kie.cekit.cacher.properties.CacherProperties;
 
 @ApplicationScoped
 public class CacherUtils {
 
+    public static final int MAX_LOOKUP_DIGESTS = 10000;
+
     private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
 
+    private static final String STATE_EXTENSION = ".properties";
+
+    // downloads in flight, keyed by file name
+    private final SingleFlight<FetchResult> downloads = new SingleFlight<>();
+    // downloads are coalesced by file name, the same content under two names is serialized by checksum when stored
+    private final Object[] storeLocks = Stream.generate(Object::new).limit(64).toArray();
+
     @Inject
     CacherProperties cacherProperties;
 
@@ -69,8 +99,35 @@ public class CacherUtils {
     @Inject
     CRBuildInterceptor crBuildInterceptor;
 
+    @Inject
+    ArtifactIndex artifactIndex;
+
+    @Inject
+    ArtifactLayout artifactLayout;
+
+    @Inject
+    DownloadScheduler downloadScheduler;
+
+    @Inject
+    HttpRequestHandler httpRequestHandler;
+
+    @Inject
+    BandwidthLimiter bandwidthLimiter;
+
+    @Inject
+    MirrorSelector mirrorSelector;
+
+    @Inject
+    CapacityManager capacityManager;
+
+    @Inject
+    AccessTracker accessTracker;
+
+    @Inject
+    ChunkStore chunkStore;
+
     /**
-     * Clean 1 day old files under tmp directory
+     * Clean 1 day old files under tmp directory, along with their partial download state
      */
     @Scheduled(every = "24h", delay = 12, delayUnit = TimeUnit.HOURS)
     public void cleanTmpFiles() {
@@ -83,6 +140,7 @@ public class CacherUtils {
                         if (file.lastModified() <= elegibleForDeletion && file.isFile()) {
                             if (file.delete()) {
                                 log.info("File Deleted --> " + file.getAbsolutePath());
+                                deleteQuietly(downloadStatePath(file.getName()));
                             }
                         }
                     });
@@ -96,35 +154,36 @@ public class CacherUtils {
      * If there is no artifacts persisted, nothing will be done.
      * If there is one newer build date and all of the remaining ones are 3 days older than the most recent one, all
      * of them will be deleted keeping only the most recent .
+     * Pinned artifacts are kept.
      * Run once a day.
      */
     @Scheduled(every = "24h", delay = 12, delayUnit = TimeUnit.HOURS)
     public void cleanOldProductNightlyArtifacts() {
         log.fine("Trying to identify the latest nightly build based on filesystem artifacts to delete, this could take a while...");
         try {
-            log.fine("Walking through data dir searching for old nightly product builds...");
-
-            Map<File, LocalDate> nightlyBuildArtifacts = new HashMap<>();
-            Files.walk(Paths.get(cacherProperties.getCacherArtifactsDir()))
-                    .map(Path::toFile)
-                    .filter(file -> buildUtils.buildDatePattern.matcher(file.getName()).find())
-                    .filter(file -> file.getName().endsWith(".zip"))
-                    .forEach(file -> {
-                        Matcher test = buildUtils.buildDatePattern.matcher(file.getName());
+            log.fine("Searching the artifacts index for old nightly product builds...");
+
+            Map<IndexedArtifact, LocalDate> nightlyBuildArtifacts = new HashMap<>();
+            artifactIndex.all().stream()
+                    .filter(artifact -> buildUtils.buildDatePattern.matcher(artifact.getFileName()).find())
+                    .filter(artifact -> artifact.getFileName().endsWith(".zip"))
+                    .filter(artifact -> !capacityManager.isPinned(artifact.getChecksum()))
+                    .forEach(artifact -> {
+                        Matcher test = buildUtils.buildDatePattern.matcher(artifact.getFileName());
                         if (test.find()) {
                             LocalDate d = LocalDate.parse(test.group(0), buildUtils.formatter(cacherProperties.getFormattedVersion()));
                             // collect all files that matches the build date pattern
-                            nightlyBuildArtifacts.put(file, d);
+                            nightlyBuildArtifacts.put(artifact, d);
                         }
                     });
 
             LocalDate mostRecentNightlyBuild = Collections.max(nightlyBuildArtifacts.values());
             log.fine("Latest nightly build date is -> " + mostRecentNightlyBuild);
 
-            for (Map.Entry<File, LocalDate> entry : nightlyBuildArtifacts.entrySet()) {
+            for (Map.Entry<IndexedArtifact, LocalDate> entry : nightlyBuildArtifacts.entrySet()) {
                 if (entry.getValue().plusDays(3).isBefore(mostRecentNightlyBuild)) {
-                    log.fine("File [" + entry.getKey() + " is 3 days older than the latest build date [" + mostRecentNightlyBuild + "]. Deleting...");
-                    Files.delete(entry.getKey().toPath());
+                    log.fine("File [" + entry.getKey().getPath() + " is 3 days older than the latest build date [" + mostRecentNightlyBuild + "]. Deleting...");
+                    deleteArtifact(entry.getKey().getChecksum());
                 }
             }
         } catch (final Exception e) {
@@ -146,7 +205,7 @@ public class CacherUtils {
                 while ((line = br.readLine()) != null) {
                     String finalLine = line;
                     if (!fileExistsByNameExcludeTmp(UrlUtils.getFileName(finalLine))) {
-                        new Thread(() -> log.info(fetchFile(finalLine, Optional.empty(), 0))).start();
+                        fetchAsync(finalLine, DownloadPriority.PRELOAD, Optional.empty(), 0).thenAccept(result -> log.info(result.getMessage()));
                     }
                 }
             } catch (IOException e) {
@@ -183,51 +242,156 @@ public class CacherUtils {
      * @return the result of the operation
      */
     public String fetchFile(String url, Optional<String> type, int crBuild) {
+        return fetch(url, type, crBuild).getMessage();
+    }
 
+    /**
+     * Download and persist the given file locally. Concurrent requests for the same url are coalesced, only the
+     * first one downloads the file and the others wait for its result. Requests for a different url with the same
+     * file name wait for the download in flight and then proceed.
+     *
+     * @param url artifact url address
+     * @return the result of the operation, including the artifact checksum
+     */
+    public FetchResult fetch(String url, Optional<String> type, int crBuild) {
+        return fetch(url, type, crBuild, new DownloadProgress());
+    }
+
+    /**
+     * Same as {@link #fetch(String, Optional, int)}, reporting the transferred bytes.
+     * If the download is coalesced with one already in flight, no progress is reported until it finishes.
+     *
+     * @param url      artifact url address
+     * @param progress updated while the artifact is downloaded
+     * @return the result of the operation, including the artifact checksum
+     */
+    public FetchResult fetch(String url, Optional<String> type, int crBuild, DownloadProgress progress) {
         String fileName = UrlUtils.getFileName(url);
-        String filePath = cacherProperties.getArtifactsTmpDir() + "/" + fileName;
-        String fileChecksum = "";
+        return downloads.execute(fileName, url, () -> download(url, fileName, type, crBuild, progress));
+    }
 
-        final Path path = Paths.get(filePath);
-        if (Files.exists(path)) {
-            return "File " + fileName + " still being downloaded, skipping...";
-        }
+    /**
+     * Queues the download on the {@link DownloadScheduler}.
+     *
+     * @param url      artifact url address
+     * @param priority download priority
+     * @return the result of the operation, a failed result is returned if the download could not run
+     */
+    public CompletableFuture<FetchResult> fetchAsync(String url, DownloadPriority priority, Optional<String> type, int crBuild) {
+        return fetchAsync(url, priority, type, crBuild, () -> {
+        }, new DownloadProgress());
+    }
+
+    /**
+     * Queues the download on the {@link DownloadScheduler}.
+     *
+     * @param url      artifact url address
+     * @param priority download priority
+     * @param onStart  called when the download leaves the queue
+     * @param progress updated while the artifact is downloaded
+     * @return the result of the operation, a failed result is returned if the download could not run
+     */
+    public CompletableFuture<FetchResult> fetchAsync(String url, DownloadPriority priority, Optional<String> type, int crBuild,
+                                                     Runnable onStart, DownloadProgress progress) {
+        return downloadScheduler.submit(url, priority, () -> {
+            onStart.run();
+            return fetch(url, type, crBuild, progress);
+        }).exceptionally(e -> FetchResult.failed(UrlUtils.getFileName(url), "Failed to fetch " + url + ": " + e.getMessage()));
+    }
+
+    /**
+     * @param fileName artifact file name
+     * @return the download in flight for the given file name, if any
+     */
+    public Optional<CompletableFuture<FetchResult>> inFlight(String fileName) {
+        return downloads.get(fileName);
+    }
+
+    private FetchResult download(String url, String fileName, Optional<String> type, int crBuild, DownloadProgress progress) {
+        final Path path = Paths.get(cacherProperties.getArtifactsTmpDir(), fileName);
+        final Path statePath = downloadStatePath(fileName);
+        String fileChecksum = "";
+        long reserved = 0;
+        FetchResult result = null;
 
         try {
             log.info("Trying to fetch file: " + url);
-            URLConnection in = new URL(url).openConnection();
-            // one min
-            in.setReadTimeout(60000);
-            in.setConnectTimeout(20000);
-            ReadableByteChannel readableByteChannel = Channels.newChannel(in.getInputStream());
-            FileOutputStream fileOutputStream = new FileOutputStream(filePath);
-            fileOutputStream.getChannel().transferFrom(readableByteChannel, 0, Long.MAX_VALUE);
+            // a leftover from another url, or one that can not be resumed, is overwritten, nobody else writes to it
+            // while we hold the flight
+            DownloadState state = DownloadState.load(statePath)
+                    .filter(saved -> saved.getUrl().equals(url))
+                    .orElseGet(() -> new DownloadState(url, type.orElse(""), crBuild));
+            boolean resuming = Files.exists(path) && state.getValidator() != null;
+
+            List<String> candidates = mirrorSelector.candidates(url);
+            String best = candidates.get(0);
+            // the HEAD request is only worth it if its answer is used
+            UpstreamHead head = !resuming && (capacityManager.isEnabled() || cacherProperties.downloadMaxSegments() > 1)
+                    ? head(best) : UpstreamHead.UNKNOWN;
+            reserved = capacityManager.reserve(resuming ? state.getTotal() - Files.size(path) : head.size);
+
+            StreamingDigest digest = null;
+            boolean mirrored = false;
+            if (!resuming && cacherProperties.downloadMaxSegments() > 1) {
+                long size = head.segmentableSize(cacherProperties.downloadSegmentThreshold());
+                if (size > 0) {
+                    progress.setTotal(size);
+                    Files.deleteIfExists(statePath);
+                    try {
+                        digest = new SegmentedDownload((start, end) -> openRange(best, start, end), path, size,
+                                                       cacherProperties.downloadMaxSegments(), progress).download();
+                        mirrored = !best.equals(url);
+                    } catch (IOException e) {
+                        log.warning("Segmented download of " + best + " failed, falling back to a single connection: " + e.getMessage());
+                        mirrorSelector.recordFailure(best);
+                        progress.reset();
+                        // the segmented file is sparse, it can not be resumed
+                        Files.deleteIfExists(path);
+                    }
+                }
+            }
+            if (digest == null) {
+                MirroredSource source = new MirroredSource(url, candidates, this::openFrom, mirrorSelector);
+                digest = new ResumableDownload(source, path, statePath, state, progress, cacherProperties.downloadMaxAttempts()).download();
+                mirrored = source.isMirrored();
+            }
+            if (mirrored) {
+                verifyOriginalChecksum(url, digest);
+            }
+            Files.deleteIfExists(statePath);
 
-            fileChecksum = md5sum(filePath);
+            fileChecksum = digest.md5();
 
             try {
-                Files.createDirectory(Paths.get(cacherProperties.getCacherArtifactsDir() + "/" + fileChecksum));
-                Files.move(path, Paths.get(cacherProperties.getCacherArtifactsDir() + "/" + fileChecksum + "/" + fileName));
+                store(fileChecksum, path, fileName, url, digest.digests());
             } catch (FileAlreadyExistsException e) {
                 try {
                     Files.delete(path);
                 } catch (IOException ex) {
                     //ignore
                 }
-                return "File " + fileName + " already exists.";
-            } finally {
-                readableByteChannel.close();
-                fileOutputStream.close();
+                if (!artifactIndex.addAlias(fileChecksum, fileName)) {
+                    return FetchResult.exists(fileName, fileChecksum);
+                }
+                // same content under a new name, the builds still need to know about it
+                result = FetchResult.aliased(fileName, fileChecksum, existingName(fileChecksum));
             }
         } catch (final IOException e) {
             e.printStackTrace();
             try {
-                Files.delete(path);
-                Files.delete(Paths.get(cacherProperties.getCacherArtifactsDir() + "/" + fileChecksum));
+                if (e instanceof DownloadRejectedException || !Files.exists(statePath)) {
+                    Files.deleteIfExists(statePath);
+                    Files.delete(path);
+                } else {
+                    log.info("Partial download of " + fileName + " kept, it will be resumed by the next fetch of " + url);
+                }
+                Files.delete(artifactLayout.artifactDir(fileChecksum));
             } catch (IOException ex) {
                 // ignore
             }
-            return e.getMessage();
+            return FetchResult.failed(fileName, e.getMessage());
+        } finally {
+            capacityManager.release(reserved);
         }
 
         switch (type.orElse("")) {
@@ -242,35 +406,254 @@ public class CacherUtils {
             default:
                 log.finest("nothing has to be done.");
         }
-        return "File " + fileName + " persisted.";
+        return result != null ? result : FetchResult.persisted(fileName, fileChecksum);
     }
 
     /**
-     * If the given file exists, return its absolute path
+     * @return the file name the given checksum was first persisted with
+     */
+    private String existingName(String checksum) {
+        return artifactIndex.get(checksum).map(IndexedArtifact::getFileName).orElse(checksum);
+    }
+
+    /**
+     * Moves a downloaded or uploaded file into its artifact directory and indexes it. The same content fetched or
+     * uploaded under two names at the same time is stored once, the other call only returns once it is indexed, so
+     * its name can be recorded as an alias.
      *
-     * @param checksum to be searched
-     * @return file's absolute path
+     * @throws FileAlreadyExistsException if the artifact is already persisted, on any layout
      */
-    public Optional<Path> getFile(String checksum) {
+    private void store(String checksum, Path file, String fileName, String sourceUrl, Map<DigestAlgorithm, String> digests) throws IOException {
+        synchronized (storeLocks[Math.floorMod(checksum.hashCode(), storeLocks.length)]) {
+            Path target = artifactLayout.artifactDir(checksum).resolve(fileName);
+            if (artifactIndex.contains(checksum)) {
+                throw new FileAlreadyExistsException(target.getParent().toString());
+            }
+            Files.createDirectories(target.getParent().getParent());
+            Files.createDirectory(target.getParent());
+            Files.move(file, target);
+            artifactIndex.register(checksum, target, sourceUrl, digests);
+        }
+    }
+
+    /**
+     * An artifact downloaded, even partially, from a mirror must match the checksum published along with the original
+     * url. If the original publishes none, the artifact is kept with a warning.
+     *
+     * @throws DownloadRejectedException if the checksum does not match
+     */
+    private void verifyOriginalChecksum(String url, StreamingDigest digest) throws DownloadRejectedException {
+        for (DigestAlgorithm algorithm : Arrays.asList(DigestAlgorithm.MD5, DigestAlgorithm.SHA1)) {
+            String checksumUrl = url + "." + algorithm.getExtension();
+            try (Response response = httpRequestHandler.executeHttpCall(checksumUrl, HttpRequestHandler.Destination.METADATA)) {
+                if (response.code() != 200) {
+                    continue;
+                }
+                // the checksum may be followed by the file name
+                String published = response.body().string().trim().split("\\s+")[0].toLowerCase();
+                String actual = digest.digests().get(algorithm);
+                if (!published.equals(actual)) {
+                    throw new DownloadRejectedException("The " + algorithm.getExtension() + " of " + UrlUtils.getFileName(url)
+                                                               + " downloaded from a mirror is " + actual + ", " + checksumUrl + " says " + published);
+                }
+                log.fine("Artifact downloaded from a mirror matches " + checksumUrl);
+                return;
+            } catch (IOException e) {
+                log.fine("Failed to get " + checksumUrl + ": " + e.getMessage());
+            }
+        }
+        log.warning("No checksum found for " + url + ", the copy downloaded from its mirror could not be verified");
+    }
 
-        Path path = FileSystems.getDefault().getPath(cacherProperties.getCacherArtifactsDir() + "/" + checksum);
+    /**
+     * Resumes the partial downloads left by a previous run and removes from the tmp dir whatever can not be resumed.
+     * Should only be called at startup, before any download is started.
+     */
+    public void resumeDownloads() {
+        Path tmpDir = Paths.get(cacherProperties.getArtifactsTmpDir());
+        Set<String> resumed = new HashSet<>();
+        try (Stream<Path> states = Files.list(Paths.get(cacherProperties.getDownloadsStateDir()))) {
+            states.filter(file -> file.getFileName().toString().endsWith(STATE_EXTENSION))
+                    .forEach(file -> {
+                        String name = file.getFileName().toString();
+                        String fileName = name.substring(0, name.length() - STATE_EXTENSION.length());
+                        Optional<DownloadState> state = DownloadState.load(file);
+                        if (state.isPresent() && Files.exists(tmpDir.resolve(fileName))) {
+                            resumed.add(fileName);
+                            DownloadState partial = state.get();
+                            log.info("Resuming download of " + partial.getUrl() + " from byte " + partial.getBytes());
+                            fetchAsync(partial.getUrl(), resumePriority(partial.getType()),
+                                       partial.getType().isEmpty() ? Optional.empty() : Optional.of(partial.getType()),
+                                       partial.getCrBuild()).thenAccept(result -> log.info(result.getMessage()));
+                        } else {
+                            deleteQuietly(file);
+                        }
+                    });
+        } catch (IOException e) {
+            log.warning("Failed to read the partial downloads state: " + e.getMessage());
+        }
 
-        try (Stream<Path> walk = Files.walk(path)) {
-            return walk.filter(Files::isRegularFile).findFirst();
+        // segmented downloads can not be resumed, resumable uploads live on their own dir
+        try (Stream<Path> tmpFiles = Files.list(tmpDir)) {
+            tmpFiles.filter(Files::isRegularFile)
+                    .filter(file -> !resumed.contains(file.getFileName().toString()))
+                    .forEach(file -> {
+                        log.info("Removing orphan tmp file " + file);
+                        deleteQuietly(file);
+                    });
         } catch (IOException e) {
-            e.printStackTrace();
-            return Optional.empty();
+            log.warning("Failed to clean the tmp dir: " + e.getMessage());
+        }
+    }
+
+    private DownloadPriority resumePriority(String type) {
+        switch (type) {
+            case "nightly":
+                return DownloadPriority.NIGHTLY;
+            case "cr":
+                return DownloadPriority.CR;
+            default:
+                return DownloadPriority.PRELOAD;
+        }
+    }
+
+    private Path downloadStatePath(String fileName) {
+        return Paths.get(cacherProperties.getDownloadsStateDir(), fileName + STATE_EXTENSION);
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warning("Failed to delete " + file + ": " + e.getMessage());
         }
     }
 
+    /**
+     * What a HEAD request tells about the artifact before downloading it
+     */
+    private static class UpstreamHead {
+        private static final UpstreamHead UNKNOWN = new UpstreamHead(-1, false);
+
+        private final long size;
+        private final boolean acceptsRanges;
+
+        private UpstreamHead(long size, boolean acceptsRanges) {
+            this.size = size;
+            this.acceptsRanges = acceptsRanges;
+        }
+
+        /**
+         * Large artifacts served by an http server that accepts byte ranges are downloaded in segments
+         *
+         * @return the artifact size if it should be downloaded in segments, -1 otherwise
+         */
+        private long segmentableSize(long threshold) {
+            return acceptsRanges && size >= threshold ? size : -1;
+        }
+    }
+
+    /**
+     * @return the artifact size, -1 if unknown, and whether it can be downloaded in segments
+     */
+    private UpstreamHead head(String url) {
+        try (Response response = httpRequestHandler.execute(request(url).head().build(), HttpRequestHandler.Destination.ARTIFACTS)) {
+            if (response.code() != 200) {
+                return UpstreamHead.UNKNOWN;
+            }
+            return new UpstreamHead(Long.parseLong(response.header("Content-Length", "-1")),
+                                    "bytes".equalsIgnoreCase(response.header("Accept-Ranges")));
+        } catch (IOException | NumberFormatException e) {
+            // let the single connection download report it
+            return UpstreamHead.UNKNOWN;
+        }
+    }
+
+    private InputStream openRange(String url, long start, long end) throws IOException {
+        Response response = httpRequestHandler.execute(request(url).header("Range", "bytes=" + start + "-" + end).build(),
+                                                       HttpRequestHandler.Destination.ARTIFACTS);
+        if (response.code() != 206) {
+            response.close();
+            throw new IOException("Range " + start + "-" + end + " not honored by " + url + ", status " + response.code());
+        }
+        return bandwidthLimiter.throttle(UrlUtils.getHost(url), response.body().byteStream());
+    }
+
+    private ResumableDownload.Response openFrom(String url, long offset, String validator) throws IOException {
+        Response response = httpRequestHandler.execute(resumeRequest(url, offset, validator), HttpRequestHandler.Destination.ARTIFACTS);
+        int status = response.code();
+        if (status >= 400) {
+            response.close();
+            // timeouts and throttling are worth a retry, other client errors are not
+            if (status < 500 && status != 408 && status != 429) {
+                throw new DownloadRejectedException("Server returned HTTP response code: " + status + " for URL: " + url);
+            }
+            throw new IOException("Server returned HTTP response code: " + status + " for URL: " + url);
+        }
+        boolean partial = status == 206;
+        long total = response.body().contentLength();
+        if (partial) {
+            // bytes start-end/total
+            String contentRange = response.header("Content-Range");
+            int slash = contentRange == null ? -1 : contentRange.lastIndexOf('/');
+            try {
+                total = slash < 0 ? -1 : Long.parseLong(contentRange.substring(slash + 1).trim());
+            } catch (NumberFormatException e) {
+                total = -1;
+            }
+            if (total < 0) {
+                // can not verify the resumed content, download it whole
+                response.close();
+                return openFrom(url, 0, null);
+            }
+        }
+        String etag = response.header("ETag");
+        return new ResumableDownload.Response(bandwidthLimiter.throttle(UrlUtils.getHost(url), response.body().byteStream()), partial, total,
+                                              etag != null ? etag : response.header("Last-Modified"));
+    }
+
+    /**
+     * @return the request for the artifact from the given offset on, conditional on the validator if there is one.
+     * A download failed over to another mirror has no validator for it, the resumed total size is checked instead
+     */
+    static Request resumeRequest(String url, long offset, String validator) throws DownloadRejectedException {
+        Request.Builder request = request(url);
+        if (offset > 0) {
+            request.header("Range", "bytes=" + offset + "-");
+            if (validator != null) {
+                request.header("If-Range", validator);
+            }
+        }
+        return request.build();
+    }
+
+    private static Request.Builder request(String url) throws DownloadRejectedException {
+        try {
+            // byte offsets and lengths must refer to the artifact itself, not to a compressed transfer
+            return new Request.Builder().url(url).header("Accept-Encoding", "identity");
+        } catch (IllegalArgumentException e) {
+            throw new DownloadRejectedException("Unsupported url " + url, e);
+        }
+    }
+
+    /**
+     * If the given file exists, return its absolute path
+     *
+     * @param checksum to be searched
+     * @return file's absolute path
+     */
+    public Optional<Path> getFile(String checksum) {
+        return artifactIndex.get(checksum).map(IndexedArtifact::getPath);
+    }
+
     /**
      * verifies if the given checksum exists
      *
      * @param checksum for the given file
-     * @return true if there is a directory with the given checksum
+     * @return true if there is an artifact persisted with the given checksum
      */
     public boolean fileExists(String checksum) {
-        return Files.exists(Paths.get(cacherProperties.getCacherArtifactsDir() + "/" + checksum));
+        return artifactIndex.contains(checksum);
     }
 
     /**
@@ -280,103 +663,92 @@ public class CacherUtils {
      * @return true if the given file exists
      */
     public boolean fileExistsByNameExcludeTmp(String fileName) {
-        Path path = FileSystems.getDefault().getPath(cacherProperties.getCacherArtifactsDir());
-
-        try (Stream<Path> walk = Files.walk(path)) {
-            return walk.filter(Files::isRegularFile)
-                    .filter(file -> !file.toAbsolutePath().getParent().toString().endsWith("tmp"))
-                    .filter(file -> file.getFileName().toString().equals(fileName))
-                    .findFirst().isPresent();
-        } catch (IOException e) {
-            e.printStackTrace();
-            return false;
-        }
+        return artifactIndex.containsFileName(fileName);
     }
 
     /**
-     * Verifies if the given file exists on the persisted files, excludes tmp dir from the search
+     * Search the persisted files which names contains the given text, excludes tmp dir from the search
      *
      * @param fileName to be searched
      * @return List of found {@link PlainArtifact}
      */
     public List<PlainArtifact> getFilesByName(String fileName) {
-        Path path = FileSystems.getDefault().getPath(cacherProperties.getCacherArtifactsDir());
-
-        List<PlainArtifact> artifacts = new ArrayList<>();
-
-        try {
-            artifacts = Files.walk(path)
-                    .filter(Files::isRegularFile)
-                    .filter(file -> file.getFileName().toString().contains(fileName))
-                    .map(p -> {
-                        try {
-                            return new PlainArtifact(p.getFileName().toString(),
-                                                     p.getParent().getFileName().toString(),
-                                                     Files.getAttribute(p.toAbsolutePath(), "creationTime", LinkOption.NOFOLLOW_LINKS).toString());
-                        } catch (IOException e) {
-                            e.printStackTrace();
-                            return new PlainArtifact(p.getFileName().toString(),
-                                                     p.getParent().getFileName().toString(), "00");
-                        }
-                    }).collect(Collectors.toList());
-        } catch (final Exception e) {
-            e.printStackTrace();
-        }
-        return artifacts;
+        return getFilesByName(fileName, FileNameIndex.Match.SUBSTRING);
     }
 
     /**
-     * Generates the given file checksum
+     * Search the persisted files by name, excludes tmp dir from the search
      *
-     * @param filePath for the file on the filesystem.
-     * @return file checksum
-     * @throws IOException for IO exceptions while calculating the md5 checksum
+     * @param query text or glob pattern to be searched
+     * @param match how the query should be matched, see {@link FileNameIndex.Match}
+     * @return List of found {@link PlainArtifact}
      */
-    private String md5sum(String filePath) throws IOException {
-        StringBuilder result = new StringBuilder();
-        try {
-            MessageDigest messageDigest = MessageDigest.getInstance("MD5");
-
-            try (InputStream input = new FileInputStream(filePath)) {
-                byte[] block = new byte[4096];
-                int length;
-                while ((length = input.read(block)) > 0) {
-                    messageDigest.update(block, 0, length);
-                }
+    public List<PlainArtifact> getFilesByName(String query, FileNameIndex.Match match) {
+        return artifactIndex.searchByName(query, match).entrySet().stream()
+                .flatMap(found -> found.getValue().stream().map(artifact -> toPlainArtifact(artifact, found.getKey())))
+                .collect(Collectors.toList());
+    }
 
-                for (byte b : messageDigest.digest()) {
-                    result.append(String.format("%02x", b));
-                }
-            }
-        } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
-            return null;
+    /**
+     * Looks up many digests at once on the artifacts index, nothing is read from disk.
+     *
+     * @param digests md5, sha1, sha256 or sha512 hexadecimal digests
+     * @param baseUri base uri of the cacher, the download urls are built on it
+     * @return one lookup per digest, in the same order
+     * @throws IllegalArgumentException if more than {@link #MAX_LOOKUP_DIGESTS} digests are sent
+     */
+    public List<ArtifactLookup> lookup(List<String> digests, URI baseUri) {
+        if (digests.size() > MAX_LOOKUP_DIGESTS) {
+            throw new IllegalArgumentException("At most " + MAX_LOOKUP_DIGESTS + " digests can be looked up at once, " + digests.size() + " sent.");
+        }
+        List<ArtifactLookup> lookups = new ArrayList<>(digests.size());
+        for (String digest : digests) {
+            Optional<IndexedArtifact> artifact = digest == null ? Optional.empty() : artifactIndex.resolve(digest.trim());
+            lookups.add(artifact
+                                .map(found -> ArtifactLookup.found(digest, found.getChecksum(), found.getFileName(), found.getSize(),
+                                                                   baseUri.resolve("resource/" + found.getChecksum()).toString()))
+                                .orElseGet(() -> ArtifactLookup.missing(digest)));
         }
+        return lookups;
+    }
 
-        return result.toString();
+    /**
+     * @return the artifact, listed under the given name, along with its access statistics
+     */
+    private PlainArtifact toPlainArtifact(IndexedArtifact artifact, String fileName) {
+        PlainArtifact plainArtifact = artifact.toPlainArtifact();
+        plainArtifact.setFileName(fileName);
+        ArtifactStats stats = accessTracker.stats(artifact);
+        plainArtifact.setHits(stats.getHits());
+        plainArtifact.setBytesServed(stats.getBytesServed());
+        plainArtifact.setLastAccess(stats.getLastAccess());
+        return plainArtifact;
     }
 
     /**
      * @return all persisted files including the downloading ones.
      */
     public List<PlainArtifact> getPersistedArtifacts() {
-        Path path = FileSystems.getDefault().getPath(cacherProperties.getCacherArtifactsDir());
-
-        List<PlainArtifact> artifacts = new ArrayList<>();
-
-        try {
-            artifacts = Files.walk(path).filter(Files::isRegularFile)
+        // aliases are listed as well, each under its own name
+        List<PlainArtifact> artifacts = artifactIndex.all().stream()
+                .flatMap(artifact -> artifact.getFileNames().stream().map(name -> toPlainArtifact(artifact, name)))
+                .collect(Collectors.toList());
+
+        // files being downloaded are not indexed yet, the tmp dir is flat and small
+        try (Stream<Path> tmpFiles = Files.list(Paths.get(cacherProperties.getArtifactsTmpDir()))) {
+            tmpFiles.filter(Files::isRegularFile)
                     .map(p -> {
                         try {
                             return new PlainArtifact(p.getFileName().toString(),
                                                      p.getParent().getFileName().toString(),
-                                                     Files.getAttribute(p.toAbsolutePath(), "creationTime", LinkOption.NOFOLLOW_LINKS).toString(),
-                                                     null, null, null, 0);
+                                                     Files.getAttribute(p.toAbsolutePath(), "creationTime", LinkOption.NOFOLLOW_LINKS).toString());
                         } catch (IOException e) {
                             e.printStackTrace();
                             return null;
                         }
-                    }).collect(Collectors.toList());
+                    })
+                    .filter(Objects::nonNull)
+                    .forEach(artifacts::add);
         } catch (final Exception e) {
             e.printStackTrace();
         }
@@ -391,12 +763,14 @@ public class CacherUtils {
      */
     public boolean deleteArtifact(String checksum) {
         try {
-            Path path = FileSystems.getDefault().getPath(cacherProperties.getCacherArtifactsDir() + "/" + checksum);
-            try {
-                Files.walk(path).map(Path::toFile)
+            Path path = artifactIndex.remove(checksum)
+                    .map(artifact -> artifact.getPath().getParent())
+                    .orElse(artifactLayout.locateDir(checksum));
+            try (Stream<Path> walk = Files.walk(path)) {
+                walk.sorted(Comparator.reverseOrder())
+                        .map(Path::toFile)
                         .peek(f -> log.fine("Deleting " + f))
                         .forEach(File::delete);
-                Files.delete(path);
             } catch (IOException e) {
                 e.printStackTrace();
             }
@@ -416,18 +790,13 @@ public class CacherUtils {
 
         Pattern versionp = Pattern.compile("\\d.\\d{1,2}.\\d");
         Pattern identifierp = Pattern.compile("\\d.\\d{1,2}.\\d.Final-redhat-\\d{5}");
-        Optional<File> zipFile;
-        try {
-            zipFile = Files.walk(Paths.get(cacherProperties.getCacherArtifactsDir()))
-                    .map(Path::toFile)
-                    .filter(file -> file.getName().equals(zipFileName))
-                    .findFirst();
-        } catch (final Exception e) {
-            e.printStackTrace();
+        Optional<IndexedArtifact> zipFile = artifactIndex.getByFileName(zipFileName);
+        if (!zipFile.isPresent()) {
+            log.warning("File [" + zipFileName + "] not found on the artifacts index.");
             return "NONE";
         }
 
-        try (FileInputStream fis = new FileInputStream(zipFile.get().getAbsoluteFile());
+        try (InputStream fis = chunkStore.open(zipFile.get(), 0);
              BufferedInputStream bis = new BufferedInputStream(fis);
              ZipInputStream stream = new ZipInputStream(bis)) {
 
@@ -456,30 +825,31 @@ public class CacherUtils {
         return "NONE";
     }
 
-    public String writeFileToDisk(CacherUploadedFile input) {
-
-        String tmpFileLocation = cacherProperties.getArtifactsTmpDir() + "/" + input.fileName;
-        String checksum = "";
-
-        try (ReadableByteChannel readableByteChannel = Channels.newChannel(input.file);
-             FileOutputStream fos = new FileOutputStream(tmpFileLocation)) {
-
-            fos.getChannel().transferFrom(readableByteChannel, 0, Long.MAX_VALUE);
-
-            checksum = md5sum(tmpFileLocation);
+    /**
+     * Moves a fully received upload into the artifacts dir and indexes it, or registers its name as an alias if the
+     * same content is already there.
+     *
+     * @param file     received content, deleted if it is not persisted
+     * @param fileName artifact file name
+     * @param digests  digests computed while the content was received
+     * @return the upload outcome message
+     */
+    public String persistUpload(Path file, String fileName, Map<DigestAlgorithm, String> digests) {
+        String checksum = digests.get(DigestAlgorithm.MD5);
 
+        try {
             try {
-                Files.createDirectory(Paths.get(cacherProperties.getCacherArtifactsDir() + "/" + checksum));
-                Files.move(Paths.get(tmpFileLocation),
-                           Paths.get(cacherProperties.getCacherArtifactsDir() + "/" + checksum + "/" + input.fileName));
+                store(checksum, file, fileName, "", digests);
             } catch (FileAlreadyExistsException e) {
-                Files.delete(Paths.get(tmpFileLocation));
-                return "File " + input.fileName + " already exists";
+                Files.delete(file);
+                return aliasUpload(checksum, fileName);
             }
+            // the upload size is only known now
+            capacityManager.enforce();
         } catch (final Exception e) {
             try {
-                Files.delete(Paths.get(tmpFileLocation));
-                Files.delete(Paths.get(cacherProperties.getCacherArtifactsDir() + "/" + checksum));
+                Files.deleteIfExists(file);
+                Files.delete(artifactLayout.artifactDir(checksum));
             } catch (IOException ex) {
                 // ignore
             }
@@ -488,4 +858,18 @@ public class CacherUtils {
 
         return "File persisted, checksum is: " + checksum;
     }
+
+    /**
+     * Answers an upload whose content is already persisted, recording its name as an alias of the artifact.
+     *
+     * @param checksum checksum of the persisted artifact
+     * @param fileName uploaded file name
+     * @return the upload outcome message
+     */
+    public String aliasUpload(String checksum, String fileName) {
+        if (artifactIndex.addAlias(checksum, fileName)) {
+            return "File " + fileName + " persisted as an alias of " + existingName(checksum) + ", checksum is: " + checksum;
+        }
+        return "File " + fileName + " already exists";
+    }
 }
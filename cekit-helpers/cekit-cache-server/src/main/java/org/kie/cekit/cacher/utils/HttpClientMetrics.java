@@ -0,0 +1,62 @@
+package org.kie.cekit.cacher.utils;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import org.kie.cekit.cacher.objects.HttpClientStats;
+
+/**
+ * Counts the calls and connections of the shared http client, a connection acquired without being opened by the
+ * same call was reused from the pool.
+ */
+class HttpClientMetrics extends EventListener {
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder failedCalls = new LongAdder();
+    private final LongAdder connectionsOpened = new LongAdder();
+    private final LongAdder connectionsAcquired = new LongAdder();
+    private final Map<String, LongAdder> callsByHost = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> connectionsByProtocol = new ConcurrentHashMap<>();
+
+    @Override
+    public void callStart(Call call) {
+        calls.increment();
+        callsByHost.computeIfAbsent(call.request().url().host(), host -> new LongAdder()).increment();
+    }
+
+    @Override
+    public void callFailed(Call call, IOException ioe) {
+        failedCalls.increment();
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+        connectionsOpened.increment();
+    }
+
+    @Override
+    public void connectionAcquired(Call call, Connection connection) {
+        connectionsAcquired.increment();
+        connectionsByProtocol.computeIfAbsent(connection.protocol().toString(), protocol -> new LongAdder()).increment();
+    }
+
+    HttpClientStats snapshot(int connections, int idleConnections, int activeCalls) {
+        long opened = connectionsOpened.sum();
+        return new HttpClientStats(connections, idleConnections, activeCalls, calls.sum(), failedCalls.sum(), opened,
+                                   Math.max(0, connectionsAcquired.sum() - opened), sums(callsByHost), sums(connectionsByProtocol));
+    }
+
+    private static Map<String, Long> sums(Map<String, LongAdder> counters) {
+        Map<String, Long> sums = new TreeMap<>();
+        counters.forEach((key, counter) -> sums.put(key, counter.sum()));
+        return sums;
+    }
+}
@@ -19,6 +19,9 @@ import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.X509Certificate;
 import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
@@ -27,49 +30,131 @@ import javax.net.ssl.SSLContext;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 
+import okhttp3.ConnectionPool;
 import okhttp3.ConnectionSpec;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import okhttp3.Request;
 import okhttp3.Response;
+import org.kie.cekit.cacher.objects.HttpClientStats;
 import org.kie.cekit.cacher.properties.CacherProperties;
 
+/**
+ * Single entry point for the upstream http traffic.
+ * All the clients share the same connection pool, dispatcher and TLS context, so connections, HTTP/2 sessions and
+ * TLS sessions are reused across calls and destinations. Each {@link Destination} differs on its timeouts, and only
+ * the artifacts and metadata clients skip the certificate verification when all certificates are trusted.
+ */
 @ApplicationScoped
 public class HttpRequestHandler {
 
+    private static final long KEEP_ALIVE_MINUTES = 5;
+
+    /**
+     * Upstream traffic classes
+     */
+    public enum Destination {
+        /**
+         * artifact downloads, long transfers
+         */
+        ARTIFACTS,
+        /**
+         * small files from the build servers and maven repositories, e.g. build properties and checksums
+         */
+        METADATA,
+        /**
+         * GitHub and Google Chat apis
+         */
+        API
+    }
+
     @Inject
     CacherProperties props;
 
-    public static Response executeHttpCall(String url, boolean trustAll) throws IOException {
-        if (url.startsWith("https")) {
-            if (trustAll) {
-                return getUntrustedHttpsClient().newCall(getRequest(url)).execute();
-            }
-            return getHttpsClient().newCall(getRequest(url)).execute();
-        } else {
-            return getHttpCleatTextClient().newCall(getRequest(url)).execute();
+    private final HttpClientMetrics metrics = new HttpClientMetrics();
+    private final Map<Destination, OkHttpClient> clients = new EnumMap<>(Destination.class);
+    private OkHttpClient base;
+
+    /**
+     * Executes a GET request
+     *
+     * @param url         to be requested
+     * @param destination traffic class
+     * @return the response, to be closed by the caller
+     * @throws IOException if the request could not be executed
+     */
+    public Response executeHttpCall(String url, Destination destination) throws IOException {
+        return execute(getRequest(url), destination);
+    }
+
+    /**
+     * @param request     to be executed
+     * @param destination traffic class
+     * @return the response, to be closed by the caller
+     * @throws IOException if the request could not be executed
+     */
+    public Response execute(Request request, Destination destination) throws IOException {
+        return client(destination).newCall(request).execute();
+    }
+
+    /**
+     * @param destination traffic class
+     * @return the shared client configured with the destination timeouts
+     */
+    public OkHttpClient client(Destination destination) {
+        synchronized (clients) {
+            return clients.computeIfAbsent(destination, this::build);
         }
     }
 
-    private static OkHttpClient getHttpCleatTextClient() {
-        return new OkHttpClient.Builder()
-                // no https required.
-                .connectionSpecs(Arrays.asList(ConnectionSpec.CLEARTEXT))
-                .build();
+    /**
+     * @return connection pool usage and calls executed so far
+     */
+    public HttpClientStats stats() {
+        OkHttpClient client = client(Destination.ARTIFACTS);
+        return metrics.snapshot(client.connectionPool().connectionCount(),
+                                client.connectionPool().idleConnectionCount(),
+                                client.dispatcher().runningCallsCount());
     }
 
-    private static OkHttpClient getHttpsClient() {
-        return new OkHttpClient.Builder()
-                .connectionSpecs(Arrays.asList(ConnectionSpec.MODERN_TLS, ConnectionSpec.COMPATIBLE_TLS))
-                .build();
+    /**
+     * Closes the idle connections, the calls in flight are not interrupted
+     */
+    public void shutdown() {
+        synchronized (clients) {
+            if (base != null) {
+                base.dispatcher().executorService().shutdown();
+                base.connectionPool().evictAll();
+            }
+        }
     }
 
-    private static OkHttpClient getUntrustedHttpsClient() {
-        OkHttpClient.Builder client = new OkHttpClient.Builder();
-        return client
-                .sslSocketFactory(getSslContext().getSocketFactory(), (X509TrustManager) getTrustManager()[0])
-                .hostnameVerifier((hostname, session) -> true)
-                .connectionSpecs(Arrays.asList(ConnectionSpec.MODERN_TLS, ConnectionSpec.COMPATIBLE_TLS))
-                .build();
+    private OkHttpClient build(Destination destination) {
+        OkHttpClient.Builder builder = base().newBuilder()
+                .connectTimeout(props.httpConnectTimeout(), TimeUnit.SECONDS)
+                .readTimeout(props.httpReadTimeout(destination), TimeUnit.SECONDS);
+        if (destination == Destination.API) {
+            builder.callTimeout(props.httpReadTimeout(destination), TimeUnit.SECONDS);
+        } else if (props.trustAllCerts()) {
+            // the api calls carry credentials, they always verify the server certificate
+            builder.sslSocketFactory(getSslContext().getSocketFactory(), (X509TrustManager) getTrustManager()[0])
+                    .hostnameVerifier((hostname, session) -> true);
+        }
+        return builder.build();
+    }
+
+    // guarded by clients
+    private OkHttpClient base() {
+        if (base == null) {
+            base = new OkHttpClient.Builder()
+                    .connectionPool(new ConnectionPool(props.httpMaxIdleConnections(), KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                    // HTTP/2 is negotiated through ALPN on TLS connections
+                    .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                    .connectionSpecs(Arrays.asList(ConnectionSpec.MODERN_TLS, ConnectionSpec.COMPATIBLE_TLS, ConnectionSpec.CLEARTEXT))
+                    .eventListener(metrics)
+                    .build();
+        }
+        return base;
     }
 
     private static Request getRequest(String url) {
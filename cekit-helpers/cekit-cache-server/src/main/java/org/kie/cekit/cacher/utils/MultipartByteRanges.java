@@ -0,0 +1,71 @@
+package org.kie.cekit.cacher.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Framing of a multipart/byteranges response body (RFC 7233, appendix A).
+ * The body is made of, for each range, its part header followed by the range bytes, and then the trailer.
+ */
+public class MultipartByteRanges {
+
+    private static final String CRLF = "\r\n";
+
+    private final List<ByteRange> ranges;
+    private final long size;
+    private final String partContentType;
+    private final String boundary;
+
+    public MultipartByteRanges(List<ByteRange> ranges, long size, String partContentType) {
+        this.ranges = ranges;
+        this.size = size;
+        this.partContentType = partContentType;
+        this.boundary = UUID.randomUUID().toString().replace("-", "");
+    }
+
+    public List<ByteRange> getRanges() {
+        return ranges;
+    }
+
+    /**
+     * @return the Content-Type header value of the whole response
+     */
+    public String contentType() {
+        return "multipart/byteranges; boundary=" + boundary;
+    }
+
+    /**
+     * @param index range position
+     * @return the boundary and headers that precede the range bytes
+     */
+    public byte[] partHeader(int index) {
+        StringBuilder header = new StringBuilder();
+        if (index > 0) {
+            header.append(CRLF);
+        }
+        header.append("--").append(boundary).append(CRLF)
+                .append("Content-Type: ").append(partContentType).append(CRLF)
+                .append("Content-Range: ").append(ranges.get(index).contentRange(size)).append(CRLF)
+                .append(CRLF);
+        return header.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @return the closing boundary
+     */
+    public byte[] trailer() {
+        return (CRLF + "--" + boundary + "--" + CRLF).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @return the exact length of the response body
+     */
+    public long contentLength() {
+        long length = trailer().length;
+        for (int i = 0; i < ranges.size(); i++) {
+            length += partHeader(i).length + ranges.get(i).getLength();
+        }
+        return length;
+    }
+}
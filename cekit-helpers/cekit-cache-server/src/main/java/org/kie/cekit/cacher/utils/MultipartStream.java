@@ -0,0 +1,265 @@
+package org.kie.cekit.cacher.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads a multipart/form-data body (RFC 7578) part by part straight from the request stream, so uploaded files are
+ * never buffered in memory nor copied to a temporary file before reaching their destination.
+ * Each part must be fully read, or skipped, before the next one is requested.
+ */
+public class MultipartStream {
+
+    private static final Pattern BOUNDARY = Pattern.compile("boundary=(?:\"([^\"]+)\"|([^;\\s]+))", Pattern.CASE_INSENSITIVE);
+    private static final Pattern NAME = Pattern.compile("[; ]name=\"([^\"]*)\"", Pattern.CASE_INSENSITIVE);
+    private static final Pattern FILE_NAME = Pattern.compile("[; ]filename=\"([^\"]*)\"", Pattern.CASE_INSENSITIVE);
+    private static final int MAX_HEADERS_SIZE = 8 * 1024;
+
+    private final InputStream input;
+    // CRLF--boundary, the CRLF ending the previous part belongs to the delimiter
+    private final byte[] delimiter;
+    private final byte[] buffer;
+    private int head;
+    private int tail;
+    private boolean eof;
+    private boolean finished;
+    private Part current;
+
+    /**
+     * @param input       request body
+     * @param contentType request content type, carrying the boundary
+     * @throws IOException if the content type has no boundary
+     */
+    public MultipartStream(InputStream input, String contentType) throws IOException {
+        Matcher matcher = BOUNDARY.matcher(contentType == null ? "" : contentType);
+        if (!matcher.find()) {
+            throw new IOException("No multipart boundary found on content type [" + contentType + "]");
+        }
+        String boundary = matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
+        this.input = input;
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        this.buffer = new byte[Math.max(64 * 1024, delimiter.length * 2)];
+        // the first boundary is not preceded by a CRLF
+        buffer[0] = '\r';
+        buffer[1] = '\n';
+        tail = 2;
+    }
+
+    /**
+     * @return the next part, empty once the closing boundary is reached
+     * @throws IOException if the body is malformed or truncated
+     */
+    public Optional<Part> nextPart() throws IOException {
+        if (finished) {
+            return Optional.empty();
+        }
+        // skips the preamble, or whatever was left of the previous part
+        Part skipped = current != null ? current : new Part("", null);
+        byte[] discard = new byte[8192];
+        while (skipped.content.read(discard, 0, discard.length) != -1) {
+            // discarded
+        }
+        if (!fill(2)) {
+            throw new IOException("Unexpected end of multipart body");
+        }
+        if (buffer[head] == '-' && buffer[head + 1] == '-') {
+            finished = true;
+            return Optional.empty();
+        }
+        String headers = readHeaders();
+        Matcher name = NAME.matcher(headers);
+        Matcher fileName = FILE_NAME.matcher(headers);
+        current = new Part(name.find() ? name.group(1) : "", fileName.find() ? fileName.group(1) : null);
+        return Optional.of(current);
+    }
+
+    /**
+     * Reads the rest of the boundary line, padding included, and the part headers, up to the empty line.
+     */
+    private String readHeaders() throws IOException {
+        ByteArrayOutputStream headers = new ByteArrayOutputStream();
+        int lineLength = 0;
+        boolean boundaryLine = true;
+        while (true) {
+            if (!fill(1)) {
+                throw new IOException("Unexpected end of multipart headers");
+            }
+            byte b = buffer[head++];
+            if (b == '\n') {
+                if (boundaryLine) {
+                    boundaryLine = false;
+                } else if (lineLength == 0) {
+                    return new String(headers.toByteArray(), StandardCharsets.UTF_8);
+                } else {
+                    headers.write(' ');
+                }
+                lineLength = 0;
+            } else if (b != '\r') {
+                if (!boundaryLine) {
+                    headers.write(b);
+                }
+                lineLength++;
+            }
+            if (headers.size() > MAX_HEADERS_SIZE) {
+                throw new IOException("Multipart headers too large");
+            }
+        }
+    }
+
+    /**
+     * Makes sure at least the given number of bytes is buffered, unless the body ends first.
+     *
+     * @return false if the body ended before
+     */
+    private boolean fill(int wanted) throws IOException {
+        while (tail - head < wanted && !eof) {
+            if (head > 0) {
+                System.arraycopy(buffer, head, buffer, 0, tail - head);
+                tail -= head;
+                head = 0;
+            }
+            int read = input.read(buffer, tail, buffer.length - tail);
+            if (read == -1) {
+                eof = true;
+            } else {
+                tail += read;
+            }
+        }
+        return tail - head >= wanted;
+    }
+
+    /**
+     * @param end the search stops at this position of the buffer
+     * @return position of the delimiter on the buffered bytes, -1 if it is not there
+     */
+    private int findDelimiter(int end) {
+        for (int i = head; i <= end - delimiter.length; i++) {
+            if (buffer[i] != delimiter[0]) {
+                continue;
+            }
+            int j = 1;
+            while (j < delimiter.length && buffer[i + j] == delimiter[j]) {
+                j++;
+            }
+            if (j == delimiter.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * A part of the body, its content ends right before the next boundary.
+     */
+    public class Part {
+
+        private final String name;
+        private final String fileName;
+        private final InputStream content = new PartInputStream();
+
+        private Part(String name, String fileName) {
+            this.name = name;
+            this.fileName = fileName;
+        }
+
+        /**
+         * @return the form field name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the name of the uploaded file, empty for plain form fields
+         */
+        public Optional<String> getFileName() {
+            return Optional.ofNullable(fileName).filter(f -> !f.isEmpty());
+        }
+
+        /**
+         * @return the part content, not to be closed
+         */
+        public InputStream getContent() {
+            return content;
+        }
+
+        /**
+         * @param maxLength max number of bytes accepted
+         * @return the part content as text
+         * @throws IOException if the content is longer than the given length
+         */
+        public String asString(int maxLength) throws IOException {
+            ByteArrayOutputStream text = new ByteArrayOutputStream();
+            byte[] chunk = new byte[1024];
+            int read;
+            while ((read = content.read(chunk, 0, chunk.length)) != -1) {
+                text.write(chunk, 0, read);
+                if (text.size() > maxLength) {
+                    throw new IOException("Form field " + name + " is longer than " + maxLength + " bytes");
+                }
+            }
+            return new String(text.toByteArray(), StandardCharsets.UTF_8).trim();
+        }
+
+        /**
+         * @return true for the given form field name, case insensitive
+         */
+        public boolean is(String field) {
+            return name.toLowerCase(Locale.ROOT).equals(field.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    private class PartInputStream extends InputStream {
+
+        private boolean ended;
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (ended) {
+                return -1;
+            }
+            if (len == 0) {
+                return 0;
+            }
+            while (true) {
+                fill(delimiter.length);
+                // no need to look further than the bytes requested
+                int end = (int) Math.min(tail, (long) head + len + delimiter.length - 1);
+                int found = findDelimiter(end);
+                if (found == head) {
+                    ended = true;
+                    head += delimiter.length;
+                    return -1;
+                }
+                // bytes that can not be the start of a delimiter
+                int available = found != -1 ? found - head : end - head - (delimiter.length - 1);
+                if (available > 0) {
+                    int read = Math.min(len, available);
+                    System.arraycopy(buffer, head, b, off, read);
+                    head += read;
+                    return read;
+                }
+                if (eof) {
+                    throw new IOException("Unexpected end of multipart body");
+                }
+                // a partial delimiter is buffered, read more
+                int before = tail - head;
+                if (!fill(before + 1) && tail - head == before) {
+                    throw new IOException("Unexpected end of multipart body");
+                }
+            }
+        }
+    }
+}
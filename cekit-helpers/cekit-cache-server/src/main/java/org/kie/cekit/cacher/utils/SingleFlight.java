@@ -0,0 +1,92 @@
+package org.kie.cekit.cacher.utils;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Makes sure a resource is produced by only one call at a time.
+ * Calls are keyed by the resource they produce, e.g. the target file name, and identified by what is requested,
+ * e.g. the url. A call for a resource already in flight with the same request attaches to it and receives the
+ * same result through its future; a call with a different request waits for the one in flight to finish and then
+ * runs on its own, so two calls never write to the same resource at the same time.
+ *
+ * @param <T> call result
+ */
+public class SingleFlight<T> {
+
+    private final Map<String, Flight<T>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * @param resource what the call produces
+     * @param request  identifies the call, calls with the same request are coalesced
+     * @param call     work to be done, runs on the caller thread if there is no call in flight
+     * @return the result of this call, or of the identical call in flight
+     */
+    public T execute(String resource, String request, Supplier<T> call) {
+        while (true) {
+            Flight<T> mine = new Flight<>(request);
+            Flight<T> current = inFlight.putIfAbsent(resource, mine);
+            if (current == null) {
+                try {
+                    T result = call.get();
+                    mine.future.complete(result);
+                    return result;
+                } catch (RuntimeException | Error e) {
+                    mine.future.completeExceptionally(e);
+                    throw e;
+                } finally {
+                    inFlight.remove(resource, mine);
+                }
+            }
+            if (current.request.equals(request)) {
+                return join(current.future);
+            }
+            try {
+                current.future.join();
+            } catch (CompletionException | CancellationException e) {
+                // the other call failed, ours can go ahead
+            }
+        }
+    }
+
+    /**
+     * @param resource what the call produces
+     * @return the future of the call in flight for the given resource, if any
+     */
+    public Optional<CompletableFuture<T>> get(String resource) {
+        Flight<T> flight = inFlight.get(resource);
+        return flight == null ? Optional.empty() : Optional.of(flight.future);
+    }
+
+    /**
+     * @return number of calls in flight
+     */
+    public int size() {
+        return inFlight.size();
+    }
+
+    private T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static class Flight<T> {
+        private final String request;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private Flight(String request) {
+            this.request = request;
+        }
+    }
+}
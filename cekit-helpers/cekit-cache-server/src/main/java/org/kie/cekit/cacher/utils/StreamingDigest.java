@@ -0,0 +1,172 @@
+package org.kie.cekit.cacher.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+import org.kie.cekit.cacher.artifacts.DigestAlgorithm;
+
+/**
+ * Copies an artifact from its source to the disk while computing its checksums, so the content is read only once.
+ * Every {@link DigestAlgorithm} is updated from the same buffer. A direct buffer is used, the bytes read from the
+ * network or upload body are handed to the file channel without being copied to the java heap.
+ */
+public class StreamingDigest {
+
+    public static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final Map<DigestAlgorithm, MessageDigest> digests = new EnumMap<>(DigestAlgorithm.class);
+    private Map<DigestAlgorithm, String> result;
+    private long bytes;
+
+    public StreamingDigest() {
+        for (DigestAlgorithm algorithm : DigestAlgorithm.values()) {
+            try {
+                digests.put(algorithm, MessageDigest.getInstance(algorithm.getJcaName()));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(algorithm.getJcaName() + " is not supported by this JVM", e);
+            }
+        }
+    }
+
+    /**
+     * Computes the digests of a file already on the disk.
+     *
+     * @param file to be digested
+     * @return the hexadecimal digests
+     * @throws IOException for IO exceptions while reading the file
+     */
+    public static Map<DigestAlgorithm, String> of(Path file) throws IOException {
+        StreamingDigest digest = new StreamingDigest();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return digest.digests();
+    }
+
+    /**
+     * Computes the digests of a content only available as a stream, the stream is consumed but not closed.
+     *
+     * @param content to be digested
+     * @return the hexadecimal digests
+     * @throws IOException for IO exceptions while reading the content
+     */
+    public static Map<DigestAlgorithm, String> of(InputStream content) throws IOException {
+        StreamingDigest digest = new StreamingDigest();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = content.read(buffer)) != -1) {
+            digest.update(ByteBuffer.wrap(buffer, 0, read));
+        }
+        return digest.digests();
+    }
+
+    /**
+     * Copies the whole source to the target, updating the digests with every byte written.
+     *
+     * @param source where the artifact is read from
+     * @param target where the artifact is written to
+     * @return number of bytes copied
+     * @throws IOException for IO exceptions while reading or writing
+     */
+    public long transfer(ReadableByteChannel source, WritableByteChannel target) throws IOException {
+        return transfer(source, target, written -> {
+        });
+    }
+
+    /**
+     * Copies the whole source to the target, updating the digests with every byte written.
+     *
+     * @param source   where the artifact is read from
+     * @param target   where the artifact is written to
+     * @param progress notified with the number of bytes written after every chunk
+     * @return number of bytes copied
+     * @throws IOException for IO exceptions while reading or writing
+     */
+    public long transfer(ReadableByteChannel source, WritableByteChannel target, LongConsumer progress) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        long copied = 0;
+        while (source.read(buffer) != -1) {
+            buffer.flip();
+            update(buffer.duplicate());
+            int chunk = buffer.remaining();
+            while (buffer.hasRemaining()) {
+                target.write(buffer);
+            }
+            copied += chunk;
+            progress.accept(chunk);
+            buffer.clear();
+        }
+        return copied;
+    }
+
+    /**
+     * @param chunk bytes to be added to the digests, the buffer is consumed
+     */
+    public void update(ByteBuffer chunk) {
+        bytes += chunk.remaining();
+        int position = chunk.position();
+        for (MessageDigest digest : digests.values()) {
+            chunk.position(position);
+            digest.update(chunk);
+        }
+    }
+
+    /**
+     * @return number of bytes digested so far
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Completes the digests, no more bytes can be added afterwards.
+     *
+     * @return the hexadecimal digest of every {@link DigestAlgorithm}
+     */
+    public Map<DigestAlgorithm, String> digests() {
+        if (result == null) {
+            Map<DigestAlgorithm, String> hex = new EnumMap<>(DigestAlgorithm.class);
+            digests.forEach((algorithm, digest) -> hex.put(algorithm, toHex(digest.digest())));
+            result = Collections.unmodifiableMap(hex);
+        }
+        return result;
+    }
+
+    /**
+     * Completes the digests, no more bytes can be added afterwards.
+     *
+     * @return the hexadecimal md5 checksum
+     */
+    public String md5() {
+        return digests().get(DigestAlgorithm.MD5);
+    }
+
+    /**
+     * @param digest raw digest bytes
+     * @return the lowercase hexadecimal representation
+     */
+    public static String toHex(byte[] digest) {
+        StringBuilder result = new StringBuilder();
+        for (byte b : digest) {
+            result.append(String.format("%02x", b));
+        }
+        return result.toString();
+    }
+}
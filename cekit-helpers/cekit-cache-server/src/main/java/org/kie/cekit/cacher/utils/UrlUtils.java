@@ -40,4 +40,17 @@ public class UrlUtils {
             return e.getMessage();
         }
     }
+
+    /**
+     * extract the host for the given url
+     * @param url
+     * @return lower case host, empty if the url is not valid
+     */
+    public static String getHost(String url) {
+        try {
+            return new URL(url).getHost().toLowerCase();
+        } catch (MalformedURLException e) {
+            return "";
+        }
+    }
 }
@@ -0,0 +1,82 @@
+package org.kie.cekit.cacher;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+
+import javax.enterprise.inject.Vetoed;
+
+import org.kie.cekit.cacher.artifacts.ArtifactJournal;
+import org.kie.cekit.cacher.artifacts.IndexedArtifact;
+import org.kie.cekit.cacher.properties.CacherProperties;
+
+/**
+ * Shared by the tests working on an artifacts store kept in a temporary dir.
+ */
+public final class StoreFixture {
+
+    private StoreFixture() {
+    }
+
+    /**
+     * Creates the artifacts, tmp, metadata and chunks dirs of the given properties.
+     *
+     * @return the properties
+     */
+    public static <T extends CacherProperties> T createDirs(T cacherProperties) throws IOException {
+        Files.createDirectories(Paths.get(cacherProperties.getArtifactsTmpDir()));
+        Files.createDirectories(Paths.get(cacherProperties.getMetadataDir()));
+        Files.createDirectories(Paths.get(cacherProperties.getChunksDir()));
+        return cacherProperties;
+    }
+
+    /**
+     * @return a journal recording nothing, for tests not restarting the index
+     */
+    public static ArtifactJournal noopJournal() {
+        return new ArtifactJournal() {
+            @Override
+            public void added(IndexedArtifact artifact) {
+            }
+
+            @Override
+            public void deleted(String checksum) {
+            }
+
+            @Override
+            public synchronized void compact(Collection<IndexedArtifact> artifacts) {
+            }
+        };
+    }
+
+    /**
+     * Properties keeping the artifacts, metadata and chunks dirs under a base dir, the tmp and uploads dirs follow
+     * the artifacts dir. Tests needing other values override them on an anonymous subclass.
+     */
+    @Vetoed
+    public static class StoreProperties extends CacherProperties {
+
+        private final Path baseDir;
+
+        public StoreProperties(Path baseDir) {
+            this.baseDir = baseDir;
+        }
+
+        @Override
+        public String getCacherArtifactsDir() {
+            return baseDir.resolve("artifacts").toString();
+        }
+
+        @Override
+        public String getMetadataDir() {
+            return baseDir.resolve("metadata").toString();
+        }
+
+        @Override
+        public String getChunksDir() {
+            return baseDir.resolve("chunks").toString();
+        }
+    }
+}
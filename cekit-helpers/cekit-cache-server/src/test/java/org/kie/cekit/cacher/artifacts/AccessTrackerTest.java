@@ -0,0 +1,114 @@
+package org.kie.cekit.cacher.artifacts;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kie.cekit.cacher.StoreFixture;
+import org.kie.cekit.cacher.StoreFixture.StoreProperties;
+import org.kie.cekit.cacher.objects.AccessStats;
+import org.kie.cekit.cacher.objects.ArtifactStats;
+import org.kie.cekit.cacher.properties.CacherProperties;
+
+public class AccessTrackerTest {
+
+    @TempDir
+    private Path baseDir;
+    private CacherProperties cacherProperties;
+    private ArtifactIndex artifactIndex;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        cacherProperties = StoreFixture.createDirs(new StoreProperties(baseDir));
+        artifactIndex = new ArtifactIndex();
+        artifactIndex.cacherProperties = cacherProperties;
+        artifactIndex.artifactJournal = StoreFixture.noopJournal();
+        artifactIndex.put(artifact("a", 1));
+        artifactIndex.put(artifact("b", 2));
+        artifactIndex.put(artifact("c", 3));
+    }
+
+    @Test
+    public void countersTest() {
+        AccessTracker accessTracker = accessTracker();
+        accessTracker.recordAccess("a", 100);
+        accessTracker.recordAccess("a", 10);
+
+        ArtifactStats stats = accessTracker.stats(artifactIndex.get("a").get());
+        Assertions.assertEquals(2, stats.getHits());
+        Assertions.assertEquals(110, stats.getBytesServed());
+        Assertions.assertNotNull(stats.getLastAccess());
+        Assertions.assertTrue(accessTracker.lastAccess(artifactIndex.get("a").get()) > 1);
+
+        ArtifactStats never = accessTracker.stats(artifactIndex.get("b").get());
+        Assertions.assertEquals(0, never.getHits());
+        Assertions.assertNull(never.getLastAccess());
+        Assertions.assertEquals(2, accessTracker.lastAccess(artifactIndex.get("b").get()));
+    }
+
+    @Test
+    public void orderTest() throws InterruptedException {
+        AccessTracker accessTracker = accessTracker();
+        accessTracker.recordAccess("a", 10);
+        accessTracker.recordAccess("a", 10);
+        accessTracker.recordAccess("a", 10);
+        Thread.sleep(5);
+        accessTracker.recordAccess("b", 1000);
+
+        AccessStats stats = accessTracker.stats(AccessTracker.Order.HITS, 0);
+        Assertions.assertEquals(3, stats.getArtifacts());
+        Assertions.assertEquals(1, stats.getNeverServed());
+        Assertions.assertEquals(4, stats.getHits());
+        Assertions.assertEquals(1030, stats.getBytesServed());
+        Assertions.assertEquals(Arrays.asList("a", "b", "c"), checksums(stats));
+
+        Assertions.assertEquals(Arrays.asList("b", "a", "c"), checksums(accessTracker.stats(AccessTracker.Order.BYTES, 0)));
+        Assertions.assertEquals(Arrays.asList("b", "a"), checksums(accessTracker.stats(AccessTracker.Order.RECENT, 2)));
+        Assertions.assertEquals(Arrays.asList("c", "a", "b"), checksums(accessTracker.stats(AccessTracker.Order.COLD, 0)));
+    }
+
+    @Test
+    public void parseOrderTest() {
+        Assertions.assertEquals(AccessTracker.Order.HITS, AccessTracker.Order.of(null));
+        Assertions.assertEquals(AccessTracker.Order.COLD, AccessTracker.Order.of("cold"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> AccessTracker.Order.of("warm"));
+    }
+
+    @Test
+    public void flushAndLoadTest() {
+        AccessTracker accessTracker = accessTracker();
+        accessTracker.recordAccess("a", 100);
+        accessTracker.recordAccess("b", 50);
+        artifactIndex.remove("b");
+        accessTracker.flush();
+
+        AccessTracker restarted = accessTracker();
+        restarted.load();
+        Assertions.assertEquals(1, restarted.hits("a"));
+        Assertions.assertEquals(100, restarted.stats(artifactIndex.get("a").get()).getBytesServed());
+        // removed artifacts are not persisted
+        Assertions.assertEquals(0, restarted.hits("b"));
+    }
+
+    private List<String> checksums(AccessStats stats) {
+        return stats.getStats().stream().map(ArtifactStats::getChecksum).collect(Collectors.toList());
+    }
+
+    private IndexedArtifact artifact(String checksum, long creationTime) {
+        return new IndexedArtifact(checksum, checksum + ".zip", Paths.get(checksum, checksum + ".zip"), 10, creationTime, "");
+    }
+
+    private AccessTracker accessTracker() {
+        AccessTracker accessTracker = new AccessTracker();
+        accessTracker.cacherProperties = cacherProperties;
+        accessTracker.artifactIndex = artifactIndex;
+        return accessTracker;
+    }
+}
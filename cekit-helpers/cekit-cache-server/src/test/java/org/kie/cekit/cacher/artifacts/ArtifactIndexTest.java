@@ -0,0 +1,231 @@
+package org.kie.cekit.cacher.artifacts;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kie.cekit.cacher.StoreFixture;
+import org.kie.cekit.cacher.StoreFixture.StoreProperties;
+import org.kie.cekit.cacher.properties.CacherProperties;
+import org.kie.cekit.cacher.utils.StreamingDigest;
+
+public class ArtifactIndexTest {
+
+    private static final String CHECKSUM = "0d3955b0fed4a2d03d1adc29b3fd7c67";
+    private static final String REBUILT = "8039610bc1401c3c3c21c2fd75707c9b";
+    private static final String ADDED = "dfe927040dbd33159b61b2c92e0b7ae2";
+    private static final String NIGHTLY = "rhpam-7.13.0.redhat-20220601-kie-server-ee8.zip";
+    private static final String CR = "rhpam-7.13.0.redhat-00001-kie-server-ee8.zip";
+
+    @TempDir
+    private Path baseDir;
+    private CacherProperties cacherProperties;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        cacherProperties = StoreFixture.createDirs(new StoreProperties(baseDir));
+    }
+
+    @Test
+    public void registerAndRemoveTest() throws IOException {
+        ArtifactIndex index = index();
+        Path file = artifact(NIGHTLY);
+        IndexedArtifact registered = index.register(CHECKSUM, file, "http://localhost/" + NIGHTLY).get();
+
+        Assertions.assertEquals(NIGHTLY, registered.getFileName());
+        Assertions.assertEquals(file.toAbsolutePath(), registered.getPath());
+        Assertions.assertEquals(Files.size(file), registered.getSize());
+        Assertions.assertEquals("http://localhost/" + NIGHTLY, registered.getSourceUrl());
+        Assertions.assertEquals(1, index.size());
+        Assertions.assertTrue(index.contains(CHECKSUM));
+        Assertions.assertEquals(registered, index.get(CHECKSUM).get());
+        Assertions.assertEquals(registered, index.resolve(CHECKSUM.toUpperCase()).get());
+        Assertions.assertEquals(registered, index.getByFileName(NIGHTLY).get());
+        Assertions.assertFalse(index.register("unknown", baseDir.resolve("missing.zip")).isPresent());
+        Assertions.assertFalse(index.contains("unknown"));
+
+        Assertions.assertEquals(registered, index.remove(CHECKSUM).get());
+        Assertions.assertFalse(index.remove(CHECKSUM).isPresent());
+        Assertions.assertEquals(0, index.size());
+        Assertions.assertFalse(index.get(CHECKSUM).isPresent());
+        Assertions.assertFalse(index.containsFileName(NIGHTLY));
+        Assertions.assertTrue(index.search("kie-server", FileNameIndex.Match.SUBSTRING).isEmpty());
+    }
+
+    @Test
+    public void sameFileNameTest() throws IOException {
+        ArtifactIndex index = index();
+        // the same nightly name rebuilt with another content
+        index.register(CHECKSUM, artifact(CHECKSUM, NIGHTLY));
+        index.register(REBUILT, artifact(REBUILT, NIGHTLY));
+        Assertions.assertEquals(2, index.search(NIGHTLY, FileNameIndex.Match.GLOB).size());
+
+        index.remove(CHECKSUM);
+        Assertions.assertTrue(index.containsFileName(NIGHTLY));
+        Assertions.assertEquals(REBUILT, index.getByFileName(NIGHTLY).get().getChecksum());
+
+        // replaced by a file with another name, the previous name is gone
+        Path renamed = artifact(REBUILT, CR);
+        Files.delete(renamed.resolveSibling(NIGHTLY));
+        index.register(REBUILT, renamed);
+        Assertions.assertFalse(index.containsFileName(NIGHTLY));
+        Assertions.assertEquals(REBUILT, index.getByFileName(CR).get().getChecksum());
+        Assertions.assertEquals(1, index.size());
+    }
+
+    @Test
+    public void reconcileTest() throws IOException {
+        ArtifactIndex index = index();
+        index.register(CHECKSUM, artifact(CHECKSUM, NIGHTLY));
+        Path removed = artifact(REBUILT, CR);
+        index.register(REBUILT, removed);
+        // changed out-of-band
+        Files.delete(removed);
+        Files.delete(removed.getParent());
+        Path added = artifact(ADDED, NIGHTLY);
+
+        index.reconcile();
+        Assertions.assertEquals(2, index.size());
+        Assertions.assertFalse(index.contains(REBUILT));
+        Assertions.assertFalse(index.containsFileName(CR));
+        Assertions.assertEquals(added.toAbsolutePath(), index.get(ADDED).get().getPath());
+        Assertions.assertTrue(index.get(CHECKSUM).get().hasAllDigests());
+
+        // and journaled
+        index.artifactJournal.close();
+        ArtifactIndex restarted = index();
+        restarted.load();
+        Assertions.assertEquals(2, restarted.size());
+        Assertions.assertFalse(restarted.contains(REBUILT));
+    }
+
+    @Test
+    public void aliasTest() throws IOException {
+        ArtifactIndex index = index();
+        index.register(CHECKSUM, artifact(NIGHTLY));
+
+        Assertions.assertTrue(index.addAlias(CHECKSUM, CR));
+        Assertions.assertFalse(index.addAlias(CHECKSUM, CR));
+        Assertions.assertFalse(index.addAlias(CHECKSUM, NIGHTLY));
+        Assertions.assertFalse(index.addAlias("unknown", CR));
+
+        Assertions.assertEquals(CHECKSUM, index.getByFileName(CR).get().getChecksum());
+        Assertions.assertEquals(NIGHTLY, index.getByFileName(CR).get().getFileName());
+        Assertions.assertEquals(Arrays.asList(NIGHTLY, CR), Arrays.asList(index.get(CHECKSUM).get().getFileNames().toArray()));
+        // found once, but listed under every matching name
+        Assertions.assertEquals(1, index.search("kie-server", FileNameIndex.Match.SUBSTRING).size());
+        Map<String, List<IndexedArtifact>> byName = index.searchByName("*-00001-*", FileNameIndex.Match.GLOB);
+        Assertions.assertEquals(Collections.singleton(CR), byName.keySet());
+
+        index.remove(CHECKSUM);
+        Assertions.assertFalse(index.containsFileName(NIGHTLY));
+        Assertions.assertFalse(index.containsFileName(CR));
+    }
+
+    @Test
+    public void aliasJournaledTest() throws IOException {
+        ArtifactIndex index = index();
+        index.register(CHECKSUM, artifact(NIGHTLY));
+        index.addAlias(CHECKSUM, CR);
+        index.artifactJournal.close();
+
+        ArtifactIndex restarted = index();
+        restarted.load();
+        Assertions.assertEquals(Collections.singleton(CR), restarted.get(CHECKSUM).get().getAliases());
+        Assertions.assertTrue(restarted.containsFileName(CR));
+
+        restarted.compact();
+        ArtifactIndex compacted = index();
+        compacted.load();
+        Assertions.assertEquals(Collections.singleton(CR), compacted.get(CHECKSUM).get().getAliases());
+    }
+
+    @Test
+    public void reconcileKeepsAliasTest() throws IOException {
+        ArtifactIndex index = index();
+        index.register(CHECKSUM, artifact(NIGHTLY));
+        index.addAlias(CHECKSUM, CR);
+        Assertions.assertFalse(index.get(CHECKSUM).get().hasAllDigests());
+
+        index.reconcile();
+        IndexedArtifact reconciled = index.get(CHECKSUM).get();
+        Assertions.assertTrue(reconciled.hasAllDigests());
+        Assertions.assertEquals(Collections.singleton(CR), reconciled.getAliases());
+        Assertions.assertEquals(CHECKSUM, index.resolve(reconciled.getDigests().get(DigestAlgorithm.SHA256)).get().getChecksum());
+    }
+
+    @Test
+    public void reconcileChunkedKeepsAliasTest() throws IOException {
+        ArtifactIndex index = index();
+        Path file = artifact(NIGHTLY);
+        index.register(CHECKSUM, file, "", StreamingDigest.of(file));
+        index.addAlias(CHECKSUM, CR);
+        // the manifest is saved before the entry is marked as chunked
+        int size = (int) Files.size(file);
+        new ChunkManifest(NIGHTLY, Arrays.asList(CHECKSUM, REBUILT), Arrays.asList(size - 10, 10)).save(file.resolveSibling(ChunkManifest.FILE_NAME));
+
+        index.reconcile();
+        IndexedArtifact reconciled = index.get(CHECKSUM).get();
+        Assertions.assertTrue(reconciled.isChunked());
+        Assertions.assertEquals(Collections.singleton(CR), reconciled.getAliases());
+        Assertions.assertTrue(reconciled.hasAllDigests());
+
+        index.artifactJournal.close();
+        ArtifactIndex restarted = index();
+        restarted.load();
+        Assertions.assertEquals(Collections.singleton(CR), restarted.get(CHECKSUM).get().getAliases());
+    }
+
+    @Test
+    public void dropMissingDuringMigrationTest() throws IOException {
+        ArtifactIndex index = index();
+        Path flat = artifact(NIGHTLY);
+        index.register(CHECKSUM, flat);
+        index.addAlias(CHECKSUM, CR);
+        // moved by the migration, not relocated yet
+        Path shard = index.artifactLayout.artifactDir(CHECKSUM);
+        Files.createDirectories(shard.getParent());
+        Files.move(flat.getParent(), shard);
+
+        Assertions.assertEquals(1, index.dropMissing());
+        Assertions.assertEquals(shard.resolve(NIGHTLY).toAbsolutePath(), index.get(CHECKSUM).get().getPath());
+        Assertions.assertEquals(Collections.singleton(CR), index.get(CHECKSUM).get().getAliases());
+
+        Files.delete(shard.resolve(NIGHTLY));
+        Assertions.assertEquals(1, index.dropMissing());
+        Assertions.assertFalse(index.contains(CHECKSUM));
+    }
+
+    private Path artifact(String fileName) throws IOException {
+        return artifact(CHECKSUM, fileName);
+    }
+
+    private Path artifact(String checksum, String fileName) throws IOException {
+        Path file = baseDir.resolve("artifacts").resolve(checksum).resolve(fileName);
+        Files.createDirectories(file.getParent());
+        Files.write(file, (checksum + fileName).getBytes());
+        return file;
+    }
+
+    private ArtifactIndex index() {
+        ArtifactLayout layout = new ArtifactLayout();
+        layout.cacherProperties = cacherProperties;
+        ArtifactJournal journal = new ArtifactJournal();
+        journal.cacherProperties = cacherProperties;
+        journal.artifactLayout = layout;
+        ArtifactIndex index = new ArtifactIndex();
+        index.cacherProperties = cacherProperties;
+        index.artifactJournal = journal;
+        index.artifactLayout = layout;
+        layout.artifactIndex = index;
+        return index;
+    }
+}
@@ -0,0 +1,162 @@
+package org.kie.cekit.cacher.artifacts;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kie.cekit.cacher.StoreFixture;
+import org.kie.cekit.cacher.StoreFixture.StoreProperties;
+import org.kie.cekit.cacher.properties.CacherProperties;
+
+public class ArtifactJournalTest {
+
+    private static final String NIGHTLY_MD5 = "0d3955b0fed4a2d03d1adc29b3fd7c67";
+    private static final String CR_MD5 = "8039610bc1401c3c3c21c2fd75707c9b";
+    private static final String JAR_MD5 = "dfe927040dbd33159b61b2c92e0b7ae2";
+    private static final String SHA512 = "cf83e1357eefb8bdf1542850d66d8007d620e4050b5715dc83f4a921d36ce9ce47d0d13c5d85f2b0ff8318d2877eec2f63b931bd47417a81a538327af927da3e";
+
+    @TempDir
+    private Path baseDir;
+    private ArtifactJournal journal;
+    // replayed state, in the order the artifacts were added
+    private final Map<String, IndexedArtifact> replayed = new LinkedHashMap<>();
+
+    @BeforeEach
+    public void setup() throws IOException {
+        StoreFixture.createDirs(new StoreProperties(baseDir));
+        journal = journal();
+    }
+
+    @AfterEach
+    public void cleanup() {
+        journal.close();
+    }
+
+    @Test
+    public void nothingToReplayTest() {
+        Assertions.assertFalse(replay());
+        Assertions.assertTrue(replayed.isEmpty());
+    }
+
+    @Test
+    public void replayRecordsInOrderTest() {
+        journal.added(artifact(NIGHTLY_MD5, "rhpam-kie-server.zip"));
+        journal.added(artifact(CR_MD5, "rhdm-kie-server.zip"));
+        journal.deleted(NIGHTLY_MD5);
+        journal.added(artifact(JAR_MD5, "jboss-remoting.jar"));
+        journal.deleted(JAR_MD5);
+        // added back after being deleted
+        journal.added(artifact(JAR_MD5, "jboss-remoting.jar").withAlias("remoting.jar"));
+        journal.close();
+
+        Assertions.assertTrue(replay());
+        Assertions.assertEquals(Arrays.asList(CR_MD5, JAR_MD5), Arrays.asList(replayed.keySet().toArray()));
+        IndexedArtifact jar = replayed.get(JAR_MD5);
+        Assertions.assertEquals("jboss-remoting.jar", jar.getFileName());
+        Assertions.assertEquals(1024, jar.getSize());
+        Assertions.assertEquals("http://localhost/jboss-remoting.jar", jar.getSourceUrl());
+        Assertions.assertEquals(SHA512, jar.getDigest(DigestAlgorithm.SHA512).get());
+        Assertions.assertEquals(Collections.singleton("remoting.jar"), jar.getAliases());
+        Assertions.assertEquals(baseDir.resolve("artifacts").resolve("df").resolve("e9").resolve(JAR_MD5).resolve("jboss-remoting.jar").toAbsolutePath(),
+                                jar.getPath());
+    }
+
+    @Test
+    public void replayAfterCompactionTest() throws IOException {
+        journal.added(artifact(NIGHTLY_MD5, "rhpam-kie-server.zip"));
+        journal.added(artifact(CR_MD5, "rhdm-kie-server.zip"));
+        journal.compact(Arrays.asList(artifact(NIGHTLY_MD5, "rhpam-kie-server.zip"), artifact(CR_MD5, "rhdm-kie-server.zip")));
+        Assertions.assertFalse(Files.exists(journalFile()));
+        Assertions.assertEquals(2, Files.readAllLines(snapshotFile()).size());
+
+        // recorded after the snapshot, replayed on top of it
+        journal.deleted(NIGHTLY_MD5);
+        journal.added(artifact(JAR_MD5, "jboss-remoting.jar"));
+        journal.close();
+        Assertions.assertEquals(2, Files.readAllLines(journalFile()).size());
+
+        Assertions.assertTrue(journal().replay(artifact -> replayed.put(artifact.getChecksum(), artifact), replayed::remove));
+        Assertions.assertEquals(Arrays.asList(CR_MD5, JAR_MD5), Arrays.asList(replayed.keySet().toArray()));
+    }
+
+    @Test
+    public void truncatedLastRecordTest() throws IOException {
+        journal.added(artifact(NIGHTLY_MD5, "rhpam-kie-server.zip"));
+        journal.close();
+        // crashed while writing the sha512 of the next record
+        String record = Files.readAllLines(journalFile()).get(0).replace(NIGHTLY_MD5, CR_MD5);
+        Files.write(journalFile(), record.substring(0, record.indexOf(SHA512) + 10).getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.APPEND);
+
+        Assertions.assertTrue(replay());
+        Assertions.assertEquals(Collections.singleton(NIGHTLY_MD5), replayed.keySet());
+
+        // the next record is not mangled by the truncated one
+        ArtifactJournal restarted = journal();
+        restarted.added(artifact(JAR_MD5, "jboss-remoting.jar"));
+        restarted.close();
+        replayed.clear();
+        Assertions.assertTrue(replay());
+        Assertions.assertEquals(Arrays.asList(NIGHTLY_MD5, JAR_MD5), Arrays.asList(replayed.keySet().toArray()));
+        Assertions.assertEquals(2, Files.readAllLines(journalFile()).size());
+    }
+
+    @Test
+    public void malformedRecordsTest() throws IOException {
+        Files.write(journalFile(), Arrays.asList("garbage",
+                                                 "ADD\t" + CR_MD5 + "\trhdm-kie-server.zip\tnot a size\t0\t",
+                                                 "DEL",
+                                                 "ADD\t" + NIGHTLY_MD5 + "\trhpam-kie-server.zip\t2048\t0\thttp://localhost/rhpam-kie-server.zip"),
+                    StandardCharsets.UTF_8);
+
+        Assertions.assertTrue(replay());
+        Assertions.assertEquals(Collections.singleton(NIGHTLY_MD5), replayed.keySet());
+        // written by an older version, without digests, storage nor aliases
+        IndexedArtifact nightly = replayed.get(NIGHTLY_MD5);
+        Assertions.assertEquals(2048, nightly.getSize());
+        Assertions.assertFalse(nightly.getDigest(DigestAlgorithm.SHA512).isPresent());
+        Assertions.assertFalse(nightly.isChunked());
+        Assertions.assertTrue(nightly.getAliases().isEmpty());
+    }
+
+    private boolean replay() {
+        return journal().replay(artifact -> replayed.put(artifact.getChecksum(), artifact), replayed::remove);
+    }
+
+    private IndexedArtifact artifact(String checksum, String fileName) {
+        Map<DigestAlgorithm, String> digests = new EnumMap<>(DigestAlgorithm.class);
+        digests.put(DigestAlgorithm.MD5, checksum);
+        digests.put(DigestAlgorithm.SHA512, SHA512);
+        return new IndexedArtifact(checksum, fileName, baseDir.resolve(fileName), 1024, 0, "http://localhost/" + fileName, digests);
+    }
+
+    private Path journalFile() {
+        return baseDir.resolve("metadata").resolve("journal.log");
+    }
+
+    private Path snapshotFile() {
+        return baseDir.resolve("metadata").resolve("snapshot.tsv");
+    }
+
+    private ArtifactJournal journal() {
+        CacherProperties cacherProperties = new StoreProperties(baseDir);
+        ArtifactLayout layout = new ArtifactLayout();
+        layout.cacherProperties = cacherProperties;
+        ArtifactJournal journal = new ArtifactJournal();
+        journal.cacherProperties = cacherProperties;
+        journal.artifactLayout = layout;
+        return journal;
+    }
+}
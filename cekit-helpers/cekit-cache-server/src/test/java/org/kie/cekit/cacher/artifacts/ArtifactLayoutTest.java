@@ -0,0 +1,142 @@
+package org.kie.cekit.cacher.artifacts;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kie.cekit.cacher.StoreFixture;
+import org.kie.cekit.cacher.StoreFixture.StoreProperties;
+import org.kie.cekit.cacher.properties.CacherProperties;
+
+public class ArtifactLayoutTest {
+
+    private static final String CHECKSUM = "0d3955b0fed4a2d03d1adc29b3fd7c67";
+    private static final String OTHER_CHECKSUM = "8039610bc1401c3c3c21c2fd75707c9b";
+
+    @TempDir
+    private Path baseDir;
+    private CacherProperties cacherProperties;
+    private ArtifactIndex artifactIndex;
+    private ArtifactJournal journal;
+    private final List<String> deleted = new ArrayList<>();
+
+    @BeforeEach
+    public void setup() throws IOException {
+        cacherProperties = StoreFixture.createDirs(new StoreProperties(baseDir));
+
+        journal = new ArtifactJournal() {
+            @Override
+            public void added(IndexedArtifact artifact) {
+            }
+
+            @Override
+            public void deleted(String checksum) {
+                deleted.add(checksum);
+            }
+        };
+        artifactIndex = new ArtifactIndex();
+        artifactIndex.cacherProperties = cacherProperties;
+        artifactIndex.artifactJournal = journal;
+    }
+
+    @Test
+    public void shardedDirTest() {
+        ArtifactLayout layout = layout();
+        Assertions.assertEquals(baseDir.resolve("artifacts/0d/39/" + CHECKSUM), layout.artifactDir(CHECKSUM));
+    }
+
+    @Test
+    public void migrateTest() throws IOException {
+        Path flat = flatArtifact(CHECKSUM, "jboss-remoting-5.0.9.Final.jar");
+        flatArtifact(OTHER_CHECKSUM, "jandex-2.1.1.Final-sources.jar");
+        artifactIndex.register(CHECKSUM, flat);
+
+        ArtifactLayout layout = layout();
+        layout.load();
+        Assertions.assertEquals(flat.getParent(), layout.locateDir(CHECKSUM));
+
+        layout.migrate();
+
+        Path sharded = layout.artifactDir(CHECKSUM).resolve("jboss-remoting-5.0.9.Final.jar");
+        Assertions.assertTrue(Files.exists(sharded));
+        Assertions.assertFalse(Files.exists(flat.getParent()));
+        Assertions.assertTrue(Files.exists(layout.artifactDir(OTHER_CHECKSUM).resolve("jandex-2.1.1.Final-sources.jar")));
+        Assertions.assertEquals(sharded.toAbsolutePath(), artifactIndex.get(CHECKSUM).get().getPath());
+        Assertions.assertEquals(layout.artifactDir(CHECKSUM), layout.locateDir(CHECKSUM));
+        // the tmp dir is not an artifact
+        Assertions.assertTrue(Files.isDirectory(baseDir.resolve("artifacts/tmp")));
+
+        ArtifactLayout restarted = layout();
+        restarted.load();
+        Assertions.assertTrue(restarted.isMigrated());
+    }
+
+    @Test
+    public void resumeInterruptedMigrationTest() throws IOException {
+        flatArtifact(CHECKSUM, "a.jar");
+        flatArtifact(CHECKSUM, "b.jar");
+        ArtifactLayout layout = layout();
+        // interrupted after moving the first file
+        Files.createDirectories(layout.artifactDir(CHECKSUM));
+        Files.move(baseDir.resolve("artifacts").resolve(CHECKSUM).resolve("a.jar"), layout.artifactDir(CHECKSUM).resolve("a.jar"));
+
+        layout.migrate();
+
+        Assertions.assertTrue(layout.isMigrated());
+        Assertions.assertFalse(Files.exists(baseDir.resolve("artifacts").resolve(CHECKSUM)));
+        try (Stream<Path> files = Files.list(layout.artifactDir(CHECKSUM))) {
+            List<String> names = files.map(file -> file.getFileName().toString()).sorted().collect(Collectors.toList());
+            Assertions.assertEquals(2, names.size());
+        }
+    }
+
+    @Test
+    public void reconcileDuringMigrationTest() throws IOException {
+        Path flat = flatArtifact(CHECKSUM, "jboss-remoting-5.0.9.Final.jar");
+        ArtifactLayout layout = layout();
+        // reconciled after the artifact dir is moved into its shard, before the index is updated
+        artifactIndex = new ArtifactIndex() {
+            @Override
+            public synchronized void relocate(String checksum, Path path) {
+                reconcile();
+                super.relocate(checksum, path);
+            }
+        };
+        artifactIndex.cacherProperties = cacherProperties;
+        artifactIndex.artifactJournal = journal;
+        artifactIndex.artifactLayout = layout;
+        layout.artifactIndex = artifactIndex;
+        artifactIndex.register(CHECKSUM, flat);
+        artifactIndex.addAlias(CHECKSUM, "remoting.jar");
+
+        layout.migrate();
+
+        Path sharded = layout.artifactDir(CHECKSUM).resolve("jboss-remoting-5.0.9.Final.jar");
+        Assertions.assertEquals(sharded.toAbsolutePath(), artifactIndex.get(CHECKSUM).get().getPath());
+        Assertions.assertTrue(artifactIndex.get(CHECKSUM).get().getAliases().contains("remoting.jar"));
+        Assertions.assertTrue(deleted.isEmpty());
+    }
+
+    private Path flatArtifact(String checksum, String fileName) throws IOException {
+        Path file = baseDir.resolve("artifacts").resolve(checksum).resolve(fileName);
+        Files.createDirectories(file.getParent());
+        Files.write(file, fileName.getBytes());
+        return file;
+    }
+
+    private ArtifactLayout layout() {
+        ArtifactLayout layout = new ArtifactLayout();
+        layout.cacherProperties = cacherProperties;
+        layout.artifactIndex = artifactIndex;
+        artifactIndex.artifactLayout = layout;
+        return layout;
+    }
+}
@@ -0,0 +1,194 @@
+package org.kie.cekit.cacher.artifacts;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kie.cekit.cacher.StoreFixture;
+import org.kie.cekit.cacher.StoreFixture.StoreProperties;
+import org.kie.cekit.cacher.properties.CacherProperties;
+import org.kie.cekit.cacher.utils.CacherUtils;
+
+public class CapacityManagerTest {
+
+    @TempDir
+    private Path baseDir;
+    private CacherProperties cacherProperties;
+    private long quota = 1000;
+    private EvictionPolicy policy = EvictionPolicy.LRU;
+    private ArtifactIndex artifactIndex;
+    private AccessTracker accessTracker;
+    // chunks of the chunked artifacts, 100 bytes each
+    private final Map<String, List<String>> chunks = new HashMap<>();
+    private boolean collected;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        cacherProperties = StoreFixture.createDirs(new StoreProperties(baseDir) {
+            @Override
+            public long capacityQuota() {
+                return quota;
+            }
+
+            @Override
+            public EvictionPolicy capacityEvictionPolicy() {
+                return policy;
+            }
+        });
+        artifactIndex = new ArtifactIndex();
+        artifactIndex.cacherProperties = cacherProperties;
+        artifactIndex.artifactJournal = StoreFixture.noopJournal();
+        accessTracker = new AccessTracker();
+        artifactIndex.put(artifact("a", 300, 1));
+        artifactIndex.put(artifact("b", 300, 2));
+        artifactIndex.put(artifact("c", 300, 3));
+    }
+
+    @Test
+    public void reserveEvictsLeastRecentlyUsedTest() {
+        CapacityManager capacityManager = capacityManager();
+        accessTracker.recordAccess("a", 300);
+
+        // 900 used + 100 goes over the 900 high watermark, evicted down to 750 - 100
+        Assertions.assertEquals(100, capacityManager.reserve(100));
+        Assertions.assertEquals(Arrays.asList("a", "c"), checksums());
+        Assertions.assertEquals(100, capacityManager.status().getReserved());
+
+        capacityManager.release(100);
+        Assertions.assertEquals(0, capacityManager.status().getReserved());
+        Assertions.assertEquals(1, capacityManager.status().getEvicted());
+    }
+
+    @Test
+    public void underHighWatermarkTest() {
+        quota = 2000;
+        CapacityManager capacityManager = capacityManager();
+        capacityManager.reserve(500);
+        Assertions.assertEquals(3, artifactIndex.size());
+    }
+
+    @Test
+    public void disabledTest() {
+        quota = 0;
+        CapacityManager capacityManager = capacityManager();
+        Assertions.assertEquals(0, capacityManager.reserve(10000));
+        capacityManager.evictNow();
+        Assertions.assertEquals(3, artifactIndex.size());
+    }
+
+    @Test
+    public void pinnedNeverEvictedTest() {
+        CapacityManager capacityManager = capacityManager();
+        Assertions.assertTrue(capacityManager.pin("a").isPresent());
+        Assertions.assertTrue(capacityManager.pin("b").isPresent());
+        Assertions.assertFalse(capacityManager.pin("unknown").isPresent());
+
+        Assertions.assertEquals(600, capacityManager.evictNow());
+        Assertions.assertEquals(Arrays.asList("a", "b"), checksums());
+
+        // everything left is pinned
+        capacityManager.reserve(500);
+        Assertions.assertEquals(Arrays.asList("a", "b"), checksums());
+
+        // restored on restarts
+        CapacityManager restarted = capacityManager();
+        restarted.load();
+        Assertions.assertTrue(restarted.isPinned("a"));
+        Assertions.assertTrue(restarted.unpin("a"));
+        Assertions.assertFalse(restarted.unpin("a"));
+        restarted.load();
+        Assertions.assertFalse(restarted.isPinned("a"));
+        Assertions.assertTrue(restarted.isPinned("b"));
+    }
+
+    @Test
+    public void lfuTest() {
+        policy = EvictionPolicy.LFU;
+        CapacityManager capacityManager = capacityManager();
+        accessTracker.recordAccess("a", 300);
+        accessTracker.recordAccess("a", 300);
+        accessTracker.recordAccess("b", 300);
+        accessTracker.recordAccess("c", 300);
+        accessTracker.recordAccess("c", 300);
+
+        capacityManager.evictNow();
+        Assertions.assertEquals(Arrays.asList("a", "c"), checksums());
+    }
+
+    @Test
+    public void sizeTest() {
+        policy = EvictionPolicy.SIZE;
+        artifactIndex.put(artifact("d", 50, 0));
+        artifactIndex.put(artifact("e", 600, 4));
+        CapacityManager capacityManager = capacityManager();
+
+        // 1550 bytes down to 750, the small one is kept even if it is the oldest
+        capacityManager.evictNow();
+        Assertions.assertEquals(Arrays.asList("b", "c", "d"), checksums());
+    }
+
+    @Test
+    public void chunkedUsageTest() {
+        chunks.put("d", Arrays.asList("x", "y", "z"));
+        chunks.put("e", Arrays.asList("x", "y", "w"));
+        artifactIndex.put(artifact("d", 600, 0).withChunked(true));
+        artifactIndex.put(artifact("e", 600, 4).withChunked(true));
+        CapacityManager capacityManager = capacityManager();
+        // 900 plain bytes plus 4 distinct chunks, not the 1200 bytes the chunked artifacts would take once restored
+        Assertions.assertEquals(1300, capacityManager.status().getUsed());
+
+        // evicting d only frees its own chunk
+        Assertions.assertEquals(600, capacityManager.evictNow());
+        Assertions.assertEquals(Arrays.asList("c", "e"), checksums());
+        Assertions.assertEquals(700, capacityManager.status().getEvictedBytes());
+        Assertions.assertTrue(collected);
+    }
+
+    private List<String> checksums() {
+        return artifactIndex.all().stream().map(IndexedArtifact::getChecksum).sorted().collect(Collectors.toList());
+    }
+
+    private IndexedArtifact artifact(String checksum, long size, long creationTime) {
+        return new IndexedArtifact(checksum, checksum + ".zip", Paths.get(checksum, checksum + ".zip"), size, creationTime, "");
+    }
+
+    private CapacityManager capacityManager() {
+        CapacityManager capacityManager = new CapacityManager();
+        capacityManager.cacherProperties = cacherProperties;
+        capacityManager.artifactIndex = artifactIndex;
+        capacityManager.accessTracker = accessTracker;
+        capacityManager.cacherUtils = new CacherUtils() {
+            @Override
+            public boolean deleteArtifact(String checksum) {
+                return artifactIndex.remove(checksum).isPresent();
+            }
+        };
+        ChunkStore chunkStore = new ChunkStore() {
+            @Override
+            long storedBytes() {
+                return artifactIndex.all().stream()
+                        .filter(IndexedArtifact::isChunked)
+                        .flatMap(artifact -> chunks.get(artifact.getChecksum()).stream())
+                        .distinct()
+                        .count() * 100;
+            }
+
+            @Override
+            public void collect() {
+                collected = true;
+            }
+        };
+        chunkStore.artifactIndex = artifactIndex;
+        capacityManager.chunkStore = chunkStore;
+        return capacityManager;
+    }
+}
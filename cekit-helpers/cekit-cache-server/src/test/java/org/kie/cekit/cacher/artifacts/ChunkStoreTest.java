@@ -0,0 +1,234 @@
+package org.kie.cekit.cacher.artifacts;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kie.cekit.cacher.StoreFixture;
+import org.kie.cekit.cacher.StoreFixture.StoreProperties;
+import org.kie.cekit.cacher.objects.DedupReport;
+import org.kie.cekit.cacher.objects.ProductDedup;
+import org.kie.cekit.cacher.properties.CacherProperties;
+import org.kie.cekit.cacher.utils.StreamingDigest;
+
+public class ChunkStoreTest {
+
+    private static final String NIGHTLY_1 = "rhpam-7.13.0.redhat-20220601-kie-server-ee8.zip";
+    private static final String NIGHTLY_2 = "rhpam-7.13.0.redhat-20220602-kie-server-ee8.zip";
+
+    @TempDir
+    private Path baseDir;
+    private ArtifactIndex artifactIndex;
+    private ChunkStore chunkStore;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        CacherProperties cacherProperties = StoreFixture.createDirs(new StoreProperties(baseDir) {
+            @Override
+            public boolean isChunksEnabled() {
+                return true;
+            }
+        });
+
+        artifactIndex = new ArtifactIndex();
+        artifactIndex.cacherProperties = cacherProperties;
+        artifactIndex.artifactJournal = StoreFixture.noopJournal();
+        chunkStore = new ChunkStore();
+        chunkStore.cacherProperties = cacherProperties;
+        chunkStore.artifactIndex = artifactIndex;
+    }
+
+    @Test
+    public void boundariesFollowContentTest() throws IOException {
+        byte[] nightly = content(4 * 1024 * 1024, 1);
+        byte[] next = insert(nightly, 1024 * 1024, content(1000, 2));
+
+        List<String> nightlyChunks = split(nightly);
+        List<String> nextChunks = split(next);
+
+        Assertions.assertTrue(nightlyChunks.size() > 4);
+        // only the chunks around the insertion differ
+        long shared = nightlyChunks.stream().filter(nextChunks::contains).count();
+        Assertions.assertTrue(shared >= nightlyChunks.size() - 2, shared + " of " + nightlyChunks.size() + " chunks shared");
+        Assertions.assertEquals(nightlyChunks, split(nightly));
+    }
+
+    @Test
+    public void chunkSizesTest() throws IOException {
+        List<Integer> lengths = new ArrayList<>();
+        new Chunker().split(new ByteArrayInputStream(content(8 * 1024 * 1024, 3)), (chunk, length) -> lengths.add(length));
+        for (int i = 0; i < lengths.size() - 1; i++) {
+            Assertions.assertTrue(lengths.get(i) >= Chunker.MIN_SIZE && lengths.get(i) <= Chunker.MAX_SIZE);
+        }
+        Assertions.assertEquals(8 * 1024 * 1024, lengths.stream().mapToInt(Integer::intValue).sum());
+    }
+
+    @Test
+    public void ingestTest() throws IOException {
+        byte[] nightly = content(3 * 1024 * 1024, 1);
+        byte[] next = insert(nightly, 512 * 1024, content(4096, 2));
+        IndexedArtifact first = persist(NIGHTLY_1, nightly);
+        IndexedArtifact second = persist(NIGHTLY_2, next);
+
+        chunkStore.ingest();
+
+        IndexedArtifact chunked = artifactIndex.get(first.getChecksum()).get();
+        Assertions.assertTrue(chunked.isChunked());
+        Assertions.assertTrue(artifactIndex.get(second.getChecksum()).get().isChunked());
+        Assertions.assertFalse(Files.exists(first.getPath()));
+        Assertions.assertTrue(Files.exists(chunked.getContentPath()));
+        Assertions.assertEquals(first.getDigests(), chunked.getDigests());
+
+        Assertions.assertArrayEquals(nightly, read(chunkStore.open(chunked, 0)));
+        Assertions.assertArrayEquals(next, read(chunkStore.open(artifactIndex.get(second.getChecksum()).get(), 0)));
+        Assertions.assertArrayEquals(Arrays.copyOfRange(nightly, 1_000_000, nightly.length),
+                                     read(chunkStore.open(chunked, 1_000_000)));
+
+        DedupReport report = chunkStore.report();
+        Assertions.assertEquals(2, report.getChunkedArtifacts());
+        Assertions.assertEquals(0, report.getPendingArtifacts());
+        Assertions.assertEquals(nightly.length + next.length, report.getLogicalBytes());
+        Assertions.assertTrue(report.getRatio() > 1.5, "ratio " + report.getRatio());
+        Assertions.assertEquals(1, report.getProducts().size());
+        ProductDedup product = report.getProducts().get(0);
+        Assertions.assertEquals("rhpam-kie-server-ee8", product.getProduct());
+        Assertions.assertEquals(2, product.getArtifacts());
+        Assertions.assertEquals(report.getStoredBytes(), product.getStoredBytes());
+        Assertions.assertEquals(report.getStoredBytes(), chunkStore.storedBytes());
+    }
+
+    @Test
+    public void digestMismatchTest() throws IOException {
+        IndexedArtifact artifact = persist(NIGHTLY_1, content(1024 * 1024, 1));
+        Map<DigestAlgorithm, String> wrong = new HashMap<>(artifact.getDigests());
+        wrong.put(DigestAlgorithm.SHA256, "00" + wrong.get(DigestAlgorithm.SHA256).substring(2));
+        artifactIndex.put(artifact.withDigests(wrong));
+
+        chunkStore.ingest();
+
+        Assertions.assertFalse(artifactIndex.get(artifact.getChecksum()).get().isChunked());
+        Assertions.assertTrue(Files.exists(artifact.getPath()));
+        Assertions.assertFalse(Files.exists(artifact.getPath().resolveSibling(ChunkManifest.FILE_NAME)));
+    }
+
+    @Test
+    public void collectTest() throws IOException {
+        byte[] nightly = content(3 * 1024 * 1024, 1);
+        IndexedArtifact first = persist(NIGHTLY_1, nightly);
+        IndexedArtifact second = persist(NIGHTLY_2, content(2 * 1024 * 1024, 4));
+        chunkStore.ingest();
+        long before = chunks();
+
+        artifactIndex.remove(second.getChecksum());
+        chunkStore.collect();
+
+        Assertions.assertTrue(chunks() < before);
+        Assertions.assertEquals(ChunkManifest.load(artifactIndex.get(first.getChecksum()).get().getContentPath()).getChunks().size(), chunks());
+        Assertions.assertArrayEquals(nightly, read(chunkStore.open(artifactIndex.get(first.getChecksum()).get(), 0)));
+    }
+
+    @Test
+    public void collectDuringMigrationTest() throws IOException {
+        byte[] nightly = content(2 * 1024 * 1024, 1);
+        IndexedArtifact artifact = persist(NIGHTLY_1, nightly);
+        chunkStore.ingest();
+        long before = chunks();
+
+        // moved into its shard, not relocated on the index yet
+        Path dir = artifact.getPath().getParent();
+        Path moved = dir.resolveSibling("moved");
+        Files.move(dir, moved);
+        chunkStore.collect();
+        Assertions.assertEquals(before, chunks());
+
+        artifactIndex.relocate(artifact.getChecksum(), moved.resolve(NIGHTLY_1));
+        Assertions.assertArrayEquals(nightly, read(chunkStore.open(artifactIndex.get(artifact.getChecksum()).get(), 0)));
+    }
+
+    @Test
+    public void rebuildTest() throws IOException {
+        byte[] nightly = content(2 * 1024 * 1024, 1);
+        IndexedArtifact artifact = persist(NIGHTLY_1, nightly);
+        chunkStore.ingest();
+
+        artifactIndex.rebuild();
+
+        IndexedArtifact rebuilt = artifactIndex.get(artifact.getChecksum()).get();
+        Assertions.assertTrue(rebuilt.isChunked());
+        Assertions.assertEquals(NIGHTLY_1, rebuilt.getFileName());
+        Assertions.assertEquals(nightly.length, rebuilt.getSize());
+        Assertions.assertEquals(artifact.getPath(), rebuilt.getPath());
+    }
+
+    @Test
+    public void productTest() {
+        Assertions.assertEquals("rhpam-business-central-eap7-deployable",
+                                ChunkStore.product("rhpam-7.13.0.redhat-20220601-business-central-eap7-deployable.zip"));
+        Assertions.assertEquals("jboss-remoting", ChunkStore.product("jboss-remoting-5.0.9.Final.jar"));
+        Assertions.assertEquals("7.13.0", ChunkStore.product("7.13.0.zip"));
+    }
+
+    private IndexedArtifact persist(String fileName, byte[] content) throws IOException {
+        Path tmp = baseDir.resolve("artifacts").resolve("tmp").resolve(fileName);
+        Files.write(tmp, content);
+        Map<DigestAlgorithm, String> digests = StreamingDigest.of(tmp);
+        String checksum = digests.get(DigestAlgorithm.MD5);
+        Path file = baseDir.resolve("artifacts").resolve(checksum).resolve(fileName);
+        Files.createDirectories(file.getParent());
+        Files.move(tmp, file);
+        return artifactIndex.register(checksum, file, "", digests).get();
+    }
+
+    private long chunks() throws IOException {
+        try (Stream<Path> walk = Files.walk(baseDir.resolve("chunks"))) {
+            return walk.filter(Files::isRegularFile).count();
+        }
+    }
+
+    private static List<String> split(byte[] content) throws IOException {
+        List<String> chunks = new ArrayList<>();
+        new Chunker().split(new ByteArrayInputStream(content),
+                            (chunk, length) -> chunks.add(Arrays.hashCode(Arrays.copyOf(chunk, length)) + ":" + length));
+        return chunks;
+    }
+
+    private static byte[] content(int size, long seed) {
+        byte[] content = new byte[size];
+        new Random(seed).nextBytes(content);
+        return content;
+    }
+
+    private static byte[] insert(byte[] content, int position, byte[] inserted) {
+        byte[] result = new byte[content.length + inserted.length];
+        System.arraycopy(content, 0, result, 0, position);
+        System.arraycopy(inserted, 0, result, position, inserted.length);
+        System.arraycopy(content, position, result, position + inserted.length, content.length - position);
+        return result;
+    }
+
+    private static byte[] read(InputStream content) throws IOException {
+        try (InputStream in = content) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package org.kie.cekit.cacher.artifacts;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class FileNameIndexTest {
+
+    private FileNameIndex index() {
+        FileNameIndex index = new FileNameIndex();
+        index.add("rhpam-7.13.0.redhat-230101-add-ons.zip");
+        index.add("rhpam-7.13.0.redhat-230101-kie-server-ee8.zip");
+        index.add("jboss-remoting-5.0.9.Final.jar");
+        index.add("jandex-2.1.1.Final-sources.jar");
+        return index;
+    }
+
+    @Test
+    public void substringTest() {
+        FileNameIndex index = index();
+        Assertions.assertEquals(new HashSet<>(Arrays.asList("rhpam-7.13.0.redhat-230101-add-ons.zip",
+                                                            "rhpam-7.13.0.redhat-230101-kie-server-ee8.zip")),
+                                index.substring("230101"));
+        Assertions.assertEquals(Collections.singleton("jandex-2.1.1.Final-sources.jar"), index.substring("sources"));
+        Assertions.assertTrue(index.substring("not-there").isEmpty());
+        // shorter than a trigram
+        Assertions.assertEquals(2, index.substring("j").size());
+    }
+
+    @Test
+    public void prefixTest() {
+        FileNameIndex index = index();
+        Assertions.assertEquals(2, index.prefix("rhpam-").size());
+        Assertions.assertEquals(Collections.singleton("jboss-remoting-5.0.9.Final.jar"), index.prefix("jboss"));
+        Assertions.assertTrue(index.prefix("remoting").isEmpty());
+    }
+
+    @Test
+    public void globTest() {
+        FileNameIndex index = index();
+        Assertions.assertEquals(Collections.singleton("rhpam-7.13.0.redhat-230101-add-ons.zip"), index.glob("rhpam-*-add-ons.zip"));
+        Assertions.assertEquals(2, index.glob("*.jar").size());
+        Assertions.assertEquals(Collections.singleton("jandex-2.1.1.Final-sources.jar"), index.glob("*-?.1.1.Final*"));
+        Assertions.assertEquals(4, index.glob("*").size());
+        Assertions.assertTrue(index.glob("rhpam").isEmpty());
+    }
+
+    @Test
+    public void removeTest() {
+        FileNameIndex index = index();
+        index.remove("jboss-remoting-5.0.9.Final.jar");
+        Assertions.assertTrue(index.substring("remoting").isEmpty());
+        Assertions.assertTrue(index.prefix("jboss").isEmpty());
+        Assertions.assertEquals(3, index.size());
+    }
+
+    @Test
+    public void matchTypeTest() {
+        Assertions.assertEquals(FileNameIndex.Match.SUBSTRING, FileNameIndex.Match.of(null, "rhpam"));
+        Assertions.assertEquals(FileNameIndex.Match.GLOB, FileNameIndex.Match.of("", "rhpam*"));
+        Assertions.assertEquals(FileNameIndex.Match.PREFIX, FileNameIndex.Match.of("prefix", "rhpam"));
+    }
+}
@@ -0,0 +1,89 @@
+package org.kie.cekit.cacher.downloads;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.kie.cekit.cacher.objects.BandwidthLimits;
+import org.kie.cekit.cacher.properties.CacherProperties;
+import org.kie.cekit.cacher.resources.ArtifactRoute;
+
+public class BandwidthLimiterTest {
+
+    private final AtomicInteger serving = new AtomicInteger();
+
+    @Test
+    public void servingReservationTest() {
+        BandwidthLimiter limiter = limiter(0, 10240, 25);
+        Assertions.assertEquals(Integer.valueOf(0), limiter.limits().getEffectiveIngestLimit());
+
+        serving.set(1);
+        Assertions.assertEquals(Integer.valueOf(7680), limiter.limits().getEffectiveIngestLimit());
+    }
+
+    @Test
+    public void lowestLimitWinsTest() {
+        BandwidthLimiter limiter = limiter(5120, 10240, 25);
+        serving.set(3);
+        Assertions.assertEquals(Integer.valueOf(5120), limiter.limits().getEffectiveIngestLimit());
+    }
+
+    @Test
+    public void partialUpdateTest() {
+        BandwidthLimiter limiter = limiter(5120, 0, 0);
+        BandwidthLimits changes = new BandwidthLimits();
+        Map<String, Integer> hosts = new HashMap<>();
+        hosts.put("Download.Example.com", 1024);
+        changes.setHostLimits(hosts);
+
+        BandwidthLimits updated = limiter.update(changes);
+        Assertions.assertEquals(Integer.valueOf(5120), updated.getIngestLimit());
+        Assertions.assertEquals(Integer.valueOf(1024), updated.getHostLimits().get("download.example.com"));
+    }
+
+    @Test
+    public void invalidUpdateTest() {
+        BandwidthLimiter limiter = limiter(0, 0, 0);
+        BandwidthLimits negative = new BandwidthLimits();
+        negative.setIngestLimit(-1);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> limiter.update(negative));
+
+        BandwidthLimits tooMuch = new BandwidthLimits();
+        tooMuch.setServeReservedPercent(101);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> limiter.update(tooMuch));
+    }
+
+    private BandwidthLimiter limiter(int ingestLimit, int linkCapacity, int reservedPercent) {
+        BandwidthLimiter limiter = new BandwidthLimiter();
+        limiter.cacherProperties = new CacherProperties() {
+            @Override
+            public int bandwidthIngestLimit() {
+                return ingestLimit;
+            }
+
+            @Override
+            public Map<String, Integer> bandwidthHostLimits() {
+                return new HashMap<>();
+            }
+
+            @Override
+            public int bandwidthLinkCapacity() {
+                return linkCapacity;
+            }
+
+            @Override
+            public int bandwidthServeReservedPercent() {
+                return reservedPercent;
+            }
+        };
+        limiter.artifactRoute = new ArtifactRoute() {
+            @Override
+            public int inFlight() {
+                return serving.get();
+            }
+        };
+        return limiter;
+    }
+}
@@ -0,0 +1,56 @@
+package org.kie.cekit.cacher.downloads;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class DownloadProgressTest {
+
+    @Test
+    public void unknownTotalTest() {
+        DownloadProgress progress = new DownloadProgress();
+        progress.add(100);
+        progress.add(50);
+
+        Assertions.assertEquals(150, progress.getBytes());
+        Assertions.assertEquals(-1, progress.getTotal());
+        Assertions.assertEquals(-1, progress.getEta());
+    }
+
+    @Test
+    public void throughputAndEtaTest() throws InterruptedException {
+        DownloadProgress progress = new DownloadProgress();
+        progress.setTotal(10_000_000);
+        progress.add(1_000_000);
+        Thread.sleep(DownloadProgress.SAMPLE_INTERVAL_MILLIS + 50);
+        progress.add(1_000_000);
+
+        Assertions.assertTrue(progress.getThroughput() > 0);
+        Assertions.assertTrue(progress.getThroughput() <= 2_000_000);
+        // 8MB left at less than 2MB/s
+        Assertions.assertTrue(progress.getEta() >= 4);
+    }
+
+    @Test
+    public void stalledThroughputDecaysTest() throws InterruptedException {
+        DownloadProgress progress = new DownloadProgress();
+        progress.setTotal(10_000_000);
+        progress.add(1_000_000);
+        Thread.sleep(DownloadProgress.SAMPLE_INTERVAL_MILLIS + 50);
+        progress.add(1_000_000);
+        long throughput = progress.getThroughput();
+        long eta = progress.getEta();
+
+        // nothing transferred for two intervals, read without any add
+        Thread.sleep(2 * DownloadProgress.SAMPLE_INTERVAL_MILLIS + 50);
+        Assertions.assertTrue(progress.getThroughput() < throughput / 2, progress.getThroughput() + " vs " + throughput);
+        Assertions.assertTrue(progress.getEta() > eta);
+    }
+
+    @Test
+    public void resetTest() {
+        DownloadProgress progress = new DownloadProgress();
+        progress.add(100);
+        progress.reset();
+        Assertions.assertEquals(0, progress.getBytes());
+    }
+}
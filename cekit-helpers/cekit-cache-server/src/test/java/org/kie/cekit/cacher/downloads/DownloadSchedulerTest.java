@@ -0,0 +1,107 @@
+package org.kie.cekit.cacher.downloads;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.kie.cekit.cacher.properties.CacherProperties;
+
+public class DownloadSchedulerTest {
+
+    @Test
+    public void priorityOrderTest() throws Exception {
+        DownloadScheduler scheduler = scheduler(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = new CopyOnWriteArrayList<>();
+
+        CompletableFuture<String> blocking = scheduler.submit("http://a/first.zip", DownloadPriority.PRELOAD, () -> {
+            await(release);
+            return "first";
+        });
+        CompletableFuture<Boolean> preload = scheduler.submit("http://a/preload.zip", DownloadPriority.PRELOAD, () -> order.add("preload"));
+        CompletableFuture<Boolean> nightly = scheduler.submit("http://a/nightly.zip", DownloadPriority.NIGHTLY, () -> order.add("nightly"));
+        CompletableFuture<Boolean> interactive = scheduler.submit("http://a/fetch.zip", DownloadPriority.INTERACTIVE, () -> order.add("interactive"));
+
+        Assertions.assertEquals(3, scheduler.stats().getQueued());
+        Assertions.assertEquals(1, scheduler.stats().getActive());
+        Assertions.assertEquals(Integer.valueOf(1), scheduler.stats().getQueuedByPriority().get(DownloadPriority.INTERACTIVE));
+
+        release.countDown();
+        CompletableFuture.allOf(blocking, preload, nightly, interactive).get(5, TimeUnit.SECONDS);
+        Assertions.assertEquals(List.of("interactive", "nightly", "preload"), order);
+        Assertions.assertEquals(0, scheduler.stats().getActive());
+    }
+
+    @Test
+    public void perHostLimitTest() throws Exception {
+        DownloadScheduler scheduler = scheduler(2, 1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> first = scheduler.submit("http://a/first.zip", DownloadPriority.NIGHTLY, () -> {
+            await(release);
+            return "a";
+        });
+        CompletableFuture<String> sameHost = scheduler.submit("http://a/second.zip", DownloadPriority.NIGHTLY, () -> "a2");
+        CompletableFuture<String> otherHost = scheduler.submit("http://b/third.zip", DownloadPriority.PRELOAD, () -> "b");
+
+        // the host b download is not blocked by the saturated host a
+        Assertions.assertEquals("b", otherHost.get(5, TimeUnit.SECONDS));
+        Assertions.assertFalse(sameHost.isDone());
+        Assertions.assertEquals(Integer.valueOf(1), scheduler.stats().getActiveByHost().get("a"));
+
+        release.countDown();
+        Assertions.assertEquals("a", first.get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals("a2", sameHost.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void shutdownCancelsQueuedTest() throws Exception {
+        DownloadScheduler scheduler = scheduler(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        scheduler.submit("http://a/first.zip", DownloadPriority.NIGHTLY, () -> {
+            await(release);
+            return "a";
+        });
+        CompletableFuture<String> queued = scheduler.submit("http://a/second.zip", DownloadPriority.NIGHTLY, () -> "a2");
+
+        scheduler.shutdown();
+
+        Assertions.assertTrue(queued.isCompletedExceptionally());
+        Assertions.assertTrue(scheduler.submit("http://a/third.zip", DownloadPriority.INTERACTIVE, () -> "a3").isCompletedExceptionally());
+    }
+
+    private DownloadScheduler scheduler(int maxConcurrent, int maxPerHost) {
+        DownloadScheduler scheduler = new DownloadScheduler();
+        scheduler.cacherProperties = new CacherProperties() {
+            @Override
+            public int downloadMaxConcurrent() {
+                return maxConcurrent;
+            }
+
+            @Override
+            public int downloadMaxPerHost() {
+                return maxPerHost;
+            }
+
+            @Override
+            public Map<String, Integer> downloadHostLimits() {
+                return Collections.emptyMap();
+            }
+        };
+        return scheduler;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
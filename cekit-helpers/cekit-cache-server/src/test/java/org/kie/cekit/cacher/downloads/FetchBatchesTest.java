@@ -0,0 +1,154 @@
+package org.kie.cekit.cacher.downloads;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.kie.cekit.cacher.artifacts.ArtifactIndex;
+import org.kie.cekit.cacher.artifacts.DigestAlgorithm;
+import org.kie.cekit.cacher.artifacts.IndexedArtifact;
+import org.kie.cekit.cacher.objects.FetchRequest;
+import org.kie.cekit.cacher.objects.FetchResult;
+import org.kie.cekit.cacher.properties.CacherProperties;
+import org.kie.cekit.cacher.utils.CacherUtils;
+
+public class FetchBatchesTest {
+
+    private static final String CACHED_MD5 = "1b983479e22fedd1b6dde4cb1fb83d2d";
+    private static final String CACHED_SHA256 = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+
+    private final List<FetchJob> submitted = new ArrayList<>();
+    private final List<String> deleted = new ArrayList<>();
+    // alias -> checksum
+    private final Map<String, String> aliases = new HashMap<>();
+    private FetchBatches fetchBatches;
+
+    @BeforeEach
+    public void setup() {
+        IndexedArtifact cached = new IndexedArtifact(CACHED_MD5, "cached.zip", Paths.get("cached.zip"), 10, 0, "",
+                                                     Collections.singletonMap(DigestAlgorithm.SHA256, CACHED_SHA256));
+        fetchBatches = new FetchBatches();
+        fetchBatches.cacherProperties = new CacherProperties() {
+            @Override
+            public int fetchBatchConcurrency() {
+                return 2;
+            }
+        };
+        fetchBatches.artifactIndex = new ArtifactIndex() {
+            @Override
+            public Optional<IndexedArtifact> resolve(String digest) {
+                return CACHED_MD5.equals(digest) || CACHED_SHA256.equals(digest) ? Optional.of(cached) : Optional.empty();
+            }
+
+            @Override
+            public Optional<IndexedArtifact> getByFileName(String fileName) {
+                return "cached.zip".equals(fileName) || aliases.containsKey(fileName) ? Optional.of(cached) : Optional.empty();
+            }
+
+            @Override
+            public synchronized boolean addAlias(String checksum, String fileName) {
+                return aliases.putIfAbsent(fileName, checksum) == null;
+            }
+        };
+        fetchBatches.cacherUtils = new CacherUtils() {
+            @Override
+            public boolean deleteArtifact(String checksum) {
+                return deleted.add(checksum);
+            }
+        };
+        fetchBatches.fetchJobs = new FetchJobs() {
+            @Override
+            public FetchJob submit(String url, DownloadPriority priority) {
+                FetchJob job = new FetchJob("job-" + submitted.size(), url, url.substring(url.lastIndexOf('/') + 1), priority);
+                submitted.add(job);
+                return job;
+            }
+        };
+    }
+
+    @Test
+    public void boundedConcurrencyTest() {
+        FetchBatch batch = fetchBatches.submit(requests("http://a/1.zip", "http://a/2.zip", "http://a/3.zip", "http://a/4.zip"), 0);
+
+        Assertions.assertEquals(2, batch.getConcurrency());
+        Assertions.assertEquals(2, submitted.size());
+        Assertions.assertEquals(2, batch.getRunning());
+        Assertions.assertEquals(2, batch.getQueued());
+        Assertions.assertEquals(DownloadPriority.PRELOAD, submitted.get(0).getPriority());
+
+        complete(submitted.get(0), FetchResult.persisted("1.zip", "md5-1"));
+        Assertions.assertEquals(3, submitted.size());
+        Assertions.assertEquals(FetchBatchItem.State.COMPLETED, batch.getItems().get(0).getState());
+        Assertions.assertEquals("md5-1", batch.getItems().get(0).getChecksum());
+        Assertions.assertEquals("job-0", batch.getItems().get(0).getJobId());
+
+        complete(submitted.get(1), FetchResult.failed("2.zip", "Not found"));
+        complete(submitted.get(2), FetchResult.persisted("3.zip", "md5-3"));
+        Assertions.assertFalse(batch.isDone());
+        complete(submitted.get(3), FetchResult.exists("4.zip", "md5-4"));
+
+        Assertions.assertEquals(4, submitted.size());
+        Assertions.assertTrue(batch.isDone());
+        Assertions.assertEquals(3, batch.getCompleted());
+        Assertions.assertEquals(1, batch.getFailed());
+        Assertions.assertEquals("Not found", batch.getItems().get(1).getMessage());
+        Assertions.assertTrue(batch.getItems().get(0).getDurationMillis() >= 0);
+        Assertions.assertEquals(Optional.of(batch), fetchBatches.get(batch.getId()));
+    }
+
+    @Test
+    public void skipCachedTest() {
+        List<FetchRequest> requests = new ArrayList<>(requests("http://a/cached.zip", "not a url"));
+        requests.add(new FetchRequest("http://b/renamed.zip", CACHED_SHA256.toUpperCase()));
+        FetchBatch batch = fetchBatches.submit(requests, 1);
+
+        Assertions.assertTrue(submitted.isEmpty());
+        Assertions.assertTrue(batch.isDone());
+        Assertions.assertEquals(2, batch.getSkipped());
+        Assertions.assertEquals(CACHED_MD5, batch.getItems().get(0).getChecksum());
+        Assertions.assertEquals(FetchBatchItem.State.FAILED, batch.getItems().get(1).getState());
+        Assertions.assertEquals(CACHED_MD5, batch.getItems().get(2).getChecksum());
+        // the expected checksum alone does not prove the url has that content
+        Assertions.assertTrue(aliases.isEmpty());
+    }
+
+    @Test
+    public void checksumMismatchTest() {
+        FetchBatch batch = fetchBatches.submit(Arrays.asList(new FetchRequest("http://a/other.zip", CACHED_SHA256.replace('9', '0')),
+                                                             new FetchRequest("http://a/same.zip", CACHED_SHA256)), 2);
+        Assertions.assertEquals(1, submitted.size());
+        Assertions.assertEquals(FetchBatchItem.State.SKIPPED, batch.getItems().get(1).getState());
+
+        complete(submitted.get(0), FetchResult.persisted("other.zip", "md5-other"));
+
+        Assertions.assertEquals(FetchBatchItem.State.FAILED, batch.getItems().get(0).getState());
+        Assertions.assertTrue(batch.getItems().get(0).getMessage().startsWith("Checksum mismatch"));
+        Assertions.assertEquals(Collections.singletonList("md5-other"), deleted);
+    }
+
+    @Test
+    public void emptyBatchTest() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> fetchBatches.submit(Collections.emptyList(), 0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> fetchBatches.submit(Collections.singletonList(new FetchRequest()), 0));
+    }
+
+    private static void complete(FetchJob job, FetchResult result) {
+        job.finished(result, -1);
+    }
+
+    private static List<FetchRequest> requests(String... urls) {
+        List<FetchRequest> requests = new ArrayList<>();
+        for (String url : urls) {
+            requests.add(new FetchRequest(url, null));
+        }
+        return requests;
+    }
+}
@@ -0,0 +1,68 @@
+package org.kie.cekit.cacher.downloads;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.kie.cekit.cacher.properties.CacherProperties;
+
+public class MirrorSelectorTest {
+
+    private static final String ORIGINAL = "https://origin.example.com/builds/";
+    private static final String MIRROR = "https://mirror.example.com/pub/builds/";
+    private static final String PATH = "7.14/rhpam-7.14.0-business-central-eap7-deployable.zip";
+
+    @Test
+    public void noMirrorsTest() {
+        Assertions.assertEquals(Collections.singletonList("https://other.example.com/a.zip"),
+                                selector().candidates("https://other.example.com/a.zip"));
+    }
+
+    @Test
+    public void originalFirstUntilMeasuredTest() {
+        MirrorSelector selector = selector();
+        Assertions.assertEquals(Arrays.asList(ORIGINAL + PATH, MIRROR + PATH), selector.candidates(ORIGINAL + PATH));
+        // the group is matched by any of its prefixes
+        Assertions.assertEquals(Arrays.asList(MIRROR + PATH, ORIGINAL + PATH), selector.candidates(MIRROR + PATH));
+    }
+
+    @Test
+    public void fastestFirstTest() {
+        MirrorSelector selector = selector();
+        selector.recordThroughput(ORIGINAL + PATH, 10_000_000, 10_000);
+        selector.recordThroughput(MIRROR + PATH, 10_000_000, 1_000);
+        Assertions.assertEquals(MIRROR + PATH, selector.candidates(ORIGINAL + PATH).get(0));
+    }
+
+    @Test
+    public void lowestLatencyFirstTest() {
+        MirrorSelector selector = selector();
+        selector.recordLatency(ORIGINAL, 300);
+        selector.recordLatency(MIRROR, 20);
+        Assertions.assertEquals(MIRROR + PATH, selector.candidates(ORIGINAL + PATH).get(0));
+    }
+
+    @Test
+    public void failingMirrorGoesLastTest() {
+        MirrorSelector selector = selector();
+        selector.recordThroughput(ORIGINAL + PATH, 10_000_000, 1_000);
+        for (int i = 0; i < MirrorSelector.MAX_FAILURES; i++) {
+            selector.recordFailure(ORIGINAL + PATH);
+        }
+        Assertions.assertEquals(MIRROR + PATH, selector.candidates(ORIGINAL + PATH).get(0));
+        Assertions.assertFalse(selector.status().get(0).isHealthy());
+    }
+
+    private MirrorSelector selector() {
+        MirrorSelector selector = new MirrorSelector();
+        selector.cacherProperties = new CacherProperties() {
+            @Override
+            public List<List<String>> mirrorGroups() {
+                return Collections.singletonList(Arrays.asList(ORIGINAL, MIRROR));
+            }
+        };
+        return selector;
+    }
+}
@@ -0,0 +1,92 @@
+package org.kie.cekit.cacher.downloads;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.kie.cekit.cacher.exception.DownloadRejectedException;
+import org.kie.cekit.cacher.properties.CacherProperties;
+
+public class MirroredSourceTest {
+
+    private static final String ORIGINAL = "https://origin.example.com/builds/a.zip";
+    private static final String MIRROR = "https://mirror.example.com/builds/a.zip";
+
+    private final List<String> opened = new ArrayList<>();
+    private final List<String> validators = new ArrayList<>();
+
+    @Test
+    public void originalOnlyTest() throws IOException {
+        MirroredSource source = new MirroredSource(ORIGINAL, Arrays.asList(ORIGINAL, MIRROR), this::open, selector());
+        source.open(0, null);
+        Assertions.assertEquals(Collections.singletonList(ORIGINAL), opened);
+        Assertions.assertFalse(source.isMirrored());
+    }
+
+    @Test
+    public void failoverMidDownloadTest() throws IOException {
+        MirroredSource source = new MirroredSource(ORIGINAL, Arrays.asList(ORIGINAL, MIRROR), this::open, selector());
+        source.open(0, null);
+        // the first transfer broke, the download is resumed on the mirror without the original validator
+        source.open(100, "\"original\"");
+
+        Assertions.assertEquals(Arrays.asList(ORIGINAL, MIRROR), opened);
+        Assertions.assertNull(validators.get(1));
+        Assertions.assertTrue(source.isMirrored());
+    }
+
+    @Test
+    public void failoverOnOpenTest() throws IOException {
+        MirroredSource source = new MirroredSource(ORIGINAL, Arrays.asList(ORIGINAL, MIRROR), (url, offset, validator) -> {
+            if (url.equals(ORIGINAL)) {
+                throw new IOException("Connection refused");
+            }
+            return open(url, offset, validator);
+        }, selector());
+        source.open(0, null);
+        Assertions.assertEquals(Collections.singletonList(MIRROR), opened);
+        Assertions.assertTrue(source.isMirrored());
+    }
+
+    @Test
+    public void rejectedByAllTest() {
+        MirroredSource source = new MirroredSource(ORIGINAL, Arrays.asList(ORIGINAL, MIRROR), (url, offset, validator) -> {
+            throw new DownloadRejectedException("404");
+        }, selector());
+        Assertions.assertThrows(DownloadRejectedException.class, () -> source.open(0, null));
+    }
+
+    @Test
+    public void rejectedByOneTest() {
+        MirroredSource source = new MirroredSource(ORIGINAL, Arrays.asList(ORIGINAL, MIRROR), (url, offset, validator) -> {
+            if (url.equals(MIRROR)) {
+                throw new DownloadRejectedException("404");
+            }
+            throw new IOException("Read timed out");
+        }, selector());
+        IOException e = Assertions.assertThrows(IOException.class, () -> source.open(0, null));
+        Assertions.assertFalse(e instanceof DownloadRejectedException);
+    }
+
+    private ResumableDownload.Response open(String url, long offset, String validator) {
+        opened.add(url);
+        validators.add(validator);
+        return new ResumableDownload.Response(new ByteArrayInputStream(new byte[10]), offset > 0, 200, "\"etag\"");
+    }
+
+    private MirrorSelector selector() {
+        MirrorSelector selector = new MirrorSelector();
+        selector.cacherProperties = new CacherProperties() {
+            @Override
+            public List<List<String>> mirrorGroups() {
+                return Collections.singletonList(Arrays.asList("https://origin.example.com/", "https://mirror.example.com/"));
+            }
+        };
+        return selector;
+    }
+}
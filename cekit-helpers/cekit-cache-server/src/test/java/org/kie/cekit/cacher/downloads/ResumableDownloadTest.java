@@ -0,0 +1,181 @@
+package org.kie.cekit.cacher.downloads;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.kie.cekit.cacher.exception.DownloadRejectedException;
+import org.kie.cekit.cacher.utils.StreamingDigest;
+
+public class ResumableDownloadTest {
+
+    private static final String URL = "http://localhost/artifact.zip";
+    private static final String ETAG = "\"v1\"";
+
+    private final byte[] content = new byte[3 * 1024 * 1024 + 17];
+    private final List<Long> offsets = new ArrayList<>();
+    private Path target;
+    private Path stateFile;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        new Random(7).nextBytes(content);
+        target = Files.createTempFile("resumable", ".zip");
+        Files.delete(target);
+        stateFile = Files.createTempFile("resumable", ".properties");
+        Files.delete(stateFile);
+    }
+
+    @AfterEach
+    public void cleanup() throws IOException {
+        Files.deleteIfExists(target);
+        Files.deleteIfExists(stateFile);
+    }
+
+    @Test
+    public void resumeAfterFailureTest() throws IOException {
+        DownloadProgress progress = new DownloadProgress();
+        StreamingDigest digest = download((offset, validator) -> {
+            offsets.add(offset);
+            if (offsets.size() == 1) {
+                // connection dropped half way
+                return new ResumableDownload.Response(failingAfter(content.length / 2), false, content.length, ETAG);
+            }
+            Assertions.assertEquals(ETAG, validator);
+            return range(offset);
+        }, progress);
+
+        Assertions.assertEquals(2, offsets.size());
+        Assertions.assertEquals(Long.valueOf(content.length / 2), offsets.get(1));
+        Assertions.assertArrayEquals(content, Files.readAllBytes(target));
+        Assertions.assertEquals(expectedMd5(), digest.md5());
+        Assertions.assertEquals(content.length, progress.getBytes());
+    }
+
+    @Test
+    public void resumeAfterRestartTest() throws IOException {
+        // what a previous run left behind
+        Files.write(target, Arrays.copyOf(content, 1000));
+        DownloadState saved = new DownloadState(URL, "nightly", 0);
+        saved.setValidator(ETAG);
+        saved.setTotal(content.length);
+        saved.setBytes(1000);
+        saved.save(stateFile);
+
+        DownloadState state = DownloadState.load(stateFile).get();
+        Assertions.assertEquals("nightly", state.getType());
+        StreamingDigest digest = new ResumableDownload((offset, validator) -> {
+            offsets.add(offset);
+            return range(offset);
+        }, target, stateFile, state, new DownloadProgress(), 3, 1).download();
+
+        Assertions.assertEquals(Long.valueOf(1000), offsets.get(0));
+        Assertions.assertEquals(expectedMd5(), digest.md5());
+    }
+
+    @Test
+    public void changedArtifactStartsOverTest() throws IOException {
+        Files.write(target, new byte[1000]);
+        DownloadState state = new DownloadState(URL, "", 0);
+        state.setValidator("\"v0\"");
+        state.setTotal(content.length);
+
+        // If-Range did not match, the whole artifact is sent
+        StreamingDigest digest = new ResumableDownload((offset, validator) -> new ResumableDownload.Response(
+                new ByteArrayInputStream(content), false, content.length, ETAG),
+                                                       target, stateFile, state, new DownloadProgress(), 3, 1).download();
+
+        Assertions.assertArrayEquals(content, Files.readAllBytes(target));
+        Assertions.assertEquals(expectedMd5(), digest.md5());
+        Assertions.assertEquals(ETAG, DownloadState.load(stateFile).get().getValidator());
+    }
+
+    @Test
+    public void resizedArtifactStartsOverTest() throws IOException {
+        Files.write(target, Arrays.copyOf(content, 1000));
+        DownloadState state = new DownloadState(URL, "", 0);
+        state.setValidator(ETAG);
+        state.setTotal(content.length + 100);
+
+        // the range is honored, but of an artifact with another size
+        StreamingDigest digest = new ResumableDownload((offset, validator) -> {
+            offsets.add(offset);
+            return range(offset);
+        }, target, stateFile, state, new DownloadProgress(), 3, 1).download();
+
+        Assertions.assertEquals(Arrays.asList(1000L, 0L), offsets);
+        Assertions.assertArrayEquals(content, Files.readAllBytes(target));
+        Assertions.assertEquals(expectedMd5(), digest.md5());
+        Assertions.assertEquals(content.length, DownloadState.load(stateFile).get().getTotal());
+    }
+
+    @Test
+    public void rejectedIsNotRetriedTest() {
+        Assertions.assertThrows(DownloadRejectedException.class, () -> download((offset, validator) -> {
+            offsets.add(offset);
+            throw new DownloadRejectedException("Server returned HTTP response code: 404");
+        }, new DownloadProgress()));
+        Assertions.assertEquals(1, offsets.size());
+    }
+
+    @Test
+    public void giveUpAfterMaxAttemptsTest() {
+        Assertions.assertThrows(IOException.class, () -> download((offset, validator) -> {
+            offsets.add(offset);
+            throw new IOException("Read timed out");
+        }, new DownloadProgress()));
+        Assertions.assertEquals(3, offsets.size());
+        // kept for a later resume
+        Assertions.assertTrue(Files.exists(stateFile));
+    }
+
+    @Test
+    public void backoffTest() {
+        ResumableDownload download = new ResumableDownload((offset, validator) -> range(offset), target, stateFile,
+                                                           new DownloadState(URL, "", 0), new DownloadProgress(), 3);
+        Assertions.assertTrue(download.backoff(1) >= ResumableDownload.INITIAL_BACKOFF_MILLIS);
+        Assertions.assertTrue(download.backoff(3) >= 4 * ResumableDownload.INITIAL_BACKOFF_MILLIS);
+        Assertions.assertTrue(download.backoff(30) <= ResumableDownload.MAX_BACKOFF_MILLIS * 1.2);
+    }
+
+    private StreamingDigest download(ResumableDownload.Source source, DownloadProgress progress) throws IOException {
+        return new ResumableDownload(source, target, stateFile, new DownloadState(URL, "", 0), progress, 3, 1).download();
+    }
+
+    private ResumableDownload.Response range(long offset) {
+        return new ResumableDownload.Response(new ByteArrayInputStream(content, (int) offset, content.length - (int) offset),
+                                              offset > 0, content.length, ETAG);
+    }
+
+    private InputStream failingAfter(int length) {
+        return new InputStream() {
+            private int position;
+
+            @Override
+            public int read() throws IOException {
+                if (position >= length) {
+                    throw new IOException("Read timed out");
+                }
+                return content[position++] & 0xff;
+            }
+        };
+    }
+
+    private String expectedMd5() throws IOException {
+        StreamingDigest digest = new StreamingDigest();
+        digest.transfer(Channels.newChannel(new ByteArrayInputStream(content)), Channels.newChannel(new ByteArrayOutputStream()));
+        return digest.md5();
+    }
+}
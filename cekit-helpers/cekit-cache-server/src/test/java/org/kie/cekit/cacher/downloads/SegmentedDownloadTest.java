@@ -0,0 +1,82 @@
+package org.kie.cekit.cacher.downloads;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.kie.cekit.cacher.utils.StreamingDigest;
+
+public class SegmentedDownloadTest {
+
+    private final byte[] content = new byte[(int) (SegmentedDownload.CHUNK_SIZE * 3 + 123)];
+
+    public SegmentedDownloadTest() {
+        new Random(42).nextBytes(content);
+    }
+
+    @Test
+    public void downloadTest() throws IOException {
+        Path target = Files.createTempFile("segmented", ".zip");
+        try {
+            DownloadProgress progress = new DownloadProgress();
+            StreamingDigest digest = new SegmentedDownload(this::range, target, content.length, 4, progress).download();
+
+            Assertions.assertArrayEquals(content, Files.readAllBytes(target));
+            Assertions.assertEquals(expectedMd5(), digest.md5());
+            Assertions.assertEquals(content.length, progress.getBytes());
+        } finally {
+            Files.deleteIfExists(target);
+        }
+    }
+
+    @Test
+    public void failedChunkIsRetriedTest() throws IOException {
+        Path target = Files.createTempFile("segmented", ".zip");
+        AtomicInteger calls = new AtomicInteger();
+        try {
+            DownloadProgress progress = new DownloadProgress();
+            StreamingDigest digest = new SegmentedDownload((start, end) -> {
+                if (calls.incrementAndGet() == 2) {
+                    // truncated response
+                    return new ByteArrayInputStream(content, (int) start, 10);
+                }
+                return range(start, end);
+            }, target, content.length, 2, progress).download();
+
+            Assertions.assertEquals(expectedMd5(), digest.md5());
+            Assertions.assertEquals(content.length, progress.getBytes());
+        } finally {
+            Files.deleteIfExists(target);
+        }
+    }
+
+    @Test
+    public void rangesNotSupportedTest() throws IOException {
+        Path target = Files.createTempFile("segmented", ".zip");
+        try {
+            SegmentedDownload download = new SegmentedDownload((start, end) -> {
+                throw new IOException("Range not honored");
+            }, target, content.length, 2, new DownloadProgress());
+            Assertions.assertThrows(IOException.class, download::download);
+        } finally {
+            Files.deleteIfExists(target);
+        }
+    }
+
+    private ByteArrayInputStream range(long start, long end) {
+        return new ByteArrayInputStream(content, (int) start, (int) (end - start + 1));
+    }
+
+    private String expectedMd5() throws IOException {
+        StreamingDigest digest = new StreamingDigest();
+        digest.transfer(Channels.newChannel(new ByteArrayInputStream(content)), Channels.newChannel(new ByteArrayOutputStream()));
+        return digest.md5();
+    }
+}
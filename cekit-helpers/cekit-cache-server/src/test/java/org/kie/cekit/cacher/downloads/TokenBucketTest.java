@@ -0,0 +1,50 @@
+package org.kie.cekit.cacher.downloads;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TokenBucketTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    public void unlimitedTest() {
+        TokenBucket bucket = new TokenBucket(0, now::get);
+        Assertions.assertEquals(0, bucket.reserve(Long.MAX_VALUE / 2));
+    }
+
+    @Test
+    public void waitForTheDebtTest() {
+        TokenBucket bucket = new TokenBucket(1000, now::get);
+        // one second of burst
+        Assertions.assertEquals(0, bucket.reserve(1000));
+        // 500 bytes in debt at 1000 B/s
+        Assertions.assertEquals(TimeUnit.MILLISECONDS.toNanos(500), bucket.reserve(500));
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        // the debt is paid, 500 tokens left
+        Assertions.assertEquals(0, bucket.reserve(500));
+    }
+
+    @Test
+    public void burstIsCappedTest() {
+        TokenBucket bucket = new TokenBucket(1000, now::get);
+        now.addAndGet(TimeUnit.SECONDS.toNanos(60));
+        Assertions.assertEquals(0, bucket.reserve(1000));
+        Assertions.assertTrue(bucket.reserve(1) > 0);
+    }
+
+    @Test
+    public void setRateTest() {
+        TokenBucket bucket = new TokenBucket(1000, now::get);
+        bucket.reserve(1000);
+        bucket.setRate(2000);
+        Assertions.assertEquals(TimeUnit.MILLISECONDS.toNanos(500), bucket.reserve(1000));
+
+        bucket.setRate(0);
+        Assertions.assertEquals(0, bucket.reserve(1_000_000));
+    }
+}
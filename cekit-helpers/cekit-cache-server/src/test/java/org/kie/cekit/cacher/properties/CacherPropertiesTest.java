@@ -4,6 +4,7 @@ import io.quarkus.test.junit.QuarkusTest;
 import org.junit.jupiter.api.Assertions;
 
 import org.junit.jupiter.api.Test;
+import org.kie.cekit.cacher.utils.HttpRequestHandler;
 
 import javax.inject.Inject;
 
@@ -29,4 +30,12 @@ public class CacherPropertiesTest {
         Assertions.assertEquals("7.11", cacherProperties.shortenedVersion("7.11.1"));
         Assertions.assertEquals("7.13", cacherProperties.shortenedVersion("7.13"));
     }
+
+    @Test
+    public void verifyHttpTimeoutsDefaults() {
+        Assertions.assertEquals(20, cacherProperties.httpConnectTimeout());
+        Assertions.assertEquals(60, cacherProperties.httpReadTimeout(HttpRequestHandler.Destination.ARTIFACTS));
+        Assertions.assertEquals(30, cacherProperties.httpReadTimeout(HttpRequestHandler.Destination.METADATA));
+        Assertions.assertEquals(30, cacherProperties.httpReadTimeout(HttpRequestHandler.Destination.API));
+    }
 }
@@ -100,6 +100,16 @@ public class CacherResourceEndpointTest {
 
         Assertions.assertTrue(cacherUtils.fileExists("1b983479e22fedd1b6dde4cb1fb83d2d"));
 
+        given()
+                .when()
+                .body(Arrays.asList("1b983479e22fedd1b6dde4cb1fb83d2d", "00000000000000000000000000000000"))
+                .contentType("application/json")
+                .post("/resource/lookup")
+                .then()
+                .statusCode(200)
+                .body(containsString("\"digest\":\"1b983479e22fedd1b6dde4cb1fb83d2d\",\"exists\":true,\"fileName\":\"pre-load-test.txt\""))
+                .body(containsString("\"digest\":\"00000000000000000000000000000000\",\"exists\":false"));
+
         given()
                 .header(new Header("content-type", "multipart/form-data"))
                 .multiPart("file", new File(getClass().getClassLoader().getResource("pre-load-test.txt").getFile()))
@@ -0,0 +1,269 @@
+package org.kie.cekit.cacher.uploads;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kie.cekit.cacher.StoreFixture.StoreProperties;
+import org.kie.cekit.cacher.artifacts.ArtifactIndex;
+import org.kie.cekit.cacher.artifacts.DigestAlgorithm;
+import org.kie.cekit.cacher.artifacts.IndexedArtifact;
+import org.kie.cekit.cacher.exception.DigestMismatchException;
+import org.kie.cekit.cacher.exception.UploadOffsetException;
+import org.kie.cekit.cacher.objects.UploadStatus;
+import org.kie.cekit.cacher.properties.CacherProperties;
+import org.kie.cekit.cacher.utils.CacherUtils;
+import org.kie.cekit.cacher.utils.StreamingDigest;
+
+public class UploadManagerTest {
+
+    private static final String FILE_NAME = "rhpam-7.13.0.redhat-00001-kie-server-ee8.zip";
+    private static final String NIGHTLY = "rhpam-7.13.0.redhat-20220601-kie-server-ee8.zip";
+
+    @TempDir
+    private Path baseDir;
+    private CacherProperties cacherProperties;
+    private Path uploadsDir;
+    private ArtifactIndex artifactIndex;
+    private final List<IndexedArtifact> artifacts = new ArrayList<>();
+    // alias -> checksum
+    private final Map<String, String> aliases = new HashMap<>();
+    // file name -> content and digests received by the persist step
+    private final Map<String, byte[]> persisted = new HashMap<>();
+    private final Map<String, Map<DigestAlgorithm, String>> persistedDigests = new HashMap<>();
+
+    @BeforeEach
+    public void setup() throws IOException {
+        cacherProperties = new StoreProperties(baseDir);
+        uploadsDir = Files.createDirectories(Paths.get(cacherProperties.getUploadsDir()));
+        artifactIndex = new ArtifactIndex() {
+            @Override
+            public Optional<IndexedArtifact> resolve(String digest) {
+                return artifacts.stream().filter(artifact -> artifact.getDigests().containsValue(digest)).findFirst();
+            }
+        };
+    }
+
+    @Test
+    public void multipartUploadTest() throws IOException {
+        byte[] content = content(200 * 1024);
+        String boundary = "cacher";
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(("--" + boundary + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"blob\"\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        body.write(content);
+        body.write(("\r\n--" + boundary + "\r\nContent-Disposition: form-data; name=\"fileName\"\r\n\r\n" + FILE_NAME
+                + "\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.ISO_8859_1));
+
+        String result = manager().receive("multipart/form-data; boundary=" + boundary, new ByteArrayInputStream(body.toByteArray()),
+                                          null, UploadExpectation.none());
+
+        Assertions.assertEquals("persisted " + FILE_NAME, result);
+        Assertions.assertArrayEquals(content, persisted.get(FILE_NAME));
+        Assertions.assertEquals(digests(content), persistedDigests.get(FILE_NAME));
+        Assertions.assertEquals(0, uploadFiles());
+    }
+
+    @Test
+    public void resumableUploadTest() throws IOException {
+        byte[] content = content(300 * 1024);
+        UploadManager manager = manager();
+        UploadStatus upload = manager.create(FILE_NAME, content.length, UploadExpectation.none());
+
+        UploadStatus first = manager.append(upload.getId(), 0, chunk(content, 0, 100 * 1024)).get();
+        Assertions.assertEquals(100 * 1024, first.getOffset());
+        Assertions.assertFalse(first.isCompleted());
+        Assertions.assertEquals(100 * 1024, manager.status(upload.getId()).get().getOffset());
+
+        UploadOffsetException conflict = Assertions.assertThrows(UploadOffsetException.class,
+                                                                  () -> manager.append(upload.getId(), 0, chunk(content, 0, 10)));
+        Assertions.assertEquals(100 * 1024, conflict.getOffset());
+
+        UploadStatus last = manager.append(upload.getId(), 100 * 1024, chunk(content, 100 * 1024, content.length)).get();
+        Assertions.assertTrue(last.isCompleted());
+        Assertions.assertEquals("persisted " + FILE_NAME, last.getResult());
+        Assertions.assertArrayEquals(content, persisted.get(FILE_NAME));
+        Assertions.assertEquals(digests(content), persistedDigests.get(FILE_NAME));
+        Assertions.assertFalse(manager.status(upload.getId()).isPresent());
+        Assertions.assertEquals(0, uploadFiles());
+    }
+
+    @Test
+    public void resumedAfterRestartTest() throws IOException {
+        byte[] content = content(150 * 1024);
+        UploadStatus upload = manager().create(FILE_NAME, content.length, UploadExpectation.none());
+        manager().append(upload.getId(), 0, chunk(content, 0, 50 * 1024));
+
+        // a new manager has no digests in memory, they are computed again from the partial content
+        UploadManager restarted = manager();
+        Assertions.assertEquals(50 * 1024, restarted.status(upload.getId()).get().getOffset());
+        Assertions.assertTrue(restarted.append(upload.getId(), 50 * 1024, chunk(content, 50 * 1024, content.length)).get().isCompleted());
+        Assertions.assertEquals(digests(content), persistedDigests.get(FILE_NAME));
+    }
+
+    @Test
+    public void beyondLengthTest() throws IOException {
+        UploadManager manager = manager();
+        UploadStatus upload = manager.create(FILE_NAME, 10, UploadExpectation.none());
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> manager.append(upload.getId(), 0, chunk(content(20), 0, 20)));
+        Assertions.assertFalse(persisted.containsKey(FILE_NAME));
+    }
+
+    @Test
+    public void cancelAndUnknownTest() throws IOException {
+        UploadManager manager = manager();
+        UploadStatus upload = manager.create(FILE_NAME, 10, UploadExpectation.none());
+
+        Assertions.assertTrue(manager.cancel(upload.getId()));
+        Assertions.assertFalse(manager.cancel(upload.getId()));
+        Assertions.assertFalse(manager.append(upload.getId(), 0, chunk(content(10), 0, 10)).isPresent());
+        Assertions.assertFalse(manager.status("../" + upload.getId()).isPresent());
+        Assertions.assertEquals(0, uploadFiles());
+    }
+
+    @Test
+    public void fileNameTest() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> manager().create("../" + FILE_NAME, 10, UploadExpectation.none()));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> manager().create("..", 10, UploadExpectation.none()));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> manager().create(" ", 10, UploadExpectation.none()));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> manager().create(FILE_NAME, -1, UploadExpectation.none()));
+    }
+
+    @Test
+    public void existingContentTest() throws IOException {
+        byte[] content = content(64 * 1024);
+        IndexedArtifact nightly = persisted(NIGHTLY, content);
+        UploadExpectation expected = new UploadExpectation(Collections.singletonMap(DigestAlgorithm.SHA256, nightly.getDigests().get(DigestAlgorithm.SHA256)),
+                                                           content.length);
+        InputStream unread = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("body read");
+            }
+        };
+
+        String result = manager().receive("multipart/form-data; boundary=cacher", unread, FILE_NAME, expected);
+        Assertions.assertEquals("aliased " + FILE_NAME, result);
+        Assertions.assertEquals(nightly.getChecksum(), aliases.get(FILE_NAME));
+
+        UploadStatus upload = manager().create(FILE_NAME, content.length, expected);
+        Assertions.assertTrue(upload.isCompleted());
+        Assertions.assertNull(upload.getId());
+        Assertions.assertEquals("exists " + FILE_NAME, upload.getResult());
+
+        // same digest, another size: uploaded as usual
+        Assertions.assertFalse(manager().create(FILE_NAME, content.length + 1, expected).isCompleted());
+        Assertions.assertTrue(persisted.isEmpty());
+    }
+
+    @Test
+    public void digestMismatchTest() throws IOException {
+        byte[] content = content(100 * 1024);
+        Map<DigestAlgorithm, String> declared = new HashMap<>(digests(content));
+        declared.put(DigestAlgorithm.SHA1, "00" + declared.get(DigestAlgorithm.SHA1).substring(2));
+        UploadExpectation expected = new UploadExpectation(declared, content.length);
+        String boundary = "cacher";
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(("--" + boundary + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"" + FILE_NAME + "\"\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        body.write(content);
+        body.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.ISO_8859_1));
+
+        UploadManager manager = manager();
+        Assertions.assertThrows(DigestMismatchException.class,
+                                () -> manager.receive("multipart/form-data; boundary=" + boundary, new ByteArrayInputStream(body.toByteArray()), null, expected));
+
+        UploadStatus upload = manager.create(FILE_NAME, content.length, expected);
+        manager.append(upload.getId(), 0, chunk(content, 0, 1000));
+        Assertions.assertThrows(DigestMismatchException.class, () -> manager.append(upload.getId(), 1000, chunk(content, 1000, content.length)));
+
+        Assertions.assertTrue(persisted.isEmpty());
+        Assertions.assertFalse(manager.status(upload.getId()).isPresent());
+        Assertions.assertEquals(0, uploadFiles());
+    }
+
+    @Test
+    public void expectationHeadersTest() {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("X-Checksum-MD5", "1B983479E22FEDD1B6DDE4CB1FB83D2D");
+        headers.put("Upload-Length", "42");
+        UploadExpectation expected = UploadExpectation.parse(headers::get);
+        Assertions.assertEquals(Collections.singletonMap(DigestAlgorithm.MD5, "1b983479e22fedd1b6dde4cb1fb83d2d"), expected.getDigests());
+        Assertions.assertEquals(42, expected.getLength());
+
+        headers.put("X-Checksum-SHA256", "1b983479e22fedd1b6dde4cb1fb83d2d");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> UploadExpectation.parse(headers::get));
+        Assertions.assertFalse(UploadExpectation.parse(name -> null).hasDigests());
+    }
+
+    private IndexedArtifact persisted(String fileName, byte[] content) throws IOException {
+        Map<DigestAlgorithm, String> digests = digests(content);
+        String checksum = digests.get(DigestAlgorithm.MD5);
+        IndexedArtifact artifact = new IndexedArtifact(checksum, fileName, baseDir.resolve(checksum).resolve(fileName),
+                                                       content.length, System.currentTimeMillis(), "", digests);
+        artifacts.add(artifact);
+        return artifact;
+    }
+
+    private UploadManager manager() {
+        UploadManager manager = new UploadManager();
+        manager.cacherProperties = cacherProperties;
+        manager.artifactIndex = artifactIndex;
+        manager.cacherUtils = new CacherUtils() {
+            @Override
+            public String persistUpload(Path file, String fileName, Map<DigestAlgorithm, String> digests) {
+                try {
+                    persisted.put(fileName, Files.readAllBytes(file));
+                    persistedDigests.put(fileName, digests);
+                    Files.delete(file);
+                } catch (IOException e) {
+                    return e.getMessage();
+                }
+                return "persisted " + fileName;
+            }
+
+            @Override
+            public String aliasUpload(String checksum, String fileName) {
+                return (aliases.putIfAbsent(fileName, checksum) == null ? "aliased " : "exists ") + fileName;
+            }
+        };
+        return manager;
+    }
+
+    private long uploadFiles() throws IOException {
+        try (Stream<Path> files = Files.list(uploadsDir)) {
+            return files.count();
+        }
+    }
+
+    private static Map<DigestAlgorithm, String> digests(byte[] content) throws IOException {
+        return StreamingDigest.of(new ByteArrayInputStream(content));
+    }
+
+    private static InputStream chunk(byte[] content, int from, int to) {
+        return new ByteArrayInputStream(Arrays.copyOfRange(content, from, to));
+    }
+
+    private static byte[] content(int size) {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return content;
+    }
+}
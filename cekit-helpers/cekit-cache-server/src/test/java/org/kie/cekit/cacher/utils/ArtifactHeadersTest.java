@@ -0,0 +1,59 @@
+package org.kie.cekit.cacher.utils;
+
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.kie.cekit.cacher.artifacts.DigestAlgorithm;
+import org.kie.cekit.cacher.artifacts.IndexedArtifact;
+
+public class ArtifactHeadersTest {
+
+    // Wed, 21 Oct 2015 07:28:00 GMT
+    private final IndexedArtifact artifact = new IndexedArtifact("bccc8db65cb5eae41084222c82a6131c",
+                                                                 "quarkus-arc-0.15.0-javadoc.jar",
+                                                                 Paths.get("/tmp/quarkus-arc-0.15.0-javadoc.jar"),
+                                                                 100,
+                                                                 1445412480000L,
+                                                                 "");
+
+    @Test
+    public void headersTest() {
+        Assertions.assertEquals("\"bccc8db65cb5eae41084222c82a6131c\"", ArtifactHeaders.headers(artifact).get("ETag"));
+        Assertions.assertEquals("Wed, 21 Oct 2015 07:28:00 GMT", ArtifactHeaders.headers(artifact).get("Last-Modified"));
+        Assertions.assertEquals("md5=vMyNtly16uQQhCIsgqYTHA==", ArtifactHeaders.digestHeaders(artifact).get("Digest"));
+    }
+
+    @Test
+    public void digestHeadersTest() {
+        Map<DigestAlgorithm, String> digests = new EnumMap<>(DigestAlgorithm.class);
+        digests.put(DigestAlgorithm.SHA256, "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855");
+        Map<String, String> headers = ArtifactHeaders.digestHeaders(artifact.withDigests(digests));
+
+        Assertions.assertEquals("bccc8db65cb5eae41084222c82a6131c", headers.get("X-Checksum-MD5"));
+        Assertions.assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855", headers.get("X-Checksum-SHA256"));
+        Assertions.assertNull(headers.get("X-Checksum-SHA1"));
+        Assertions.assertEquals("md5=vMyNtly16uQQhCIsgqYTHA==,sha-256=47DEQpj8HBSa+/TImW+5JCeuQeRkm5NMpJWZG3hSuFU=", headers.get("Digest"));
+    }
+
+    @Test
+    public void ifNoneMatchTest() {
+        Assertions.assertTrue(ArtifactHeaders.notModified("\"bccc8db65cb5eae41084222c82a6131c\"", null, artifact));
+        Assertions.assertTrue(ArtifactHeaders.notModified("\"other\", W/\"bccc8db65cb5eae41084222c82a6131c\"", null, artifact));
+        Assertions.assertTrue(ArtifactHeaders.notModified("*", null, artifact));
+        Assertions.assertFalse(ArtifactHeaders.notModified("\"other\"", null, artifact));
+        // If-Modified-Since is ignored when If-None-Match is present
+        Assertions.assertFalse(ArtifactHeaders.notModified("\"other\"", "Wed, 21 Oct 2015 07:28:00 GMT", artifact));
+    }
+
+    @Test
+    public void ifModifiedSinceTest() {
+        Assertions.assertTrue(ArtifactHeaders.notModified(null, "Wed, 21 Oct 2015 07:28:00 GMT", artifact));
+        Assertions.assertTrue(ArtifactHeaders.notModified(null, "Thu, 22 Oct 2015 07:28:00 GMT", artifact));
+        Assertions.assertFalse(ArtifactHeaders.notModified(null, "Tue, 20 Oct 2015 07:28:00 GMT", artifact));
+        Assertions.assertFalse(ArtifactHeaders.notModified(null, "not a date", artifact));
+        Assertions.assertFalse(ArtifactHeaders.notModified(null, null, artifact));
+    }
+}
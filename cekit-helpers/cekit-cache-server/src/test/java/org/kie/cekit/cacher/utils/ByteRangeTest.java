@@ -0,0 +1,72 @@
+package org.kie.cekit.cacher.utils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ByteRangeTest {
+
+    @Test
+    public void parseSingleRangeTest() {
+        Assertions.assertEquals(Optional.of(Collections.singletonList(new ByteRange(0, 499))), ByteRange.parse("bytes=0-499", 1000));
+        Assertions.assertEquals(Optional.of(Collections.singletonList(new ByteRange(500, 999))), ByteRange.parse("bytes=500-", 1000));
+        Assertions.assertEquals(Optional.of(Collections.singletonList(new ByteRange(900, 999))), ByteRange.parse("bytes=-100", 1000));
+        // clamped to the content size
+        Assertions.assertEquals(Optional.of(Collections.singletonList(new ByteRange(900, 999))), ByteRange.parse("bytes=900-5000", 1000));
+        Assertions.assertEquals(Optional.of(Collections.singletonList(new ByteRange(0, 999))), ByteRange.parse("bytes=-5000", 1000));
+    }
+
+    @Test
+    public void parseMultipleRangesTest() {
+        Assertions.assertEquals(Optional.of(Arrays.asList(new ByteRange(0, 0), new ByteRange(999, 999))),
+                                ByteRange.parse("bytes=0-0, -1", 1000));
+        // the unsatisfiable one is dropped
+        Assertions.assertEquals(Optional.of(Collections.singletonList(new ByteRange(10, 19))),
+                                ByteRange.parse("bytes=10-19,2000-3000", 1000));
+    }
+
+    @Test
+    public void parseOverlappingRangesTest() {
+        Assertions.assertEquals(Optional.of(Collections.singletonList(new ByteRange(0, 149))),
+                                ByteRange.parse("bytes=50-149,0-99", 1000));
+        // adjacent ranges are merged too, the others are sorted
+        Assertions.assertEquals(Optional.of(Arrays.asList(new ByteRange(0, 19), new ByteRange(500, 599))),
+                                ByteRange.parse("bytes=500-599,10-19,0-9", 1000));
+        // asking for more than the content size, the full content is served once
+        Assertions.assertEquals(Optional.empty(), ByteRange.parse("bytes=0-,0-", 1000));
+        Assertions.assertEquals(Optional.empty(), ByteRange.parse("bytes=0-599,-500", 1000));
+    }
+
+    @Test
+    public void parseUnsatisfiableTest() {
+        Assertions.assertEquals(Optional.of(Collections.emptyList()), ByteRange.parse("bytes=1000-", 1000));
+        Assertions.assertEquals(Optional.of(Collections.emptyList()), ByteRange.parse("bytes=-0", 1000));
+    }
+
+    @Test
+    public void parseIgnoredTest() {
+        Assertions.assertEquals(Optional.empty(), ByteRange.parse(null, 1000));
+        Assertions.assertEquals(Optional.empty(), ByteRange.parse("items=0-10", 1000));
+        Assertions.assertEquals(Optional.empty(), ByteRange.parse("bytes=10-5", 1000));
+        Assertions.assertEquals(Optional.empty(), ByteRange.parse("bytes=abc", 1000));
+    }
+
+    @Test
+    public void ifRangeTest() {
+        Assertions.assertTrue(ByteRange.ifRangeMatches(null, "bccc8db65cb5eae41084222c82a6131c"));
+        Assertions.assertTrue(ByteRange.ifRangeMatches("\"bccc8db65cb5eae41084222c82a6131c\"", "bccc8db65cb5eae41084222c82a6131c"));
+        Assertions.assertFalse(ByteRange.ifRangeMatches("\"0d3955b0fed4a2d03d1adc29b3fd7c67\"", "bccc8db65cb5eae41084222c82a6131c"));
+        Assertions.assertFalse(ByteRange.ifRangeMatches("Wed, 21 Oct 2015 07:28:00 GMT", "bccc8db65cb5eae41084222c82a6131c"));
+    }
+
+    @Test
+    public void multipartContentLengthTest() {
+        MultipartByteRanges multipart = new MultipartByteRanges(Arrays.asList(new ByteRange(0, 9), new ByteRange(20, 29)), 100, "application/octet-stream");
+        long expected = multipart.partHeader(0).length + 10 + multipart.partHeader(1).length + 10 + multipart.trailer().length;
+        Assertions.assertEquals(expected, multipart.contentLength());
+        Assertions.assertTrue(multipart.contentType().startsWith("multipart/byteranges; boundary="));
+    }
+}
@@ -1,6 +1,7 @@
 package org.kie.cekit.cacher.utils;
 
 import io.quarkus.test.junit.QuarkusTest;
+import okhttp3.Request;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
@@ -117,7 +118,7 @@ public class CacherUtilsTest {
     @Order(3)
     public void getFileTest() {
         Assertions.assertEquals(
-                cacherProperties.getCacherArtifactsDir() + "/0d3955b0fed4a2d03d1adc29b3fd7c67/jboss-remoting-5.0.9.Final.jar",
+                cacherProperties.getCacherArtifactsDir() + "/0d/39/0d3955b0fed4a2d03d1adc29b3fd7c67/jboss-remoting-5.0.9.Final.jar",
                 cacherUtils.getFile("0d3955b0fed4a2d03d1adc29b3fd7c67").get().toString());
     }
 
@@ -145,6 +146,24 @@ public class CacherUtilsTest {
         Assertions.assertFalse(cacherUtils.fileExists("dfe927040dbd33159b61b2c92e0b7ae2"));
     }
 
+    @Test
+    @Order(6)
+    public void resumeRequestTest() throws IOException {
+        String url = "https://repo1.maven.org/maven2/org/jboss/jandex/2.1.1.Final/jandex-2.1.1.Final-sources.jar";
+        Request whole = CacherUtils.resumeRequest(url, 0, null);
+        Assertions.assertNull(whole.header("Range"));
+        Assertions.assertNull(whole.header("If-Range"));
+
+        Request resumed = CacherUtils.resumeRequest(url, 1024, "\"5f3a9c\"");
+        Assertions.assertEquals("bytes=1024-", resumed.header("Range"));
+        Assertions.assertEquals("\"5f3a9c\"", resumed.header("If-Range"));
+
+        // failed over to a mirror, which does not share the validator
+        Request failedOver = CacherUtils.resumeRequest(url, 1024, null);
+        Assertions.assertEquals("bytes=1024-", failedOver.header("Range"));
+        Assertions.assertNull(failedOver.header("If-Range"));
+    }
+
 
     private void clean() {
         if (preLoadFileLocation != null) {
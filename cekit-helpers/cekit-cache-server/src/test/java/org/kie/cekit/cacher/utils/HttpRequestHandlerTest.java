@@ -0,0 +1,43 @@
+package org.kie.cekit.cacher.utils;
+
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.kie.cekit.cacher.properties.CacherProperties;
+
+public class HttpRequestHandlerTest {
+
+    @Test
+    public void apiKeepsCertificateVerificationTest() {
+        HttpRequestHandler handler = new HttpRequestHandler();
+        handler.props = new CacherProperties() {
+            @Override
+            public boolean trustAllCerts() {
+                return true;
+            }
+
+            @Override
+            public int httpMaxIdleConnections() {
+                return 4;
+            }
+
+            @Override
+            public int httpConnectTimeout() {
+                return 20;
+            }
+
+            @Override
+            public int httpReadTimeout(HttpRequestHandler.Destination destination) {
+                return 60;
+            }
+        };
+        OkHttpClient verifying = new OkHttpClient();
+
+        OkHttpClient api = handler.client(HttpRequestHandler.Destination.API);
+        Assertions.assertSame(verifying.hostnameVerifier(), api.hostnameVerifier());
+
+        OkHttpClient artifacts = handler.client(HttpRequestHandler.Destination.ARTIFACTS);
+        Assertions.assertNotSame(verifying.hostnameVerifier(), artifacts.hostnameVerifier());
+        Assertions.assertNotSame(verifying.hostnameVerifier(), handler.client(HttpRequestHandler.Destination.METADATA).hostnameVerifier());
+    }
+}
@@ -0,0 +1,102 @@
+package org.kie.cekit.cacher.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class MultipartStreamTest {
+
+    private static final String BOUNDARY = "----cacher-boundary";
+    private static final String CONTENT_TYPE = "multipart/form-data; boundary=" + BOUNDARY;
+
+    @Test
+    public void partsTest() throws IOException {
+        byte[] file = content(300 * 1024);
+        MultipartStream multipart = new MultipartStream(new ByteArrayInputStream(body(file)), CONTENT_TYPE);
+
+        MultipartStream.Part fileName = multipart.nextPart().get();
+        Assertions.assertTrue(fileName.is("fileName"));
+        Assertions.assertFalse(fileName.getFileName().isPresent());
+        Assertions.assertEquals("rhpam-kie-server.zip", fileName.asString(1024));
+
+        MultipartStream.Part filePart = multipart.nextPart().get();
+        Assertions.assertEquals("file", filePart.getName());
+        Assertions.assertEquals(Optional.of("upload.zip"), filePart.getFileName());
+        Assertions.assertArrayEquals(file, read(filePart.getContent()));
+
+        Assertions.assertFalse(multipart.nextPart().isPresent());
+    }
+
+    @Test
+    public void boundarySplitAcrossReadsTest() throws IOException {
+        // the content holds delimiter look-alikes and the stream hands out a few bytes at a time
+        String partialDelimiter = "\r\n--" + BOUNDARY.substring(0, BOUNDARY.length() - 1);
+        byte[] file = ("start" + partialDelimiter + "x middle\r\n-" + partialDelimiter).getBytes(StandardCharsets.ISO_8859_1);
+        InputStream trickle = new FilterInputStream(new ByteArrayInputStream(body(file))) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 3));
+            }
+        };
+        MultipartStream multipart = new MultipartStream(trickle, "multipart/form-data; boundary=\"" + BOUNDARY + "\"");
+
+        multipart.nextPart();
+        // skips the fileName field without reading it
+        MultipartStream.Part filePart = multipart.nextPart().get();
+        Assertions.assertArrayEquals(file, read(filePart.getContent()));
+        Assertions.assertFalse(multipart.nextPart().isPresent());
+    }
+
+    @Test
+    public void truncatedBodyTest() throws IOException {
+        byte[] body = body(content(100 * 1024));
+        MultipartStream multipart = new MultipartStream(new ByteArrayInputStream(Arrays.copyOf(body, body.length - 200)), CONTENT_TYPE);
+        multipart.nextPart();
+        MultipartStream.Part filePart = multipart.nextPart().get();
+
+        Assertions.assertThrows(IOException.class, () -> read(filePart.getContent()));
+    }
+
+    @Test
+    public void missingBoundaryTest() {
+        Assertions.assertThrows(IOException.class, () -> new MultipartStream(new ByteArrayInputStream(new byte[0]), "multipart/form-data"));
+    }
+
+    private static byte[] body(byte[] file) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(("preamble\r\n--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"fileName\"\r\n\r\n"
+                + "rhpam-kie-server.zip\r\n"
+                + "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"upload.zip\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        body.write(file);
+        body.write(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        return body.toByteArray();
+    }
+
+    private static byte[] content(int size) {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return content;
+    }
+
+    private static byte[] read(InputStream content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = content.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,90 @@
+package org.kie.cekit.cacher.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class SingleFlightTest {
+
+    @Test
+    public void sameRequestIsCoalescedTest() throws Exception {
+        SingleFlight<String> singleFlight = new SingleFlight<>();
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> singleFlight.execute("file.zip", "http://host/file.zip", () -> {
+            calls.incrementAndGet();
+            started.countDown();
+            await(release);
+            return "checksum";
+        }));
+        Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(singleFlight.get("file.zip").isPresent());
+
+        CompletableFuture<String> second = new CompletableFuture<>();
+        Thread waiter = new Thread(() -> second.complete(singleFlight.execute("file.zip", "http://host/file.zip", () -> {
+            calls.incrementAndGet();
+            return "other";
+        })));
+        waiter.start();
+        // parked on the future of the download in flight
+        while (waiter.getState() != Thread.State.WAITING) {
+            Thread.sleep(10);
+        }
+        release.countDown();
+
+        Assertions.assertEquals("checksum", first.get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals("checksum", second.get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(1, calls.get());
+        Assertions.assertEquals(0, singleFlight.size());
+    }
+
+    @Test
+    public void differentRequestWaitsTest() throws Exception {
+        SingleFlight<String> singleFlight = new SingleFlight<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> singleFlight.execute("file.zip", "http://a/file.zip", () -> {
+            running.incrementAndGet();
+            started.countDown();
+            await(release);
+            running.decrementAndGet();
+            return "a";
+        }));
+        Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> singleFlight.execute("file.zip", "http://b/file.zip", () -> {
+            // the first call must be done before this one starts
+            return running.get() == 0 ? "b" : "overlap";
+        }));
+        release.countDown();
+
+        Assertions.assertEquals("a", first.get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals("b", second.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void failureIsPropagatedTest() {
+        SingleFlight<String> singleFlight = new SingleFlight<>();
+        Assertions.assertThrows(IllegalStateException.class, () -> singleFlight.execute("file.zip", "url", () -> {
+            throw new IllegalStateException("boom");
+        }));
+        Assertions.assertFalse(singleFlight.get("file.zip").isPresent());
+        Assertions.assertEquals("ok", singleFlight.execute("file.zip", "url", () -> "ok"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
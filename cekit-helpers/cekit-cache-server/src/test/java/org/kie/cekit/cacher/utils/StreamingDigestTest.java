@@ -0,0 +1,54 @@
+package org.kie.cekit.cacher.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.kie.cekit.cacher.artifacts.DigestAlgorithm;
+
+public class StreamingDigestTest {
+
+    @Test
+    public void transferTest() throws IOException {
+        byte[] content = "hello cacher".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        StreamingDigest digest = new StreamingDigest();
+        long copied = digest.transfer(Channels.newChannel(new ByteArrayInputStream(content)), Channels.newChannel(out));
+
+        Assertions.assertEquals(content.length, copied);
+        Assertions.assertEquals(content.length, digest.getBytes());
+        Assertions.assertArrayEquals(content, out.toByteArray());
+        Assertions.assertEquals("90dc065a3189ef1785503186da83ab3f", digest.md5());
+        Assertions.assertEquals("32a15b49a77f8b594cd4a75c89ccba16945a0b7b", digest.digests().get(DigestAlgorithm.SHA1));
+        Assertions.assertEquals("da8bdc5a8c9c863cbfb2a7d1b3956837f2a855e0b72cd073a0590a97edff8a6c", digest.digests().get(DigestAlgorithm.SHA256));
+        Assertions.assertEquals(128, digest.digests().get(DigestAlgorithm.SHA512).length());
+    }
+
+    @Test
+    public void transferLargerThanBufferTest() throws IOException {
+        byte[] content = new byte[StreamingDigest.BUFFER_SIZE * 2 + 17];
+        Arrays.fill(content, (byte) 'a');
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        StreamingDigest digest = new StreamingDigest();
+        digest.transfer(Channels.newChannel(new ByteArrayInputStream(content)), Channels.newChannel(out));
+
+        Assertions.assertArrayEquals(content, out.toByteArray());
+        Assertions.assertEquals(content.length, digest.getBytes());
+    }
+
+    @Test
+    public void emptySourceTest() throws IOException {
+        StreamingDigest digest = new StreamingDigest();
+        Assertions.assertEquals(0, digest.transfer(Channels.newChannel(new ByteArrayInputStream(new byte[0])),
+                                                   Channels.newChannel(new ByteArrayOutputStream())));
+        Assertions.assertEquals("d41d8cd98f00b204e9800998ecf8427e", digest.md5());
+        Assertions.assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855", digest.digests().get(DigestAlgorithm.SHA256));
+    }
+}